@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the {@link AccessibilityCheckRegistry} shares checks without caches between callers,
+ * hands out checks with caches as new instances, and rejects IDs it cannot resolve uniquely. The
+ * registry is process-wide, so IDs registered by these tests are unique to each test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AccessibilityCheckRegistryTest {
+
+  /* The presets that are not deprecated */
+  private static final AccessibilityCheckPreset[] PRESETS = {AccessibilityCheckPreset.LATEST,
+      AccessibilityCheckPreset.VERSION_1_0_CHECKS, AccessibilityCheckPreset.VERSION_2_0_CHECKS,
+      AccessibilityCheckPreset.VERSION_3_0_CHECKS, AccessibilityCheckPreset.NO_CHECKS,
+      AccessibilityCheckPreset.PRERELEASE};
+
+  private AccessibilityCheckRegistry registry;
+
+  @Before
+  public void setUp() {
+    registry = AccessibilityCheckRegistry.getInstance();
+  }
+
+  @Test
+  public void presetsMatchUnsharedPresets() {
+    for (AccessibilityCheckPreset preset : PRESETS) {
+      String name = preset.name();
+      assertEquals(name, classesOf(AccessibilityCheckPreset.getViewChecksForPreset(preset)),
+          classesOf(registry.getViewChecksForPreset(preset)));
+      assertEquals(name, classesOf(AccessibilityCheckPreset.getInfoChecksForPreset(preset)),
+          classesOf(registry.getInfoChecksForPreset(preset)));
+      assertEquals(name, classesOf(AccessibilityCheckPreset.getEventChecksForPreset(preset)),
+          classesOf(registry.getEventChecksForPreset(preset)));
+    }
+  }
+
+  @Test
+  public void checksWithoutCachesAreShared() {
+    Set<AccessibilityViewHierarchyCheck> latest =
+        registry.getViewChecksForPreset(AccessibilityCheckPreset.LATEST);
+    assertSame(latest, registry.getViewChecksForPreset(AccessibilityCheckPreset.LATEST));
+
+    /* Every preset, and lookups by ID, hand out the one registered instance */
+    for (AccessibilityViewHierarchyCheck check
+        : registry.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE)) {
+      if (check.hasCaches()) {
+        continue;
+      }
+      assertSame(check, registry.getCheck(registry.getCheckId(check.getClass())));
+      for (AccessibilityViewHierarchyCheck latestCheck : latest) {
+        if (latestCheck.getClass() == check.getClass()) {
+          assertSame(check, latestCheck);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void checksWithCachesAreNewInstances() {
+    TextContrastViewCheck first = findContrastCheck(
+        registry.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE));
+    TextContrastViewCheck second = findContrastCheck(
+        registry.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE));
+    assertTrue(first.hasCaches());
+    assertTrue(second.hasCaches());
+    assertNotSame(first, second);
+
+    AccessibilityCheck byId = registry.getCheck("TextContrastViewCheck");
+    assertTrue(byId.hasCaches());
+    assertNotSame(byId, registry.getCheck("TextContrastViewCheck"));
+
+    /* Released presets keep the configuration they had without the registry */
+    assertFalse(findContrastCheck(
+        registry.getViewChecksForPreset(AccessibilityCheckPreset.LATEST)).hasCaches());
+  }
+
+  @Test
+  public void customPresetRejectsUnknownId() {
+    String presetName = "RegistryTestUnknown" + System.nanoTime();
+    try {
+      registry.registerCustomPreset(presetName,
+          Arrays.asList("TouchTargetSizeViewCheck", "NoSuchCheck"));
+      fail("Unknown check ID was accepted");
+    } catch (IllegalArgumentException expected) {
+      /* Expected */
+    }
+    assertFalse(registry.hasCustomPreset(presetName));
+
+    registry.registerCustomPreset(presetName,
+        Arrays.asList("TouchTargetSizeViewCheck", "TextContrastViewCheck"));
+    Set<AccessibilityViewHierarchyCheck> checks =
+        registry.getViewChecksForCustomPreset(presetName);
+    assertEquals(2, checks.size());
+    for (AccessibilityViewHierarchyCheck check : checks) {
+      if (check.hasCaches()) {
+        assertNotSame(check, findContrastCheck(registry.getViewChecksForCustomPreset(presetName)));
+      } else {
+        assertSame(check, registry.getCheck("TouchTargetSizeViewCheck"));
+      }
+    }
+    assertTrue(registry.getInfoChecksForCustomPreset(presetName).isEmpty());
+  }
+
+  @Test
+  public void checkIndexRejectsDuplicateIds() {
+    final String newId = "RegistryTestCheck" + System.nanoTime();
+    final Map<String, AccessibilityCheck> duplicating = new LinkedHashMap<>();
+    duplicating.put(newId, new TouchTargetSizeViewCheck());
+    duplicating.put("SpeakableTextPresentViewCheck", new SpeakableTextPresentViewCheck());
+    try {
+      registry.addCheckIndex(new AccessibilityCheckIndex() {
+        @Override
+        public Map<String, AccessibilityCheck> createChecks() {
+          return duplicating;
+        }
+      });
+      fail("Duplicate check ID was accepted");
+    } catch (IllegalArgumentException expected) {
+      /* Expected */
+    }
+    /* No check of a rejected index is registered */
+    assertFalse(registry.getCheckIds().contains(newId));
+    assertNull(registry.getCheck(newId));
+
+    final AccessibilityCheck check = new TouchTargetSizeViewCheck();
+    registry.addCheckIndex(new AccessibilityCheckIndex() {
+      @Override
+      public Map<String, AccessibilityCheck> createChecks() {
+        Map<String, AccessibilityCheck> checks = new LinkedHashMap<>();
+        checks.put(newId, check);
+        return checks;
+      }
+    });
+    assertSame(check, registry.getCheck(newId));
+    assertEquals("TouchTargetSizeViewCheck",
+        registry.getCheckId(TouchTargetSizeViewCheck.class));
+  }
+
+  private static TextContrastViewCheck findContrastCheck(
+      Set<? extends AccessibilityCheck> checks) {
+    for (AccessibilityCheck check : checks) {
+      if (check instanceof TextContrastViewCheck) {
+        return (TextContrastViewCheck) check;
+      }
+    }
+    throw new AssertionError("No TextContrastViewCheck in " + checks);
+  }
+
+  private static List<Class<?>> classesOf(Set<? extends AccessibilityCheck> checks) {
+    List<Class<?>> classes = new ArrayList<>(checks.size());
+    for (AccessibilityCheck check : checks) {
+      classes.add(check.getClass());
+    }
+    return classes;
+  }
+}
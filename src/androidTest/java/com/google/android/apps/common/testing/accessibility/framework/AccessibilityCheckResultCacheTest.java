@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.TextView;
+
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that an {@link AccessibilityCheckResultCache} returns the results a run would report,
+ * rebuilt against the views of the hierarchy being looked up, and nothing else.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AccessibilityCheckResultCacheTest {
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  private Context context;
+  private Set<AccessibilityViewHierarchyCheck> checks;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getTargetContext();
+    checks = AccessibilityCheckPreset.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE);
+  }
+
+  @Test
+  @UiThreadTest
+  public void hitIsRebuiltAgainstRecreatedHierarchy() {
+    AccessibilityCheckResultCache cache = new AccessibilityCheckResultCache(4);
+    ViewHierarchySnapshot snapshot =
+        ViewHierarchySnapshot.capture(ViewHierarchyFixtures.createHierarchy(context));
+    cache.put(snapshot, checks, ViewHierarchyTraverser.runChecks(checks, snapshot));
+
+    /* As when a screen is recreated in the same state */
+    ViewHierarchySnapshot recreated =
+        ViewHierarchySnapshot.capture(ViewHierarchyFixtures.createHierarchy(context));
+    List<AccessibilityViewCheckResult> cached = cache.get(recreated, checks);
+    assertNotNull(cached);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+    assertEquals(
+        ViewHierarchyFixtures.describe(ViewHierarchyTraverser.runChecks(checks, recreated)),
+        ViewHierarchyFixtures.describe(cached));
+  }
+
+  @Test
+  @UiThreadTest
+  public void changedPropertyMisses() {
+    AccessibilityCheckResultCache cache = new AccessibilityCheckResultCache(4);
+    View root = ViewHierarchyFixtures.createHierarchy(context);
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    cache.put(snapshot, checks, ViewHierarchyTraverser.runChecks(checks, snapshot));
+
+    findText(root, "Submit").setClickable(false);
+    assertNull(cache.get(ViewHierarchySnapshot.capture(root), checks));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  @UiThreadTest
+  public void leastRecentlyUsedEntryIsEvicted() {
+    AccessibilityCheckResultCache cache = new AccessibilityCheckResultCache(2);
+    ViewHierarchySnapshot first = captureVariant("First");
+    ViewHierarchySnapshot second = captureVariant("Second");
+    ViewHierarchySnapshot third = captureVariant("Third");
+    cache.put(first, checks, ViewHierarchyTraverser.runChecks(checks, first));
+    cache.put(second, checks, ViewHierarchyTraverser.runChecks(checks, second));
+
+    /* Looking up the first entry makes the second the least recently used */
+    assertNotNull(cache.get(first, checks));
+    cache.put(third, checks, ViewHierarchyTraverser.runChecks(checks, third));
+    assertEquals(2, cache.size());
+    assertNull(cache.get(second, checks));
+    assertNotNull(cache.get(first, checks));
+    assertNotNull(cache.get(third, checks));
+  }
+
+  @Test
+  @UiThreadTest
+  public void suppressionDoesNotReachCachedResults() {
+    AccessibilityCheckResultCache cache = new AccessibilityCheckResultCache(4);
+    ViewHierarchySnapshot snapshot =
+        ViewHierarchySnapshot.capture(ViewHierarchyFixtures.createHierarchy(context));
+    List<AccessibilityViewCheckResult> results =
+        ViewHierarchyTraverser.runChecks(checks, snapshot);
+    List<String> expected = ViewHierarchyFixtures.describe(results);
+    cache.put(snapshot, checks, results);
+
+    /* As AccessibilityValidator suppresses results after storing them */
+    AccessibilityCheckResultUtils.suppressMatchingResults(results, Matchers.anything());
+    List<AccessibilityViewCheckResult> cached = cache.get(snapshot, checks);
+    assertEquals(expected, ViewHierarchyFixtures.describe(cached));
+    for (AccessibilityViewCheckResult result : cached) {
+      assertFalse(result.getType() == AccessibilityCheckResultType.SUPPRESSED);
+    }
+  }
+
+  @Test
+  @UiThreadTest
+  public void checksConfiguredDifferentlyDoNotShareResults() {
+    AccessibilityCheckResultCache cache = new AccessibilityCheckResultCache(4);
+    ViewHierarchySnapshot snapshot =
+        ViewHierarchySnapshot.capture(ViewHierarchyFixtures.createHierarchy(context));
+    Set<TextContrastViewCheck> solidOnly = Collections.singleton(new TextContrastViewCheck());
+    Set<TextContrastViewCheck> rendering =
+        Collections.singleton(new TextContrastViewCheck(new BackgroundLuminanceCache()));
+    List<AccessibilityViewCheckResult> solidOnlyResults =
+        ViewHierarchyTraverser.runChecks(solidOnly, snapshot);
+    assertNotEquals(ViewHierarchyFixtures.describe(solidOnlyResults),
+        ViewHierarchyFixtures.describe(ViewHierarchyTraverser.runChecks(rendering, snapshot)));
+    cache.put(snapshot, solidOnly, solidOnlyResults);
+
+    assertNull(cache.get(snapshot, rendering));
+    assertNotNull(cache.get(snapshot, Collections.singleton(new TextContrastViewCheck())));
+  }
+
+  /**
+   * @return A snapshot of the fixture hierarchy in which the first text is {@code text}
+   */
+  private ViewHierarchySnapshot captureVariant(String text) {
+    View root = ViewHierarchyFixtures.createHierarchy(context);
+    findText(root, "Settings").setText(text);
+    return ViewHierarchySnapshot.capture(root);
+  }
+
+  private static TextView findText(View root, String text) {
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    for (int i = 0; i < snapshot.size(); ++i) {
+      if (text.equals(snapshot.getText(i))) {
+        return (TextView) snapshot.getView(i);
+      }
+    }
+    throw new AssertionError("No view has the text " + text);
+  }
+}
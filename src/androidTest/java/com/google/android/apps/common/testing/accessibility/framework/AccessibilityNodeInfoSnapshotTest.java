@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that an {@link AccessibilityNodeInfoSnapshot} captures the same nodes, relationships and
+ * properties as a walk of the live hierarchy through {@code getChild} and {@code getLabeledBy}.
+ * The hierarchy is that of the active window, so the tests are skipped if there is none.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 18)
+public class AccessibilityNodeInfoSnapshotTest {
+
+  private AccessibilityNodeInfo root;
+  private List<AccessibilityNodeInfo> liveInfos;
+  private List<Integer> liveParents;
+
+  @Before
+  public void setUp() {
+    root = InstrumentationRegistry.getInstrumentation().getUiAutomation().getRootInActiveWindow();
+    Assume.assumeNotNull(root);
+
+    /* As checks walked the hierarchy before it was captured */
+    liveInfos = new ArrayList<>();
+    liveParents = new ArrayList<>();
+    liveInfos.add(AccessibilityNodeInfo.obtain(root));
+    liveParents.add(AccessibilityNodeInfoSnapshot.NO_INDEX);
+    for (int i = 0; i < liveInfos.size(); ++i) {
+      AccessibilityNodeInfo info = liveInfos.get(i);
+      for (int j = 0; j < info.getChildCount(); ++j) {
+        AccessibilityNodeInfo child = info.getChild(j);
+        if (child != null) {
+          liveInfos.add(child);
+          liveParents.add(i);
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if (liveInfos != null) {
+      for (AccessibilityNodeInfo info : liveInfos) {
+        info.recycle();
+      }
+    }
+    if (root != null) {
+      root.recycle();
+    }
+  }
+
+  @Test
+  public void structureMatchesLiveWalk() {
+    AccessibilityNodeInfoSnapshot snapshot = AccessibilityNodeInfoSnapshot.capture(root);
+    try {
+      assertEquals(liveInfos.size(), snapshot.size());
+      assertEquals(root, snapshot.getRoot());
+      for (int i = 0; i < snapshot.size(); ++i) {
+        AccessibilityNodeInfo live = liveInfos.get(i);
+        assertEquals(live, snapshot.getInfo(i));
+        assertEquals(liveParents.get(i).intValue(), snapshot.getParent(i));
+
+        int childNumber = 0;
+        for (int j = 0; j < liveInfos.size(); ++j) {
+          if (liveParents.get(j) == i) {
+            assertEquals(j, snapshot.getChild(i, childNumber++));
+          }
+        }
+        assertEquals(childNumber, snapshot.getChildCount(i));
+
+        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
+          assertEquals(String.valueOf(live), findLiveLabel(live), snapshot.getLabeledBy(i));
+        }
+      }
+    } finally {
+      snapshot.recycle();
+    }
+  }
+
+  @Test
+  public void propertiesMatchLiveNodes() {
+    AccessibilityNodeInfoSnapshot snapshot = AccessibilityNodeInfoSnapshot.capture(root);
+    Rect rect = new Rect();
+    Rect capturedRect = new Rect();
+    try {
+      for (int i = 0; i < snapshot.size(); ++i) {
+        AccessibilityNodeInfo live = liveInfos.get(i);
+        AccessibilityNodeInfo captured = snapshot.getInfo(i);
+        String name = String.valueOf(live);
+        assertEquals(name, String.valueOf(live.getClassName()),
+            String.valueOf(captured.getClassName()));
+        assertEquals(name, String.valueOf(live.getText()),
+            String.valueOf(captured.getText()));
+        assertEquals(name, String.valueOf(live.getContentDescription()),
+            String.valueOf(captured.getContentDescription()));
+        assertEquals(name, live.isClickable(), captured.isClickable());
+        assertEquals(name, live.isFocusable(), captured.isFocusable());
+        assertEquals(name, live.isVisibleToUser(), captured.isVisibleToUser());
+        live.getBoundsInScreen(rect);
+        captured.getBoundsInScreen(capturedRect);
+        assertEquals(name, rect, capturedRect);
+      }
+    } finally {
+      snapshot.recycle();
+    }
+  }
+
+  /**
+   * @return The index in the live walk of the node that labels {@code info}, as
+   * {@link AccessibilityNodeInfoSnapshot#getLabeledBy(int)} reports it
+   */
+  private int findLiveLabel(AccessibilityNodeInfo info) {
+    AccessibilityNodeInfo label = info.getLabeledBy();
+    if (label == null) {
+      return AccessibilityNodeInfoSnapshot.NO_INDEX;
+    }
+    int labelIndex = liveInfos.indexOf(label);
+    label.recycle();
+    return (labelIndex >= 0) ? labelIndex : AccessibilityNodeInfoSnapshot.OUTSIDE_INDEX;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+import com.google.android.apps.common.testing.accessibility.framework.BackgroundLuminanceCache.BackgroundLuminance;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.TextView;
+
+import com.googlecode.eyesfree.utils.BitmapPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link TextContrastViewCheck} evaluates text over backgrounds rendered through a
+ * {@link BackgroundLuminanceCache}, and that the cache trims outliers, reuses what it rendered and
+ * draws each background over an erased bitmap.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackgroundLuminanceCacheTest {
+
+  private static final int WIDTH = 400;
+  private static final int HEIGHT = 400;
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  private Context context;
+  private BackgroundLuminanceCache cache;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getTargetContext();
+    cache = new BackgroundLuminanceCache();
+  }
+
+  @Test
+  @UiThreadTest
+  public void textWithinGradientIsError() {
+    TextView view = createText(Color.GRAY, createGradient(Color.DKGRAY, Color.LTGRAY));
+    List<AccessibilityViewCheckResult> results =
+        new TextContrastViewCheck(cache).runCheckOnView(view);
+    assertEquals(1, results.size());
+    assertEquals(AccessibilityCheckResultType.ERROR, results.get(0).getType());
+
+    /* Without rendering, only solid backgrounds are evaluated */
+    results = new TextContrastViewCheck().runCheckOnView(view);
+    assertEquals(1, results.size());
+    assertEquals(AccessibilityCheckResultType.NOT_RUN, results.get(0).getType());
+  }
+
+  @Test
+  @UiThreadTest
+  public void textOverContrastingGradientPasses() {
+    TextView view = createText(Color.BLACK, createGradient(Color.WHITE, Color.LTGRAY));
+    assertTrue(new TextContrastViewCheck(cache).runCheckOnView(view).isEmpty());
+  }
+
+  @Test
+  @UiThreadTest
+  public void translucentGradientIsNotRun() {
+    TextView view = createText(Color.GRAY, createGradient(0x80444444, 0x80CCCCCC));
+    List<AccessibilityViewCheckResult> results =
+        new TextContrastViewCheck(cache).runCheckOnView(view);
+    assertEquals(1, results.size());
+    assertEquals(AccessibilityCheckResultType.NOT_RUN, results.get(0).getType());
+  }
+
+  @Test
+  @UiThreadTest
+  public void thinBorderIsTrimmed() {
+    /* A one pixel border covers about 1% of the background, which is within the trimmed share */
+    GradientDrawable bordered = createGradient(Color.WHITE, Color.WHITE);
+    bordered.setStroke(1, Color.BLACK);
+    assertEquals(21.0d, cache.getBackgroundLuminance(bordered, WIDTH, HEIGHT)
+        .getContrastRatio(Color.BLACK), 0.01d);
+    assertTrue(new TextContrastViewCheck(cache).runCheckOnView(createText(Color.BLACK, bordered))
+        .isEmpty());
+
+    /* A border covering a third of the background is not */
+    GradientDrawable framed = createGradient(Color.WHITE, Color.WHITE);
+    framed.setStroke(40, Color.BLACK);
+    assertEquals(1.0d, cache.getBackgroundLuminance(framed, WIDTH, HEIGHT)
+        .getContrastRatio(Color.BLACK), 0.0d);
+    List<AccessibilityViewCheckResult> results =
+        new TextContrastViewCheck(cache).runCheckOnView(createText(Color.BLACK, framed));
+    assertEquals(1, results.size());
+    assertEquals(AccessibilityCheckResultType.ERROR, results.get(0).getType());
+  }
+
+  @Test
+  @UiThreadTest
+  public void backgroundsSharingStateAreRenderedOnce() {
+    GradientDrawable gradient = createGradient(Color.DKGRAY, Color.LTGRAY);
+    TextContrastViewCheck check = new TextContrastViewCheck(cache);
+    List<AccessibilityViewCheckResult> first =
+        check.runCheckOnView(createText(Color.GRAY, gradient));
+    /* As the rows of a list, each with a drawable of the same resource */
+    List<AccessibilityViewCheckResult> second =
+        check.runCheckOnView(createText(Color.GRAY, gradient.getConstantState().newDrawable()));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.size());
+    assertEquals(first.get(0).getType(), second.get(0).getType());
+    assertEquals(first.get(0).getMessage().toString(), second.get(0).getMessage().toString());
+
+    /* A background drawn at another size may have other colors */
+    cache.getBackgroundLuminance(gradient, WIDTH / 2, HEIGHT);
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  @UiThreadTest
+  public void pooledBitmapIsErasedBeforeDrawing() {
+    BitmapPool pool = new BitmapPool();
+    BackgroundLuminanceCache pooledCache = new BackgroundLuminanceCache(1, pool);
+    assertTrue(pooledCache.getBackgroundLuminance(createGradient(Color.BLACK, Color.BLACK), WIDTH,
+        HEIGHT).isOpaque());
+
+    /* Only the border is drawn, so the rest of the reused bitmap must be transparent */
+    GradientDrawable outline = createGradient(Color.TRANSPARENT, Color.TRANSPARENT);
+    outline.setStroke(1, Color.WHITE);
+    BackgroundLuminance luminance = pooledCache.getBackgroundLuminance(outline, WIDTH, HEIGHT);
+    assertFalse(luminance.isOpaque());
+  }
+
+  private static GradientDrawable createGradient(int startColor, int endColor) {
+    return new GradientDrawable(GradientDrawable.Orientation.LEFT_RIGHT,
+        new int[] {startColor, endColor});
+  }
+
+  private TextView createText(int textColor, Drawable background) {
+    TextView view = new TextView(context);
+    view.setText("Contrast");
+    view.setTextColor(textColor);
+    view.setBackground(background);
+    view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+    view.layout(0, 0, WIDTH, HEIGHT);
+    return view;
+  }
+}
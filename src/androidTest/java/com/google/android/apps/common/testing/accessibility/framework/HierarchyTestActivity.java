@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+/**
+ * Shows the hierarchy of {@link ViewHierarchyFixtures#createHierarchy} in a window, for tests
+ * that need views attached to one, as {@code View#getGlobalVisibleRect} only reports them there.
+ */
+public class HierarchyTestActivity extends Activity {
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setContentView(ViewHierarchyFixtures.createHierarchy(this));
+  }
+}
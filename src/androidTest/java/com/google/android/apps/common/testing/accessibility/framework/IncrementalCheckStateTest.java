@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link ViewHierarchyTraverser#runChecksIncrementally} reports the same results as a
+ * full run after each kind of change to a hierarchy.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IncrementalCheckStateTest {
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  private ViewGroup root;
+  private Set<AccessibilityViewHierarchyCheck> checks;
+  private IncrementalCheckState state;
+
+  @Before
+  public void setUp() {
+    root = ViewHierarchyFixtures.createHierarchy(InstrumentationRegistry.getTargetContext());
+    checks = AccessibilityCheckPreset.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE);
+    state = new IncrementalCheckState();
+  }
+
+  @Test
+  @UiThreadTest
+  public void firstAndUnchangedRunsMatchFullRun() {
+    assertIncrementalRunMatchesFullRun();
+    assertIncrementalRunMatchesFullRun();
+
+    ViewHierarchySnapshot snapshot = state.getSnapshot();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      assertFalse(snapshot.isDirty(i));
+    }
+  }
+
+  @Test
+  @UiThreadTest
+  public void runsAfterEachChangeMatchFullRun() {
+    assertIncrementalRunMatchesFullRun();
+
+    findText("Settings").setText("OK");
+    assertIncrementalRunMatchesFullRun();
+    assertTrue(countDirty() < state.getSnapshot().size());
+
+    findText("Faint").setContentDescription("Faint text");
+    assertIncrementalRunMatchesFullRun();
+
+    ((CheckBox) findText("Agree")).setChecked(false);
+    assertIncrementalRunMatchesFullRun();
+
+    findText("Hidden").setVisibility(View.VISIBLE);
+    assertIncrementalRunMatchesFullRun();
+
+    findText("Submit").setClickable(false);
+    assertIncrementalRunMatchesFullRun();
+
+    ViewHierarchyFixtures.addText(root, "Added", View.NO_ID);
+    ViewHierarchyFixtures.layOut(root);
+    assertIncrementalRunMatchesFullRun();
+
+    View nested = findText("Nested");
+    ((ViewGroup) nested.getParent()).removeView(nested);
+    ViewHierarchyFixtures.layOut(root);
+    assertIncrementalRunMatchesFullRun();
+
+    /* Relabeling changes the speakable text of views far from the label */
+    findText("Name").setLabelFor(View.NO_ID);
+    findText("Faint").setLabelFor(1003);
+    assertIncrementalRunMatchesFullRun();
+  }
+
+  @Test
+  @UiThreadTest
+  public void runAfterLabelTextChangeMatchesFullRun() {
+    assertIncrementalRunMatchesFullRun();
+
+    /* Only the label changes, but the labeled view and its ancestors take their text from it */
+    findText("Name").setText("Agree");
+    assertIncrementalRunMatchesFullRun();
+
+    ViewHierarchySnapshot snapshot = state.getSnapshot();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      assertEquals(ViewHierarchyFixtures.describe(snapshot.getView(i)),
+          AccessibilityCheckUtils.getSpeakableTextForView(snapshot.getView(i)).toString(),
+          snapshot.getSpeakableText(i));
+    }
+  }
+
+  @Test
+  @UiThreadTest
+  public void runAfterClearMatchesFullRun() {
+    assertIncrementalRunMatchesFullRun();
+    findText("Settings").setText("Preferences");
+    state.clear();
+    assertIncrementalRunMatchesFullRun();
+  }
+
+  private void assertIncrementalRunMatchesFullRun() {
+    assertEquals(ViewHierarchyFixtures.describe(ViewHierarchyTraverser.runChecks(checks, root)),
+        ViewHierarchyFixtures.describe(
+            ViewHierarchyTraverser.runChecksIncrementally(checks, root, state)));
+  }
+
+  private int countDirty() {
+    ViewHierarchySnapshot snapshot = state.getSnapshot();
+    int dirtyCount = 0;
+    for (int i = 0; i < snapshot.size(); ++i) {
+      if (snapshot.isDirty(i)) {
+        dirtyCount++;
+      }
+    }
+    return dirtyCount;
+  }
+
+  private TextView findText(String text) {
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    for (int i = 0; i < snapshot.size(); ++i) {
+      if (text.equals(snapshot.getText(i))) {
+        return (TextView) snapshot.getView(i);
+      }
+    }
+    throw new AssertionError("No view has the text " + text);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that running node info checks through {@link InfoHierarchyTraverser} reports the same
+ * results as running them one node or one check at a time. The hierarchy is that of the active
+ * window, so the tests are skipped if there is none.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 18)
+public class InfoHierarchyTraverserTest {
+
+  private Context context;
+  private AccessibilityNodeInfo root;
+  private Set<AccessibilityInfoHierarchyCheck> checks;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getTargetContext();
+    root = InstrumentationRegistry.getInstrumentation().getUiAutomation().getRootInActiveWindow();
+    Assume.assumeNotNull(root);
+    checks = AccessibilityCheckPreset.getInfoChecksForPreset(AccessibilityCheckPreset.PRERELEASE);
+  }
+
+  @After
+  public void tearDown() {
+    if (root != null) {
+      root.recycle();
+    }
+  }
+
+  @Test
+  public void infoChecksMatchRunsOverEveryNode() {
+    /* As node checks were run before the traverser, on each node of a live walk */
+    List<AccessibilityNodeInfo> infos = new ArrayList<>();
+    infos.add(AccessibilityNodeInfo.obtain(root));
+    for (int i = 0; i < infos.size(); ++i) {
+      AccessibilityNodeInfo info = infos.get(i);
+      for (int j = 0; j < info.getChildCount(); ++j) {
+        AccessibilityNodeInfo child = info.getChild(j);
+        if (child != null) {
+          infos.add(child);
+        }
+      }
+    }
+
+    try {
+      for (AccessibilityInfoHierarchyCheck check : checks) {
+        if (!(check instanceof AccessibilityInfoCheck)) {
+          continue;
+        }
+        List<AccessibilityInfoCheckResult> expected = new ArrayList<>();
+        for (AccessibilityNodeInfo info : infos) {
+          expected.addAll(((AccessibilityInfoCheck) check).runCheckOnInfo(info, context, null));
+        }
+        List<AccessibilityInfoCheckResult> actual = InfoHierarchyTraverser.runChecks(
+            Collections.singleton(check), root, context, null);
+        assertEquals(check.getClass().getSimpleName(), describe(expected), describe(actual));
+      }
+    } finally {
+      for (AccessibilityNodeInfo info : infos) {
+        info.recycle();
+      }
+    }
+  }
+
+  @Test
+  public void sharedWalkMatchesSeparateRuns() {
+    List<AccessibilityInfoCheckResult> expected = new ArrayList<>();
+    for (AccessibilityInfoHierarchyCheck check : checks) {
+      expected.addAll(check.runCheckOnInfoHierarchy(root, context, null));
+    }
+
+    assertEquals(describe(expected),
+        describe(InfoHierarchyTraverser.runChecks(checks, root, context, null)));
+  }
+
+  @Test
+  public void resultsAreGroupedByCheckInOrder() {
+    AccessibilityNodeInfoSnapshot snapshot = AccessibilityNodeInfoSnapshot.capture(root);
+    try {
+      List<String> expected = new ArrayList<>();
+      for (AccessibilityInfoHierarchyCheck check : checks) {
+        for (AccessibilityInfoCheckResult result
+            : check.runCheckOnSnapshot(snapshot, context, null)) {
+          expected.add(describe(result));
+          result.recycle();
+        }
+      }
+
+      List<String> actual = new ArrayList<>();
+      for (AccessibilityInfoCheckResult result
+          : InfoHierarchyTraverser.runChecks(checks, snapshot, context, null)) {
+        actual.add(describe(result));
+        result.recycle();
+      }
+      assertEquals(expected, actual);
+    } finally {
+      snapshot.recycle();
+    }
+  }
+
+  /**
+   * @return One line describing each result, sorted, so results can be compared regardless of
+   * the order in which they were reported. The results are recycled.
+   */
+  private static List<String> describe(List<AccessibilityInfoCheckResult> results) {
+    List<String> descriptions = new ArrayList<>(results.size());
+    for (AccessibilityInfoCheckResult result : results) {
+      descriptions.add(describe(result));
+      result.recycle();
+    }
+    Collections.sort(descriptions);
+    return descriptions;
+  }
+
+  private static String describe(AccessibilityInfoCheckResult result) {
+    StringBuilder description = new StringBuilder();
+    description.append(result.getSourceCheckClass().getSimpleName()).append(' ')
+        .append(result.getType()).append(' ');
+    AccessibilityNodeInfo info = result.getInfo();
+    if (info != null) {
+      Rect bounds = new Rect();
+      info.getBoundsInScreen(bounds);
+      description.append(info.getClassName()).append(bounds.toShortString()).append(' ')
+          .append(info.getText()).append(' ').append(info.getContentDescription()).append(' ');
+    }
+    return description.append(result.getMessage()).toString();
+  }
+}
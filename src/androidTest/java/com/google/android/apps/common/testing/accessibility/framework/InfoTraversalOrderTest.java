@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
+import com.googlecode.eyesfree.utils.NodeFilter;
+import com.googlecode.eyesfree.utils.NodeFocusFinder;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that an {@link InfoTraversalOrder} visits nodes in the order that
+ * {@link NodeFocusFinder#focusSearch} reaches them one step at a time on the live hierarchy, and
+ * that its search finds the same nodes as
+ * {@link AccessibilityNodeInfoUtils#searchFromInOrderTraversal}. The hierarchy is that of the
+ * active window, so the tests are skipped if there is none.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 18)
+public class InfoTraversalOrderTest {
+
+  private static final NodeFilter FILTER_CLICKABLE = new NodeFilter() {
+    @Override
+    public boolean accept(Context context, AccessibilityNodeInfoCompat node) {
+      return node.isClickable();
+    }
+  };
+
+  private Context context;
+  private AccessibilityNodeInfo root;
+  private AccessibilityNodeInfoSnapshot snapshot;
+  private InfoTraversalOrder order;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getTargetContext();
+    root = InstrumentationRegistry.getInstrumentation().getUiAutomation().getRootInActiveWindow();
+    Assume.assumeNotNull(root);
+    snapshot = AccessibilityNodeInfoSnapshot.capture(root);
+    order = new InfoTraversalOrder(snapshot);
+  }
+
+  @After
+  public void tearDown() {
+    if (snapshot != null) {
+      snapshot.recycle();
+    }
+    if (root != null) {
+      root.recycle();
+    }
+  }
+
+  @Test
+  public void orderMatchesFocusSearch() {
+    List<AccessibilityNodeInfoCompat> forward =
+        walk(new AccessibilityNodeInfoCompat(root), NodeFocusFinder.SEARCH_FORWARD);
+    try {
+      assertEquals(forward.size() + 1, order.size());
+      assertEquals(0, order.get(0));
+      for (int position = 1; position < order.size(); ++position) {
+        assertEquals(forward.get(position - 1).getInfo(),
+            snapshot.getInfo(order.get(position)));
+        assertEquals(position, order.getPosition(order.get(position)));
+        assertEquals(order.get(position), order.getNext(order.get(position - 1)));
+        assertEquals(order.get(position - 1), order.getPrevious(order.get(position)));
+      }
+    } finally {
+      recycle(forward);
+    }
+
+    int last = order.get(order.size() - 1);
+    List<AccessibilityNodeInfoCompat> backward = walk(
+        new AccessibilityNodeInfoCompat(snapshot.getInfo(last)), NodeFocusFinder.SEARCH_BACKWARD);
+    try {
+      assertEquals(backward.size() + 1, order.size());
+      for (int i = 0; i < backward.size(); ++i) {
+        assertEquals(backward.get(i).getInfo(),
+            snapshot.getInfo(order.get(order.size() - 2 - i)));
+      }
+    } finally {
+      recycle(backward);
+    }
+  }
+
+  @Test
+  public void searchMatchesSearchFromInOrderTraversal() {
+    for (int position = 0; position < order.size(); ++position) {
+      int index = order.get(position);
+      for (int direction : new int[] {NodeFocusFinder.SEARCH_FORWARD,
+          NodeFocusFinder.SEARCH_BACKWARD}) {
+        AccessibilityNodeInfoCompat expected =
+            AccessibilityNodeInfoUtils.searchFromInOrderTraversal(context,
+                new AccessibilityNodeInfoCompat(snapshot.getInfo(index)), FILTER_CLICKABLE,
+                direction);
+        int found = order.search(context, index, FILTER_CLICKABLE, direction);
+        if (expected == null) {
+          assertEquals(InfoTraversalOrder.NO_INDEX, found);
+        } else {
+          assertEquals(expected.getInfo(), snapshot.getInfo(found));
+          expected.recycle();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The nodes that {@link NodeFocusFinder#focusSearch} reaches from {@code start}, not
+   * including {@code start}, in the order they are reached
+   */
+  private List<AccessibilityNodeInfoCompat> walk(AccessibilityNodeInfoCompat start,
+      int direction) {
+    List<AccessibilityNodeInfoCompat> reached = new ArrayList<>();
+    AccessibilityNodeInfoCompat node = NodeFocusFinder.focusSearch(start, direction);
+    while ((node != null) && (reached.size() <= snapshot.size())) {
+      reached.add(node);
+      node = NodeFocusFinder.focusSearch(node, direction);
+    }
+    if (node != null) {
+      node.recycle();
+    }
+    return reached;
+  }
+
+  private static void recycle(List<AccessibilityNodeInfoCompat> nodes) {
+    for (AccessibilityNodeInfoCompat node : nodes) {
+      node.recycle();
+    }
+  }
+}
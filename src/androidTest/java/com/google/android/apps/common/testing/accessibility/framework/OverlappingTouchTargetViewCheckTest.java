@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link OverlappingTouchTargetViewCheck} and the {@link BoundsIndex} it queries. Index
+ * queries are compared with a scan of every element of the snapshot.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OverlappingTouchTargetViewCheckTest {
+
+  private static final int ROOT_SIZE = 1000;
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  private Context context;
+  private FrameLayout root;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getTargetContext();
+    root = new FrameLayout(context);
+  }
+
+  @Test
+  @UiThreadTest
+  public void partialOverlapIsReportedOnceAsWarning() {
+    View below = addView(root, 0, 0, 100, 100, true);
+    addView(root, 50, 50, 150, 150, true);
+    layOut();
+
+    List<AccessibilityViewCheckResult> results = runCheck();
+    assertEquals(1, results.size());
+    assertEquals(below, results.get(0).getView());
+    assertEquals(AccessibilityCheckResultType.WARNING, results.get(0).getType());
+  }
+
+  @Test
+  @UiThreadTest
+  public void coveredTargetIsReportedAsError() {
+    View covered = addView(root, 300, 300, 400, 400, true);
+    addView(root, 280, 280, 420, 420, true);
+    layOut();
+
+    List<AccessibilityViewCheckResult> results = runCheck();
+    assertEquals(1, results.size());
+    assertEquals(covered, results.get(0).getView());
+    assertEquals(AccessibilityCheckResultType.ERROR, results.get(0).getType());
+  }
+
+  @Test
+  @UiThreadTest
+  public void nestedAdjacentAndUnclickableViewsAreNotReported() {
+    FrameLayout container = new FrameLayout(context);
+    container.setClickable(true);
+    FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(200, 200);
+    params.leftMargin = 600;
+    params.topMargin = 600;
+    root.addView(container, params);
+    addView(container, 20, 20, 120, 120, true);
+    addView(root, 0, 500, 100, 600, true);
+    addView(root, 100, 500, 200, 600, true);
+    addView(root, 20, 520, 80, 580, false);
+    layOut();
+
+    assertTrue(runCheck().isEmpty());
+  }
+
+  @Test
+  @UiThreadTest
+  public void checkIsOnlyInPrereleasePreset() {
+    assertFalse(containsCheck(AccessibilityCheckPreset.LATEST));
+    assertTrue(containsCheck(AccessibilityCheckPreset.PRERELEASE));
+  }
+
+  @Test
+  @UiThreadTest
+  public void boundsIndexMatchesScan() {
+    Random random = new Random(9);
+    int[][] rects = new int[200][];
+    for (int i = 0; i < rects.length; ++i) {
+      /* Some views share bounds, and some are empty */
+      if ((i % 10 == 0) && (i > 0)) {
+        rects[i] = rects[random.nextInt(i)];
+      } else {
+        int left = random.nextInt(ROOT_SIZE);
+        int top = random.nextInt(ROOT_SIZE);
+        rects[i] = new int[] {left, top, Math.min(ROOT_SIZE, left + random.nextInt(200)),
+            Math.min(ROOT_SIZE, top + random.nextInt(200))};
+      }
+      addView(root, rects[i][0], rects[i][1], rects[i][2], rects[i][3], true);
+    }
+    layOut();
+
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    BoundsIndex boundsIndex = snapshot.getBoundsIndex();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      if (!boundsIndex.isIndexed(i)) {
+        assertEquals(ViewHierarchySnapshot.NO_INDEX, boundsIndex.getBoundsGroup(i));
+        continue;
+      }
+      assertArrayEquals(scanIntersecting(snapshot, snapshot.getLeft(i), snapshot.getTop(i),
+          snapshot.getRight(i), snapshot.getBottom(i)), boundsIndex.findIntersecting(i));
+      for (int j = 0; j < snapshot.size(); ++j) {
+        if (boundsIndex.isIndexed(j)) {
+          boolean sameBounds = (snapshot.getLeft(i) == snapshot.getLeft(j))
+              && (snapshot.getTop(i) == snapshot.getTop(j))
+              && (snapshot.getRight(i) == snapshot.getRight(j))
+              && (snapshot.getBottom(i) == snapshot.getBottom(j));
+          assertEquals(sameBounds,
+              boundsIndex.getBoundsGroup(i) == boundsIndex.getBoundsGroup(j));
+        }
+      }
+    }
+
+    for (int n = 0; n < 100; ++n) {
+      int left = random.nextInt(ROOT_SIZE + 100) - 50;
+      int top = random.nextInt(ROOT_SIZE + 100) - 50;
+      int right = left + random.nextInt(300);
+      int bottom = top + random.nextInt(300);
+      assertArrayEquals(scanIntersecting(snapshot, left, top, right, bottom),
+          boundsIndex.findIntersecting(left, top, right, bottom));
+    }
+  }
+
+  private List<AccessibilityViewCheckResult> runCheck() {
+    return new OverlappingTouchTargetViewCheck().runCheckOnViewHierarchy(root);
+  }
+
+  private static boolean containsCheck(AccessibilityCheckPreset preset) {
+    for (AccessibilityViewHierarchyCheck check
+        : AccessibilityCheckPreset.getViewChecksForPreset(preset)) {
+      if (check instanceof OverlappingTouchTargetViewCheck) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The indexed elements whose bounds intersect the rect, found by testing every element
+   */
+  private static int[] scanIntersecting(ViewHierarchySnapshot snapshot, int left, int top,
+      int right, int bottom) {
+    BoundsIndex boundsIndex = snapshot.getBoundsIndex();
+    List<Integer> found = new ArrayList<>();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      if (boundsIndex.isIndexed(i)
+          && (Math.max(left, snapshot.getLeft(i)) < Math.min(right, snapshot.getRight(i)))
+          && (Math.max(top, snapshot.getTop(i)) < Math.min(bottom, snapshot.getBottom(i)))) {
+        found.add(i);
+      }
+    }
+    int[] array = new int[found.size()];
+    for (int i = 0; i < array.length; ++i) {
+      array[i] = found.get(i);
+    }
+    Arrays.sort(array);
+    return array;
+  }
+
+  private View addView(ViewGroup parent, int left, int top, int right, int bottom,
+      boolean clickable) {
+    View view = new View(context);
+    view.setClickable(clickable);
+    FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(right - left, bottom - top);
+    params.leftMargin = left;
+    params.topMargin = top;
+    parent.addView(view, params);
+    return view;
+  }
+
+  private void layOut() {
+    int measureSpec = View.MeasureSpec.makeMeasureSpec(ROOT_SIZE, View.MeasureSpec.EXACTLY);
+    root.measure(measureSpec, measureSpec);
+    root.layout(0, 0, ROOT_SIZE, ROOT_SIZE);
+  }
+}
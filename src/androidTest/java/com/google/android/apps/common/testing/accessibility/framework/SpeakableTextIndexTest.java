@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.TextView;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the speakable text indices of view and node snapshots match
+ * {@link AccessibilityCheckUtils#getSpeakableTextForView(View)} and
+ * {@link AccessibilityCheckUtils#getSpeakableTextForInfo(AccessibilityNodeInfo)}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SpeakableTextIndexTest {
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  private ViewGroup root;
+
+  @Before
+  public void setUp() {
+    root = ViewHierarchyFixtures.createHierarchy(InstrumentationRegistry.getTargetContext());
+  }
+
+  @Test
+  @UiThreadTest
+  public void viewTextsMatchPerViewComputation() {
+    assertViewTextsMatch(ViewHierarchySnapshot.capture(root));
+  }
+
+  @Test
+  @UiThreadTest
+  public void carriedViewTextsMatchPerViewComputation() {
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    assertViewTextsMatch(snapshot);
+
+    /* Each change reaches the text of ancestors or labeled views, not only the changed view */
+    findText(snapshot, "Child").setText("Changed");
+    snapshot = ViewHierarchySnapshot.capture(root, snapshot);
+    assertViewTextsMatch(snapshot);
+
+    findText(snapshot, "Hidden").setVisibility(View.VISIBLE);
+    snapshot = ViewHierarchySnapshot.capture(root, snapshot);
+    assertViewTextsMatch(snapshot);
+
+    findText(snapshot, "Name").setText("Full name");
+    snapshot = ViewHierarchySnapshot.capture(root, snapshot);
+    assertViewTextsMatch(snapshot);
+
+    findText(snapshot, "Full name").setLabelFor(View.NO_ID);
+    findText(snapshot, "Faint").setLabelFor(1003);
+    snapshot = ViewHierarchySnapshot.capture(root, snapshot);
+    assertViewTextsMatch(snapshot);
+
+    findText(snapshot, "Submit").setContentDescription(null);
+    snapshot = ViewHierarchySnapshot.capture(root, snapshot);
+    assertViewTextsMatch(snapshot);
+  }
+
+  @Test
+  @SdkSuppress(minSdkVersion = 18)
+  public void infoTextsMatchPerNodeComputation() {
+    AccessibilityNodeInfo rootInfo =
+        InstrumentationRegistry.getInstrumentation().getUiAutomation().getRootInActiveWindow();
+    Assume.assumeNotNull(rootInfo);
+    AccessibilityNodeInfoSnapshot snapshot = AccessibilityNodeInfoSnapshot.capture(rootInfo);
+    try {
+      InfoSpeakableTextIndex speakableTexts = new InfoSpeakableTextIndex(snapshot);
+      for (int i = 0; i < snapshot.size(); ++i) {
+        AccessibilityNodeInfo info = snapshot.getInfo(i);
+        assertEquals(String.valueOf(info), toString(
+            AccessibilityCheckUtils.getSpeakableTextForInfo(info)),
+            toString(speakableTexts.getSpeakableText(i)));
+      }
+    } finally {
+      snapshot.recycle();
+      rootInfo.recycle();
+    }
+  }
+
+  private static void assertViewTextsMatch(ViewHierarchySnapshot snapshot) {
+    for (int i = 0; i < snapshot.size(); ++i) {
+      View view = snapshot.getView(i);
+      assertEquals(ViewHierarchyFixtures.describe(view),
+          toString(AccessibilityCheckUtils.getSpeakableTextForView(view)),
+          snapshot.getSpeakableText(i));
+    }
+  }
+
+  private static TextView findText(ViewHierarchySnapshot snapshot, String text) {
+    for (int i = 0; i < snapshot.size(); ++i) {
+      if (text.equals(snapshot.getText(i))) {
+        return (TextView) snapshot.getView(i);
+      }
+    }
+    throw new AssertionError("No view has the text " + text);
+  }
+
+  private static String toString(CharSequence value) {
+    return (value != null) ? value.toString() : null;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.drawable.GradientDrawable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.ImageButton;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the {@code View} hierarchies that tests run checks against, and compares the results of
+ * those runs. The hierarchies are laid out but not attached to a window, so tests must run on the
+ * UI thread.
+ */
+final class ViewHierarchyFixtures {
+
+  static final int ROOT_WIDTH = 1080;
+  static final int ROOT_HEIGHT = 1920;
+
+  private ViewHierarchyFixtures() {}
+
+  /**
+   * Builds a hierarchy in which every view check of the prerelease preset has something to
+   * report: small and overlapping touch targets, missing, duplicate and redundant speakable text,
+   * labels, editable views with descriptions, checkable views, low contrast over solid and
+   * gradient backgrounds, and views that are hidden or nested in clickable containers.
+   */
+  static LinearLayout createHierarchy(Context context) {
+    LinearLayout root = new LinearLayout(context);
+    root.setOrientation(LinearLayout.VERTICAL);
+    root.setBackgroundColor(Color.WHITE);
+
+    addText(root, "Settings", 1001);
+    TextView label = addText(root, "Name", 1002);
+    EditText name = new EditText(context);
+    name.setId(1003);
+    name.setHint("Your name");
+    addView(root, name, 600, 120);
+    label.setLabelFor(name.getId());
+    EditText described = new EditText(context);
+    described.setContentDescription("Email");
+    addView(root, described, 600, 120);
+
+    Button ok = new Button(context);
+    ok.setText("OK");
+    addView(root, ok, 40, 40);
+    Button otherOk = new Button(context);
+    otherOk.setText("OK");
+    addView(root, otherOk, 200, 120);
+    TextView redundant = addText(root, "Submit", View.NO_ID);
+    redundant.setClickable(true);
+    redundant.setContentDescription("Submit button");
+    addView(root, new ImageButton(context), 120, 120);
+    ImageView image = new ImageView(context);
+    image.setContentDescription("Logo");
+    addView(root, image, 120, 120);
+
+    CheckBox agree = new CheckBox(context);
+    agree.setText("Agree");
+    agree.setChecked(true);
+    addView(root, agree, 400, 120);
+    CheckBox subscribe = new CheckBox(context);
+    subscribe.setText("Subscribe");
+    addView(root, subscribe, 400, 120);
+
+    LinearLayout row = new LinearLayout(context);
+    row.setClickable(true);
+    addView(root, row, 800, 120);
+    addText(row, "Nested", View.NO_ID);
+    addText(row, "Child", View.NO_ID);
+    TextView hidden = addText(row, "Hidden", View.NO_ID);
+    hidden.setVisibility(View.INVISIBLE);
+    TextView gone = addText(row, "Gone", View.NO_ID);
+    gone.setVisibility(View.GONE);
+
+    TextView lowContrast = addText(root, "Faint", View.NO_ID);
+    lowContrast.setTextColor(Color.LTGRAY);
+    TextView gradient = addText(root, "Gradient", View.NO_ID);
+    gradient.setTextColor(Color.GRAY);
+    gradient.setBackground(new GradientDrawable(GradientDrawable.Orientation.LEFT_RIGHT,
+        new int[] {Color.DKGRAY, Color.LTGRAY}));
+
+    FrameLayout overlaps = new FrameLayout(context);
+    addView(root, overlaps, ROOT_WIDTH, 300);
+    addClickable(overlaps, 0, 0, 200, 200);
+    addClickable(overlaps, 100, 100, 300, 300);
+    addClickable(overlaps, 400, 0, 600, 200);
+    addClickable(overlaps, 400, 0, 600, 200);
+
+    layOut(root);
+    return root;
+  }
+
+  /**
+   * Measures and lays out {@code root} at {@link #ROOT_WIDTH} by {@link #ROOT_HEIGHT} pixels.
+   */
+  static void layOut(View root) {
+    root.measure(View.MeasureSpec.makeMeasureSpec(ROOT_WIDTH, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(ROOT_HEIGHT, View.MeasureSpec.EXACTLY));
+    root.layout(0, 0, ROOT_WIDTH, ROOT_HEIGHT);
+  }
+
+  /**
+   * @return One line describing each result, sorted, so results can be compared regardless of
+   * the order in which they were reported
+   */
+  static List<String> describe(List<? extends AccessibilityViewCheckResult> results) {
+    List<String> descriptions = new ArrayList<>(results.size());
+    for (AccessibilityViewCheckResult result : results) {
+      descriptions.add(result.getSourceCheckClass().getSimpleName() + " " + result.getType() + " "
+          + describe(result.getView()) + " " + result.getMessage());
+    }
+    Collections.sort(descriptions);
+    return descriptions;
+  }
+
+  static String describe(View view) {
+    if (view == null) {
+      return "null";
+    }
+    return view.getClass().getSimpleName() + "@"
+        + Integer.toHexString(System.identityHashCode(view));
+  }
+
+  static TextView addText(ViewGroup parent, CharSequence text, int id) {
+    TextView textView = new TextView(parent.getContext());
+    textView.setText(text);
+    textView.setId(id);
+    addView(parent, textView, ViewGroup.LayoutParams.WRAP_CONTENT,
+        ViewGroup.LayoutParams.WRAP_CONTENT);
+    return textView;
+  }
+
+  private static void addView(ViewGroup parent, View view, int width, int height) {
+    parent.addView(view, new ViewGroup.LayoutParams(width, height));
+  }
+
+  private static void addClickable(FrameLayout parent, int left, int top, int right,
+      int bottom) {
+    View view = new View(parent.getContext());
+    view.setClickable(true);
+    FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(right - left, bottom - top);
+    params.leftMargin = left;
+    params.topMargin = top;
+    parent.addView(view, params);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that a {@link ViewHierarchySnapshot} captures the same structure and properties that
+ * checks read from the live {@code View}s.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewHierarchySnapshotTest {
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  private ViewGroup root;
+
+  @Before
+  public void setUp() {
+    root = ViewHierarchyFixtures.createHierarchy(InstrumentationRegistry.getTargetContext());
+  }
+
+  @Test
+  @UiThreadTest
+  public void structureMatchesViews() {
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+
+    Set<View> captured = new HashSet<>();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      captured.add(snapshot.getView(i));
+    }
+    assertEquals(ViewAccessibilityUtils.getAllViewsInHierarchy(root), captured);
+    assertEquals(root, snapshot.getRootView());
+    assertEquals(ViewHierarchySnapshot.NO_INDEX, snapshot.getParent(0));
+
+    for (int i = 0; i < snapshot.size(); ++i) {
+      View view = snapshot.getView(i);
+      assertEquals(i, snapshot.indexOf(view));
+      if (i > 0) {
+        assertEquals(view.getParent(), snapshot.getView(snapshot.getParent(i)));
+      }
+      int childCount = (view instanceof ViewGroup) ? ((ViewGroup) view).getChildCount() : 0;
+      assertEquals(childCount, snapshot.getChildCount(i));
+      for (int child = 0; child < childCount; ++child) {
+        int childIndex = snapshot.getChild(i, child);
+        assertEquals(((ViewGroup) view).getChildAt(child), snapshot.getView(childIndex));
+        assertTrue(snapshot.isInSubtree(i, childIndex));
+      }
+    }
+    assertEquals(ViewHierarchySnapshot.NO_INDEX,
+        snapshot.indexOf(new View(InstrumentationRegistry.getTargetContext())));
+  }
+
+  @Test
+  @UiThreadTest
+  public void propertiesMatchViews() {
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    Rect rect = new Rect();
+    Rect capturedRect = new Rect();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      View view = snapshot.getView(i);
+      String name = ViewHierarchyFixtures.describe(view);
+      assertEquals(name, view.isClickable(),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_CLICKABLE));
+      assertEquals(name, view.isLongClickable(),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_LONG_CLICKABLE));
+      assertEquals(name, view.isFocusable(),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_FOCUSABLE));
+      assertEquals(name, view.isEnabled(),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_ENABLED));
+      assertEquals(name, view.getVisibility() == View.VISIBLE,
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_VISIBLE));
+      assertEquals(name, ViewAccessibilityUtils.isVisibleToUser(view),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER));
+      assertEquals(name, ViewAccessibilityUtils.isImportantForAccessibility(view),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_IMPORTANT_FOR_ACCESSIBILITY));
+      assertEquals(name, ViewAccessibilityUtils.hasText(view),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_HAS_TEXT));
+      assertEquals(name, view.isScrollContainer(),
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_SCROLL_CONTAINER));
+
+      boolean hasVisibleRect = view.getGlobalVisibleRect(rect);
+      assertEquals(name, hasVisibleRect,
+          snapshot.hasFlags(i, ViewHierarchySnapshot.FLAG_HAS_VISIBLE_RECT));
+      if (hasVisibleRect) {
+        snapshot.getBounds(i, capturedRect);
+        assertEquals(name, rect, capturedRect);
+      }
+
+      assertEquals(name, view.getId(), snapshot.getId(i));
+      assertEquals(name, view.getLabelFor(), snapshot.getLabelFor(i));
+      assertEquals(name, toString(view.getContentDescription()),
+          snapshot.getContentDescription(i));
+      assertEquals(name, view.getClass().getName(), snapshot.getClassName(i));
+      if (view instanceof TextView) {
+        assertEquals(name, toString(((TextView) view).getText()), snapshot.getText(i));
+        assertEquals(name, toString(((TextView) view).getHint()), snapshot.getHint(i));
+      } else {
+        assertNull(name, snapshot.getText(i));
+        assertNull(name, snapshot.getHint(i));
+      }
+
+      View label = ViewAccessibilityUtils.getLabelForView(view);
+      assertEquals(name, (label != null) ? snapshot.indexOf(label) : ViewHierarchySnapshot.NO_INDEX,
+          snapshot.getLabeledBy(i));
+    }
+  }
+
+  @Test
+  @UiThreadTest
+  public void indexOfIsConsistentAcrossThreads() throws Exception {
+    final ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> mismatches = new ArrayList<>();
+      for (int thread = 0; thread < 4; ++thread) {
+        mismatches.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            int mismatchCount = 0;
+            for (int i = 0; i < snapshot.size(); ++i) {
+              if (snapshot.indexOf(snapshot.getView(i)) != i) {
+                mismatchCount++;
+              }
+            }
+            return mismatchCount;
+          }
+        }));
+      }
+      for (Future<Integer> mismatchCount : mismatches) {
+        assertEquals(Integer.valueOf(0), mismatchCount.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static String toString(CharSequence value) {
+    return (value != null) ? value.toString() : null;
+  }
+}
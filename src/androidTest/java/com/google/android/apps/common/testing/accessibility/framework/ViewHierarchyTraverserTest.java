@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that running checks through {@link ViewHierarchyTraverser} reports the same results as
+ * running them one view or one check at a time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewHierarchyTraverserTest {
+
+  @Rule
+  public UiThreadTestRule uiThreadTestRule = new UiThreadTestRule();
+
+  /* Launched only by the tests that need a hierarchy attached to a window */
+  @Rule
+  public ActivityTestRule<HierarchyTestActivity> activityRule =
+      new ActivityTestRule<>(HierarchyTestActivity.class, false, false);
+
+  private View root;
+  private Set<AccessibilityViewHierarchyCheck> checks;
+
+  @Before
+  public void setUp() {
+    root = ViewHierarchyFixtures.createHierarchy(InstrumentationRegistry.getTargetContext());
+    checks = AccessibilityCheckPreset.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE);
+  }
+
+  @Test
+  @UiThreadTest
+  public void viewChecksMatchRunsOverEveryView() {
+    for (AccessibilityViewHierarchyCheck check : checks) {
+      if (!(check instanceof AccessibilityViewCheck)) {
+        continue;
+      }
+      /* As view checks were run before the traverser */
+      List<AccessibilityViewCheckResult> expected = new ArrayList<>();
+      for (View view : ViewAccessibilityUtils.getAllViewsInHierarchy(root)) {
+        expected.addAll(((AccessibilityViewCheck) check).runCheckOnView(view));
+      }
+
+      assertEquals(check.getClass().getSimpleName(), ViewHierarchyFixtures.describe(expected),
+          ViewHierarchyFixtures.describe(ViewHierarchyTraverser.runCheck(check, root)));
+    }
+  }
+
+  @Test
+  @UiThreadTest
+  public void sharedWalkMatchesSeparateRuns() {
+    List<AccessibilityViewCheckResult> expected = new ArrayList<>();
+    for (AccessibilityViewHierarchyCheck check : checks) {
+      expected.addAll(check.runCheckOnViewHierarchy(root));
+    }
+    assertFalse(expected.isEmpty());
+
+    assertEquals(ViewHierarchyFixtures.describe(expected),
+        ViewHierarchyFixtures.describe(ViewHierarchyTraverser.runChecks(checks, root)));
+  }
+
+  @Test
+  @UiThreadTest
+  public void parallelRunMatchesSerialRun() {
+    ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(root);
+    List<String> expected =
+        ViewHierarchyFixtures.describe(ViewHierarchyTraverser.runChecks(checks, snapshot));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int parallelism = 2; parallelism <= 4; ++parallelism) {
+        assertEquals(expected, ViewHierarchyFixtures.describe(
+            ViewHierarchyTraverser.runChecks(checks, snapshot, executor, parallelism)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void parallelRunMatchesSerialRunInWindow() {
+    final HierarchyTestActivity activity = activityRule.launchActivity(null);
+    InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+    /*
+     * Views attached to a window share its scratch objects, so worker threads must not call
+     * methods such as getGlobalVisibleRect that write to them
+     */
+    final List<List<String>> runs = new ArrayList<>();
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        View windowRoot = activity.findViewById(android.R.id.content);
+        ViewHierarchySnapshot snapshot = ViewHierarchySnapshot.capture(windowRoot);
+        runs.add(ViewHierarchyFixtures.describe(
+            ViewHierarchyTraverser.runChecks(checks, snapshot)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+          for (int parallelism = 2; parallelism <= 4; ++parallelism) {
+            for (int repeat = 0; repeat < 10; ++repeat) {
+              runs.add(ViewHierarchyFixtures.describe(
+                  ViewHierarchyTraverser.runChecks(checks, snapshot, executor, parallelism)));
+            }
+          }
+        } finally {
+          executor.shutdown();
+        }
+      }
+    });
+
+    List<String> expected = runs.get(0);
+    assertTrue(expected.toString(),
+        expected.toString().contains("TouchTargetSizeViewCheck ERROR"));
+    for (List<String> run : runs) {
+      assertEquals(expected, run);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.text.TextUtils;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link AccessibilityNodeInfoUtils#partitionFromBfs} finds the
+ * same nodes as a search for each filter, and recycles every node it does not
+ * return. The hierarchy is that of the active window, so the tests are
+ * skipped if there is none.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 18)
+public class AccessibilityNodeInfoUtilsTest {
+
+    private static final NodeFilter FILTER_CLICKABLE = new NodeFilter() {
+        @Override
+        public boolean accept(Context context, AccessibilityNodeInfoCompat node) {
+            return node.isClickable();
+        }
+    };
+
+    private static final NodeFilter FILTER_NOT_CLICKABLE = new NodeFilter() {
+        @Override
+        public boolean accept(Context context, AccessibilityNodeInfoCompat node) {
+            return !node.isClickable();
+        }
+    };
+
+    private static final NodeFilter FILTER_TEXT = new NodeFilter() {
+        @Override
+        public boolean accept(Context context, AccessibilityNodeInfoCompat node) {
+            return !TextUtils.isEmpty(node.getText());
+        }
+    };
+
+    private Context mContext;
+    private AccessibilityNodeInfo mRoot;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mRoot = InstrumentationRegistry.getInstrumentation().getUiAutomation()
+                .getRootInActiveWindow();
+        Assume.assumeNotNull(mRoot);
+    }
+
+    @After
+    public void tearDown() {
+        NodeInfoTracker.setEnabled(false);
+        NodeInfoTracker.reset();
+        if (mRoot != null) {
+            mRoot.recycle();
+        }
+    }
+
+    @Test
+    public void partitionsMatchSearchesAndRejectedNodesAreRecycled() {
+        final AccessibilityNodeInfoCompat root = new AccessibilityNodeInfoCompat(mRoot);
+        NodeInfoTracker.reset();
+        NodeInfoTracker.setEnabled(true);
+
+        // Each node goes to the first filter that accepts it.
+        final List<AccessibilityNodeInfoCompat> clickable =
+                AccessibilityNodeInfoUtils.searchAllFromBfs(mContext, root, FILTER_CLICKABLE);
+        final List<AccessibilityNodeInfoCompat> text = AccessibilityNodeInfoUtils
+                .searchAllFromBfs(mContext, root, FILTER_TEXT.and(FILTER_NOT_CLICKABLE));
+        final List<List<AccessibilityNodeInfoCompat>> partitions =
+                AccessibilityNodeInfoUtils.partitionFromBfs(
+                        mContext, root, FILTER_CLICKABLE, FILTER_TEXT);
+        try {
+            assertEquals(2, partitions.size());
+            assertEquals(clickable, partitions.get(0));
+            assertEquals(text, partitions.get(1));
+
+            // Only the returned nodes, each found twice, are outstanding.
+            assertEquals(2 * (clickable.size() + text.size()),
+                    NodeInfoTracker.getLeakCount());
+        } finally {
+            recycle(clickable);
+            recycle(text);
+            for (List<AccessibilityNodeInfoCompat> partition : partitions) {
+                recycle(partition);
+            }
+        }
+
+        assertEquals(0, NodeInfoTracker.getLeakCount());
+        assertEquals(0, NodeInfoTracker.getUntrackedRecycleCount());
+    }
+
+    private static void recycle(List<AccessibilityNodeInfoCompat> nodes) {
+        for (AccessibilityNodeInfoCompat node : nodes) {
+            NodeInfoTracker.recycle(node);
+        }
+    }
+}
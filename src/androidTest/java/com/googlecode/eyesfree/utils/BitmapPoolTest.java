@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that a {@link BitmapPool} hands out erased bitmaps of the requested
+ * size, and recycles the least recently released once it is full.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BitmapPoolTest {
+
+    private static final int SIZE = 10;
+
+    /** The size in bytes of a pooled bitmap of {@value #SIZE} pixels square */
+    private static final long BITMAP_BYTES = 4L * SIZE * SIZE;
+
+    @Test
+    public void reusedBitmapIsErased() {
+        final BitmapPool pool = new BitmapPool();
+        final Bitmap bitmap = pool.acquire(SIZE, SIZE);
+        bitmap.eraseColor(Color.RED);
+        pool.release(bitmap);
+
+        final Bitmap reused = pool.acquire(SIZE, SIZE);
+        assertSame(bitmap, reused);
+        for (int y = 0; y < SIZE; ++y) {
+            for (int x = 0; x < SIZE; ++x) {
+                assertEquals(Color.TRANSPARENT, reused.getPixel(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void bitmapOfOtherSizeIsNotReused() {
+        final BitmapPool pool = new BitmapPool();
+        final Bitmap bitmap = pool.acquire(SIZE, SIZE);
+        pool.release(bitmap);
+
+        final Bitmap other = pool.acquire(SIZE, SIZE + 1);
+        assertNotSame(bitmap, other);
+        assertEquals(SIZE + 1, other.getHeight());
+        assertSame(bitmap, pool.acquire(SIZE, SIZE));
+    }
+
+    @Test
+    public void leastRecentlyReleasedIsRecycled() {
+        final BitmapPool pool = new BitmapPool(2 * BITMAP_BYTES);
+        final Bitmap first = pool.acquire(SIZE, SIZE);
+        final Bitmap second = pool.acquire(SIZE, SIZE);
+        final Bitmap third = pool.acquire(SIZE, SIZE);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        assertTrue(first.isRecycled());
+        assertFalse(second.isRecycled());
+        assertSame(third, pool.acquire(SIZE, SIZE));
+        assertSame(second, pool.acquire(SIZE, SIZE));
+    }
+
+    @Test
+    public void bitmapLargerThanPoolIsRecycled() {
+        final BitmapPool pool = new BitmapPool(BITMAP_BYTES);
+        final Bitmap large = pool.acquire(SIZE, 2 * SIZE);
+        pool.release(large);
+        assertTrue(large.isRecycled());
+
+        final Bitmap bitmap = pool.acquire(SIZE, SIZE);
+        pool.release(bitmap);
+        pool.clear();
+        assertTrue(bitmap.isRecycled());
+    }
+}
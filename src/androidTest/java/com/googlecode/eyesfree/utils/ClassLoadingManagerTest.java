@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that a {@link ClassLoadingManager} evicts the classes it could not
+ * load in the order they were added, and loads them again once their package
+ * is installed. Packages are faked, so no package context is created.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ClassLoadingManagerTest {
+
+    private static final String WIDGET_PACKAGE = "com.example.widgets";
+    private static final String WIDGET_CLASS = WIDGET_PACKAGE + ".Widget";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+    }
+
+    @Test
+    public void earliestNotFoundClassIsEvicted() {
+        final FakeClassLoadingManager manager = new FakeClassLoadingManager(2);
+        assertNull(load(manager, "com.example.a"));
+        assertNull(load(manager, "com.example.b"));
+        assertNull(load(manager, "com.example.c"));
+        assertEquals(3, manager.mAttempts.size());
+
+        // Looking up a remembered class does not change the eviction order.
+        assertNull(load(manager, "com.example.b"));
+        assertNull(load(manager, "com.example.c"));
+        assertEquals(3, manager.mAttempts.size());
+
+        // The first class was evicted, and trying it again evicts the second.
+        assertNull(load(manager, "com.example.a"));
+        assertEquals(4, manager.mAttempts.size());
+        assertNull(load(manager, "com.example.c"));
+        assertEquals(4, manager.mAttempts.size());
+        assertNull(load(manager, "com.example.b"));
+        assertEquals(5, manager.mAttempts.size());
+    }
+
+    @Test
+    public void classIsReloadedAfterPackageIsAdded() {
+        final FakeClassLoadingManager manager =
+                new FakeClassLoadingManager(ClassLoadingManager.DEFAULT_MAX_NOT_FOUND_CLASSES);
+        assertNull(manager.loadOrGetCachedClass(mContext, WIDGET_CLASS, WIDGET_PACKAGE));
+        assertNull(load(manager, WIDGET_PACKAGE + "s"));
+        assertEquals(2, manager.mAttempts.size());
+
+        // Until the package is added, the class is not tried again.
+        manager.mInstalledPackages.add(WIDGET_PACKAGE);
+        assertNull(manager.loadOrGetCachedClass(mContext, WIDGET_CLASS, WIDGET_PACKAGE));
+        assertEquals(2, manager.mAttempts.size());
+
+        manager.addInstalledPackageToCache(WIDGET_PACKAGE);
+        assertSame(Widget.class,
+                manager.loadOrGetCachedClass(mContext, WIDGET_CLASS, WIDGET_PACKAGE));
+        assertEquals(3, manager.mAttempts.size());
+
+        // Classes of other packages, even with the same prefix, are kept.
+        assertNull(load(manager, WIDGET_PACKAGE + "s"));
+        assertEquals(3, manager.mAttempts.size());
+    }
+
+    /**
+     * Loads a class of {@code packageName} that does not exist.
+     */
+    private Class<?> load(ClassLoadingManager manager, String packageName) {
+        return manager.loadOrGetCachedClass(mContext, packageName + ".Missing", packageName);
+    }
+
+    /**
+     * The class loaded from the fake widget package.
+     */
+    private static class Widget {
+    }
+
+    /**
+     * Records the packages it is asked for, and only has class loaders for
+     * packages marked as installed.
+     */
+    private static class FakeClassLoadingManager extends ClassLoadingManager {
+        private final List<String> mAttempts = new ArrayList<String>();
+        private final Set<String> mInstalledPackages = new HashSet<String>();
+
+        public FakeClassLoadingManager(int maxNotFoundClasses) {
+            super(maxNotFoundClasses);
+        }
+
+        @Override
+        ClassLoader getPackageClassLoader(Context context, String packageName)
+                throws NameNotFoundException {
+            mAttempts.add(packageName);
+            if (!mInstalledPackages.contains(packageName)) {
+                throw new NameNotFoundException(packageName);
+            }
+
+            return new ClassLoader(getClass().getClassLoader()) {
+                @Override
+                public Class<?> loadClass(String className) throws ClassNotFoundException {
+                    if (WIDGET_CLASS.equals(className)) {
+                        return Widget.class;
+                    }
+
+                    return super.loadClass(className);
+                }
+            };
+        }
+    }
+}
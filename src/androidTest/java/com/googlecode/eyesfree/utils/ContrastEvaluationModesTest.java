@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares each way of evaluating the contrast of regions of a screen capture
+ * with constructing a {@link ContrastSwatch} from a cropped {@link Bitmap} of
+ * each region, on the same synthetic captures.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ContrastEvaluationModesTest {
+
+    private static final int WIDTH = 200;
+
+    private static final int HEIGHT = 150;
+
+    @Test
+    public void colorPlaneMatchesCrop() {
+        final Bitmap image = createAntialiasedImage();
+        final ColorPlane plane = new ColorPlane(image);
+        for (Rect bounds : createRegions(image)) {
+            assertSameSwatch(createCroppedSwatch(image, bounds),
+                    plane.createSwatch(bounds, bounds.toShortString()));
+        }
+    }
+
+    @Test
+    public void colorPlaneWithWideIndicesMatchesCrop() {
+        final int size = 300;
+        final int[] pixels = new int[size * size];
+        for (int i = 0; i < pixels.length; ++i) {
+            pixels[i] = 0xFF000000 | (i * 181);
+        }
+        final Bitmap image = Bitmap.createBitmap(pixels, size, size, Bitmap.Config.ARGB_8888);
+        final ColorPlane plane = new ColorPlane(image);
+        assertEquals(pixels.length, plane.getColorCount());
+        for (Rect bounds : createRegions(image)) {
+            assertSameSwatch(createCroppedSwatch(image, bounds),
+                    plane.createSwatch(bounds, bounds.toShortString()));
+        }
+    }
+
+    @Test
+    public void tiledEvaluationMatchesCrop() {
+        final Bitmap image = createAntialiasedImage();
+        final List<Rect> regions = createRegions(image);
+        final List<String> names = new ArrayList<String>();
+        for (Rect bounds : regions) {
+            names.add(bounds.toShortString());
+        }
+
+        final TiledContrastEvaluator evaluator = new TiledContrastEvaluator(16,
+                TiledContrastEvaluator.DEFAULT_MEMORY_CEILING_BYTES);
+        final List<ContrastSwatch> serial = evaluator.evaluate(image, regions, names);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final List<ContrastSwatch> parallel;
+        try {
+            parallel = evaluator.evaluate(image, regions, names, executor, 4);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < regions.size(); ++i) {
+            final ContrastSwatch expected = createCroppedSwatch(image, regions.get(i));
+            assertSameSwatch(expected, serial.get(i));
+            assertSameSwatch(expected, parallel.get(i));
+        }
+    }
+
+    @Test
+    public void sampleOfEveryPixelMatchesCrop() {
+        final Bitmap image = createAntialiasedImage();
+        final ContrastSampler sampler = new ContrastSampler(WIDTH * HEIGHT);
+        for (Rect bounds : createRegions(image)) {
+            final ContrastSampler.Estimate estimate =
+                    sampler.sample(image, bounds, bounds.toShortString());
+            assertTrue(estimate.isExact());
+            assertSameSwatch(createCroppedSwatch(image, bounds), estimate.getSwatch());
+        }
+    }
+
+    @Test
+    public void sampledBoundsContainCroppedRatio() {
+        final Bitmap image = createBlockImage();
+        final ContrastSampler sampler = new ContrastSampler(64);
+        for (Rect bounds : createBlockRegions()) {
+            final double ratio = createCroppedSwatch(image, bounds).getContrastRatio();
+            final ContrastSampler.Estimate estimate =
+                    sampler.sample(image, bounds, bounds.toShortString());
+            assertTrue(bounds.toShortString(), estimate.getMinContrastRatio(0.99d) <= ratio);
+            assertTrue(bounds.toShortString(), estimate.getMaxContrastRatio(0.99d) >= ratio);
+        }
+    }
+
+    @Test
+    public void sampledTextIsConclusiveOnlyWithinBounds() {
+        final Bitmap image = createTextImage();
+        final ContrastSampler sampler = new ContrastSampler(64);
+        int unboundedCount = 0;
+        for (Rect bounds : createRegions(image)) {
+            final String name = bounds.toShortString();
+            final double ratio = createCroppedSwatch(image, bounds).getContrastRatio();
+            final ContrastSampler.Estimate estimate = sampler.sample(image, bounds, name);
+            if (estimate.isExact()) {
+                continue;
+            }
+            if (estimate.getSwatch().getLuminances().length > 2) {
+                // The antialiased edges of the text may move the mean
+                assertFalse(name, estimate.isConclusive(0.99d));
+                ++unboundedCount;
+            } else if (estimate.isConclusive(0.99d)) {
+                assertTrue(name, estimate.getMinContrastRatio(0.99d) <= ratio);
+                assertTrue(name, estimate.getMaxContrastRatio(0.99d) >= ratio);
+            }
+        }
+        assertTrue(unboundedCount > 0);
+    }
+
+    @Test
+    public void integralHistogramIsWithinBoundOfCrop() {
+        final Bitmap image = createBlockImage();
+        final IntegralLuminanceHistogram histogram = new IntegralLuminanceHistogram(image);
+        final double maxError = histogram.getMaxRatioError() * (1.0d + 1e-9d);
+        for (Rect bounds : createBlockRegions()) {
+            final double ratio = createCroppedSwatch(image, bounds).getContrastRatio();
+            final double binnedRatio = new ContrastSwatch(histogram, bounds,
+                    bounds.toShortString()).getContrastRatio();
+            assertTrue(bounds.toShortString(), binnedRatio <= ratio * maxError);
+            assertTrue(bounds.toShortString(), binnedRatio >= ratio / maxError);
+        }
+    }
+
+    @Test
+    public void exactIntegralHistogramMatchesCrop() {
+        final Bitmap blockImage = createBlockImage();
+        final IntegralLuminanceHistogram blockHistogram =
+                new IntegralLuminanceHistogram(blockImage);
+        for (Rect bounds : createBlockRegions()) {
+            final ContrastSwatch binned = new ContrastSwatch(blockHistogram, bounds,
+                    bounds.toShortString());
+            assertFalse(bounds.toShortString(), binned.isApproximate());
+            assertEquals(bounds.toShortString(),
+                    createCroppedSwatch(blockImage, bounds).getContrastRatio(),
+                    binned.getContrastRatio(), 0.0d);
+        }
+
+        // The antialiased edges of the text merge luminances into bins
+        final Bitmap textImage = createTextImage();
+        final IntegralLuminanceHistogram textHistogram = new IntegralLuminanceHistogram(textImage);
+        int approximateCount = 0;
+        for (Rect bounds : createRegions(textImage)) {
+            if (new ContrastSwatch(textHistogram, bounds, bounds.toShortString())
+                    .isApproximate()) {
+                ++approximateCount;
+            }
+        }
+        assertTrue(approximateCount > 0);
+    }
+
+    private static void assertSameSwatch(ContrastSwatch expected, ContrastSwatch actual) {
+        final String name = expected.getName().toString();
+        assertEquals(name, expected.getName(), actual.getName());
+        assertEquals(name, expected.getBounds(), actual.getBounds());
+        assertEquals(name, expected.getBackgroundColors(), actual.getBackgroundColors());
+        assertEquals(name, expected.getForegroundColors(), actual.getForegroundColors());
+        assertEquals(name, expected.getBackgroundLuminance(), actual.getBackgroundLuminance(),
+                0.0d);
+        assertEquals(name, expected.getForegroundLuminance(), actual.getForegroundLuminance(),
+                0.0d);
+        assertEquals(name, expected.getContrastRatio(), actual.getContrastRatio(), 0.0d);
+    }
+
+    /** Evaluates a region as contrast checks did before regions shared a capture */
+    private static ContrastSwatch createCroppedSwatch(Bitmap image, Rect bounds) {
+        final ContrastSwatch swatch = new ContrastSwatch(ScreenshotUtils.cropBitmap(image, bounds),
+                bounds, bounds.toShortString());
+        swatch.recycle();
+        return swatch;
+    }
+
+    /**
+     * @return A light capture with strokes of several dark grays, as of
+     *         antialiased text, and a band of many colors
+     */
+    private static Bitmap createAntialiasedImage() {
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                final int color;
+                if ((y >= 100) && (y < 130)) {
+                    color = Color.rgb(x, y, (x + y) & 0xFF);
+                } else if (((x / 3) + (y / 5)) % 7 == 0) {
+                    final int gray = (x * 7) % 64;
+                    color = Color.rgb(gray, gray, gray);
+                } else {
+                    color = Color.WHITE;
+                }
+                pixels[y * WIDTH + x] = color;
+            }
+        }
+        return Bitmap.createBitmap(pixels, WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * @return A white capture with lines of antialiased dark gray text, whose
+     *         edges hold many luminances that each cover few pixels
+     */
+    private static Bitmap createTextImage() {
+        final Bitmap image = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        image.eraseColor(Color.WHITE);
+        final Canvas canvas = new Canvas(image);
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.rgb(0x55, 0x55, 0x55));
+        paint.setTextSize(28.0f);
+        for (int line = 0; line < 4; ++line) {
+            canvas.drawText("Contrast 4.5:1", 4.0f, 30.0f + 36.0f * line, paint);
+        }
+        return image;
+    }
+
+    /**
+     * @return Fixed regions along the edges of {@code image}, and random
+     *         regions within it
+     */
+    private static List<Rect> createRegions(Bitmap image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final List<Rect> regions = new ArrayList<Rect>();
+        regions.add(new Rect(0, 0, width, height));
+        regions.add(new Rect(0, 0, 1, 1));
+        regions.add(new Rect(width - 1, height - 1, width, height));
+        regions.add(new Rect(0, 0, width, 7));
+        regions.add(new Rect(width - 9, 0, width, height));
+        final Random random = new Random(12);
+        for (int i = 0; i < 40; ++i) {
+            final int left = random.nextInt(width);
+            final int top = random.nextInt(height);
+            regions.add(new Rect(left, top, left + 1 + random.nextInt(width - left),
+                    top + 1 + random.nextInt(height - top)));
+        }
+        return regions;
+    }
+
+    /**
+     * @return A white capture with blocks of black and two grays, so that
+     *         each luminance bin holds at most one color
+     */
+    private static Bitmap createBlockImage() {
+        final Bitmap image = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        image.eraseColor(Color.WHITE);
+        fill(image, new Rect(8, 8, 40, 40), Color.BLACK);
+        fill(image, new Rect(48, 8, 100, 30), Color.rgb(0x44, 0x44, 0x44));
+        fill(image, new Rect(8, 60, 60, 120), Color.rgb(0x88, 0x88, 0x88));
+        return image;
+    }
+
+    /**
+     * @return Regions of the block image in which no two luminances are
+     *         equally common
+     */
+    private static List<Rect> createBlockRegions() {
+        final List<Rect> regions = new ArrayList<Rect>();
+        regions.add(new Rect(0, 0, WIDTH, HEIGHT));
+        regions.add(new Rect(4, 4, 44, 44));
+        regions.add(new Rect(44, 4, 104, 34));
+        regions.add(new Rect(4, 56, 64, 124));
+        regions.add(new Rect(10, 10, 30, 30));
+        regions.add(new Rect(0, 0, 104, 44));
+        regions.add(new Rect(0, 20, 70, 130));
+        return regions;
+    }
+
+    private static void fill(Bitmap image, Rect bounds, int color) {
+        for (int y = bounds.top; y < bounds.bottom; ++y) {
+            for (int x = bounds.left; x < bounds.right; ++x) {
+                image.setPixel(x, y, color);
+            }
+        }
+    }
+}
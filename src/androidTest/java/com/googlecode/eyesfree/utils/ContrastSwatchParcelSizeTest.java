@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the size of {@link ContrastSwatch} parcels in the packed format
+ * with the legacy format of boxed maps and lists. {@link Parcel} is only
+ * available on a device, so the sizes are measured here rather than in a host
+ * benchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ContrastSwatchParcelSizeTest {
+
+    private static final String TAG = "ContrastSwatchParcelSize";
+
+    private static final Rect BOUNDS = new Rect(16, 32, 336, 96);
+
+    @Test
+    public void packedParcelIsSmallerThanLegacy() {
+        for (int colorCount : new int[] {2, 16, 256}) {
+            final ContrastSwatch swatch = createSwatch(colorCount);
+            final int legacySize = getLegacySize(swatch, createHistogram(colorCount));
+            final int packedSize = getPackedSize(swatch);
+            swatch.setParcelSummaryOnly(true);
+            final int summarySize = getPackedSize(swatch);
+            Log.i(TAG, String.format(
+                    "%d colors: legacy %d bytes, packed %d bytes, summary %d bytes", colorCount,
+                    legacySize, packedSize, summarySize));
+
+            assertTrue(packedSize < legacySize);
+            assertTrue(summarySize <= packedSize);
+        }
+    }
+
+    @Test
+    public void packedParcelRoundTrips() {
+        final ContrastSwatch swatch = createSwatch(16);
+        final Parcel parcel = Parcel.obtain();
+        try {
+            swatch.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            assertSameSwatch(swatch, ContrastSwatch.CREATOR.createFromParcel(parcel));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void legacyParcelIsStillRead() {
+        final ColorHistogram histogram = createHistogram(16);
+        final ContrastSwatch swatch = new ContrastSwatch(histogram, BOUNDS, "legacy");
+        final Parcel parcel = Parcel.obtain();
+        try {
+            writeLegacy(swatch, histogram, parcel);
+            parcel.setDataPosition(0);
+            assertSameSwatch(swatch, ContrastSwatch.CREATOR.createFromParcel(parcel));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static void assertSameSwatch(ContrastSwatch expected, ContrastSwatch actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getBounds(), actual.getBounds());
+        assertEquals(expected.getBackgroundColors(), actual.getBackgroundColors());
+        assertEquals(expected.getForegroundColors(), actual.getForegroundColors());
+        assertEquals(expected.getBackgroundLuminance(), actual.getBackgroundLuminance(), 0.0d);
+        assertEquals(expected.getForegroundLuminance(), actual.getForegroundLuminance(), 0.0d);
+        assertEquals(expected.getContrastRatio(), actual.getContrastRatio(), 0.0d);
+    }
+
+    private static ContrastSwatch createSwatch(int colorCount) {
+        return new ContrastSwatch(createHistogram(colorCount), BOUNDS, "swatch");
+    }
+
+    /** A histogram of a light background with darker, antialiased text */
+    private static ColorHistogram createHistogram(int colorCount) {
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.add(Color.WHITE, BOUNDS.width() * BOUNDS.height() / 2, 0);
+        for (int i = 1; i < colorCount; ++i) {
+            final int gray = 255 * i / colorCount;
+            histogram.add(Color.rgb(gray, gray, gray), colorCount - i, i);
+        }
+        return histogram;
+    }
+
+    private static int getPackedSize(ContrastSwatch swatch) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            swatch.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static int getLegacySize(ContrastSwatch swatch, ColorHistogram histogram) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            writeLegacy(swatch, histogram, parcel);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /** Writes {@code swatch} as versions without a parcel header did */
+    private static void writeLegacy(ContrastSwatch swatch, ColorHistogram histogram,
+            Parcel dest) {
+        final Map<Integer, Double> luminanceMap = new HashMap<Integer, Double>();
+        final Map<Double, Integer> luminanceHistogram = new HashMap<Double, Integer>();
+        for (int i = 0; i < histogram.size(); ++i) {
+            final double luminance = ContrastUtils.calculateLuminance(histogram.getColor(i));
+            luminanceMap.put(histogram.getColor(i), luminance);
+            final Integer count = luminanceHistogram.get(luminance);
+            luminanceHistogram.put(luminance,
+                    ((count != null) ? count : 0) + histogram.getCount(i));
+        }
+
+        dest.writeString(swatch.getName().toString());
+        dest.writeMap(luminanceMap);
+        dest.writeMap(luminanceHistogram);
+        dest.writeList(swatch.getBackgroundColors());
+        dest.writeList(swatch.getForegroundColors());
+        dest.writeDouble(swatch.getBackgroundLuminance());
+        dest.writeDouble(swatch.getForegroundLuminance());
+        dest.writeValue(swatch.getBounds());
+        dest.writeDouble(swatch.getContrastRatio());
+    }
+}
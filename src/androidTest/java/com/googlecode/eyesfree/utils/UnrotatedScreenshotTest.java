@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.Surface;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares reading an {@link UnrotatedScreenshot} through its coordinate
+ * mapping with reading a copy of the buffer rotated to the display's
+ * orientation, as {@link ScreenshotUtils#createScreenshot} draws it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UnrotatedScreenshotTest {
+
+    private static final int BUFFER_WIDTH = 120;
+
+    private static final int BUFFER_HEIGHT = 80;
+
+    private static final int[] ROTATIONS = {Surface.ROTATION_0, Surface.ROTATION_90,
+            Surface.ROTATION_180, Surface.ROTATION_270};
+
+    @Test
+    public void pixelsMatchRotatedCopy() {
+        final Bitmap buffer = createBuffer();
+        for (int rotation : ROTATIONS) {
+            final UnrotatedScreenshot screenshot = new UnrotatedScreenshot(buffer, rotation);
+            final Bitmap rotated = rotate(buffer, rotation);
+            assertEquals(rotated.getWidth(), screenshot.getWidth());
+            assertEquals(rotated.getHeight(), screenshot.getHeight());
+            for (int y = 0; y < rotated.getHeight(); ++y) {
+                for (int x = 0; x < rotated.getWidth(); ++x) {
+                    assertEquals("Rotation " + rotation + " at " + x + "," + y,
+                            rotated.getPixel(x, y), screenshot.getPixel(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void swatchesMatchRotatedCopy() {
+        final Bitmap buffer = createBuffer();
+        for (int rotation : ROTATIONS) {
+            final UnrotatedScreenshot screenshot = new UnrotatedScreenshot(buffer, rotation);
+            final Bitmap rotated = rotate(buffer, rotation);
+            for (Rect bounds : createRegions(rotated.getWidth(), rotated.getHeight())) {
+                final String name = rotation + " " + bounds.toShortString();
+                final ContrastSwatch expected = new ContrastSwatch(
+                        ScreenshotUtils.cropBitmap(rotated, bounds), bounds, name);
+                expected.recycle();
+                final ContrastSwatch actual = screenshot.createSwatch(bounds, name);
+                assertEquals(name, expected.getBackgroundColors(), actual.getBackgroundColors());
+                assertEquals(name, expected.getForegroundColors(), actual.getForegroundColors());
+                assertEquals(name, expected.getContrastRatio(), actual.getContrastRatio(), 0.0d);
+
+                // The mapped rectangle of the buffer holds the same pixels,
+                // though in another order
+                assertArrayEquals(name, getSortedPixels(rotated, bounds),
+                        getSortedPixels(buffer, screenshot.mapToBuffer(bounds)));
+            }
+        }
+    }
+
+    /**
+     * Draws {@code buffer} in the orientation of a display with the given
+     * rotation, as {@link ScreenshotUtils#createScreenshot} does, but keeping
+     * the buffer's format so that no color is rounded.
+     */
+    private static Bitmap rotate(Bitmap buffer, int rotation) {
+        final int width = buffer.getWidth();
+        final int height = buffer.getHeight();
+        final boolean quarterTurn =
+                (rotation == Surface.ROTATION_90) || (rotation == Surface.ROTATION_270);
+        final int outWidth = quarterTurn ? height : width;
+        final int outHeight = quarterTurn ? width : height;
+        final Bitmap rotated = Bitmap.createBitmap(outWidth, outHeight, buffer.getConfig());
+        final Canvas c = new Canvas(rotated);
+        c.translate(outWidth / 2.0f, outHeight / 2.0f);
+        c.rotate(-90.0f * rotation);
+        c.translate(-width / 2.0f, -height / 2.0f);
+        c.drawBitmap(buffer, 0, 0, null);
+        return rotated;
+    }
+
+    /**
+     * @return A buffer with no symmetry, in which strokes of several grays on
+     *         a light background make colors tie in some regions
+     */
+    private static Bitmap createBuffer() {
+        final int[] pixels = new int[BUFFER_WIDTH * BUFFER_HEIGHT];
+        for (int y = 0; y < BUFFER_HEIGHT; ++y) {
+            for (int x = 0; x < BUFFER_WIDTH; ++x) {
+                final int color;
+                if ((x < 10) && (y < 20)) {
+                    color = Color.RED;
+                } else if (((x / 2) + (y / 3)) % 5 == 0) {
+                    final int gray = ((x + 2 * y) * 11) % 96;
+                    color = Color.rgb(gray, gray, gray);
+                } else {
+                    color = Color.rgb(0xF0, 0xF0, 0xF0 - (y % 3));
+                }
+                pixels[y * BUFFER_WIDTH + x] = color;
+            }
+        }
+        return Bitmap.createBitmap(pixels, BUFFER_WIDTH, BUFFER_HEIGHT, Bitmap.Config.ARGB_8888);
+    }
+
+    private static int[] getSortedPixels(Bitmap image, Rect bounds) {
+        final int[] pixels = new int[bounds.width() * bounds.height()];
+        image.getPixels(pixels, 0, bounds.width(), bounds.left, bounds.top, bounds.width(),
+                bounds.height());
+        Arrays.sort(pixels);
+        return pixels;
+    }
+
+    private static List<Rect> createRegions(int width, int height) {
+        final List<Rect> regions = new ArrayList<Rect>();
+        regions.add(new Rect(0, 0, width, height));
+        regions.add(new Rect(0, 0, 1, 1));
+        regions.add(new Rect(0, 0, 2, 2));
+        regions.add(new Rect(width - 3, height - 5, width, height));
+        final Random random = new Random(17);
+        for (int i = 0; i < 30; ++i) {
+            final int left = random.nextInt(width);
+            final int top = random.nextInt(height);
+            regions.add(new Rect(left, top, left + 1 + random.nextInt(width - left),
+                    top + 1 + random.nextInt(height - top)));
+        }
+        return regions;
+    }
+}
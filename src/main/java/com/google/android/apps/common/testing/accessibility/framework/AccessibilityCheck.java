@@ -26,4 +26,29 @@ package com.google.android.apps.common.testing.accessibility.framework;
  * a subclass of {@code AccessibilityCheckResult}.
  */
 public abstract class AccessibilityCheck {
+
+  /**
+   * @return {@code true} if this check keeps caches that are filled by its runs, so that an
+   *         instance should not be shared between callers that check unrelated hierarchies
+   */
+  boolean hasCaches() {
+    return false;
+  }
+
+  /**
+   * @return A check that behaves as this one, with caches of the same kind that are empty and
+   *         shared with no other check, or this check if it {@link #hasCaches() has no caches}
+   */
+  AccessibilityCheck newInstanceWithEmptyCaches() {
+    return this;
+  }
+
+  /**
+   * @return A value, compared with {@code equals}, that differs between checks of the same class
+   *         that may report different results for the same hierarchy because they were
+   *         constructed differently, or {@code null} if every instance reports the same results
+   */
+  Object getConfigurationKey() {
+    return null;
+  }
 }
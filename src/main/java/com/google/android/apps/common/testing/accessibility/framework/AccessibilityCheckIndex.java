@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import java.util.Map;
+
+/**
+ * A list of accessibility checks that can be added to the {@link AccessibilityCheckRegistry} so
+ * they can be referred to by ID in custom presets.
+ * <p>
+ * Implementations are meant to be generated at build time for a module's checks and registered
+ * explicitly with {@link AccessibilityCheckRegistry#addCheckIndex(AccessibilityCheckIndex)}, so
+ * no classpath scanning or reflection is needed to discover them.
+ */
+public interface AccessibilityCheckIndex {
+
+  /**
+   * @return A map from check ID to a new instance of each check in the index. IDs must be unique
+   * across all registered indices.
+   */
+  Map<String, AccessibilityCheck> createChecks();
+}
@@ -13,11 +13,86 @@ public final class AccessibilityCheckMetadata {
    * <p>
    * Expected data: A Bitmap containing a full image of the device's default display at the time
    * check execution occurs. The Bitmap should have dimensions which match the DisplayMetrics
-   * obtained from WindowManager's default display. The screen area should not be altered, cropped,
-   * or adjusted in any way.
+   * obtained from WindowManager's default display, unless
+   * {@link #METADATA_KEY_SCREEN_CAPTURE_ROTATION} is also given. The screen area should not be
+   * altered, cropped, or adjusted in any way.
    */
   public static final String METADATA_KEY_SCREEN_CAPTURE_BITMAP =
       "com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckMetadata.METADATA_KEY_SCREEN_CAPTURE_BITMAP";
 
+  /**
+   * The rotation of the display relative to the screen capture, for captures left in the
+   * orientation of the display's native buffer rather than rotated to match the display.
+   * <p>
+   * Expected type: int
+   * <p>
+   * Expected data: One of {@link android.view.Surface#ROTATION_0}, the default, for a capture that
+   * matches the display, or {@link android.view.Surface#ROTATION_90},
+   * {@link android.view.Surface#ROTATION_180} or {@link android.view.Surface#ROTATION_270}, as
+   * returned by {@link com.googlecode.eyesfree.utils.UnrotatedScreenshot#getRotation()}. Checks map
+   * view bounds onto the capture instead of requiring a rotated copy of it.
+   */
+  public static final String METADATA_KEY_SCREEN_CAPTURE_ROTATION =
+      "com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckMetadata.METADATA_KEY_SCREEN_CAPTURE_ROTATION";
+
+  /**
+   * How contrast evaluation reads the pixels of the screen capture.
+   * <p>
+   * Expected type: String
+   * <p>
+   * Expected data: One of {@link ContrastInfoCheck#EVALUATION_MODE_CROP}, the default, which crops
+   * a separate Bitmap for each evaluated view, or
+   * {@link ContrastInfoCheck#EVALUATION_MODE_SHARED_PLANE}, which reads the whole capture once and
+   * evaluates each view as a region of it, or
+   * {@link ContrastInfoCheck#EVALUATION_MODE_INTEGRAL_HISTOGRAM}, which evaluates each view from
+   * luminance histograms precomputed over the whole capture. The first two produce the same
+   * results, and the shared plane is faster and allocates less when many views are evaluated. The
+   * integral histogram is faster still, but approximates luminance, and evaluates views exactly
+   * when the error of the approximation spans a WCAG threshold. Finally,
+   * {@link ContrastInfoCheck#EVALUATION_MODE_TILED} produces the same results as cropping, but
+   * streams the capture in tiles across several threads within a bounded amount of memory, and
+   * {@link ContrastInfoCheck#EVALUATION_MODE_SAMPLED} estimates contrast from a sample of each
+   * view's pixels, evaluating views exactly when the sample leaves their side of a WCAG threshold
+   * uncertain.
+   */
+  public static final String METADATA_KEY_CONTRAST_EVALUATION_MODE =
+      "com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_EVALUATION_MODE";
+
+  /**
+   * The number of threads on which tiled contrast evaluation runs.
+   * <p>
+   * Expected type: int
+   * <p>
+   * Expected data: A positive number of threads, including the thread running the check. Only used
+   * with {@link ContrastInfoCheck#EVALUATION_MODE_TILED}. Default: the number of available
+   * processors.
+   */
+  public static final String METADATA_KEY_CONTRAST_PARALLELISM =
+      "com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_PARALLELISM";
+
+  /**
+   * The maximum memory that tiled contrast evaluation uses for pixel buffers at once.
+   * <p>
+   * Expected type: long
+   * <p>
+   * Expected data: A positive number of bytes. Fewer threads and smaller tiles are used if needed
+   * to stay within it. Only used with {@link ContrastInfoCheck#EVALUATION_MODE_TILED}. Default:
+   * {@link com.googlecode.eyesfree.utils.TiledContrastEvaluator#DEFAULT_MEMORY_CEILING_BYTES}.
+   */
+  public static final String METADATA_KEY_CONTRAST_MEMORY_CEILING =
+      "com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_MEMORY_CEILING";
+
+  /**
+   * The number of pixels sampled from each view by sampled contrast evaluation.
+   * <p>
+   * Expected type: int
+   * <p>
+   * Expected data: A positive number of pixels. Views with no more pixels are evaluated exactly.
+   * Only used with {@link ContrastInfoCheck#EVALUATION_MODE_SAMPLED}. Default:
+   * {@link com.googlecode.eyesfree.utils.ContrastSampler#DEFAULT_SAMPLE_COUNT}.
+   */
+  public static final String METADATA_KEY_CONTRAST_SAMPLE_COUNT =
+      "com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_SAMPLE_COUNT";
+
   private AccessibilityCheckMetadata() {}
 }
@@ -18,7 +18,7 @@ package com.google.android.apps.common.testing.accessibility.framework;
 
 import android.view.View;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -56,18 +56,20 @@ public enum AccessibilityCheckPreset {
 
   /**
    * @param preset The preset of interest
-   * @return A set of all checks for {@code View}s with scopes for the preset
+   * @return A set of all checks for {@code View}s with scopes for the preset, in a stable order
    */
   public static Set<AccessibilityViewHierarchyCheck>
       getViewChecksForPreset(AccessibilityCheckPreset preset) {
-    Set<AccessibilityViewHierarchyCheck> checks = new HashSet<>();
+    Set<AccessibilityViewHierarchyCheck> checks = new LinkedHashSet<>();
     if (preset == NO_CHECKS) {
       return checks;
     }
 
     /* Checks included in version 1.0 */
     checks.add(new TouchTargetSizeViewCheck());
-    checks.add(new TextContrastViewCheck());
+    /* Rendering non-solid backgrounds can raise new errors, so released presets don't */
+    checks.add(isReleasedPreset(preset) ? new TextContrastViewCheck()
+        : new TextContrastViewCheck(new BackgroundLuminanceCache()));
     checks.add(new DuplicateSpeakableTextViewHierarchyCheck());
     checks.add(new SpeakableTextPresentViewCheck());
     if (preset.ordinal() < VERSION_3_0_CHECKS.ordinal())
@@ -102,6 +104,7 @@ public enum AccessibilityCheckPreset {
       return checks;
     }
 
+    checks.add(new OverlappingTouchTargetViewCheck());
     if (preset == PRERELEASE) {
       return checks;
     }
@@ -118,7 +121,7 @@ public enum AccessibilityCheckPreset {
    */
   public static Set<AccessibilityInfoHierarchyCheck>
       getInfoChecksForPreset(AccessibilityCheckPreset preset) {
-    Set<AccessibilityInfoHierarchyCheck> checks = new HashSet<>();
+    Set<AccessibilityInfoHierarchyCheck> checks = new LinkedHashSet<>();
     if (preset == NO_CHECKS) {
       return checks;
     }
@@ -144,6 +147,7 @@ public enum AccessibilityCheckPreset {
       return checks;
     }
 
+    checks.add(new TraversalOrderInfoCheck());
     if (preset == PRERELEASE) {
       return checks;
     }
@@ -161,7 +165,7 @@ public enum AccessibilityCheckPreset {
    */
   public static Set<AccessibilityEventCheck>
       getEventChecksForPreset(AccessibilityCheckPreset preset) {
-    Set<AccessibilityEventCheck> checks = new HashSet<>();
+    Set<AccessibilityEventCheck> checks = new LinkedHashSet<>();
     if ((preset == NO_CHECKS) || (preset == VERSION_1_0_CHECKS)) {
       return checks;
     }
@@ -186,6 +190,15 @@ public enum AccessibilityCheckPreset {
     throw new IllegalArgumentException();
   }
 
+  /**
+   * @return {@code true} if {@code preset} holds the checks of a past release, whose results
+   * should not change
+   */
+  private static boolean isReleasedPreset(AccessibilityCheckPreset preset) {
+    return (preset == VERSION_1_0_CHECKS) || (preset == VERSION_2_0_CHECKS)
+        || (preset == VERSION_3_0_CHECKS);
+  }
+
   /**
    * Included for compatibility with older Robolectric version. Do not use.
    * Remove for public release.
@@ -195,7 +208,7 @@ public enum AccessibilityCheckPreset {
   @Deprecated
   public static Set<? extends AccessibilityCheck> getAllChecksForPreset(
       @SuppressWarnings("unused") AccessibilityCheckPreset preset) {
-    Set<AccessibilityViewHierarchyCheck> checks = new HashSet<>();
+    Set<AccessibilityViewHierarchyCheck> checks = new LinkedHashSet<>();
 
     if (preset == VIEW_HIERARCHY_CHECKS) {
       checks.add(new SpeakableTextPresentViewCheck() {
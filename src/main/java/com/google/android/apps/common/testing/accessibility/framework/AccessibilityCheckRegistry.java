@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide registry of accessibility checks.
+ * <p>
+ * Unlike {@link AccessibilityCheckPreset#getViewChecksForPreset}, which constructs every check on
+ * each call, the registry builds the checks of a preset once and shares them with every caller
+ * afterwards. Most checks hold no state between runs, so one instance can serve every caller.
+ * Checks that keep caches filled by their runs, such as {@link TextContrastViewCheck} when it
+ * renders backgrounds and {@link ContrastInfoCheck} with a {@link ContrastResultCache}, are instead
+ * created anew with empty caches each time they are returned, so their caches are scoped to the
+ * caller that runs them. Callers that run a preset repeatedly should keep the set they were given.
+ * <p>
+ * Every check is also known by an ID, which is the simple class name for the checks built into
+ * this framework. Custom presets can be composed from IDs with
+ * {@link #registerCustomPreset(String, Collection)}, and checks from other modules can be made
+ * available by ID through {@link #addCheckIndex(AccessibilityCheckIndex)}.
+ */
+public final class AccessibilityCheckRegistry {
+
+  private static final AccessibilityCheckRegistry INSTANCE = new AccessibilityCheckRegistry();
+
+  private final Map<String, AccessibilityCheck> checksById = new LinkedHashMap<>();
+  private final Map<Class<? extends AccessibilityCheck>, String> idsByClass = new HashMap<>();
+  private final Map<AccessibilityCheckPreset, Set<AccessibilityViewHierarchyCheck>>
+      viewChecksByPreset = new EnumMap<>(AccessibilityCheckPreset.class);
+  private final Map<AccessibilityCheckPreset, Set<AccessibilityInfoHierarchyCheck>>
+      infoChecksByPreset = new EnumMap<>(AccessibilityCheckPreset.class);
+  private final Map<AccessibilityCheckPreset, Set<AccessibilityEventCheck>>
+      eventChecksByPreset = new EnumMap<>(AccessibilityCheckPreset.class);
+  private final Map<String, List<AccessibilityCheck>> customPresets = new HashMap<>();
+
+  private AccessibilityCheckRegistry() {
+    for (AccessibilityCheck check
+        : AccessibilityCheckPreset.getViewChecksForPreset(AccessibilityCheckPreset.PRERELEASE)) {
+      addBuiltInCheck(check);
+    }
+    addBuiltInCheck(new EditableContentDescViewCheck());
+    addBuiltInCheck(new OrangeImageContentDescViewCheck());
+    for (AccessibilityCheck check
+        : AccessibilityCheckPreset.getInfoChecksForPreset(AccessibilityCheckPreset.PRERELEASE)) {
+      addBuiltInCheck(check);
+    }
+    for (AccessibilityCheck check
+        : AccessibilityCheckPreset.getEventChecksForPreset(AccessibilityCheckPreset.PRERELEASE)) {
+      addBuiltInCheck(check);
+    }
+  }
+
+  public static AccessibilityCheckRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param preset The preset of interest
+   * @return An immutable set of the checks for {@code View}s in {@code preset}, in which checks
+   *         with caches are new instances
+   * @see AccessibilityCheckPreset#getViewChecksForPreset(AccessibilityCheckPreset)
+   */
+  public synchronized Set<AccessibilityViewHierarchyCheck> getViewChecksForPreset(
+      AccessibilityCheckPreset preset) {
+    Set<AccessibilityViewHierarchyCheck> checks = viewChecksByPreset.get(preset);
+    if (checks == null) {
+      checks = toRegisteredSet(AccessibilityCheckPreset.getViewChecksForPreset(preset));
+      viewChecksByPreset.put(preset, checks);
+    }
+    return withEmptyCaches(checks);
+  }
+
+  /**
+   * @param preset The preset of interest
+   * @return An immutable set of the checks for {@code AccessibilityNodeInfo}s in {@code preset},
+   *         in which checks with caches are new instances
+   * @see AccessibilityCheckPreset#getInfoChecksForPreset(AccessibilityCheckPreset)
+   */
+  public synchronized Set<AccessibilityInfoHierarchyCheck> getInfoChecksForPreset(
+      AccessibilityCheckPreset preset) {
+    Set<AccessibilityInfoHierarchyCheck> checks = infoChecksByPreset.get(preset);
+    if (checks == null) {
+      checks = toRegisteredSet(AccessibilityCheckPreset.getInfoChecksForPreset(preset));
+      infoChecksByPreset.put(preset, checks);
+    }
+    return withEmptyCaches(checks);
+  }
+
+  /**
+   * @param preset The preset of interest
+   * @return An immutable set of the checks for {@code AccessibilityEvent}s in {@code preset}, in
+   *         which checks with caches are new instances
+   * @see AccessibilityCheckPreset#getEventChecksForPreset(AccessibilityCheckPreset)
+   */
+  public synchronized Set<AccessibilityEventCheck> getEventChecksForPreset(
+      AccessibilityCheckPreset preset) {
+    Set<AccessibilityEventCheck> checks = eventChecksByPreset.get(preset);
+    if (checks == null) {
+      checks = toRegisteredSet(AccessibilityCheckPreset.getEventChecksForPreset(preset));
+      eventChecksByPreset.put(preset, checks);
+    }
+    return withEmptyCaches(checks);
+  }
+
+  /**
+   * Makes the checks of {@code index} available by ID.
+   *
+   * @param index The index to add
+   * @throws IllegalArgumentException if an ID in {@code index} is already registered
+   */
+  public synchronized void addCheckIndex(AccessibilityCheckIndex index) {
+    Map<String, AccessibilityCheck> checks = index.createChecks();
+    for (String id : checks.keySet()) {
+      if (checksById.containsKey(id)) {
+        throw new IllegalArgumentException("Check ID already registered: " + id);
+      }
+    }
+    for (Map.Entry<String, AccessibilityCheck> entry : checks.entrySet()) {
+      addCheck(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * @return The IDs of all registered checks, in registration order
+   */
+  public synchronized Set<String> getCheckIds() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(checksById.keySet()));
+  }
+
+  /**
+   * @param id The ID of a registered check
+   * @return The shared instance of the check, a new instance if the check has caches, or
+   *         {@code null} if no check has that ID
+   */
+  public synchronized AccessibilityCheck getCheck(String id) {
+    AccessibilityCheck check = checksById.get(id);
+    return (check != null) ? check.newInstanceWithEmptyCaches() : null;
+  }
+
+  /**
+   * @param checkClass The class of a check
+   * @return The ID under which {@code checkClass} is registered, or {@code null} if it isn't
+   */
+  public synchronized String getCheckId(Class<? extends AccessibilityCheck> checkClass) {
+    return idsByClass.get(checkClass);
+  }
+
+  /**
+   * Defines a preset made of the checks with the given IDs. The preset can then be retrieved with
+   * {@link #getViewChecksForCustomPreset(String)} and the matching methods for other check types.
+   *
+   * @param presetName The name of the preset. Registering a name again replaces the preset.
+   * @param checkIds The IDs of the checks in the preset
+   * @throws IllegalArgumentException if any of {@code checkIds} is not registered
+   */
+  public synchronized void registerCustomPreset(String presetName, Collection<String> checkIds) {
+    if (presetName == null) {
+      throw new IllegalArgumentException("Preset name cannot be null");
+    }
+    List<AccessibilityCheck> checks = new ArrayList<>(checkIds.size());
+    for (String id : checkIds) {
+      AccessibilityCheck check = checksById.get(id);
+      if (check == null) {
+        throw new IllegalArgumentException("Unknown check ID: " + id);
+      }
+      checks.add(check);
+    }
+    customPresets.put(presetName, Collections.unmodifiableList(checks));
+  }
+
+  /**
+   * @return {@code true} if a custom preset named {@code presetName} has been registered
+   */
+  public synchronized boolean hasCustomPreset(String presetName) {
+    return customPresets.containsKey(presetName);
+  }
+
+  /**
+   * @param presetName The name of a registered custom preset
+   * @return An immutable set of the checks for {@code View}s in the preset, in which checks with
+   *         caches are new instances
+   */
+  public synchronized Set<AccessibilityViewHierarchyCheck> getViewChecksForCustomPreset(
+      String presetName) {
+    return filterCustomPreset(presetName, AccessibilityViewHierarchyCheck.class);
+  }
+
+  /**
+   * @param presetName The name of a registered custom preset
+   * @return An immutable set of the checks for {@code AccessibilityNodeInfo}s in the preset, in
+   *         which checks with caches are new instances
+   */
+  public synchronized Set<AccessibilityInfoHierarchyCheck> getInfoChecksForCustomPreset(
+      String presetName) {
+    return filterCustomPreset(presetName, AccessibilityInfoHierarchyCheck.class);
+  }
+
+  /**
+   * @param presetName The name of a registered custom preset
+   * @return An immutable set of the checks for {@code AccessibilityEvent}s in the preset, in which
+   *         checks with caches are new instances
+   */
+  public synchronized Set<AccessibilityEventCheck> getEventChecksForCustomPreset(
+      String presetName) {
+    return filterCustomPreset(presetName, AccessibilityEventCheck.class);
+  }
+
+  private <T extends AccessibilityCheck> Set<T> filterCustomPreset(String presetName,
+      Class<T> checkType) {
+    List<AccessibilityCheck> checks = customPresets.get(presetName);
+    if (checks == null) {
+      throw new IllegalArgumentException("Unknown custom preset: " + presetName);
+    }
+    Set<T> filteredChecks = new LinkedHashSet<>();
+    for (AccessibilityCheck check : checks) {
+      if (checkType.isInstance(check)) {
+        filteredChecks.add(checkType.cast(check.newInstanceWithEmptyCaches()));
+      }
+    }
+    return Collections.unmodifiableSet(filteredChecks);
+  }
+
+  /**
+   * @return {@code checks}, or a copy of it in which each check with caches is replaced by a new
+   *         instance with empty caches
+   */
+  @SuppressWarnings("unchecked")
+  private static <T extends AccessibilityCheck> Set<T> withEmptyCaches(Set<T> checks) {
+    boolean hasCaches = false;
+    for (T check : checks) {
+      hasCaches |= check.hasCaches();
+    }
+    if (!hasCaches) {
+      return checks;
+    }
+    Set<T> copies = new LinkedHashSet<>();
+    for (T check : checks) {
+      copies.add((T) check.newInstanceWithEmptyCaches());
+    }
+    return Collections.unmodifiableSet(copies);
+  }
+
+  /**
+   * Replaces each check in {@code checks} with the registered instance of the same class, so all
+   * presets share one instance per check. A check is kept as it is if it or the registered instance
+   * has caches, since presets configure such classes differently, and it then serves as the
+   * template for new instances.
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends AccessibilityCheck> Set<T> toRegisteredSet(Set<T> checks) {
+    Set<T> registeredChecks = new LinkedHashSet<>();
+    for (T check : checks) {
+      String id = idsByClass.get(check.getClass());
+      if (id == null) {
+        addBuiltInCheck(check);
+        registeredChecks.add(check);
+      } else if (check.hasCaches() || checksById.get(id).hasCaches()) {
+        registeredChecks.add(check);
+      } else {
+        registeredChecks.add((T) checksById.get(id));
+      }
+    }
+    return Collections.unmodifiableSet(registeredChecks);
+  }
+
+  private void addBuiltInCheck(AccessibilityCheck check) {
+    if (!idsByClass.containsKey(check.getClass())) {
+      addCheck(check.getClass().getSimpleName(), check);
+    }
+  }
+
+  private void addCheck(String id, AccessibilityCheck check) {
+    checksById.put(id, check);
+    if (!idsByClass.containsKey(check.getClass())) {
+      idsByClass.put(check.getClass(), id);
+    }
+  }
+}
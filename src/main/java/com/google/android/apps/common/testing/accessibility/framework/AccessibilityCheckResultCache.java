@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the results of {@link AccessibilityViewHierarchyCheck}s,
+ * keyed by the content hash of a {@link ViewHierarchySnapshot} and the class and configuration of
+ * each check that was run.
+ * <p>
+ * Results are stored by element index rather than by {@code View}, so a hit is rebuilt against the
+ * views of the snapshot being looked up. This lets a screen that is recreated in the same state
+ * reuse the results of the earlier run. Like incremental checking, this relies on the snapshot
+ * capturing every property the cached checks depend on.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class AccessibilityCheckResultCache {
+
+  private final int maxEntries;
+  private final Map<Key, CachedResults> entries;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * @param maxEntries The maximum number of hierarchies for which results are kept
+   */
+  public AccessibilityCheckResultCache(final int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Cache must hold at least one entry");
+    }
+    this.maxEntries = maxEntries;
+    entries = new LinkedHashMap<Key, CachedResults>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedResults> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @param snapshot A snapshot of the hierarchy to check
+   * @param checks The checks that would be run
+   * @return Fresh copies of the cached results for {@code snapshot} and {@code checks}, or
+   * {@code null} if there are none
+   */
+  public synchronized List<AccessibilityViewCheckResult> get(ViewHierarchySnapshot snapshot,
+      Collection<? extends AccessibilityViewHierarchyCheck> checks) {
+    CachedResults cachedResults = entries.get(new Key(snapshot, checks));
+    if ((cachedResults == null) || (cachedResults.size != snapshot.size())) {
+      ++missCount;
+      return null;
+    }
+    ++hitCount;
+    return cachedResults.toResults(snapshot);
+  }
+
+  /**
+   * Stores {@code results} for {@code snapshot} and {@code checks}. Results are not stored if any
+   * of them applies to a view outside of {@code snapshot}.
+   *
+   * @param snapshot The snapshot the checks were run against
+   * @param checks The checks that were run
+   * @param results The unmodified results of {@code checks}
+   */
+  public synchronized void put(ViewHierarchySnapshot snapshot,
+      Collection<? extends AccessibilityViewHierarchyCheck> checks,
+      List<AccessibilityViewCheckResult> results) {
+    CachedResults cachedResults = CachedResults.fromResults(snapshot, results);
+    if (cachedResults != null) {
+      entries.put(new Key(snapshot, checks), cachedResults);
+    }
+  }
+
+  /**
+   * Removes all cached results. Hit and miss counts are kept.
+   */
+  public synchronized void invalidate() {
+    entries.clear();
+  }
+
+  /**
+   * @return The number of hierarchies for which results are cached
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The maximum number of hierarchies for which results are kept
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @return The number of lookups that returned cached results
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of lookups that found no cached results
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  private static final class Key {
+    private final long contentHash;
+    private final List<Class<?>> checkClasses;
+
+    /* The configuration key of each check, at the same index, which may be null */
+    private final List<Object> checkConfigurations;
+
+    Key(ViewHierarchySnapshot snapshot,
+        Collection<? extends AccessibilityViewHierarchyCheck> checks) {
+      contentHash = snapshot.getSubtreeHash(0);
+      checkClasses = new ArrayList<>(checks.size());
+      checkConfigurations = new ArrayList<>(checks.size());
+      for (AccessibilityViewHierarchyCheck check : checks) {
+        checkClasses.add(check.getClass());
+        checkConfigurations.add(check.getConfigurationKey());
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return (contentHash == other.contentHash) && checkClasses.equals(other.checkClasses)
+          && checkConfigurations.equals(other.checkConfigurations);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * (int) (contentHash ^ (contentHash >>> 32)) + checkClasses.hashCode())
+          + checkConfigurations.hashCode();
+    }
+  }
+
+  /**
+   * The results of one run, with each result's view replaced by its element index.
+   */
+  private static final class CachedResults {
+    private final int size;
+    private final int[] elementIndices;
+    private final List<Class<? extends AccessibilityCheck>> checkClasses;
+    private final AccessibilityCheckResultType[] types;
+    private final CharSequence[] messages;
+
+    private CachedResults(int size, int resultCount) {
+      this.size = size;
+      elementIndices = new int[resultCount];
+      checkClasses = new ArrayList<>(resultCount);
+      types = new AccessibilityCheckResultType[resultCount];
+      messages = new CharSequence[resultCount];
+    }
+
+    static CachedResults fromResults(ViewHierarchySnapshot snapshot,
+        List<AccessibilityViewCheckResult> results) {
+      CachedResults cachedResults = new CachedResults(snapshot.size(), results.size());
+      for (int i = 0; i < results.size(); ++i) {
+        AccessibilityViewCheckResult result = results.get(i);
+        View view = result.getView();
+        int index = (view != null) ? snapshot.indexOf(view) : ViewHierarchySnapshot.NO_INDEX;
+        if (index == ViewHierarchySnapshot.NO_INDEX) {
+          return null;
+        }
+        cachedResults.elementIndices[i] = index;
+        cachedResults.checkClasses.add(result.getSourceCheckClass());
+        cachedResults.types[i] = result.getType();
+        /* Messages may be mutable spans, so keep an immutable copy */
+        CharSequence message = result.getMessage();
+        cachedResults.messages[i] = (message != null) ? message.toString() : null;
+      }
+      return cachedResults;
+    }
+
+    List<AccessibilityViewCheckResult> toResults(ViewHierarchySnapshot snapshot) {
+      List<AccessibilityViewCheckResult> results = new ArrayList<>(types.length);
+      for (int i = 0; i < types.length; ++i) {
+        results.add(new AccessibilityViewCheckResult(checkClasses.get(i), types[i], messages[i],
+            snapshot.getView(elementIndices[i])));
+      }
+      return results;
+    }
+  }
+}
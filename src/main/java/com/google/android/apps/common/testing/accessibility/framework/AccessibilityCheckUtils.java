@@ -25,9 +25,12 @@ import android.widget.CompoundButton;
 import android.widget.TextView;
 
 import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
+import com.googlecode.eyesfree.utils.NodeInfoTracker;
 import com.googlecode.eyesfree.utils.StringBuilderUtils;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -62,31 +65,28 @@ final class AccessibilityCheckUtils {
     /* getLabeledBy for API 17+ */
     if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
 
-        AccessibilityNodeInfo labeledBy = info.getLabeledBy();
+        AccessibilityNodeInfo labeledBy = NodeInfoTracker.obtained(info.getLabeledBy());
         if (labeledBy != null) {
           /* There could be a chain of labeledBy. Make sure it isn't a loop */
           Set<AccessibilityNodeInfo> infosVisited = new HashSet<>();
+          List<AccessibilityNodeInfo> labelsObtained = new ArrayList<>();
           infosVisited.add(info);
-          infosVisited.add(labeledBy);
-          AccessibilityNodeInfo endOfLabeledByChain = labeledBy.getLabeledBy();
-          while (endOfLabeledByChain != null) {
-            if (infosVisited.contains(endOfLabeledByChain)) {
-              infosVisited.remove(info);
-              for (AccessibilityNodeInfo infoVisited : infosVisited) {
-                infoVisited.recycle();
+          try {
+            AccessibilityNodeInfo endOfLabeledByChain = labeledBy;
+            while (endOfLabeledByChain != null) {
+              labelsObtained.add(endOfLabeledByChain);
+              if (!infosVisited.add(endOfLabeledByChain)) {
+                return null;
               }
-              return null;
+              labeledBy = endOfLabeledByChain;
+              endOfLabeledByChain = NodeInfoTracker.obtained(labeledBy.getLabeledBy());
+            }
+            return getSpeakableTextForInfo(labeledBy);
+          } finally {
+            for (AccessibilityNodeInfo labelObtained : labelsObtained) {
+              NodeInfoTracker.recycle(labelObtained);
             }
-            infosVisited.add(endOfLabeledByChain);
-            labeledBy = endOfLabeledByChain;
-            endOfLabeledByChain = labeledBy.getLabeledBy();
-          }
-          CharSequence labelText = getSpeakableTextForInfo(labeledBy);
-          infosVisited.remove(info);
-          for (AccessibilityNodeInfo infoVisited : infosVisited) {
-            infoVisited.recycle();
           }
-          return labelText;
         }
     }
 
@@ -98,11 +98,18 @@ final class AccessibilityCheckUtils {
     /* If this node has a contentDescription, it overrides anything in children */
     if (TextUtils.isEmpty(compat.getContentDescription())) {
       for (int i = 0; i < compat.getChildCount(); ++i) {
-        AccessibilityNodeInfoCompat child = compat.getChild(i);
-        if (AccessibilityNodeInfoUtils.isVisibleOrLegacy(child)
-            && !AccessibilityNodeInfoUtils.isActionableForAccessibility(child)) {
-          returnStringBuilder.append(
-              getSpeakableTextForInfo((AccessibilityNodeInfo) child.getInfo()));
+        AccessibilityNodeInfoCompat child = NodeInfoTracker.obtained(compat.getChild(i));
+        if (child == null) {
+          continue;
+        }
+        try {
+          if (AccessibilityNodeInfoUtils.isVisibleOrLegacy(child)
+              && !AccessibilityNodeInfoUtils.isActionableForAccessibility(child)) {
+            returnStringBuilder.append(
+                getSpeakableTextForInfo((AccessibilityNodeInfo) child.getInfo()));
+          }
+        } finally {
+          NodeInfoTracker.recycle(child);
         }
       }
     }
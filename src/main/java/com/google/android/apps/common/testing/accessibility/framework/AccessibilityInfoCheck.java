@@ -18,7 +18,6 @@ package com.google.android.apps.common.testing.accessibility.framework;
 
 import android.content.Context;
 import android.os.Bundle;
-import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.view.accessibility.AccessibilityNodeInfo;
 
 import java.util.ArrayList;
@@ -31,15 +30,37 @@ public abstract class AccessibilityInfoCheck extends AccessibilityInfoHierarchyC
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfoHierarchy(AccessibilityNodeInfo root,
       Context context, Bundle metadata) {
+    return runCheckOnCapturedHierarchy(root, context, metadata);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnSnapshot(
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<>();
-    List<AccessibilityNodeInfoCompat> compatInfos = getAllInfoCompatsInHierarchy(context, root);
-    for (AccessibilityNodeInfoCompat compatInfo : compatInfos) {
-      AccessibilityNodeInfo info = (AccessibilityNodeInfo) compatInfo.getInfo();
-      results.addAll(runCheckOnInfo(info, context, metadata));
+    InfoCheckEvaluationContext evaluationContext =
+        new InfoCheckEvaluationContext(snapshot, context, metadata);
+    for (int i = 0; i < snapshot.size(); ++i) {
+      results.addAll(runCheckOnInfo(i, evaluationContext));
     }
     return results;
   }
 
+  /**
+   * Run the check on one node of a snapshot. Checks that override this take per-run values, such
+   * as the display density and the compat wrapper of each node, from {@code evaluationContext}
+   * rather than computing them again for every node and every check. Others run
+   * {@link #runCheckOnInfo(AccessibilityNodeInfo, Context, Bundle)} on the node.
+   *
+   * @param index The snapshot index of the node to check
+   * @param evaluationContext The snapshot, context and metadata of the run, shared by every check
+   * @return A list of interesting results encountered while running the check
+   */
+  public List<AccessibilityInfoCheckResult> runCheckOnInfo(int index,
+      InfoCheckEvaluationContext evaluationContext) {
+    return runCheckOnInfo(evaluationContext.getInfo(index), evaluationContext.getContext(),
+        evaluationContext.getMetadata());
+  }
+
   /**
    * Run the check on the view.
    *
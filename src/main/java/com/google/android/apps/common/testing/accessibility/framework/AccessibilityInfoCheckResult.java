@@ -15,6 +15,7 @@
 package com.google.android.apps.common.testing.accessibility.framework;
 
 import android.annotation.TargetApi;
+import android.graphics.Rect;
 import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -24,6 +25,7 @@ import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.googlecode.eyesfree.compat.CompatUtils;
 import com.googlecode.eyesfree.utils.LogUtils;
+import com.googlecode.eyesfree.utils.NodeInfoTracker;
 
 import java.lang.reflect.Method;
 
@@ -34,8 +36,27 @@ import java.lang.reflect.Method;
 public final class AccessibilityInfoCheckResult extends AccessibilityCheckResult implements
     Parcelable {
 
+  /*
+   * The upper half of the first int of a parcel in a versioned format, whose version is in the lower
+   * half. It is negative, so it can't be mistaken for the length of the check class name that
+   * begins a legacy parcel.
+   */
+  private static final int PARCEL_HEADER = 0xC4E50000;
+
+  private static final int PARCEL_HEADER_MASK = 0xFFFF0000;
+
+  private static final int PARCEL_VERSION_NODE_SUMMARY = 1;
+
+  private static final int PARCELED_NODE_NONE = 0;
+
+  private static final int PARCELED_NODE_FULL = 1;
+
+  private static final int PARCELED_NODE_SUMMARY = 2;
+
   private AccessibilityNodeInfoWrapper mInfoWrapper;
 
+  private boolean mParcelsNodeSummary;
+
   /**
    * @param checkClass The check that generated the error
    * @param type The type of the result
@@ -46,7 +67,8 @@ public final class AccessibilityInfoCheckResult extends AccessibilityCheckResult
       AccessibilityCheckResultType type, CharSequence message, AccessibilityNodeInfo info) {
     super(checkClass, type, message);
     if (info != null) {
-      this.mInfoWrapper = new AccessibilityNodeInfoWrapper(AccessibilityNodeInfo.obtain(info));
+      this.mInfoWrapper = new AccessibilityNodeInfoWrapper(
+          NodeInfoTracker.obtained(AccessibilityNodeInfo.obtain(info)));
     }
   }
 
@@ -67,11 +89,25 @@ public final class AccessibilityInfoCheckResult extends AccessibilityCheckResult
     super.recycle();
 
     if (mInfoWrapper != null) {
-      mInfoWrapper.getWrappedInfo().recycle();
+      NodeInfoTracker.recycle(mInfoWrapper.getWrappedInfo());
       mInfoWrapper = null;
     }
   }
 
+  /**
+   * Sets whether {@link #writeToParcel(Parcel, int)} writes only a summary of the info to which the
+   * result applies, rather than the whole info. The summary holds the info's bounds in screen,
+   * class name, package name, view ID resource name, text and content description, which are
+   * enough to identify and report the view, and is much smaller than a full info with its actions
+   * and extras. An info read from a summary has no parent, children or actions. Default: {@code
+   * false}
+   *
+   * @param parcelsNodeSummary {@code true} to write only a summary of the info
+   */
+  public void setParcelsNodeSummary(boolean parcelsNodeSummary) {
+    mParcelsNodeSummary = parcelsNodeSummary;
+  }
+
   @Override
   public int describeContents() {
     return 0;
@@ -79,19 +115,35 @@ public final class AccessibilityInfoCheckResult extends AccessibilityCheckResult
 
   @Override
   public void writeToParcel(Parcel dest, int flags) {
+    dest.writeInt(PARCEL_HEADER | PARCEL_VERSION_NODE_SUMMARY);
     dest.writeString((checkClass != null) ? checkClass.getName() : "");
     dest.writeInt((type != null) ? type.ordinal() : -1);
     TextUtils.writeToParcel(message, dest, flags);
-    if (mInfoWrapper != null) {
-      dest.writeInt(1);
-      mInfoWrapper.writeToParcel(dest, flags);
+    if ((mInfoWrapper == null) || (mInfoWrapper.getWrappedInfo() == null)) {
+      dest.writeInt(PARCELED_NODE_NONE);
+    } else if (mParcelsNodeSummary) {
+      dest.writeInt(PARCELED_NODE_SUMMARY);
+      writeNodeSummary(mInfoWrapper.getWrappedInfo(), dest, flags);
     } else {
-      dest.writeInt(0);
+      dest.writeInt(PARCELED_NODE_FULL);
+      mInfoWrapper.writeToParcel(dest, flags);
     }
   }
 
   @SuppressWarnings("unchecked")
   private void readFromParcel(Parcel in) {
+    // Legacy parcels begin with the check class name rather than with a header
+    final int start = in.dataPosition();
+    final int header = in.readInt();
+    final boolean isLegacy = ((header & PARCEL_HEADER_MASK) != PARCEL_HEADER);
+    if (isLegacy) {
+      in.setDataPosition(start);
+    } else if ((header & ~PARCEL_HEADER_MASK) != PARCEL_VERSION_NODE_SUMMARY) {
+      throw new IllegalArgumentException(
+          "Unsupported AccessibilityInfoCheckResult parcel version "
+          + (header & ~PARCEL_HEADER_MASK));
+    }
+
     // Check class (unchecked cast checked by isAssignableFrom)
     checkClass = null;
     String checkClassName = in.readString();
@@ -115,9 +167,46 @@ public final class AccessibilityInfoCheckResult extends AccessibilityCheckResult
     this.message = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in);
 
     // Info wrapper
-    this.mInfoWrapper =
-        (in.readInt() == 1) ? AccessibilityNodeInfoWrapper.WRAPPER_CREATOR.createFromParcel(in)
-            : null;
+    final int parceledNode = in.readInt();
+    if (parceledNode == PARCELED_NODE_FULL) {
+      this.mInfoWrapper = AccessibilityNodeInfoWrapper.WRAPPER_CREATOR.createFromParcel(in);
+      NodeInfoTracker.obtained(mInfoWrapper.getWrappedInfo());
+    } else if ((parceledNode == PARCELED_NODE_SUMMARY) && !isLegacy) {
+      this.mInfoWrapper = new AccessibilityNodeInfoWrapper(readNodeSummary(in));
+      this.mParcelsNodeSummary = true;
+    } else {
+      this.mInfoWrapper = null;
+    }
+  }
+
+  private static void writeNodeSummary(AccessibilityNodeInfo info, Parcel dest, int flags) {
+    final Rect bounds = new Rect();
+    info.getBoundsInScreen(bounds);
+    dest.writeInt(bounds.left);
+    dest.writeInt(bounds.top);
+    dest.writeInt(bounds.right);
+    dest.writeInt(bounds.bottom);
+    TextUtils.writeToParcel(info.getClassName(), dest, flags);
+    TextUtils.writeToParcel(info.getPackageName(), dest, flags);
+    dest.writeString((Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        ? info.getViewIdResourceName() : null);
+    TextUtils.writeToParcel(info.getText(), dest, flags);
+    TextUtils.writeToParcel(info.getContentDescription(), dest, flags);
+  }
+
+  private static AccessibilityNodeInfo readNodeSummary(Parcel in) {
+    final AccessibilityNodeInfo info = NodeInfoTracker.obtained(AccessibilityNodeInfo.obtain());
+    info.setBoundsInScreen(new Rect(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+    info.setClassName(TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in));
+    info.setPackageName(TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in));
+    final String viewIdResourceName = in.readString();
+    if ((viewIdResourceName != null)
+        && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)) {
+      info.setViewIdResourceName(viewIdResourceName);
+    }
+    info.setText(TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in));
+    info.setContentDescription(TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in));
+    return info;
   }
 
   public static final Parcelable.Creator<AccessibilityInfoCheckResult> CREATOR =
@@ -18,25 +18,14 @@ package com.google.android.apps.common.testing.accessibility.framework;
 
 import android.content.Context;
 import android.os.Bundle;
-import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.view.accessibility.AccessibilityNodeInfo;
 
-import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
-import com.googlecode.eyesfree.utils.NodeFilter;
-
 import java.util.List;
 
 /**
  * Base class to check the accessibility of all {@code Info}s in a hierarchy.
  */
 public abstract class AccessibilityInfoHierarchyCheck extends AccessibilityCheck {
-  private static final NodeFilter WIDE_OPEN_FILTER = new NodeFilter() {
-    @Override
-    public boolean accept(Context context, AccessibilityNodeInfoCompat node) {
-      return true;
-    }
-  };
-
   public AccessibilityInfoHierarchyCheck() {
   }
 
@@ -62,10 +51,52 @@ public abstract class AccessibilityInfoHierarchyCheck extends AccessibilityCheck
     return runCheckOnInfoHierarchy(root, context, null);
   }
 
-  static List<AccessibilityNodeInfoCompat> getAllInfoCompatsInHierarchy(Context context,
-      AccessibilityNodeInfo root) {
-    return AccessibilityNodeInfoUtils.searchAllFromBfs(context,
-        new AccessibilityNodeInfoCompat(root),
-        AccessibilityInfoHierarchyCheck.WIDE_OPEN_FILTER);
+  /**
+   * Run the check on a hierarchy that has already been fetched. Checks that override this read
+   * nodes and their relationships from {@code snapshot} rather than from the process that owns the
+   * views. Others run {@link #runCheckOnInfoHierarchy(AccessibilityNodeInfo, Context, Bundle)} on
+   * the snapshot's root.
+   *
+   * @param snapshot The hierarchy to check, which remains owned by the caller
+   * @param context The context of the service.
+   * @param metadata An optional {@link Bundle} that may contain check metadata defined by
+   *        {@link AccessibilityCheckMetadata}.
+   * @return A list of interesting results encountered while running the check
+   */
+  public List<AccessibilityInfoCheckResult> runCheckOnSnapshot(
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
+    return runCheckOnInfoHierarchy(snapshot.getRoot(), context, metadata);
+  }
+
+  /**
+   * Fetches the hierarchy rooted at {@code root} once and runs every check in {@code checks}
+   * against it. The fetched nodes are recycled before returning.
+   *
+   * @param checks The checks to run
+   * @param root The root of the {@link AccessibilityNodeInfo} hierarchy to check
+   * @param context The context of the service.
+   * @param metadata An optional {@link Bundle} that may contain check metadata defined by
+   *        {@link AccessibilityCheckMetadata}.
+   * @return The results of all {@code checks}, grouped by check
+   * @see InfoHierarchyTraverser#runChecks(Iterable, AccessibilityNodeInfo, Context, Bundle)
+   */
+  public static List<AccessibilityInfoCheckResult> runChecksOnInfoHierarchy(
+      Iterable<? extends AccessibilityInfoHierarchyCheck> checks, AccessibilityNodeInfo root,
+      Context context, Bundle metadata) {
+    return InfoHierarchyTraverser.runChecks(checks, root, context, metadata);
+  }
+
+  /**
+   * Runs the check on a snapshot of the hierarchy rooted at {@code root}, for checks that override
+   * {@link #runCheckOnSnapshot(AccessibilityNodeInfoSnapshot, Context, Bundle)}.
+   */
+  List<AccessibilityInfoCheckResult> runCheckOnCapturedHierarchy(AccessibilityNodeInfo root,
+      Context context, Bundle metadata) {
+    AccessibilityNodeInfoSnapshot snapshot = AccessibilityNodeInfoSnapshot.capture(root);
+    try {
+      return runCheckOnSnapshot(snapshot, context, metadata);
+    } finally {
+      snapshot.recycle();
+    }
   }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.ViewHierarchySnapshot.IntArrayBuilder;
+
+import android.os.Build;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.googlecode.eyesfree.compat.CompatUtils;
+import com.googlecode.eyesfree.utils.NodeInfoTracker;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local copy of an {@link AccessibilityNodeInfo} hierarchy, fetched once so that checks can walk
+ * it without a round trip to the process that owns the views for every {@code getChild},
+ * {@code getParent} or {@code getLabeledBy}.
+ * <p>
+ * The hierarchy is read by {@link #capture(AccessibilityNodeInfo)}. Each node is assigned an index
+ * in breadth-first order, with the root at index 0, so the children of a node are contiguous and
+ * follow their parent. Relationships between nodes are stored as indices, and the nodes themselves
+ * are available through {@link #getInfo(int)} for their own properties and to attach results to.
+ * Where the platform supports it, descendants are prefetched in breadth-first order as each child
+ * is requested.
+ * <p>
+ * The snapshot owns its nodes, which stay valid until {@link #recycle()} is called. It is
+ * immutable until then, and may be read from any thread.
+ */
+public final class AccessibilityNodeInfoSnapshot {
+
+  /** Index returned for the parent of the root and for nodes without a label */
+  public static final int NO_INDEX = -1;
+
+  /** Index returned by {@link #getLabeledBy(int)} for labels outside the snapshot */
+  public static final int OUTSIDE_INDEX = -2;
+
+  /* AccessibilityNodeInfo.FLAG_PREFETCH_DESCENDANTS_BREADTH_FIRST, added in API 33 */
+  private static final int FLAG_PREFETCH_DESCENDANTS_BREADTH_FIRST = 0x00000010;
+
+  private static final Method METHOD_getChildWithPrefetch = CompatUtils.getMethod(
+      AccessibilityNodeInfo.class, "getChild", int.class, int.class);
+
+  private final AccessibilityNodeInfo[] infos;
+  private final int[] parents;
+  private final int[] firstChildren;
+  private final int[] childCounts;
+  private final int[] labeledBy;
+  private volatile boolean recycled;
+
+  private AccessibilityNodeInfoSnapshot(List<AccessibilityNodeInfo> infoList,
+      int[] parents, int[] firstChildren, int[] childCounts) {
+    infos = infoList.toArray(new AccessibilityNodeInfo[infoList.size()]);
+    this.parents = parents;
+    this.firstChildren = firstChildren;
+    this.childCounts = childCounts;
+    labeledBy = new int[infos.length];
+    Arrays.fill(labeledBy, NO_INDEX);
+
+    /* getLabeledBy for API 17+ */
+    if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
+      Map<AccessibilityNodeInfo, Integer> indexByInfo = new HashMap<>(infos.length);
+      for (int i = 0; i < infos.length; ++i) {
+        indexByInfo.put(infos[i], i);
+      }
+      for (int i = 0; i < infos.length; ++i) {
+        AccessibilityNodeInfo labelInfo = NodeInfoTracker.obtained(infos[i].getLabeledBy());
+        if (labelInfo != null) {
+          Integer labelIndex = indexByInfo.get(labelInfo);
+          labeledBy[i] = (labelIndex != null) ? labelIndex : OUTSIDE_INDEX;
+          NodeInfoTracker.recycle(labelInfo);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fetches the hierarchy rooted at {@code root}.
+   *
+   * @param root The root of the hierarchy to capture. The caller keeps ownership of {@code root}.
+   * @return A snapshot containing a copy of {@code root} and all nodes below it
+   */
+  public static AccessibilityNodeInfoSnapshot capture(AccessibilityNodeInfo root) {
+    if (root == null) {
+      throw new IllegalArgumentException("Cannot capture a null node hierarchy");
+    }
+    List<AccessibilityNodeInfo> infoList = new ArrayList<>();
+    IntArrayBuilder parentList = new IntArrayBuilder();
+    IntArrayBuilder firstChildList = new IntArrayBuilder();
+    IntArrayBuilder childCountList = new IntArrayBuilder();
+    infoList.add(NodeInfoTracker.obtained(AccessibilityNodeInfo.obtain(root)));
+    parentList.add(NO_INDEX);
+    for (int i = 0; i < infoList.size(); ++i) {
+      AccessibilityNodeInfo info = infoList.get(i);
+      int firstChild = infoList.size();
+      for (int j = 0; j < info.getChildCount(); ++j) {
+        AccessibilityNodeInfo child = NodeInfoTracker.obtained(getChild(info, j));
+        if (child != null) {
+          infoList.add(child);
+          parentList.add(i);
+        }
+      }
+      firstChildList.add(firstChild);
+      childCountList.add(infoList.size() - firstChild);
+    }
+    return new AccessibilityNodeInfoSnapshot(infoList, parentList.toArray(),
+        firstChildList.toArray(), childCountList.toArray());
+  }
+
+  private static AccessibilityNodeInfo getChild(AccessibilityNodeInfo info, int index) {
+    if (METHOD_getChildWithPrefetch != null) {
+      return (AccessibilityNodeInfo) CompatUtils.invoke(info, null, METHOD_getChildWithPrefetch,
+          index, FLAG_PREFETCH_DESCENDANTS_BREADTH_FIRST);
+    }
+    return info.getChild(index);
+  }
+
+  /**
+   * @return The number of nodes in the snapshot
+   */
+  public int size() {
+    return infos.length;
+  }
+
+  /**
+   * @return The copy of the root of the captured hierarchy
+   */
+  public AccessibilityNodeInfo getRoot() {
+    return getInfo(0);
+  }
+
+  /**
+   * @param index The node index
+   * @return The node captured at {@code index}, which is valid until {@link #recycle()} is called.
+   * Its own properties are local, but its relatives should be found through the snapshot.
+   */
+  public AccessibilityNodeInfo getInfo(int index) {
+    if (recycled) {
+      throw new IllegalStateException("Snapshot has been recycled");
+    }
+    return infos[index];
+  }
+
+  /**
+   * @return The index of the parent of {@code index}, or {@link #NO_INDEX} for the root
+   */
+  public int getParent(int index) {
+    return parents[index];
+  }
+
+  /**
+   * @return The number of direct children of {@code index}
+   */
+  public int getChildCount(int index) {
+    return childCounts[index];
+  }
+
+  /**
+   * @return The index of the {@code childNumber}th direct child of {@code index}
+   */
+  public int getChild(int index, int childNumber) {
+    if ((childNumber < 0) || (childNumber >= childCounts[index])) {
+      throw new IndexOutOfBoundsException("Child " + childNumber + " of node " + index);
+    }
+    return firstChildren[index] + childNumber;
+  }
+
+  /**
+   * @return The index of the node that labels {@code index}, {@link #NO_INDEX} if it has no label,
+   * or {@link #OUTSIDE_INDEX} if its label is not in the snapshot
+   */
+  public int getLabeledBy(int index) {
+    return labeledBy[index];
+  }
+
+  /**
+   * Recycles every node held by the snapshot. The snapshot must not be used afterwards.
+   */
+  public synchronized void recycle() {
+    if (recycled) {
+      return;
+    }
+    recycled = true;
+    for (AccessibilityNodeInfo info : infos) {
+      NodeInfoTracker.recycle(info);
+    }
+  }
+}
@@ -18,9 +18,7 @@ package com.google.android.apps.common.testing.accessibility.framework;
 
 import android.view.View;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Base class for checking a single View.
@@ -34,12 +32,47 @@ public abstract class AccessibilityViewCheck extends AccessibilityViewHierarchyC
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
-    List<AccessibilityViewCheckResult> results = new ArrayList<>();
-    Set<View> viewsToCheck = ViewAccessibilityUtils.getAllViewsInHierarchy(root);
-    for (View view : viewsToCheck) {
-      results.addAll(runCheckOnView(view));
-    }
-    return results;
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
+
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        results.addAll(runCheckOnElement(snapshot, index));
+      }
+
+      @Override
+      public boolean isThreadSafe() {
+        return AccessibilityViewCheck.this.isThreadSafe();
+      }
+
+      @Override
+      public boolean isElementLocal() {
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Run the check on one element of a snapshot. The default runs
+   * {@link #runCheckOnView(View)} on the element's view; checks may override this to use indices
+   * the snapshot has already built.
+   */
+  List<AccessibilityViewCheckResult> runCheckOnElement(ViewHierarchySnapshot snapshot,
+      int index) {
+    return runCheckOnView(snapshot.getView(index));
+  }
+
+  /**
+   * @return {@code true} if {@link #runCheckOnView(View)} only reads view state, and may therefore
+   * run on a worker thread while the thread that owns the hierarchy waits for it.
+   * @see AccessibilityViewCheckVisitor#isThreadSafe()
+   */
+  protected boolean isThreadSafe() {
+    return false;
   }
 
   /**
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import java.util.List;
+
+/**
+ * Per-element callback used by {@link ViewHierarchyTraverser} to evaluate several
+ * {@link AccessibilityViewHierarchyCheck}s during a single walk of a {@code View} hierarchy.
+ * <p>
+ * A visitor is created for one run of one check by
+ * {@link AccessibilityViewHierarchyCheck#newVisitor(ViewHierarchySnapshot)} and is discarded
+ * afterwards, so it may keep whatever state it needs across calls. Visitors should read view
+ * properties from the {@link ViewHierarchySnapshot} where it captures them, and fall back to
+ * {@link ViewHierarchySnapshot#getView(int)} only for properties it does not.
+ */
+public abstract class AccessibilityViewCheckVisitor {
+
+  /**
+   * Evaluates a single element. Elements are visited in preorder, starting with the root of the
+   * hierarchy and including views that are not visible.
+   *
+   * @param snapshot The snapshot of the hierarchy being traversed
+   * @param index The element index of the view to evaluate
+   * @param results The list to which interesting results should be added
+   */
+  public abstract void visitElement(ViewHierarchySnapshot snapshot, int index,
+      List<AccessibilityViewCheckResult> results);
+
+  /**
+   * Called once after every element in the hierarchy has been visited. Checks that need to see the
+   * whole hierarchy before reporting can add their results here.
+   *
+   * @param snapshot The snapshot of the hierarchy that was traversed
+   * @param results The list to which interesting results should be added
+   */
+  public void endHierarchy(ViewHierarchySnapshot snapshot,
+      List<AccessibilityViewCheckResult> results) {
+  }
+
+  /**
+   * @return {@code true} if this visitor only reads view state, so it may run on a worker thread
+   * while the thread that owns the hierarchy waits for it. Visitors that change views, for example
+   * by expanding the groups of a list, must return {@code false}.
+   */
+  public boolean isThreadSafe() {
+    return false;
+  }
+
+  /**
+   * @return {@code true} if the results for an element depend only on that element and on state
+   * fixed when the visitor was created. {@link #visitElement} of a thread-safe, element-local
+   * visitor may be called for different elements from several threads at once.
+   */
+  public boolean isElementLocal() {
+    return false;
+  }
+}
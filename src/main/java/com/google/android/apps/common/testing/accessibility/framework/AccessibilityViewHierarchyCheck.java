@@ -35,4 +35,16 @@ public abstract class AccessibilityViewHierarchyCheck extends AccessibilityCheck
    */
   public abstract List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root);
 
+  /**
+   * Creates a visitor that evaluates this check one view at a time, allowing it to share a single
+   * walk of the hierarchy with other checks through {@link ViewHierarchyTraverser}.
+   *
+   * @param snapshot The snapshot of the hierarchy that will be traversed.
+   * @return A new visitor for one run of this check, or {@code null} if the check must be run with
+   * {@link #runCheckOnViewHierarchy(View)}.
+   */
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    return null;
+  }
+
 }
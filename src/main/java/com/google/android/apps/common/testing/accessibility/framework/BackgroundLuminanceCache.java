@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import com.googlecode.eyesfree.utils.BitmapPool;
+import com.googlecode.eyesfree.utils.ColorHistogram;
+import com.googlecode.eyesfree.utils.ContrastUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Renders background {@link Drawable}s offscreen and summarizes the luminance of what they draw,
+ * for checks that compare text against backgrounds which are not a single color, such as
+ * gradients, ripples and nine-patches.
+ * <p>
+ * Each background is drawn at the size of its view into a bitmap from a {@link BitmapPool}, and
+ * its pixels are counted into a {@link ColorHistogram}. Summaries are kept in a bounded,
+ * least-recently-used cache keyed by the drawable's constant state, size, state and level, so a
+ * background repeated across the rows of a list is rendered once. Drawables without a constant
+ * state are rendered every time.
+ * <p>
+ * Backgrounds are drawn on the calling thread, which should be the thread that owns the views they
+ * belong to. The cache itself is thread-safe.
+ */
+public final class BackgroundLuminanceCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+
+  /*
+   * The share of pixels at either end of a background's luminance range that are ignored, which
+   * keeps thin borders, shadows and antialiased corners from deciding the contrast of the text
+   */
+  private static final double OUTLIER_SHARE = 0.05d;
+
+  private final int maxEntries;
+  private final BitmapPool bitmapPool;
+  private final Map<Key, BackgroundLuminance> entries;
+  private long hitCount;
+  private long missCount;
+
+  public BackgroundLuminanceCache() {
+    this(DEFAULT_MAX_ENTRIES, new BitmapPool());
+  }
+
+  /**
+   * @param maxEntries The maximum number of backgrounds whose luminance is kept
+   * @param bitmapPool The pool of bitmaps into which backgrounds are rendered
+   */
+  public BackgroundLuminanceCache(final int maxEntries, BitmapPool bitmapPool) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Cache must hold at least one entry");
+    }
+    this.maxEntries = maxEntries;
+    this.bitmapPool = bitmapPool;
+    entries = new LinkedHashMap<Key, BackgroundLuminance>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, BackgroundLuminance> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return A cache with the same capacity that holds no backgrounds yet, and renders into a pool
+   *         of its own
+   */
+  public BackgroundLuminanceCache newEmptyCache() {
+    return new BackgroundLuminanceCache(maxEntries, new BitmapPool());
+  }
+
+  /**
+   * Summarizes the luminance of {@code background} as drawn at the given size, rendering it if it
+   * is not cached.
+   *
+   * @param background The drawable to evaluate, which is drawn on the calling thread. Its bounds
+   *        are restored after it is drawn.
+   * @param width The width of the view the drawable is the background of, which must be positive
+   * @param height The height of the view the drawable is the background of, which must be positive
+   * @return The luminance of the rendered background
+   */
+  public BackgroundLuminance getBackgroundLuminance(Drawable background, int width, int height) {
+    Key key = null;
+    Drawable.ConstantState constantState = background.getConstantState();
+    if (constantState != null) {
+      key = new Key(constantState, width, height, background.getState(), background.getLevel());
+      synchronized (this) {
+        BackgroundLuminance cached = entries.get(key);
+        if (cached != null) {
+          ++hitCount;
+          return cached;
+        }
+      }
+    }
+
+    BackgroundLuminance backgroundLuminance = render(background, width, height);
+    synchronized (this) {
+      ++missCount;
+      if (key != null) {
+        entries.put(key, backgroundLuminance);
+      }
+    }
+    return backgroundLuminance;
+  }
+
+  /**
+   * Removes all cached luminance and recycles the pooled bitmaps. Hit and miss counts are kept.
+   */
+  public void invalidate() {
+    synchronized (this) {
+      entries.clear();
+    }
+    bitmapPool.clear();
+  }
+
+  /**
+   * @return The number of backgrounds whose luminance is cached
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The number of lookups that returned cached luminance
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of lookups that rendered a background
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  private BackgroundLuminance render(Drawable background, int width, int height) {
+    Bitmap bitmap = bitmapPool.acquire(width, height);
+    int[] row = new int[width];
+    ColorHistogram histogram = new ColorHistogram();
+    try {
+      Rect bounds = background.copyBounds();
+      background.setBounds(0, 0, width, height);
+      background.draw(new Canvas(bitmap));
+      background.setBounds(bounds);
+      for (int y = 0; y < height; ++y) {
+        bitmap.getPixels(row, 0, width, 0, y, width, 1);
+        for (int x = 0; x < width; ++x) {
+          histogram.add(row[x], y * width + x);
+        }
+      }
+    } finally {
+      bitmapPool.release(bitmap);
+    }
+    return BackgroundLuminance.fromHistogram(histogram);
+  }
+
+  /**
+   * The range of luminance of a rendered background, excluding its darkest and lightest outliers.
+   */
+  public static final class BackgroundLuminance {
+    private final boolean opaque;
+    private final double lowLuminance;
+    private final double highLuminance;
+
+    private BackgroundLuminance(boolean opaque, double lowLuminance, double highLuminance) {
+      this.opaque = opaque;
+      this.lowLuminance = lowLuminance;
+      this.highLuminance = highLuminance;
+    }
+
+    static BackgroundLuminance fromHistogram(ColorHistogram histogram) {
+      final double[] luminances = new double[histogram.size()];
+      Integer[] opaqueColors = new Integer[histogram.size()];
+      int opaqueColorCount = 0;
+      long opaquePixelCount = 0;
+      for (int i = 0; i < histogram.size(); ++i) {
+        if (Color.alpha(histogram.getColor(i)) == 255) {
+          luminances[i] = ContrastUtils.calculateLuminance(histogram.getColor(i));
+          opaqueColors[opaqueColorCount++] = i;
+          opaquePixelCount += histogram.getCount(i);
+        }
+      }
+
+      if (opaquePixelCount == 0) {
+        return new BackgroundLuminance(false, 0.0d, 1.0d);
+      }
+      long translucentPixelCount = histogram.getTotalCount() - opaquePixelCount;
+      boolean opaque = (translucentPixelCount <= OUTLIER_SHARE * histogram.getTotalCount());
+
+      Arrays.sort(opaqueColors, 0, opaqueColorCount, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer first, Integer second) {
+          return Double.compare(luminances[first], luminances[second]);
+        }
+      });
+      double lowLuminance = luminances[opaqueColors[0]];
+      double highLuminance = luminances[opaqueColors[opaqueColorCount - 1]];
+      long cumulativeCount = 0;
+      boolean foundLow = false;
+      for (int i = 0; i < opaqueColorCount; ++i) {
+        int color = opaqueColors[i];
+        cumulativeCount += histogram.getCount(color);
+        if (!foundLow && (cumulativeCount > OUTLIER_SHARE * opaquePixelCount)) {
+          lowLuminance = luminances[color];
+          foundLow = true;
+        }
+        if (cumulativeCount >= (1.0d - OUTLIER_SHARE) * opaquePixelCount) {
+          highLuminance = luminances[color];
+          break;
+        }
+      }
+      return new BackgroundLuminance(opaque, lowLuminance, highLuminance);
+    }
+
+    /**
+     * @return {@code true} if nearly all of the background is opaque, so that what lies behind it
+     * does not affect the contrast of text drawn over it
+     */
+    public boolean isOpaque() {
+      return opaque;
+    }
+
+    /**
+     * @param color The color of text drawn over the background
+     * @return The lowest contrast ratio between {@code color} and the luminance range of the
+     * background, which is 1 if the luminance of {@code color} falls within the range
+     */
+    public double getContrastRatio(int color) {
+      double luminance = ContrastUtils.calculateLuminance(color);
+      if (luminance < lowLuminance) {
+        return ContrastUtils.calculateContrastRatio(luminance, lowLuminance);
+      }
+      if (luminance > highLuminance) {
+        return ContrastUtils.calculateContrastRatio(luminance, highLuminance);
+      }
+      return 1.0d;
+    }
+  }
+
+  private static final class Key {
+    private final Drawable.ConstantState constantState;
+    private final int width;
+    private final int height;
+    private final int[] state;
+    private final int level;
+
+    Key(Drawable.ConstantState constantState, int width, int height, int[] state, int level) {
+      this.constantState = constantState;
+      this.width = width;
+      this.height = height;
+      this.state = state.clone();
+      this.level = level;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return (constantState == other.constantState) && (width == other.width)
+          && (height == other.height) && (level == other.level)
+          && Arrays.equals(state, other.state);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 31 * System.identityHashCode(constantState) + width;
+      result = 31 * result + height;
+      result = 31 * result + level;
+      return 31 * result + Arrays.hashCode(state);
+    }
+  }
+}
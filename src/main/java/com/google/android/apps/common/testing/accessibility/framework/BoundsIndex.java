@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index over the global visible rects of the elements of a
+ * {@link ViewHierarchySnapshot}, built in one pass from the snapshot's packed bounds.
+ * <p>
+ * Only elements with {@link ViewHierarchySnapshot#FLAG_HAS_VISIBLE_RECT} and a non-empty rect are
+ * indexed. Elements are bucketed into a uniform grid of about one cell per element over the
+ * combined bounds, so a query only examines elements in the cells it covers. Elements with
+ * identical bounds are also grouped, so exact matches are found without hashing a {@code Rect} per
+ * view.
+ */
+final class BoundsIndex {
+
+  /** Limits the grid to 4096 cells, past which finer cells stop paying for themselves */
+  private static final int MAX_CELLS_PER_SIDE = 64;
+
+  private final ViewHierarchySnapshot snapshot;
+  private final int gridLeft;
+  private final int gridTop;
+  private final int cellWidth;
+  private final int cellHeight;
+  private final int columns;
+  private final int rows;
+  private final int[] cellOffsets;
+  private final int[] cellElements;
+  private final int[] boundsGroups;
+  private final int boundsGroupCount;
+
+  BoundsIndex(ViewHierarchySnapshot snapshot) {
+    this.snapshot = snapshot;
+    int size = snapshot.size();
+    int[] indexed = new int[size];
+    int indexedCount = 0;
+    int left = Integer.MAX_VALUE;
+    int top = Integer.MAX_VALUE;
+    int right = Integer.MIN_VALUE;
+    int bottom = Integer.MIN_VALUE;
+    for (int i = 0; i < size; ++i) {
+      if (isIndexed(i)) {
+        indexed[indexedCount++] = i;
+        left = Math.min(left, snapshot.getLeft(i));
+        top = Math.min(top, snapshot.getTop(i));
+        right = Math.max(right, snapshot.getRight(i));
+        bottom = Math.max(bottom, snapshot.getBottom(i));
+      }
+    }
+
+    int cellsPerSide = Math.max(1, Math.min(MAX_CELLS_PER_SIDE,
+        (int) Math.ceil(Math.sqrt(indexedCount))));
+    if (indexedCount == 0) {
+      left = top = 0;
+      right = bottom = 1;
+    }
+    gridLeft = left;
+    gridTop = top;
+    cellWidth = Math.max(1, (right - left + cellsPerSide - 1) / cellsPerSide);
+    cellHeight = Math.max(1, (bottom - top + cellsPerSide - 1) / cellsPerSide);
+    columns = Math.max(1, (right - left + cellWidth - 1) / cellWidth);
+    rows = Math.max(1, (bottom - top + cellHeight - 1) / cellHeight);
+
+    /* Count, then fill, so the cells are packed into one array */
+    cellOffsets = new int[columns * rows + 1];
+    for (int n = 0; n < indexedCount; ++n) {
+      int i = indexed[n];
+      for (int row = rowOf(snapshot.getTop(i)); row <= rowOf(snapshot.getBottom(i) - 1); ++row) {
+        for (int column = columnOf(snapshot.getLeft(i));
+            column <= columnOf(snapshot.getRight(i) - 1); ++column) {
+          cellOffsets[row * columns + column + 1]++;
+        }
+      }
+    }
+    for (int cell = 0; cell < columns * rows; ++cell) {
+      cellOffsets[cell + 1] += cellOffsets[cell];
+    }
+    cellElements = new int[cellOffsets[columns * rows]];
+    int[] nextSlot = Arrays.copyOf(cellOffsets, columns * rows);
+    for (int n = 0; n < indexedCount; ++n) {
+      int i = indexed[n];
+      for (int row = rowOf(snapshot.getTop(i)); row <= rowOf(snapshot.getBottom(i) - 1); ++row) {
+        for (int column = columnOf(snapshot.getLeft(i));
+            column <= columnOf(snapshot.getRight(i) - 1); ++column) {
+          cellElements[nextSlot[row * columns + column]++] = i;
+        }
+      }
+    }
+
+    /* Open addressing over the packed bounds, holding the first element seen with each bounds */
+    int tableSize = Integer.highestOneBit(Math.max(indexedCount, 1) * 2) * 2;
+    int[] table = new int[tableSize];
+    Arrays.fill(table, ViewHierarchySnapshot.NO_INDEX);
+    boundsGroups = new int[size];
+    Arrays.fill(boundsGroups, ViewHierarchySnapshot.NO_INDEX);
+    int groupCount = 0;
+    for (int n = 0; n < indexedCount; ++n) {
+      int i = indexed[n];
+      int slot = hashBounds(i) & (tableSize - 1);
+      while ((table[slot] != ViewHierarchySnapshot.NO_INDEX) && !hasSameBounds(table[slot], i)) {
+        slot = (slot + 1) & (tableSize - 1);
+      }
+      if (table[slot] == ViewHierarchySnapshot.NO_INDEX) {
+        table[slot] = i;
+        boundsGroups[i] = groupCount++;
+      } else {
+        boundsGroups[i] = boundsGroups[table[slot]];
+      }
+    }
+    boundsGroupCount = groupCount;
+  }
+
+  /**
+   * @return {@code true} if {@code index} has a non-empty visible rect and is in the index
+   */
+  boolean isIndexed(int index) {
+    return snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_HAS_VISIBLE_RECT)
+        && (snapshot.getLeft(index) < snapshot.getRight(index))
+        && (snapshot.getTop(index) < snapshot.getBottom(index));
+  }
+
+  /**
+   * @return The number of distinct bounds among the indexed elements
+   */
+  int getBoundsGroupCount() {
+    return boundsGroupCount;
+  }
+
+  /**
+   * @return A number in {@code [0, getBoundsGroupCount())} shared by exactly the indexed elements
+   * whose bounds equal those of {@code index}, or {@link ViewHierarchySnapshot#NO_INDEX} if
+   * {@code index} is not indexed
+   */
+  int getBoundsGroup(int index) {
+    return boundsGroups[index];
+  }
+
+  /**
+   * Finds the indexed elements whose bounds intersect a rect. Rects that only share an edge do not
+   * intersect.
+   *
+   * @return The element indices, in ascending order
+   */
+  int[] findIntersecting(int left, int top, int right, int bottom) {
+    if ((left >= right) || (top >= bottom)) {
+      return new int[0];
+    }
+    int firstColumn = columnOf(left);
+    int lastColumn = columnOf(right - 1);
+    int firstRow = rowOf(top);
+    int lastRow = rowOf(bottom - 1);
+    int[] found = new int[16];
+    int foundCount = 0;
+    for (int row = firstRow; row <= lastRow; ++row) {
+      for (int column = firstColumn; column <= lastColumn; ++column) {
+        int cell = row * columns + column;
+        for (int slot = cellOffsets[cell]; slot < cellOffsets[cell + 1]; ++slot) {
+          int i = cellElements[slot];
+          int intersectionLeft = Math.max(left, snapshot.getLeft(i));
+          int intersectionTop = Math.max(top, snapshot.getTop(i));
+          if ((intersectionLeft >= Math.min(right, snapshot.getRight(i)))
+              || (intersectionTop >= Math.min(bottom, snapshot.getBottom(i)))) {
+            continue;
+          }
+          /* An element spanning several cells is reported only from the cell holding the corner */
+          if ((columnOf(intersectionLeft) != column) || (rowOf(intersectionTop) != row)) {
+            continue;
+          }
+          if (foundCount == found.length) {
+            found = Arrays.copyOf(found, foundCount * 2);
+          }
+          found[foundCount++] = i;
+        }
+      }
+    }
+    found = Arrays.copyOf(found, foundCount);
+    Arrays.sort(found);
+    return found;
+  }
+
+  /**
+   * @return The indexed elements whose bounds intersect those of {@code index}, including
+   * {@code index} itself, in ascending order
+   */
+  int[] findIntersecting(int index) {
+    return findIntersecting(snapshot.getLeft(index), snapshot.getTop(index),
+        snapshot.getRight(index), snapshot.getBottom(index));
+  }
+
+  private int hashBounds(int index) {
+    int hash = snapshot.getLeft(index);
+    hash = 31 * hash + snapshot.getTop(index);
+    hash = 31 * hash + snapshot.getRight(index);
+    hash = 31 * hash + snapshot.getBottom(index);
+    return hash ^ (hash >>> 16);
+  }
+
+  private boolean hasSameBounds(int index1, int index2) {
+    return (snapshot.getLeft(index1) == snapshot.getLeft(index2))
+        && (snapshot.getTop(index1) == snapshot.getTop(index2))
+        && (snapshot.getRight(index1) == snapshot.getRight(index2))
+        && (snapshot.getBottom(index1) == snapshot.getBottom(index2));
+  }
+
+  private int columnOf(int x) {
+    return Math.max(0, Math.min(columns - 1, (x - gridLeft) / cellWidth));
+  }
+
+  private int rowOf(int y) {
+    return Math.max(0, Math.min(rows - 1, (y - gridTop) / cellHeight));
+  }
+}
@@ -48,8 +48,19 @@ public class ClickableSpanInfoCheck extends AccessibilityInfoCheck {
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfo(AccessibilityNodeInfo info,
       Context context, Bundle metadata) {
+    return runCheck(info, new AccessibilityNodeInfoCompat(info), context);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnInfo(int index,
+      InfoCheckEvaluationContext evaluationContext) {
+    return runCheck(evaluationContext.getInfo(index), evaluationContext.getCompatInfo(index),
+        evaluationContext.getContext());
+  }
+
+  private List<AccessibilityInfoCheckResult> runCheck(AccessibilityNodeInfo info,
+      AccessibilityNodeInfoCompat compatInfo, Context context) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<AccessibilityInfoCheckResult>(1);
-    AccessibilityNodeInfoCompat compatInfo = new AccessibilityNodeInfoCompat(info);
     if (AccessibilityNodeInfoUtils.nodeMatchesAnyClassByType(context, compatInfo, TextView.class)) {
       if (info.getText() instanceof Spanned) {
         Spanned text = (Spanned) info.getText();
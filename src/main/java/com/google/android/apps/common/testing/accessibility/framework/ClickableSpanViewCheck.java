@@ -40,6 +40,11 @@ import java.util.List;
  */
 public class ClickableSpanViewCheck extends AccessibilityViewCheck {
 
+  @Override
+  protected boolean isThreadSafe() {
+    return true;
+  }
+
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnView(View view) {
     List<AccessibilityViewCheckResult> results = new ArrayList<>(1);
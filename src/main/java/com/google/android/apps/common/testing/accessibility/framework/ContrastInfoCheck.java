@@ -22,18 +22,31 @@ import android.graphics.Rect;
 import android.os.Bundle;
 import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.text.TextUtils;
+import android.view.Surface;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
+import com.googlecode.eyesfree.utils.ColorPlane;
+import com.googlecode.eyesfree.utils.ContrastSampler;
 import com.googlecode.eyesfree.utils.ContrastSwatch;
 import com.googlecode.eyesfree.utils.ContrastUtils;
+import com.googlecode.eyesfree.utils.IntegralLuminanceHistogram;
 import com.googlecode.eyesfree.utils.NodeFilter;
+import com.googlecode.eyesfree.utils.ScreenshotBlockHash;
 import com.googlecode.eyesfree.utils.ScreenshotUtils;
+import com.googlecode.eyesfree.utils.TiledContrastEvaluator;
+import com.googlecode.eyesfree.utils.UnrotatedScreenshot;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Checks to ensure that certain eligible items on-screen items have sufficient contrast. This check
@@ -41,6 +54,46 @@ import java.util.List;
  */
 public class ContrastInfoCheck extends AccessibilityInfoHierarchyCheck {
 
+  /**
+   * Value of {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_EVALUATION_MODE} that crops a
+   * separate Bitmap from the screen capture for each evaluated view
+   */
+  public static final String EVALUATION_MODE_CROP = "crop";
+
+  /**
+   * Value of {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_EVALUATION_MODE} that reads
+   * the screen capture once into a {@link ColorPlane} and evaluates each view as a region of it
+   */
+  public static final String EVALUATION_MODE_SHARED_PLANE = "shared_plane";
+
+  /**
+   * Value of {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_EVALUATION_MODE} that builds
+   * an {@link IntegralLuminanceHistogram} of the screen capture once and evaluates each view from
+   * the histogram of its bounds. Merging luminances into bins makes a ratio a heuristic with no
+   * bound, so only views whose bins each hold a single luminance of the capture are evaluated from
+   * the histogram, which is then exact. Other views are evaluated again from every pixel.
+   */
+  public static final String EVALUATION_MODE_INTEGRAL_HISTOGRAM = "integral_histogram";
+
+  /**
+   * Value of {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_EVALUATION_MODE} that streams
+   * the screen capture in tiles through a {@link TiledContrastEvaluator}, on as many threads as
+   * {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_PARALLELISM} allows, while keeping its
+   * pixel buffers under {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_MEMORY_CEILING}
+   */
+  public static final String EVALUATION_MODE_TILED = "tiled";
+
+  /**
+   * Value of {@link AccessibilityCheckMetadata#METADATA_KEY_CONTRAST_EVALUATION_MODE} that
+   * estimates each view's contrast from a {@link ContrastSampler sample} of its pixels. Views for
+   * which the range of ratios the sample allows spans a WCAG threshold, including every view whose
+   * sample holds more than two luminances, are evaluated again from every pixel.
+   */
+  public static final String EVALUATION_MODE_SAMPLED = "sampled";
+
+  /** The confidence with which the bounds of a sampled contrast ratio hold */
+  private static final double SAMPLING_CONFIDENCE = 0.95d;
+
   private static final NodeFilter FILTER_CONTRAST_EVAL_ELIGIBLE = new NodeFilter() {
 
     @Override
@@ -56,22 +109,86 @@ public class ContrastInfoCheck extends AccessibilityInfoHierarchyCheck {
     }
   };
 
-  private static final NodeFilter FILTER_CONTRAST_EVAL_INELIGIBLE = new NodeFilter() {
+  /* Runs the workers of tiled evaluation for checks not given an executor, created when needed */
+  private static ExecutorService sharedExecutor;
 
-    @Override
-    public boolean accept(Context context, AccessibilityNodeInfoCompat node) {
-      return !FILTER_CONTRAST_EVAL_ELIGIBLE.accept(context, node);
-    }
-  };
+  private final ContrastResultCache resultCache;
+  private final ExecutorService executor;
+
+  public ContrastInfoCheck() {
+    this(null);
+  }
+
+  /**
+   * @param resultCache A cache of the contrast of views from earlier runs of this check, from which
+   * views whose pixels did not change are taken rather than evaluated again, or {@code null} to
+   * evaluate every view
+   */
+  public ContrastInfoCheck(ContrastResultCache resultCache) {
+    this(resultCache, null);
+  }
+
+  /**
+   * @param resultCache A cache of the contrast of views from earlier runs of this check, or
+   * {@code null} to evaluate every view
+   * @param executor The executor on which {@link #EVALUATION_MODE_TILED tiled} evaluation runs its
+   * workers other than the calling thread, which remains owned by the caller, or {@code null} to
+   * use a pool of daemon threads shared by every check. Threads of the pool that stay idle are
+   * released.
+   */
+  public ContrastInfoCheck(ContrastResultCache resultCache, ExecutorService executor) {
+    this.resultCache = resultCache;
+    this.executor = executor;
+  }
+
+  /**
+   * @return The cache of contrast from earlier runs, or {@code null} if there is none
+   */
+  public ContrastResultCache getResultCache() {
+    return resultCache;
+  }
+
+  @Override
+  boolean hasCaches() {
+    return (resultCache != null);
+  }
+
+  @Override
+  AccessibilityCheck newInstanceWithEmptyCaches() {
+    return hasCaches()
+        ? new ContrastInfoCheck(new ContrastResultCache(resultCache.getMaxEntries()), executor)
+        : this;
+  }
 
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfoHierarchy(AccessibilityNodeInfo root,
       Context context, Bundle metadata) {
+    return runCheckOnCapturedHierarchy(root, context, metadata);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnSnapshot(
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<AccessibilityInfoCheckResult>();
     Bitmap screenCapture = null;
+    int screenCaptureRotation = Surface.ROTATION_0;
+    String evaluationMode = EVALUATION_MODE_CROP;
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    long memoryCeiling = TiledContrastEvaluator.DEFAULT_MEMORY_CEILING_BYTES;
+    int sampleCount = ContrastSampler.DEFAULT_SAMPLE_COUNT;
     if (metadata != null) {
       screenCapture =
           metadata.getParcelable(AccessibilityCheckMetadata.METADATA_KEY_SCREEN_CAPTURE_BITMAP);
+      screenCaptureRotation = metadata.getInt(
+          AccessibilityCheckMetadata.METADATA_KEY_SCREEN_CAPTURE_ROTATION, screenCaptureRotation);
+      evaluationMode = metadata.getString(
+          AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_EVALUATION_MODE, EVALUATION_MODE_CROP);
+      parallelism = metadata.getInt(
+          AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_PARALLELISM, parallelism);
+      memoryCeiling = metadata.getLong(
+          AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_MEMORY_CEILING, memoryCeiling);
+      sampleCount = metadata.getInt(
+          AccessibilityCheckMetadata.METADATA_KEY_CONTRAST_SAMPLE_COUNT, sampleCount);
     }
 
     if (screenCapture == null) {
@@ -80,11 +197,17 @@ public class ContrastInfoCheck extends AccessibilityInfoHierarchyCheck {
       return results;
     }
 
-    AccessibilityNodeInfoCompat rootCompat = new AccessibilityNodeInfoCompat(root);
-    List<AccessibilityNodeInfoCompat> candidates = AccessibilityNodeInfoUtils.searchAllFromBfs(
-        context, rootCompat, FILTER_CONTRAST_EVAL_ELIGIBLE);
-    List<AccessibilityNodeInfoCompat> nonCandidates = AccessibilityNodeInfoUtils.searchAllFromBfs(
-        context, rootCompat, FILTER_CONTRAST_EVAL_INELIGIBLE);
+    /* The snapshot owns these nodes, so they are wrapped rather than obtained */
+    List<AccessibilityNodeInfoCompat> candidates = new ArrayList<AccessibilityNodeInfoCompat>();
+    List<AccessibilityNodeInfoCompat> nonCandidates = new ArrayList<AccessibilityNodeInfoCompat>();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      AccessibilityNodeInfoCompat node = new AccessibilityNodeInfoCompat(snapshot.getInfo(i));
+      if (FILTER_CONTRAST_EVAL_ELIGIBLE.accept(context, node)) {
+        candidates.add(node);
+      } else {
+        nonCandidates.add(node);
+      }
+    }
 
     // Ineligible nodes all receive NOT_RUN results
     for (AccessibilityNodeInfoCompat nonCandidate : nonCandidates) {
@@ -94,12 +217,62 @@ public class ContrastInfoCheck extends AccessibilityInfoHierarchyCheck {
           unwrappedNonCandidate));
     }
 
-    Rect screenCaptureBounds =
-        new Rect(0, 0, screenCapture.getWidth() - 1, screenCapture.getHeight() - 1);
+    /* An unrotated capture is read through a mapping from view bounds, rather than copied */
+    UnrotatedScreenshot unrotatedCapture = (screenCaptureRotation != Surface.ROTATION_0)
+        ? new UnrotatedScreenshot(screenCapture, screenCaptureRotation) : null;
+    Rect screenCaptureBounds = (unrotatedCapture != null)
+        ? new Rect(0, 0, unrotatedCapture.getWidth() - 1, unrotatedCapture.getHeight() - 1)
+        : new Rect(0, 0, screenCapture.getWidth() - 1, screenCapture.getHeight() - 1);
+    List<Rect> candidateBounds = new ArrayList<Rect>(candidates.size());
+    List<Rect> captureBounds = new ArrayList<Rect>(candidates.size());
     for (AccessibilityNodeInfoCompat candidate : candidates) {
-      AccessibilityNodeInfo unwrappedCandidate = (AccessibilityNodeInfo) candidate.getInfo();
       Rect viewBounds = new Rect();
-      unwrappedCandidate.getBoundsInScreen(viewBounds);
+      ((AccessibilityNodeInfo) candidate.getInfo()).getBoundsInScreen(viewBounds);
+      candidateBounds.add(viewBounds);
+      captureBounds.add((unrotatedCapture != null) && screenCaptureBounds.contains(viewBounds)
+          ? unrotatedCapture.mapToBuffer(viewBounds) : viewBounds);
+    }
+
+    /* With a result cache, only views whose pixels changed since an earlier run are evaluated */
+    ScreenshotBlockHash screenCaptureHash = ((resultCache != null) && !candidates.isEmpty())
+        ? new ScreenshotBlockHash(screenCapture) : null;
+    long[] regionHashes = new long[candidates.size()];
+    ContrastResultCache.Entry[] cachedContrast = new ContrastResultCache.Entry[candidates.size()];
+    boolean[] evaluated = new boolean[candidates.size()];
+    boolean anyEvaluated = false;
+    for (int i = 0; i < candidates.size(); ++i) {
+      if (!screenCaptureBounds.contains(candidateBounds.get(i))) {
+        continue;
+      }
+      if (screenCaptureHash != null) {
+        regionHashes[i] = screenCaptureHash.getRegionHash(captureBounds.get(i));
+        cachedContrast[i] =
+            resultCache.get(candidateBounds.get(i), evaluationMode, regionHashes[i]);
+      }
+      evaluated[i] = (cachedContrast[i] == null);
+      anyEvaluated |= evaluated[i];
+    }
+
+    ColorPlane screenCapturePlane = null;
+    IntegralLuminanceHistogram screenCaptureHistogram = null;
+    Iterator<ContrastSwatch> tiledSwatches = null;
+    ContrastSampler sampler = null;
+    if (anyEvaluated) {
+      if (EVALUATION_MODE_SHARED_PLANE.equals(evaluationMode)) {
+        screenCapturePlane = new ColorPlane(screenCapture);
+      } else if (EVALUATION_MODE_INTEGRAL_HISTOGRAM.equals(evaluationMode)) {
+        screenCaptureHistogram = new IntegralLuminanceHistogram(screenCapture);
+      } else if (EVALUATION_MODE_TILED.equals(evaluationMode)) {
+        tiledSwatches = evaluateTiled(screenCapture, candidates, captureBounds, evaluated,
+            parallelism, memoryCeiling).iterator();
+      } else if (EVALUATION_MODE_SAMPLED.equals(evaluationMode)) {
+        sampler = new ContrastSampler(sampleCount);
+      }
+    }
+    for (int i = 0; i < candidates.size(); ++i) {
+      AccessibilityNodeInfoCompat candidate = candidates.get(i);
+      AccessibilityNodeInfo unwrappedCandidate = (AccessibilityNodeInfo) candidate.getInfo();
+      Rect viewBounds = candidateBounds.get(i);
       if (!screenCaptureBounds.contains(viewBounds)) {
         // If an off-screen view reports itself as visible, we shouldn't evaluate it.
         String message = String.format(
@@ -109,20 +282,62 @@ public class ContrastInfoCheck extends AccessibilityInfoHierarchyCheck {
             AccessibilityCheckResultType.NOT_RUN, message, unwrappedCandidate));
         continue;
       }
-      ContrastSwatch candidateSwatch = new ContrastSwatch(
-          ScreenshotUtils.cropBitmap(screenCapture, viewBounds), viewBounds,
-          unwrappedCandidate.getViewIdResourceName());
-      double contrastRatio = candidateSwatch.getContrastRatio();
+      double contrastRatio;
+      String estimateNote = "";
+      if (!evaluated[i]) {
+        contrastRatio = cachedContrast[i].contrastRatio;
+        estimateNote = cachedContrast[i].note;
+      } else {
+        Rect viewCaptureBounds = captureBounds.get(i);
+        ContrastSampler.Estimate estimate = (sampler != null) ? sampler.sample(screenCapture,
+            viewCaptureBounds, unwrappedCandidate.getViewIdResourceName()) : null;
+        ContrastSwatch binnedSwatch = (screenCaptureHistogram != null)
+            ? new ContrastSwatch(screenCaptureHistogram, viewCaptureBounds,
+                unwrappedCandidate.getViewIdResourceName())
+            : null;
+        ContrastSwatch candidateSwatch;
+        if (tiledSwatches != null) {
+          candidateSwatch = tiledSwatches.next();
+        } else if (screenCapturePlane != null) {
+          candidateSwatch = screenCapturePlane.createSwatch(viewCaptureBounds,
+              unwrappedCandidate.getViewIdResourceName());
+        } else if ((binnedSwatch != null) && !binnedSwatch.isApproximate()) {
+          candidateSwatch = binnedSwatch;
+        } else if ((estimate != null) && estimate.isConclusive(SAMPLING_CONFIDENCE)) {
+          candidateSwatch = estimate.getSwatch();
+          if (!estimate.isExact()) {
+            estimateNote = String.format(Locale.US, " This ratio was estimated from %1$d of %2$d "
+                + "pixels, which held only two luminances.",
+                estimate.getSampleCount(), estimate.getPixelCount());
+          }
+        } else if (unrotatedCapture != null) {
+          // Approximate binned swatches, and sampled estimates whose bounds span a threshold, are
+          // also evaluated from every pixel
+          candidateSwatch = unrotatedCapture.createSwatch(viewBounds,
+              unwrappedCandidate.getViewIdResourceName());
+        } else {
+          candidateSwatch = new ContrastSwatch(
+              ScreenshotUtils.cropBitmap(screenCapture, viewBounds), viewBounds,
+              unwrappedCandidate.getViewIdResourceName());
+        }
+        contrastRatio = candidateSwatch.getContrastRatio();
+        candidateSwatch.recycle();
+        if (screenCaptureHash != null) {
+          resultCache.put(viewBounds, evaluationMode, regionHashes[i], contrastRatio,
+              estimateNote);
+        }
+      }
       if (AccessibilityNodeInfoUtils.nodeMatchesAnyClassByType(context, candidate,
           TextView.class)) {
         if (contrastRatio < ContrastUtils.CONTRAST_RATIO_WCAG_LARGE_TEXT) {
           String message = String.format("This view's foreground to background contrast ratio "
-              + "(%1$.2f) is not sufficient.", contrastRatio);
+              + "(%1$.2f) is not sufficient.", contrastRatio) + estimateNote;
           results.add(new AccessibilityInfoCheckResult(getClass(),
               AccessibilityCheckResultType.ERROR, message, unwrappedCandidate));
         } else if (contrastRatio < ContrastUtils.CONTRAST_RATIO_WCAG_NORMAL_TEXT) {
           String message = String.format("This view's foreground to background contrast ratio "
-              + "(%1$.2f) may not be sufficient unless it contains large text.", contrastRatio);
+              + "(%1$.2f) may not be sufficient unless it contains large text.", contrastRatio)
+              + estimateNote;
           results.add(new AccessibilityInfoCheckResult(getClass(),
               AccessibilityCheckResultType.WARNING, message, unwrappedCandidate));
         }
@@ -133,16 +348,64 @@ public class ContrastInfoCheck extends AccessibilityInfoHierarchyCheck {
         if (contrastRatio < ContrastUtils.CONTRAST_RATIO_WCAG_LARGE_TEXT) {
           String message = String.format("This image's foreground to background contrast ratio "
               + "(%1$.2f) is not sufficient.  NOTE: This test is experimental and may be less "
-              + "accurate for some images.", contrastRatio);
+              + "accurate for some images.", contrastRatio) + estimateNote;
           results.add(new AccessibilityInfoCheckResult(getClass(),
               AccessibilityCheckResultType.WARNING, message, unwrappedCandidate));
         }
       }
-      candidateSwatch.recycle();
     }
 
-    AccessibilityNodeInfoUtils.recycleNodes(candidates);
-    AccessibilityNodeInfoUtils.recycleNodes(nonCandidates);
     return results;
   }
+
+  /**
+   * Computes the swatches of the candidates marked {@code evaluated}, in order. Each is evaluated
+   * over its {@code captureBounds}, the pixels of the capture it covers.
+   */
+  private List<ContrastSwatch> evaluateTiled(Bitmap screenCapture,
+      List<AccessibilityNodeInfoCompat> candidates, List<Rect> captureBounds, boolean[] evaluated,
+      int parallelism, long memoryCeiling) {
+    List<Rect> evaluatedBounds = new ArrayList<Rect>();
+    List<String> evaluatedNames = new ArrayList<String>();
+    for (int i = 0; i < candidates.size(); ++i) {
+      if (evaluated[i]) {
+        evaluatedBounds.add(captureBounds.get(i));
+        evaluatedNames.add(
+            ((AccessibilityNodeInfo) candidates.get(i).getInfo()).getViewIdResourceName());
+      }
+    }
+
+    TiledContrastEvaluator evaluator = new TiledContrastEvaluator(
+        TiledContrastEvaluator.DEFAULT_TILE_SIZE, memoryCeiling);
+    if (parallelism <= 1) {
+      return evaluator.evaluate(screenCapture, evaluatedBounds, evaluatedNames);
+    }
+
+    /* The calling thread is one of the workers */
+    return evaluator.evaluate(screenCapture, evaluatedBounds, evaluatedNames,
+        (executor != null) ? executor : getSharedExecutor(), parallelism);
+  }
+
+  /**
+   * @return The pool shared by checks without an executor of their own. It grows to the largest
+   *         parallelism requested, so one run never waits for the workers of another, and its
+   *         threads are daemons that end after a minute without work.
+   */
+  private static synchronized ExecutorService getSharedExecutor() {
+    if (sharedExecutor == null) {
+      sharedExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable,
+              ContrastInfoCheck.class.getSimpleName() + "-" + threadCount.incrementAndGet());
+          /* Checks have no lifecycle, so their threads must not keep the process alive */
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return sharedExecutor;
+  }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.graphics.Rect;
+
+import com.googlecode.eyesfree.utils.ScreenshotBlockHash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the contrast that {@link ContrastInfoCheck} computed for
+ * each view, keyed by the view's bounds, the evaluation mode, and the
+ * {@link ScreenshotBlockHash#getRegionHash region hash} of the screen capture under the view.
+ * <p>
+ * When a check runs again over a capture in which a view's pixels did not change, its contrast is
+ * taken from the cache rather than evaluated again. A region hash covers whole tiles, so a view is
+ * also evaluated again when pixels near it change. Like any hash, two different regions could
+ * collide, though with 64-bit hashes this is very unlikely.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class ContrastResultCache {
+
+  private final int maxEntries;
+  private final Map<Key, Entry> entries;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * @param maxEntries The maximum number of views for which contrast is kept
+   */
+  public ContrastResultCache(final int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Cache must hold at least one entry");
+    }
+    this.maxEntries = maxEntries;
+    entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Removes all cached contrast. Hit and miss counts are kept.
+   */
+  public synchronized void invalidate() {
+    entries.clear();
+  }
+
+  /**
+   * @return The number of views for which contrast is cached
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The maximum number of views for which contrast is kept
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @return The number of lookups that returned cached contrast
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of lookups that found no cached contrast
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return The cached contrast of the view with {@code bounds}, or {@code null} if there is none
+   */
+  synchronized Entry get(Rect bounds, String evaluationMode, long regionHash) {
+    Entry entry = entries.get(new Key(bounds, evaluationMode, regionHash));
+    if (entry == null) {
+      ++missCount;
+      return null;
+    }
+    ++hitCount;
+    return entry;
+  }
+
+  synchronized void put(Rect bounds, String evaluationMode, long regionHash, double contrastRatio,
+      String note) {
+    entries.put(new Key(bounds, evaluationMode, regionHash), new Entry(contrastRatio, note));
+  }
+
+  /**
+   * The contrast computed for one view, and any note qualifying how it was computed.
+   */
+  static final class Entry {
+    final double contrastRatio;
+    final String note;
+
+    Entry(double contrastRatio, String note) {
+      this.contrastRatio = contrastRatio;
+      this.note = note;
+    }
+  }
+
+  private static final class Key {
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+    private final String evaluationMode;
+    private final long regionHash;
+
+    Key(Rect bounds, String evaluationMode, long regionHash) {
+      left = bounds.left;
+      top = bounds.top;
+      right = bounds.right;
+      bottom = bounds.bottom;
+      this.evaluationMode = evaluationMode;
+      this.regionHash = regionHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return (left == other.left) && (top == other.top) && (right == other.right)
+          && (bottom == other.bottom) && (regionHash == other.regionHash)
+          && ((evaluationMode != null) ? evaluationMode.equals(other.evaluationMode)
+              : (other.evaluationMode == null));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 31 * (int) (regionHash ^ (regionHash >>> 32)) + left;
+      result = 31 * result + top;
+      result = 31 * result + right;
+      result = 31 * result + bottom;
+      return 31 * result + ((evaluationMode != null) ? evaluationMode.hashCode() : 0);
+    }
+  }
+}
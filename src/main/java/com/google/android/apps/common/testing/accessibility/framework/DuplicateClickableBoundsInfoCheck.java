@@ -36,17 +36,20 @@ public class DuplicateClickableBoundsInfoCheck extends AccessibilityInfoHierarch
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfoHierarchy(AccessibilityNodeInfo root,
       Context context, Bundle metadata) {
+    return runCheckOnCapturedHierarchy(root, context, metadata);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnSnapshot(
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<>(1);
     Map<Rect, AccessibilityNodeInfo> clickableRectToInfoMap = new HashMap<>();
 
-    checkForDuplicateClickableViews(root, clickableRectToInfoMap, results);
-    for (AccessibilityNodeInfo info : clickableRectToInfoMap.values()) {
-      info.recycle();
-    }
+    checkForDuplicateClickableViews(snapshot, 0, clickableRectToInfoMap, results);
     return results;
   }
 
-  private void checkForDuplicateClickableViews(AccessibilityNodeInfo root,
+  private void checkForDuplicateClickableViews(AccessibilityNodeInfoSnapshot snapshot, int index,
       Map<Rect, AccessibilityNodeInfo> clickableRectToInfoMap,
       List<AccessibilityInfoCheckResult> results) {
     /*
@@ -54,23 +57,23 @@ public class DuplicateClickableBoundsInfoCheck extends AccessibilityInfoHierarch
      * clickable and the other is only long clickable and/or has custom actions. Determine if this
      * limitation applies to real UIs.
      */
-    if (root.isClickable() && root.isVisibleToUser()) {
+    AccessibilityNodeInfo info = snapshot.getInfo(index);
+    if (info.isClickable() && info.isVisibleToUser()) {
       Rect bounds = new Rect();
-      root.getBoundsInScreen(bounds);
+      info.getBoundsInScreen(bounds);
       if (clickableRectToInfoMap.containsKey(bounds)) {
         results.add(new AccessibilityInfoCheckResult(this.getClass(),
             AccessibilityCheckResultType.ERROR,
             "Clickable view has same bounds as another clickable view (likely a descendent)",
             clickableRectToInfoMap.get(bounds)));
       } else {
-        clickableRectToInfoMap.put(bounds, AccessibilityNodeInfo.obtain(root));
+        clickableRectToInfoMap.put(bounds, info);
       }
     }
 
-    for (int i = 0; i < root.getChildCount(); ++i) {
-      AccessibilityNodeInfo child = root.getChild(i);
-      checkForDuplicateClickableViews(child, clickableRectToInfoMap, results);
-      child.recycle();
+    for (int i = 0; i < snapshot.getChildCount(index); ++i) {
+      checkForDuplicateClickableViews(snapshot, snapshot.getChild(index, i),
+          clickableRectToInfoMap, results);
     }
   }
 }
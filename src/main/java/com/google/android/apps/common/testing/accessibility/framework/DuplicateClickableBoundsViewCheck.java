@@ -16,15 +16,11 @@ package com.google.android.apps.common.testing.accessibility.framework;
 
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
 
-import android.graphics.Rect;
 import android.os.Build;
 import android.view.View;
-import android.view.ViewGroup;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Developers sometimes have containers marked clickable when they don't process click events.
@@ -35,45 +31,53 @@ public class DuplicateClickableBoundsViewCheck extends AccessibilityViewHierarch
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
-    List<AccessibilityViewCheckResult> results = new ArrayList<>(1);
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
+
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
     if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
-      results.add(new AccessibilityViewCheckResult(this.getClass(),
-          AccessibilityCheckResultType.NOT_RUN,
-          "This check only runs on Android 2.3.3 and above.",
-          root));
-      return results;
+      return new NotRunViewCheckVisitor(this.getClass(),
+          "This check only runs on Android 2.3.3 and above.");
     }
-    Map<Rect, View> clickableRectToViewMap = new HashMap<>();
 
-    checkForDuplicateClickableViews(root, clickableRectToViewMap, results);
-    return results;
-  }
+    final BoundsIndex boundsIndex = snapshot.getBoundsIndex();
+    /* The first clickable element found with each distinct bounds */
+    final int[] firstClickableInGroup = new int[boundsIndex.getBoundsGroupCount()];
+    Arrays.fill(firstClickableInGroup, ViewHierarchySnapshot.NO_INDEX);
+    /* Views below a view that isn't visible to the user are not checked */
+    final boolean[] skipped = new boolean[snapshot.size()];
 
-  private void checkForDuplicateClickableViews(View root, Map<Rect, View> clickableRectToViewMap,
-      List<AccessibilityViewCheckResult> results) {
-    if (!ViewAccessibilityUtils.isVisibleToUser(root)) {
-      return;
-    }
-    if (root.isClickable() && ViewAccessibilityUtils.isImportantForAccessibility(root)) {
-      Rect bounds = new Rect();
-      if (root.getGlobalVisibleRect(bounds)) {
-        if (clickableRectToViewMap.containsKey(bounds)) {
-          results.add(new AccessibilityViewCheckResult(this.getClass(),
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        int parent = snapshot.getParent(index);
+        skipped[index] = ((parent != ViewHierarchySnapshot.NO_INDEX) && skipped[parent])
+            || !snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER);
+        if (skipped[index] || !snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_CLICKABLE
+            | ViewHierarchySnapshot.FLAG_IMPORTANT_FOR_ACCESSIBILITY)) {
+          return;
+        }
+        int group = boundsIndex.getBoundsGroup(index);
+        if (group == ViewHierarchySnapshot.NO_INDEX) {
+          return;
+        }
+        if (firstClickableInGroup[group] != ViewHierarchySnapshot.NO_INDEX) {
+          results.add(new AccessibilityViewCheckResult(
+              DuplicateClickableBoundsViewCheck.this.getClass(),
               AccessibilityCheckResultType.ERROR,
               "Clickable view has same bounds as another clickable view (likely a descendent)",
-              clickableRectToViewMap.get(bounds)));
+              snapshot.getView(firstClickableInGroup[group])));
         } else {
-          clickableRectToViewMap.put(bounds, root);
+          firstClickableInGroup[group] = index;
         }
       }
-    }
-    if (!(root instanceof ViewGroup)) {
-      return;
-    }
-    ViewGroup viewGroup = (ViewGroup) root;
-    for (int i = 0; i < viewGroup.getChildCount(); ++i) {
-      View child = viewGroup.getChildAt(i);
-      checkForDuplicateClickableViews(child, clickableRectToViewMap, results);
-    }
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+    };
   }
 }
@@ -21,11 +21,10 @@ import android.text.TextUtils;
 import android.view.View;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * If two Views in a hierarchy have the same speakable text, that could be confusing for users. Two
@@ -37,19 +36,55 @@ public class DuplicateSpeakableTextViewHierarchyCheck extends AccessibilityViewH
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
-    List<AccessibilityViewCheckResult> results = new ArrayList<AccessibilityViewCheckResult>();
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
 
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
     if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
-      results.add(new AccessibilityViewCheckResult(this.getClass(),
-          AccessibilityCheckResultType.NOT_RUN, "This check only runs on Andorid 4.1 and above.",
-          root));
-      return results;
+      return new NotRunViewCheckVisitor(this.getClass(),
+          "This check only runs on Andorid 4.1 and above.");
     }
 
-    /* Find all text and the views that have that text */
-    Set<View> allViews = ViewAccessibilityUtils.getAllViewsInHierarchy(root);
-    Map<String, List<View>> textToViewMap = getSpeakableTextToViewMap(allViews);
+    return new AccessibilityViewCheckVisitor() {
+      /* Map from speakable text to all views with that speakable text, in traversal order */
+      private final Map<String, List<View>> textToViewMap = new LinkedHashMap<>();
+
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        View view = snapshot.getView(index);
+        String speakableText = snapshot.getSpeakableText(index).trim();
+        if (TextUtils.isEmpty(speakableText)) {
+          return;
+        }
+
+        if (!textToViewMap.containsKey(speakableText)) {
+          textToViewMap.put(speakableText, new ArrayList<View>());
+        }
+        textToViewMap.get(speakableText).add(view);
+      }
+
+      @Override
+      public void endHierarchy(ViewHierarchySnapshot snapshot,
+          List<AccessibilityViewCheckResult> results) {
+        reportDuplicatedText(snapshot.getRootView(), textToViewMap, results);
+      }
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+    };
+  }
 
+  /**
+   * @param root The root view of the hierarchy that was checked
+   * @param textToViewMap map from speakable text to all views with that speakable text
+   * @param results The list to which results are added
+   */
+  private void reportDuplicatedText(View root, Map<String, List<View>> textToViewMap,
+      List<AccessibilityViewCheckResult> results) {
     /* Deal with any duplicated text */
     for (String speakableText : textToViewMap.keySet()) {
       if (textToViewMap.get(speakableText).size() < 2) {
@@ -103,31 +138,6 @@ public class DuplicateSpeakableTextViewHierarchyCheck extends AccessibilityViewH
     if (textToViewMap.size() == 0) {
       results.add(new AccessibilityViewCheckResult(this.getClass(),
           AccessibilityCheckResultType.NOT_RUN, "No Views in hierarchy have speakable text", root));
-      return results;
-    }
-
-    return results;
-  }
-
-  /**
-   * @param allViews Set of views to index by their speakable text
-   * @return map from speakable text to all views with that speakable text
-   */
-  private Map<String, List<View>> getSpeakableTextToViewMap(Set<View> allViews) {
-    Map<String, List<View>> textToViewMap = new HashMap<String, List<View>>();
-
-    for (View view : allViews) {
-      String speakableText =
-          AccessibilityCheckUtils.getSpeakableTextForView(view).toString().trim();
-      if (TextUtils.isEmpty(speakableText)) {
-        continue;
-      }
-
-      if (!textToViewMap.containsKey(speakableText)) {
-        textToViewMap.put(speakableText, new ArrayList<View>());
-      }
-      textToViewMap.get(speakableText).add(view);
     }
-    return textToViewMap;
   }
 }
@@ -37,8 +37,18 @@ public class EditableContentDescInfoCheck extends AccessibilityInfoCheck {
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfo(AccessibilityNodeInfo info,
       Context context, Bundle metadata) {
+    return runCheck(info, new AccessibilityNodeInfoCompat(info));
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnInfo(int index,
+      InfoCheckEvaluationContext evaluationContext) {
+    return runCheck(evaluationContext.getInfo(index), evaluationContext.getCompatInfo(index));
+  }
+
+  private List<AccessibilityInfoCheckResult> runCheck(AccessibilityNodeInfo info,
+      AccessibilityNodeInfoCompat compatInfo) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<AccessibilityInfoCheckResult>(1);
-    AccessibilityNodeInfoCompat compatInfo = new AccessibilityNodeInfoCompat(info);
 
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
       if (info.isEditable()) {
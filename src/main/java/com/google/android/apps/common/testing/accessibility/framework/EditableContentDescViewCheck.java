@@ -30,6 +30,11 @@ import java.util.List;
  */
 public class EditableContentDescViewCheck extends AccessibilityViewCheck {
 
+  @Override
+  protected boolean isThreadSafe() {
+    return true;
+  }
+
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnView(View view) {
     List<AccessibilityViewCheckResult> results = new ArrayList<AccessibilityViewCheckResult>(1);
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the snapshot and per-element results of the last run of
+ * {@link ViewHierarchyTraverser#runChecksIncrementally}, so the next run over the same hierarchy
+ * only has to revisit the elements that changed.
+ * <p>
+ * An instance must only be used with one {@code View} hierarchy at a time, and is not thread-safe.
+ */
+public final class IncrementalCheckState {
+
+  private ViewHierarchySnapshot snapshot;
+  private final Map<Class<?>, ElementResults> resultsByCheck = new HashMap<>();
+
+  /**
+   * @return The snapshot captured by the last run, or {@code null} if there was none
+   */
+  public ViewHierarchySnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Forgets the last run, so the next run checks every element.
+   */
+  public void clear() {
+    snapshot = null;
+    resultsByCheck.clear();
+  }
+
+  void update(ViewHierarchySnapshot snapshot, Map<Class<?>, ElementResults> resultsByCheck) {
+    this.snapshot = snapshot;
+    this.resultsByCheck.clear();
+    this.resultsByCheck.putAll(resultsByCheck);
+  }
+
+  ElementResults getElementResults(Class<?> checkClass) {
+    return resultsByCheck.get(checkClass);
+  }
+
+  /**
+   * The results an element-local check reported for each element of one snapshot, stored flat with
+   * the results of element {@code i} at {@code [offsets[i], offsets[i + 1])}.
+   */
+  static final class ElementResults {
+    final List<AccessibilityViewCheckResult> results = new ArrayList<>();
+    final int[] offsets;
+
+    ElementResults(int size) {
+      offsets = new int[size + 1];
+    }
+
+    /**
+     * Adds copies of the results of element {@code index} to {@code destination}. Copies are
+     * returned because callers may modify results, for example when suppressing them.
+     */
+    void copyResults(int index, List<AccessibilityViewCheckResult> destination) {
+      for (int i = offsets[index]; i < offsets[index + 1]; ++i) {
+        destination.add(copy(results.get(i)));
+      }
+    }
+
+    static AccessibilityViewCheckResult copy(AccessibilityViewCheckResult result) {
+      return new AccessibilityViewCheckResult(result.getSourceCheckClass(), result.getType(),
+          result.getMessage(), result.getView());
+    }
+  }
+}
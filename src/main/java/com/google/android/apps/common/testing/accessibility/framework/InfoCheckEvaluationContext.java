@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * The state shared by every {@link AccessibilityInfoCheck} evaluating the nodes of one
+ * {@link AccessibilityNodeInfoSnapshot}.
+ * <p>
+ * Values that are the same for every node of a run, such as the display density, are read once
+ * when the context is created. Values that are needed per node, such as the
+ * {@link AccessibilityNodeInfoCompat} wrapping each node, are created the first time a check asks
+ * for them and handed to every later check that evaluates the same node.
+ * <p>
+ * A context is meant to be used on a single thread, and only while its snapshot has not been
+ * recycled.
+ */
+public final class InfoCheckEvaluationContext {
+
+  private final AccessibilityNodeInfoSnapshot snapshot;
+  private final Context context;
+  private final Bundle metadata;
+  private final float density;
+  private final AccessibilityNodeInfoCompat[] compatInfos;
+  private InfoSpeakableTextIndex speakableTexts;
+
+  /**
+   * @param snapshot The hierarchy being checked, which remains owned by the caller
+   * @param context The context of the service, or {@code null}
+   * @param metadata An optional {@link Bundle} that may contain check metadata defined by
+   *        {@link AccessibilityCheckMetadata}.
+   */
+  public InfoCheckEvaluationContext(AccessibilityNodeInfoSnapshot snapshot, Context context,
+      Bundle metadata) {
+    this.snapshot = snapshot;
+    this.context = context;
+    this.metadata = metadata;
+    density = (context != null) ? context.getResources().getDisplayMetrics().density : 0f;
+    compatInfos = new AccessibilityNodeInfoCompat[snapshot.size()];
+  }
+
+  /**
+   * @return The hierarchy being checked
+   */
+  public AccessibilityNodeInfoSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return The context of the service, or {@code null} if none was supplied
+   */
+  public Context getContext() {
+    return context;
+  }
+
+  /**
+   * @return The check metadata, or {@code null} if none was supplied
+   */
+  public Bundle getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return The logical density of the display, or {@code 0} if there is no context
+   */
+  public float getDensity() {
+    return density;
+  }
+
+  /**
+   * @param index The node index
+   * @return The node captured at {@code index}
+   */
+  public AccessibilityNodeInfo getInfo(int index) {
+    return snapshot.getInfo(index);
+  }
+
+  /**
+   * @param index The node index
+   * @return A compat wrapper around the node captured at {@code index}, shared by every check in
+   * this context. It must not be recycled.
+   */
+  public AccessibilityNodeInfoCompat getCompatInfo(int index) {
+    AccessibilityNodeInfoCompat compatInfo = compatInfos[index];
+    if (compatInfo == null) {
+      compatInfo = new AccessibilityNodeInfoCompat(snapshot.getInfo(index));
+      compatInfos[index] = compatInfo;
+    }
+    return compatInfo;
+  }
+
+  /**
+   * @return The speakable text of every node in the snapshot, computed the first time it is needed
+   */
+  InfoSpeakableTextIndex getSpeakableTextIndex() {
+    if (speakableTexts == null) {
+      speakableTexts = new InfoSpeakableTextIndex(snapshot);
+    }
+    return speakableTexts;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a group of {@link AccessibilityInfoHierarchyCheck}s over an {@link AccessibilityNodeInfo}
+ * hierarchy with a single pass over an {@link AccessibilityNodeInfoSnapshot}.
+ * <p>
+ * Every {@link AccessibilityInfoCheck} is handed each node of the snapshot in turn through
+ * {@link AccessibilityInfoCheck#runCheckOnInfo(int, InfoCheckEvaluationContext)}, with one
+ * {@link InfoCheckEvaluationContext} shared by all of them. Other checks are run through
+ * {@link AccessibilityInfoHierarchyCheck#runCheckOnSnapshot} as before. Results are grouped by
+ * check, in the iteration order of the supplied checks.
+ */
+public final class InfoHierarchyTraverser {
+
+  private InfoHierarchyTraverser() {}
+
+  /**
+   * Captures the hierarchy rooted at {@code root}, runs {@code checks} against it, and recycles
+   * the captured nodes before returning.
+   *
+   * @param checks The checks to run
+   * @param root The root of the {@link AccessibilityNodeInfo} hierarchy to check, which remains
+   *        owned by the caller
+   * @param context The context of the service.
+   * @param metadata An optional {@link Bundle} that may contain check metadata defined by
+   *        {@link AccessibilityCheckMetadata}.
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityInfoCheckResult> runChecks(
+      Iterable<? extends AccessibilityInfoHierarchyCheck> checks, AccessibilityNodeInfo root,
+      Context context, Bundle metadata) {
+    AccessibilityNodeInfoSnapshot snapshot = AccessibilityNodeInfoSnapshot.capture(root);
+    try {
+      return runChecks(checks, snapshot, context, metadata);
+    } finally {
+      snapshot.recycle();
+    }
+  }
+
+  /**
+   * @param checks The checks to run
+   * @param snapshot A snapshot of the hierarchy to check, which remains owned by the caller
+   * @param context The context of the service.
+   * @param metadata An optional {@link Bundle} that may contain check metadata defined by
+   *        {@link AccessibilityCheckMetadata}.
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityInfoCheckResult> runChecks(
+      Iterable<? extends AccessibilityInfoHierarchyCheck> checks,
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
+    InfoCheckEvaluationContext evaluationContext =
+        new InfoCheckEvaluationContext(snapshot, context, metadata);
+    List<List<AccessibilityInfoCheckResult>> resultsByCheck = new ArrayList<>();
+    List<AccessibilityInfoCheck> infoChecks = new ArrayList<>();
+    List<List<AccessibilityInfoCheckResult>> infoCheckResults = new ArrayList<>();
+    for (AccessibilityInfoHierarchyCheck check : checks) {
+      if (check instanceof AccessibilityInfoCheck) {
+        List<AccessibilityInfoCheckResult> checkResults = new ArrayList<>();
+        infoChecks.add((AccessibilityInfoCheck) check);
+        infoCheckResults.add(checkResults);
+        resultsByCheck.add(checkResults);
+      } else {
+        resultsByCheck.add(check.runCheckOnSnapshot(snapshot, context, metadata));
+      }
+    }
+
+    if (!infoChecks.isEmpty()) {
+      for (int i = 0; i < snapshot.size(); ++i) {
+        for (int j = 0; j < infoChecks.size(); ++j) {
+          infoCheckResults.get(j).addAll(infoChecks.get(j).runCheckOnInfo(i, evaluationContext));
+        }
+      }
+    }
+
+    List<AccessibilityInfoCheckResult> results = new ArrayList<>();
+    for (List<AccessibilityInfoCheckResult> checkResults : resultsByCheck) {
+      results.addAll(checkResults);
+    }
+    return results;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.text.TextUtils;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
+
+/**
+ * The speakable text of every node in an {@link AccessibilityNodeInfoSnapshot}, as computed by
+ * {@link AccessibilityCheckUtils#getSpeakableTextForInfo(AccessibilityNodeInfo)}, built in a
+ * single bottom-up pass.
+ * <p>
+ * Snapshot indices are in breadth-first order, so every node follows its parent and a reverse
+ * sweep finds the text of all children already computed. Each node's own text is read once,
+ * rather than once for every ancestor whose text includes it, and {@code labeledBy} is taken from
+ * the snapshot.
+ */
+final class InfoSpeakableTextIndex {
+
+  /* States of a node's text; zero, the default, means not yet visited */
+  private static final byte IN_PROGRESS = 1;
+  private static final byte DONE = 2;
+
+  private final AccessibilityNodeInfoSnapshot snapshot;
+  private final CharSequence[] nodeTexts;
+  private final boolean[] includedInParent;
+  private final boolean[] hasContentDescription;
+  private final CharSequence[] speakableTexts;
+  private final byte[] states;
+
+  /**
+   * @param snapshot The hierarchy to index, which remains owned by the caller
+   */
+  InfoSpeakableTextIndex(AccessibilityNodeInfoSnapshot snapshot) {
+    this.snapshot = snapshot;
+    int size = snapshot.size();
+    nodeTexts = new CharSequence[size];
+    includedInParent = new boolean[size];
+    hasContentDescription = new boolean[size];
+    speakableTexts = new CharSequence[size];
+    states = new byte[size];
+
+    for (int i = 0; i < size; ++i) {
+      AccessibilityNodeInfo info = snapshot.getInfo(i);
+      AccessibilityNodeInfoCompat node = new AccessibilityNodeInfoCompat(info);
+      nodeTexts[i] = AccessibilityNodeInfoUtils.getNodeText(node);
+      includedInParent[i] = AccessibilityNodeInfoUtils.isVisibleOrLegacy(node)
+          && !AccessibilityNodeInfoUtils.isActionableForAccessibility(node);
+      hasContentDescription[i] = !TextUtils.isEmpty(info.getContentDescription());
+      if (snapshot.getLabeledBy(i) == AccessibilityNodeInfoSnapshot.OUTSIDE_INDEX) {
+        /* The label is outside the snapshot, so fall back to a separate traversal */
+        speakableTexts[i] = AccessibilityCheckUtils.getSpeakableTextForInfo(info);
+        states[i] = DONE;
+      }
+    }
+
+    for (int i = size - 1; i >= 0; --i) {
+      compute(i);
+    }
+  }
+
+  /**
+   * @return The speakable text of the node at {@code index}, or {@code null} if it is labeled by
+   * a loop of {@code labeledBy} relationships
+   */
+  CharSequence getSpeakableText(int index) {
+    return speakableTexts[index];
+  }
+
+  private CharSequence compute(int index) {
+    if (states[index] == DONE) {
+      return speakableTexts[index];
+    }
+    if (states[index] == IN_PROGRESS) {
+      /* The chain of labeledBy is a loop */
+      return null;
+    }
+    states[index] = IN_PROGRESS;
+    CharSequence speakableText;
+    int labelIndex = snapshot.getLabeledBy(index);
+    if (labelIndex != AccessibilityNodeInfoSnapshot.NO_INDEX) {
+      speakableText = compute(labelIndex);
+    } else {
+      StringBuilder returnStringBuilder =
+          new StringBuilder((nodeTexts[index] == null) ? "" : nodeTexts[index]);
+      /* If this node has a contentDescription, it overrides anything in children */
+      if (!hasContentDescription[index]) {
+        for (int i = 0; i < snapshot.getChildCount(index); ++i) {
+          int child = snapshot.getChild(index, i);
+          CharSequence childText = compute(child);
+          if (includedInParent[child]) {
+            returnStringBuilder.append(childText);
+          }
+        }
+      }
+      speakableText = returnStringBuilder;
+    }
+    speakableTexts[index] = speakableText;
+    states[index] = DONE;
+    return speakableText;
+  }
+}
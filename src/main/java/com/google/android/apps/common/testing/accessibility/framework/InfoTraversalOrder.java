@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.content.Context;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+
+import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
+import com.googlecode.eyesfree.utils.NodeFilter;
+import com.googlecode.eyesfree.utils.NodeFocusFinder;
+
+import java.util.Arrays;
+
+/**
+ * The order in which a screen reader moves through the nodes of an
+ * {@link AccessibilityNodeInfoSnapshot}, computed once so that the next and previous node of any
+ * node are found in constant time.
+ * <p>
+ * The order is the one {@link NodeFocusFinder#focusSearch} follows one step at a time: a preorder
+ * walk from the root of the snapshot that skips nodes which are not visible to the user, along with
+ * their descendants. The reverse order is the same walk backwards. Nodes that the walk does not
+ * reach have no position.
+ */
+public final class InfoTraversalOrder {
+
+  /** Returned for nodes without a position, and past either end of the order */
+  public static final int NO_INDEX = AccessibilityNodeInfoSnapshot.NO_INDEX;
+
+  private final AccessibilityNodeInfoSnapshot snapshot;
+
+  /* Snapshot index at each position */
+  private final int[] order;
+
+  /* Position of each snapshot index, or NO_INDEX */
+  private final int[] positions;
+
+  /**
+   * @param snapshot The hierarchy to order, which must not be recycled while this is in use
+   */
+  public InfoTraversalOrder(AccessibilityNodeInfoSnapshot snapshot) {
+    this.snapshot = snapshot;
+    int size = snapshot.size();
+    int[] reached = new int[size];
+    int reachedCount = 0;
+    positions = new int[size];
+    Arrays.fill(positions, NO_INDEX);
+
+    /* Children are pushed last to first so they are popped in order */
+    int[] stack = new int[size];
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+    while (stackSize > 0) {
+      int index = stack[--stackSize];
+      positions[index] = reachedCount;
+      reached[reachedCount++] = index;
+      for (int i = snapshot.getChildCount(index) - 1; i >= 0; --i) {
+        int child = snapshot.getChild(index, i);
+        if (AccessibilityNodeInfoUtils.isVisibleOrLegacy(
+            new AccessibilityNodeInfoCompat(snapshot.getInfo(child)))) {
+          stack[stackSize++] = child;
+        }
+      }
+    }
+    order = Arrays.copyOf(reached, reachedCount);
+  }
+
+  /**
+   * @return The snapshot this order was computed for
+   */
+  public AccessibilityNodeInfoSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return The number of nodes in the order
+   */
+  public int size() {
+    return order.length;
+  }
+
+  /**
+   * @param position A position in the order, from 0 to {@link #size()} - 1
+   * @return The snapshot index of the node at {@code position}
+   */
+  public int get(int position) {
+    return order[position];
+  }
+
+  /**
+   * @param index A snapshot index
+   * @return The position of {@code index} in the order, or {@link #NO_INDEX} if it is not reached
+   */
+  public int getPosition(int index) {
+    return positions[index];
+  }
+
+  /**
+   * @param index A snapshot index
+   * @return The snapshot index of the node after {@code index}, or {@link #NO_INDEX} if there is
+   * none or {@code index} has no position
+   */
+  public int getNext(int index) {
+    int position = positions[index];
+    return ((position == NO_INDEX) || (position + 1 >= order.length))
+        ? NO_INDEX : order[position + 1];
+  }
+
+  /**
+   * @param index A snapshot index
+   * @return The snapshot index of the node before {@code index}, or {@link #NO_INDEX} if there is
+   * none or {@code index} has no position
+   */
+  public int getPrevious(int index) {
+    int position = positions[index];
+    return (position <= 0) ? NO_INDEX : order[position - 1];
+  }
+
+  /**
+   * Moves through the order from a node until a node matching the specified filter is reached,
+   * like {@link AccessibilityNodeInfoUtils#searchFromInOrderTraversal} but without fetching nodes.
+   *
+   * @param context The parent context.
+   * @param index The snapshot index to start from, which is not itself tested
+   * @param filter The filter to satisfy.
+   * @param direction {@link NodeFocusFinder#SEARCH_FORWARD} or
+   *        {@link NodeFocusFinder#SEARCH_BACKWARD}
+   * @return The snapshot index of the first node that satisfies the filter, or {@link #NO_INDEX}
+   */
+  public int search(Context context, int index, NodeFilter filter, int direction) {
+    int position = positions[index];
+    if ((position == NO_INDEX)
+        || ((direction != NodeFocusFinder.SEARCH_FORWARD)
+            && (direction != NodeFocusFinder.SEARCH_BACKWARD))) {
+      return NO_INDEX;
+    }
+    for (position += direction; (position >= 0) && (position < order.length);
+        position += direction) {
+      AccessibilityNodeInfoCompat node =
+          new AccessibilityNodeInfoCompat(snapshot.getInfo(order[position]));
+      if (filter.accept(context, node)) {
+        return order[position];
+      }
+    }
+    return NO_INDEX;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.os.Build;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves {@code labelFor} relationships for every element of a {@link ViewHierarchySnapshot} in
+ * a single pass.
+ * <p>
+ * {@link #getLabeledBy(int)} matches {@link ViewAccessibilityUtils#getLabelForView(View)}: since
+ * IDs aren't unique, the labeling view is the first one found by searching the element's subtree,
+ * then each ancestor's subtree, in preorder. In a preorder snapshot that is the first labeling
+ * element inside the subtree of the deepest ancestor that contains one.
+ */
+final class LabelForIndex {
+
+  private final Map<Integer, int[]> labelersById = new HashMap<>();
+  private final int[] labeledBy;
+
+  /* Most views have no labelFor, so they are only noted rather than listed */
+  private final boolean hasNoIdLabeler;
+
+  LabelForIndex(ViewHierarchySnapshot snapshot) {
+    int size = snapshot.size();
+    /* Adding in index order leaves each list of labelers sorted in preorder */
+    Map<Integer, List<Integer>> labelerLists = new HashMap<>();
+    boolean noIdLabeler = false;
+    for (int i = 0; i < size; ++i) {
+      int labelFor = snapshot.getLabelFor(i);
+      if (labelFor == View.NO_ID) {
+        noIdLabeler = true;
+        continue;
+      }
+      List<Integer> labelers = labelerLists.get(labelFor);
+      if (labelers == null) {
+        labelers = new ArrayList<>();
+        labelerLists.put(labelFor, labelers);
+      }
+      labelers.add(i);
+    }
+    for (Map.Entry<Integer, List<Integer>> entry : labelerLists.entrySet()) {
+      List<Integer> labelerList = entry.getValue();
+      int[] labelers = new int[labelerList.size()];
+      for (int i = 0; i < labelers.length; ++i) {
+        labelers[i] = labelerList.get(i);
+      }
+      labelersById.put(entry.getKey(), labelers);
+    }
+    hasNoIdLabeler = noIdLabeler;
+
+    labeledBy = new int[size];
+    Arrays.fill(labeledBy, ViewHierarchySnapshot.NO_INDEX);
+    /* Earlier versions don't support labelFor */
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      return;
+    }
+    for (int i = 0; i < size; ++i) {
+      int id = snapshot.getId(i);
+      int[] labelers = (id != View.NO_ID) ? labelersById.get(id) : null;
+      if (labelers != null) {
+        labeledBy[i] = findNearestLabeler(snapshot, i, labelers);
+      }
+    }
+  }
+
+  private static int findNearestLabeler(ViewHierarchySnapshot snapshot, int index,
+      int[] labelers) {
+    for (int ancestor = index; ancestor != ViewHierarchySnapshot.NO_INDEX;
+        ancestor = snapshot.getParent(ancestor)) {
+      int position = Arrays.binarySearch(labelers, ancestor);
+      if (position < 0) {
+        position = -position - 1;
+      }
+      if ((position < labelers.length)
+          && (labelers[position] < snapshot.getSubtreeEnd(ancestor))) {
+        return labelers[position];
+      }
+    }
+    return ViewHierarchySnapshot.NO_INDEX;
+  }
+
+  /**
+   * @return The index of the element that labels {@code index}, or
+   * {@link ViewHierarchySnapshot#NO_INDEX} if there is none
+   */
+  int getLabeledBy(int index) {
+    return labeledBy[index];
+  }
+
+  /**
+   * @return {@code true} if any element has {@code labelFor} set to {@code id}
+   */
+  boolean isLabelForTarget(int id) {
+    return (id == View.NO_ID) ? hasNoIdLabeler : labelersById.containsKey(id);
+  }
+}
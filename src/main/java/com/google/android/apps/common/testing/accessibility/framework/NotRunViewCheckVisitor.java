@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+
+import java.util.List;
+
+/**
+ * Visitor for a check that can't run on the current device or configuration. Ignores every view
+ * and reports a single {@code NOT_RUN} result on the root of the hierarchy.
+ */
+class NotRunViewCheckVisitor extends AccessibilityViewCheckVisitor {
+  private final Class<? extends AccessibilityCheck> checkClass;
+  private final String message;
+
+  NotRunViewCheckVisitor(Class<? extends AccessibilityCheck> checkClass, String message) {
+    this.checkClass = checkClass;
+    this.message = message;
+  }
+
+  @Override
+  public void visitElement(ViewHierarchySnapshot snapshot, int index,
+      List<AccessibilityViewCheckResult> results) {
+  }
+
+  @Override
+  public void endHierarchy(ViewHierarchySnapshot snapshot,
+      List<AccessibilityViewCheckResult> results) {
+    results.add(new AccessibilityViewCheckResult(checkClass, AccessibilityCheckResultType.NOT_RUN,
+        message, snapshot.getRootView()));
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+}
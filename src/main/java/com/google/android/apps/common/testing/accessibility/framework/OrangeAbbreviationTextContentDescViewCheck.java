@@ -24,9 +24,7 @@ import com.google.android.apps.common.testing.accessibility.framework.Accessibil
 import com.google.android.apps.common.testing.accessibility.framework.database.AbbreviationDatabase;
 import com.google.android.apps.common.testing.accessibility.framework.database.entity.AbbreviationFr;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Check to ensure that a TextView with an abbreviation has a contentDescription
@@ -35,43 +33,65 @@ public class OrangeAbbreviationTextContentDescViewCheck extends AccessibilityVie
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
 
-    List<AccessibilityViewCheckResult> results  = new ArrayList<>(1);
-    Set<View>                          allViews = ViewAccessibilityUtils.getAllViewsInHierarchy(root);
-    AbbreviationDatabase database = Room.databaseBuilder(root.getContext(), AbbreviationDatabase.class, "abbreviation.db").allowMainThreadQueries().build();
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    AbbreviationDatabase database = Room.databaseBuilder(snapshot.getRootView().getContext(), AbbreviationDatabase.class, "abbreviation.db").allowMainThreadQueries().build();
 
     List<AbbreviationFr> abbreviations = database.abbreviationFrDao().getAll();
-    if(abbreviations.isEmpty())
+    if(abbreviations.isEmpty()) {
       database.abbreviationFrDao().insertAll(new AbbreviationFr("mr", "monsieur"), new AbbreviationFr("mme", "madame"));
+      abbreviations = database.abbreviationFrDao().getAll();
+    }
+    final List<AbbreviationFr> knownAbbreviations = abbreviations;
 
-    for(View view0 : allViews) {
-      if (view0 instanceof TextView) {
-        TextView textView = (TextView) view0;
-        //If the text is not editable
-        if ((textView.getEditableText() == null)) {
-          if(!TextUtils.isEmpty(textView.getText())) {
-            String text = textView.getText().toString();
-            String contentDescription = TextUtils.isEmpty(textView.getContentDescription())? "": textView.getContentDescription().toString();
-            for(AbbreviationFr abbreviation : database.abbreviationFrDao().getAll()) {
-              if((text.contains(abbreviation.getAbbreviation()+" ") || text.contains(abbreviation.getAbbreviation()+".")) && TextUtils.isEmpty(textView.getContentDescription())
-                      || (contentDescription.contains(abbreviation.getAbbreviation()+" ") || contentDescription.contains(abbreviation.getAbbreviation()+"."))) {
-                results.add(new AccessibilityViewCheckResult(this.getClass(),
-                        AccessibilityCheckResultType.ERROR,
-                        "TextView with abbreviation must have a content description without abbreviation.",
-                        textView));
-                break;
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        View view0 = snapshot.getView(index);
+        if (view0 instanceof TextView) {
+          TextView textView = (TextView) view0;
+          //If the text is not editable
+          if ((textView.getEditableText() == null)) {
+            if(!TextUtils.isEmpty(textView.getText())) {
+              String text = textView.getText().toString();
+              String contentDescription = TextUtils.isEmpty(textView.getContentDescription())? "": textView.getContentDescription().toString();
+              for(AbbreviationFr abbreviation : knownAbbreviations) {
+                if((text.contains(abbreviation.getAbbreviation()+" ") || text.contains(abbreviation.getAbbreviation()+".")) && TextUtils.isEmpty(textView.getContentDescription())
+                        || (contentDescription.contains(abbreviation.getAbbreviation()+" ") || contentDescription.contains(abbreviation.getAbbreviation()+"."))) {
+                  results.add(new AccessibilityViewCheckResult(
+                          OrangeAbbreviationTextContentDescViewCheck.this.getClass(),
+                          AccessibilityCheckResultType.ERROR,
+                          "TextView with abbreviation must have a content description without abbreviation.",
+                          textView));
+                  break;
+                }
               }
             }
+          } else {
+            results.add(new AccessibilityViewCheckResult(
+                    OrangeAbbreviationTextContentDescViewCheck.this.getClass(),
+                    AccessibilityCheckResultType.NOT_RUN, "TextView must not be editable", textView));
           }
         } else {
-          results.add(new AccessibilityViewCheckResult(this.getClass(),
-                  AccessibilityCheckResultType.NOT_RUN, "TextView must not be editable", textView));
+          results.add(new AccessibilityViewCheckResult(
+                  OrangeAbbreviationTextContentDescViewCheck.this.getClass(),
+                  AccessibilityCheckResultType.NOT_RUN, "View must be a TextView", view0));
         }
-      } else {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-                AccessibilityCheckResultType.NOT_RUN, "View must be a TextView", view0));
       }
-    }
-    return results;
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+
+      @Override
+      public boolean isElementLocal() {
+        return true;
+      }
+    };
   }
 }
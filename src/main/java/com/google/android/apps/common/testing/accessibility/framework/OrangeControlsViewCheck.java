@@ -25,13 +25,11 @@ import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.Spinner;
-import android.widget.TextView;
 import android.widget.TimePicker;
 import android.widget.ToggleButton;
 
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
 
-import java.util.ArrayList;
 import java.util.List;
 
 
@@ -42,56 +40,73 @@ public class OrangeControlsViewCheck extends AccessibilityViewHierarchyCheck {
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
 
-    List<AccessibilityViewCheckResult> results  = new ArrayList<AccessibilityViewCheckResult>(1);
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    final LabelForIndex labelForIndex = snapshot.getLabelForIndex();
 
-    for(View view : ViewAccessibilityUtils.getAllViewsInHierarchy(root)) {
-      if(view instanceof Button
-              || view instanceof Button
-              || view instanceof EditText
-              || view instanceof AutoCompleteTextView
-              || view instanceof CheckBox
-              || view instanceof RadioButton
-              || view instanceof ToggleButton
-              || view instanceof DatePicker
-              || view instanceof TimePicker
-              || view instanceof Spinner
-              || view instanceof RadioGroup) {
-        
-          if(view instanceof TextView) {
-            if (ViewAccessibilityUtils.isVisibleToUser(view) && !ViewAccessibilityUtils.hasText(view)) {
-              results.add(new AccessibilityViewCheckResult(this.getClass(),
-                      AccessibilityCheckResultType.ERROR,
-                      "Controls must have a text or a content description.",
-                      view));
-            }
-          } else {
-            boolean hasAssociatedView = false;
-            for(View viewIndex : ViewAccessibilityUtils.getAllViewsInHierarchy(root)) {
-              if (viewIndex.getLabelFor() == view.getId()) {
-                hasAssociatedView = true;
-                break;
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        View view = snapshot.getView(index);
+        if(view instanceof Button
+                || view instanceof Button
+                || view instanceof EditText
+                || view instanceof AutoCompleteTextView
+                || view instanceof CheckBox
+                || view instanceof RadioButton
+                || view instanceof ToggleButton
+                || view instanceof DatePicker
+                || view instanceof TimePicker
+                || view instanceof Spinner
+                || view instanceof RadioGroup) {
+
+            boolean isVisibleWithoutText =
+                snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER)
+                    && !snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_HAS_TEXT);
+            if(snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_TEXT_VIEW)) {
+              if (isVisibleWithoutText) {
+                results.add(new AccessibilityViewCheckResult(OrangeControlsViewCheck.this.getClass(),
+                        AccessibilityCheckResultType.ERROR,
+                        "Controls must have a text or a content description.",
+                        view));
+              }
+            } else {
+              boolean hasAssociatedView = labelForIndex.isLabelForTarget(snapshot.getId(index));
+              if (isVisibleWithoutText && !hasAssociatedView) {
+                results.add(new AccessibilityViewCheckResult(OrangeControlsViewCheck.this.getClass(),
+                        AccessibilityCheckResultType.ERROR,
+                        "Controls must have a content description or an associated view with 'labelFor' attribute.",
+                        view));
               }
             }
-            if (ViewAccessibilityUtils.isVisibleToUser(view) && !ViewAccessibilityUtils.hasText(view) && !hasAssociatedView) {
-              results.add(new AccessibilityViewCheckResult(this.getClass(),
+            if(ViewAccessibilityUtils.shouldFocusView(view,
+                    snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER))
+                && !snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_FOCUSABLE)) {
+              results.add(new AccessibilityViewCheckResult(OrangeControlsViewCheck.this.getClass(),
                       AccessibilityCheckResultType.ERROR,
-                      "Controls must have a content description or an associated view with 'labelFor' attribute.",
+                      "Controls must be focusable.",
                       view));
             }
-          }
-          if(ViewAccessibilityUtils.shouldFocusView(view) && !view.isFocusable()) {
-            results.add(new AccessibilityViewCheckResult(this.getClass(),
-                    AccessibilityCheckResultType.ERROR,
-                    "Controls must be focusable.",
-                    view));
-          }
+        }
+        else {
+          results.add(new AccessibilityViewCheckResult(OrangeControlsViewCheck.this.getClass(),
+                  AccessibilityCheckResultType.NOT_RUN, "View must be a control", view));
+        }
       }
-      else {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-                AccessibilityCheckResultType.NOT_RUN, "View must be a control", view));
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+
+      @Override
+      public boolean isElementLocal() {
+        return true;
       }
-    }
-    return results;
+    };
   }
 }
@@ -18,10 +18,8 @@ package com.google.android.apps.common.testing.accessibility.framework;
 
 import android.text.TextUtils;
 import android.view.View;
-import android.widget.TextView;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
 
-import java.util.ArrayList;
 import java.util.List;
 
 
@@ -32,44 +30,58 @@ public class OrangeEditableContentDescViewCheck extends AccessibilityViewHierarc
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
 
-    List<AccessibilityViewCheckResult> results  = new ArrayList<AccessibilityViewCheckResult>(1);
-
-    for(View view0 : ViewAccessibilityUtils.getAllViewsInHierarchy(root)) {
-      if (view0 instanceof TextView) {
-        TextView textView = (TextView) view0;
-        //If the text is not editable, null is returned.
-        if ((textView.getEditableText() != null)) {
-          if (!TextUtils.isEmpty(textView.getContentDescription())) {
-            results.add(new AccessibilityViewCheckResult(this.getClass(),
-                    AccessibilityCheckResultType.ERROR,
-                    "Editable TextView should not have a contentDescription.", textView));
-          }
-          //check if a hint or an associated view with labelFor attribute exists
-          boolean hasHint           = !TextUtils.isEmpty(textView.getHint());
-          boolean hasAssociatedView = false;
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    final LabelForIndex labelForIndex = snapshot.getLabelForIndex();
 
-          for(View view1 : ViewAccessibilityUtils.getAllViewsInHierarchy(root)) {
-            if(view1.getLabelFor()==textView.getId()) {
-              hasAssociatedView = true;
-              break;
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        View view0 = snapshot.getView(index);
+        if (snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_TEXT_VIEW)) {
+          //If the text is not editable, null is returned.
+          if (snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_EDITABLE)) {
+            if (!TextUtils.isEmpty(snapshot.getContentDescription(index))) {
+              results.add(new AccessibilityViewCheckResult(
+                      OrangeEditableContentDescViewCheck.this.getClass(),
+                      AccessibilityCheckResultType.ERROR,
+                      "Editable TextView should not have a contentDescription.", view0));
             }
-          }
-          if((hasHint && hasAssociatedView) || (!hasHint && !hasAssociatedView)) {
-            results.add(new AccessibilityViewCheckResult(this.getClass(),
-                    AccessibilityCheckResultType.ERROR,
-                    "Editable TextView must have either a hint, either an associated view with labelFor attribute.",
-                    textView));
+            //check if a hint or an associated view with labelFor attribute exists
+            boolean hasHint           = !TextUtils.isEmpty(snapshot.getHint(index));
+            boolean hasAssociatedView = labelForIndex.isLabelForTarget(snapshot.getId(index));
+            if((hasHint && hasAssociatedView) || (!hasHint && !hasAssociatedView)) {
+              results.add(new AccessibilityViewCheckResult(
+                      OrangeEditableContentDescViewCheck.this.getClass(),
+                      AccessibilityCheckResultType.ERROR,
+                      "Editable TextView must have either a hint, either an associated view with labelFor attribute.",
+                      view0));
+            }
+          } else {
+            results.add(new AccessibilityViewCheckResult(
+                    OrangeEditableContentDescViewCheck.this.getClass(),
+                    AccessibilityCheckResultType.NOT_RUN, "TextView must be editable", view0));
           }
         } else {
-          results.add(new AccessibilityViewCheckResult(this.getClass(),
-                  AccessibilityCheckResultType.NOT_RUN, "TextView must be editable", textView));
+          results.add(new AccessibilityViewCheckResult(
+                  OrangeEditableContentDescViewCheck.this.getClass(),
+                  AccessibilityCheckResultType.NOT_RUN, "View must be a TextView", view0));
         }
-      } else {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-                AccessibilityCheckResultType.NOT_RUN, "View must be a TextView", view0));
       }
-    }
-    return results;
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+
+      @Override
+      public boolean isElementLocal() {
+        return true;
+      }
+    };
   }
 }
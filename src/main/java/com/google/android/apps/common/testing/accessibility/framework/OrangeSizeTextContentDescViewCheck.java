@@ -20,9 +20,7 @@ import android.view.View;
 import android.widget.TextView;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Check to ensure that a TextView font size is 14sp min
@@ -31,23 +29,40 @@ public class OrangeSizeTextContentDescViewCheck extends AccessibilityViewHierarc
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
 
-    List<AccessibilityViewCheckResult> results  = new ArrayList<AccessibilityViewCheckResult>(1);
-    Set<View>                          allViews = ViewAccessibilityUtils.getAllViewsInHierarchy(root);
-
-    for(View view : allViews) {
-      if (view instanceof TextView) {
-        TextView textView = (TextView) view;
-        if (textView.getTextSize()<14) {
-            results.add(new AccessibilityViewCheckResult(this.getClass(),
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        View view = snapshot.getView(index);
+        if (view instanceof TextView) {
+          TextView textView = (TextView) view;
+          if (textView.getTextSize()<14) {
+            results.add(new AccessibilityViewCheckResult(
+                    OrangeSizeTextContentDescViewCheck.this.getClass(),
                     AccessibilityCheckResultType.WARNING,
                     "Text size must be at least 14sp.", textView));
           }
-      } else {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-                AccessibilityCheckResultType.NOT_RUN, "View must be a TextView", view));
+        } else {
+          results.add(new AccessibilityViewCheckResult(
+                  OrangeSizeTextContentDescViewCheck.this.getClass(),
+                  AccessibilityCheckResultType.NOT_RUN, "View must be a TextView", view));
+        }
+      }
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+
+      @Override
+      public boolean isElementLocal() {
+        return true;
       }
-    }
-    return results;
+    };
   }
 }
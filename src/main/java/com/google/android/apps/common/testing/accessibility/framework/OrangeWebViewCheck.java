@@ -22,9 +22,7 @@ import android.webkit.WebSettings;
 import android.webkit.WebView;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 
 /**
@@ -35,25 +33,35 @@ public class OrangeWebViewCheck extends AccessibilityViewHierarchyCheck {
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
 
-    List<AccessibilityViewCheckResult> results  = new ArrayList<AccessibilityViewCheckResult>(1);
-
-    Set<View> viewsToCheck = ViewAccessibilityUtils.getAllViewsInHierarchy(root);
-
-    for (View view : viewsToCheck) {
-      if (view instanceof WebView) {
-        WebView webView = (WebView) view;
-        WebSettings webSettings = webView.getSettings();
-        if (webSettings.getJavaScriptEnabled()) {
-          results.add(new AccessibilityViewCheckResult(this.getClass(),
-                  AccessibilityCheckResultType.ERROR,
-                  "WebView must have the JavaScrit setting enabled.", webView));
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        View view = snapshot.getView(index);
+        if (view instanceof WebView) {
+          WebView webView = (WebView) view;
+          WebSettings webSettings = webView.getSettings();
+          if (webSettings.getJavaScriptEnabled()) {
+            results.add(new AccessibilityViewCheckResult(OrangeWebViewCheck.this.getClass(),
+                    AccessibilityCheckResultType.ERROR,
+                    "WebView must have the JavaScrit setting enabled.", webView));
+          }
+        } else {
+          results.add(new AccessibilityViewCheckResult(OrangeWebViewCheck.this.getClass(),
+                  AccessibilityCheckResultType.NOT_RUN, "View must be a WebView", view));
         }
-      } else {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-                AccessibilityCheckResultType.NOT_RUN, "View must be a WebView", view));
       }
-    }
-    return results;
+
+      /* WebView methods must be called on the thread that owns the WebView */
+      @Override
+      public boolean isThreadSafe() {
+        return false;
+      }
+    };
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+
+import android.view.View;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Touch targets that overlap make it hard to hit the intended one, and a target that is covered
+ * entirely by a target drawn above it can't be touched at all. This check reports clickable views
+ * whose visible bounds intersect those of another clickable view, other than their own ancestors
+ * and descendants, which are nested rather than overlapping.
+ * <p>
+ * A view is assumed to be drawn above every view that precedes it in preorder, which ignores
+ * elevation and custom drawing order.
+ */
+public class OverlappingTouchTargetViewCheck extends AccessibilityViewHierarchyCheck {
+
+  private static final int TOUCH_TARGET_FLAGS =
+      ViewHierarchySnapshot.FLAG_CLICKABLE | ViewHierarchySnapshot.FLAG_LONG_CLICKABLE;
+
+  @Override
+  public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
+
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
+    final BoundsIndex boundsIndex = snapshot.getBoundsIndex();
+
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        if (!isTouchTarget(snapshot, index) || !boundsIndex.isIndexed(index)) {
+          return;
+        }
+
+        /* Each pair is considered once, from the element that is drawn first */
+        int overlapCount = 0;
+        int coveringElement = ViewHierarchySnapshot.NO_INDEX;
+        for (int other : boundsIndex.findIntersecting(index)) {
+          if ((other <= index) || snapshot.isInSubtree(index, other)
+              || !isTouchTarget(snapshot, other)) {
+            continue;
+          }
+          overlapCount++;
+          if ((coveringElement == ViewHierarchySnapshot.NO_INDEX)
+              && covers(snapshot, other, index)) {
+            coveringElement = other;
+          }
+        }
+
+        if (coveringElement != ViewHierarchySnapshot.NO_INDEX) {
+          results.add(new AccessibilityViewCheckResult(
+              OverlappingTouchTargetViewCheck.this.getClass(),
+              AccessibilityCheckResultType.ERROR,
+              "Clickable view is covered entirely by another clickable view drawn above it",
+              snapshot.getView(index)));
+        } else if (overlapCount > 0) {
+          results.add(new AccessibilityViewCheckResult(
+              OverlappingTouchTargetViewCheck.this.getClass(),
+              AccessibilityCheckResultType.WARNING,
+              String.format(Locale.US,
+                  "Clickable view's touch target overlaps that of %d other clickable view(s)",
+                  overlapCount),
+              snapshot.getView(index)));
+        }
+      }
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
+      }
+    };
+  }
+
+  private static boolean isTouchTarget(ViewHierarchySnapshot snapshot, int index) {
+    return ((snapshot.getFlags(index) & TOUCH_TARGET_FLAGS) != 0)
+        && snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER);
+  }
+
+  /**
+   * @return {@code true} if the bounds of {@code outer} contain those of {@code inner}
+   */
+  private static boolean covers(ViewHierarchySnapshot snapshot, int outer, int inner) {
+    return (snapshot.getLeft(outer) <= snapshot.getLeft(inner))
+        && (snapshot.getTop(outer) <= snapshot.getTop(inner))
+        && (snapshot.getRight(outer) >= snapshot.getRight(inner))
+        && (snapshot.getBottom(outer) >= snapshot.getBottom(inner));
+  }
+}
@@ -18,7 +18,6 @@ import com.google.android.apps.common.testing.accessibility.framework.Accessibil
 
 import android.content.Context;
 import android.os.Bundle;
-import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.text.TextUtils;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.Button;
@@ -41,17 +40,23 @@ public class RedundantContentDescInfoCheck extends AccessibilityInfoHierarchyChe
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfoHierarchy(AccessibilityNodeInfo root,
       Context context, Bundle metadata) {
+    return runCheckOnCapturedHierarchy(root, context, metadata);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnSnapshot(
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<AccessibilityInfoCheckResult>();
     // TODO(sjrush): This check needs internationalization support
     if (!Locale.getDefault().getLanguage().equals(Locale.ENGLISH.getLanguage())) {
       results.add(new AccessibilityInfoCheckResult(this.getClass(),
-          AccessibilityCheckResultType.NOT_RUN, "This check only runs in English locales", root));
+          AccessibilityCheckResultType.NOT_RUN, "This check only runs in English locales",
+          snapshot.getRoot()));
       return results;
     }
 
-    List<AccessibilityNodeInfoCompat> compatInfos = getAllInfoCompatsInHierarchy(context, root);
-    for (AccessibilityNodeInfoCompat compatInfo : compatInfos) {
-      AccessibilityNodeInfo info = (AccessibilityNodeInfo) compatInfo.getInfo();
+    for (int i = 0; i < snapshot.size(); ++i) {
+      AccessibilityNodeInfo info = snapshot.getInfo(i);
       CharSequence contentDescription = info.getContentDescription();
       if (TextUtils.isEmpty(contentDescription)) {
         results.add(new AccessibilityInfoCheckResult(this.getClass(),
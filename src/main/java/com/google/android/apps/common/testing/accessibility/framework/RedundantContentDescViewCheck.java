@@ -38,41 +38,59 @@ public class RedundantContentDescViewCheck extends AccessibilityViewHierarchyChe
 
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnViewHierarchy(View root) {
-    List<AccessibilityViewCheckResult> results = new ArrayList<AccessibilityViewCheckResult>();
+    return ViewHierarchyTraverser.runCheck(this, root);
+  }
+
+  @Override
+  public AccessibilityViewCheckVisitor newVisitor(ViewHierarchySnapshot snapshot) {
     if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
-      results.add(new AccessibilityViewCheckResult(this.getClass(),
-          AccessibilityCheckResultType.NOT_RUN, "This check only runs on Android 4.1 and above.",
-          root));
-      return results;
+      return new NotRunViewCheckVisitor(this.getClass(),
+          "This check only runs on Android 4.1 and above.");
     }
     // TODO(sjrush): This check needs internationalization support
     if (!Locale.getDefault().getLanguage().equals(Locale.ENGLISH.getLanguage())) {
-      results.add(new AccessibilityViewCheckResult(this.getClass(),
-          AccessibilityCheckResultType.NOT_RUN, "This check only runs in English locales", root));
-      return results;
+      return new NotRunViewCheckVisitor(this.getClass(),
+          "This check only runs in English locales");
     }
 
-    for (View view : ViewAccessibilityUtils.getAllViewsInHierarchy(root)) {
-      if (!ViewAccessibilityUtils.isImportantForAccessibility(view)) {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-            AccessibilityCheckResultType.NOT_RUN, "View is not important for accessibility", view));
-        continue;
+    return new AccessibilityViewCheckVisitor() {
+      @Override
+      public void visitElement(ViewHierarchySnapshot snapshot, int index,
+          List<AccessibilityViewCheckResult> results) {
+        if (!snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_IMPORTANT_FOR_ACCESSIBILITY)) {
+          results.add(new AccessibilityViewCheckResult(RedundantContentDescViewCheck.this.getClass(),
+              AccessibilityCheckResultType.NOT_RUN, "View is not important for accessibility",
+              snapshot.getView(index)));
+          return;
+        }
+        String contentDescription = snapshot.getContentDescription(index);
+        if (TextUtils.isEmpty(contentDescription)) {
+          results.add(new AccessibilityViewCheckResult(RedundantContentDescViewCheck.this.getClass(),
+              AccessibilityCheckResultType.NOT_RUN, "View has no content description",
+              snapshot.getView(index)));
+          return;
+        }
+        String lowerCaseContentDescription = contentDescription.toLowerCase();
+        for (CharSequence redundantWord : redundantWords) {
+          if (lowerCaseContentDescription.contains(redundantWord)) {
+            results.add(new AccessibilityViewCheckResult(
+                RedundantContentDescViewCheck.this.getClass(),
+                AccessibilityCheckResultType.WARNING,
+                "View's speakable text ends with view type",
+                snapshot.getView(index)));
+          }
+        }
       }
-      CharSequence contentDescription = view.getContentDescription();
-      if (TextUtils.isEmpty(contentDescription)) {
-        results.add(new AccessibilityViewCheckResult(this.getClass(),
-            AccessibilityCheckResultType.NOT_RUN, "View has no content description", view));
-        continue;
+
+      @Override
+      public boolean isThreadSafe() {
+        return true;
       }
-      for (CharSequence redundantWord : redundantWords) {
-        if (contentDescription.toString().toLowerCase().contains(redundantWord)) {
-          results.add(new AccessibilityViewCheckResult(this.getClass(),
-              AccessibilityCheckResultType.WARNING,
-              "View's speakable text ends with view type",
-              view));
-        }
+
+      @Override
+      public boolean isElementLocal() {
+        return true;
       }
-    }
-    return results;
+    };
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.os.Build;
+import android.text.TextUtils;
+import android.view.View;
+
+import com.googlecode.eyesfree.utils.StringBuilderUtils;
+
+/**
+ * The speakable text of every element of a {@link ViewHierarchySnapshot}, as computed by
+ * {@link AccessibilityCheckUtils#getSpeakableTextForView(View)}, built in a single bottom-up pass.
+ * <p>
+ * The text of an element is composed from the text of its children. In a preorder snapshot every
+ * descendant follows its ancestors, so sweeping the elements in reverse finds the text of all
+ * children already computed. Only {@code labelFor} relationships, which may point anywhere in the
+ * hierarchy, are resolved on demand. Each text is built once from the captured properties, instead
+ * of once for every ancestor that includes it.
+ */
+final class SpeakableTextIndex {
+
+  private static final int ACTIONABLE_FLAGS = ViewHierarchySnapshot.FLAG_CLICKABLE
+      | ViewHierarchySnapshot.FLAG_LONG_CLICKABLE | ViewHierarchySnapshot.FLAG_FOCUSABLE;
+
+  /* States of an element's text; zero, the default, means not yet visited */
+  private static final byte IN_PROGRESS = 1;
+  private static final byte DONE = 2;
+
+  private final ViewHierarchySnapshot snapshot;
+  private final String[] carriedTexts;
+  private final String[] speakableTexts;
+  private final boolean[] carriedOver;
+  private final byte[] states;
+
+  /**
+   * @param snapshot The snapshot to index
+   * @param carriedTexts The texts of the previous snapshot for elements whose subtree is
+   * unchanged, or {@code null}. A text is reused if nothing in the subtree is labeled by another
+   * view.
+   */
+  SpeakableTextIndex(ViewHierarchySnapshot snapshot, String[] carriedTexts) {
+    int size = snapshot.size();
+    this.snapshot = snapshot;
+    this.carriedTexts = carriedTexts;
+    speakableTexts = new String[size];
+    carriedOver = new boolean[size];
+    states = new byte[size];
+    for (int i = size - 1; i >= 0; --i) {
+      compute(i);
+    }
+  }
+
+  /**
+   * @return The speakable text of {@code index}. Never {@code null}.
+   */
+  String getSpeakableText(int index) {
+    return speakableTexts[index];
+  }
+
+  private String compute(int index) {
+    if (states[index] == DONE) {
+      return speakableTexts[index];
+    }
+    if (states[index] == IN_PROGRESS) {
+      /* A labelFor cycle, which would otherwise recurse forever */
+      return "";
+    }
+    states[index] = IN_PROGRESS;
+    String speakableText;
+    int labeledBy = snapshot.getLabeledBy(index);
+    if (labeledBy != ViewHierarchySnapshot.NO_INDEX) {
+      speakableText = compute(labeledBy);
+    } else {
+      speakableText = composeText(index);
+    }
+    speakableTexts[index] = speakableText;
+    states[index] = DONE;
+    return speakableText;
+  }
+
+  private String composeText(int index) {
+    boolean allChildrenCarried = true;
+    for (int i = 0; i < snapshot.getChildCount(index); ++i) {
+      int child = snapshot.getChild(index, i);
+      compute(child);
+      allChildrenCarried &= carriedOver[child];
+    }
+    if (allChildrenCarried && (carriedTexts != null) && (carriedTexts[index] != null)) {
+      carriedOver[index] = true;
+      return carriedTexts[index];
+    }
+
+    // Accessibility importance is considered only on Jelly Bean and above
+    boolean important = (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+        || snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_IMPORTANT_FOR_ACCESSIBILITY);
+    StringBuilder returnStringBuilder = new StringBuilder();
+    if (important) {
+      String contentDescription = snapshot.getContentDescription(index);
+      if (!TextUtils.isEmpty(contentDescription)) {
+        // contentDescription always wins out over other properties
+        return contentDescription;
+      }
+      if (snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_TEXT_VIEW)) {
+        String text = snapshot.getText(index);
+        if (!TextUtils.isEmpty(text)) {
+          returnStringBuilder.append(text);
+        } else if (!TextUtils.isEmpty(snapshot.getHint(index))) {
+          returnStringBuilder.append(snapshot.getHint(index));
+        }
+      }
+    }
+
+    for (int i = 0; i < snapshot.getChildCount(index); ++i) {
+      int child = snapshot.getChild(index, i);
+      if (snapshot.hasFlags(child, ViewHierarchySnapshot.FLAG_VISIBLE)
+          && ((snapshot.getFlags(child) & ACTIONABLE_FLAGS) == 0)) {
+        returnStringBuilder.append(speakableTexts[child]);
+      }
+    }
+
+    if (snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_COMPOUND_BUTTON)) {
+      StringBuilderUtils.appendWithSeparator(returnStringBuilder,
+          snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_CHECKED) ? "Checked" : "Not checked");
+    }
+    return returnStringBuilder.toString();
+  }
+}
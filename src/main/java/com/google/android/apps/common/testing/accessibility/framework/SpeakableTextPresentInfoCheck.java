@@ -48,8 +48,24 @@ public class SpeakableTextPresentInfoCheck extends AccessibilityInfoCheck {
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfo(AccessibilityNodeInfo info,
       Context context, Bundle metadata) {
+    return runCheck(info, new AccessibilityNodeInfoCompat(info), context, null, 0);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnInfo(int index,
+      InfoCheckEvaluationContext evaluationContext) {
+    return runCheck(evaluationContext.getInfo(index), evaluationContext.getCompatInfo(index),
+        evaluationContext.getContext(), evaluationContext.getSpeakableTextIndex(), index);
+  }
+
+  /**
+   * Reads speakable text from {@code speakableTexts}, which is computed for the whole hierarchy in
+   * one pass, when one is available.
+   */
+  private List<AccessibilityInfoCheckResult> runCheck(AccessibilityNodeInfo info,
+      AccessibilityNodeInfoCompat compatInfo, Context context,
+      InfoSpeakableTextIndex speakableTexts, int index) {
     List<AccessibilityInfoCheckResult> results = new ArrayList<AccessibilityInfoCheckResult>();
-    AccessibilityNodeInfoCompat compatInfo = new AccessibilityNodeInfoCompat(info);
     for (Class<? extends ViewGroup> clazz : blacklistedViewTypes) {
       if (AccessibilityNodeInfoUtils.nodeMatchesAnyClassByType(null, compatInfo, clazz)) {
         String msg =
@@ -60,7 +76,10 @@ public class SpeakableTextPresentInfoCheck extends AccessibilityInfoCheck {
       }
     }
     if (AccessibilityNodeInfoUtils.shouldFocusNode(context, compatInfo)) {
-      if (TextUtils.isEmpty(AccessibilityCheckUtils.getSpeakableTextForInfo(info))) {
+      CharSequence speakableText = (speakableTexts != null)
+          ? speakableTexts.getSpeakableText(index)
+          : AccessibilityCheckUtils.getSpeakableTextForInfo(info);
+      if (TextUtils.isEmpty(speakableText)) {
         results.add(new AccessibilityInfoCheckResult(this.getClass(),
             AccessibilityCheckResultType.ERROR,
             "View is missing speakable text needed for a screen reader", info));
@@ -42,8 +42,28 @@ public class SpeakableTextPresentViewCheck extends AccessibilityViewCheck {
   private static final List<Class<? extends ViewGroup>> blacklistedViewTypes =
       Arrays.asList(ListView.class, ScrollView.class, ViewPager.class, WebView.class);
 
+  @Override
+  protected boolean isThreadSafe() {
+    return true;
+  }
+
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnView(View view) {
+    return runCheck(view, null, ViewHierarchySnapshot.NO_INDEX);
+  }
+
+  @Override
+  List<AccessibilityViewCheckResult> runCheckOnElement(ViewHierarchySnapshot snapshot,
+      int index) {
+    return runCheck(snapshot.getView(index), snapshot, index);
+  }
+
+  /**
+   * Resolves speakable text through {@code snapshot}, and its shared {@code labelFor} index, when
+   * one is available.
+   */
+  private List<AccessibilityViewCheckResult> runCheck(View view, ViewHierarchySnapshot snapshot,
+      int index) {
     List<AccessibilityViewCheckResult> results = new ArrayList<AccessibilityViewCheckResult>();
 
     if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
@@ -66,9 +86,16 @@ public class SpeakableTextPresentViewCheck extends AccessibilityViewCheck {
         return results;
       }
     }
-    if (shouldFocusView(view)) {
+    boolean shouldFocus = (snapshot != null)
+        ? shouldFocusView(view,
+            snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER))
+        : shouldFocusView(view);
+    if (shouldFocus) {
       // We must evaluate this view for speakable text
-      if (TextUtils.isEmpty(AccessibilityCheckUtils.getSpeakableTextForView(view))) {
+      CharSequence speakableText = (snapshot != null)
+          ? snapshot.getSpeakableText(index)
+          : AccessibilityCheckUtils.getSpeakableTextForView(view);
+      if (TextUtils.isEmpty(speakableText)) {
         results.add(new AccessibilityViewCheckResult(this.getClass(),
             AccessibilityCheckResultType.ERROR,
             "View is missing speakable text needed for a screen reader", view));
@@ -84,4 +111,12 @@ public class SpeakableTextPresentViewCheck extends AccessibilityViewCheck {
   protected boolean shouldFocusView(View view) {
     return ViewAccessibilityUtils.shouldFocusView(view);
   }
+
+  /**
+   * As {@link #shouldFocusView(View)}, with visibility as the snapshot captured it, so that worker
+   * threads do not call {@link View#getGlobalVisibleRect}
+   */
+  protected boolean shouldFocusView(View view, boolean visibleToUser) {
+    return ViewAccessibilityUtils.shouldFocusView(view, visibleToUser);
+  }
 }
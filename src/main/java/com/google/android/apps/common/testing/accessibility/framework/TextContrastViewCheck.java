@@ -15,6 +15,7 @@
 package com.google.android.apps.common.testing.accessibility.framework;
 
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+import com.google.android.apps.common.testing.accessibility.framework.BackgroundLuminanceCache.BackgroundLuminance;
 
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
@@ -31,10 +32,58 @@ import java.util.List;
 import java.util.Locale;
 
 /**
- * Check to ensure that a TextView has sufficient contrast between text color and background color
+ * Check to ensure that a TextView has sufficient contrast between text color and background color.
+ * When constructed with a {@link BackgroundLuminanceCache}, backgrounds that are not a single color
+ * are rendered offscreen through it. Otherwise they are not checked, as in released versions.
  */
 public class TextContrastViewCheck extends AccessibilityViewCheck {
 
+  private final BackgroundLuminanceCache backgroundCache;
+
+  /**
+   * Creates a check that only evaluates backgrounds of a single color.
+   */
+  public TextContrastViewCheck() {
+    this(null);
+  }
+
+  /**
+   * @param backgroundCache The cache in which the luminance of backgrounds that are not a single
+   * color is kept once they are rendered, or {@code null} to leave such backgrounds unchecked. A
+   * cache may be shared between checks.
+   */
+  public TextContrastViewCheck(BackgroundLuminanceCache backgroundCache) {
+    this.backgroundCache = backgroundCache;
+  }
+
+  /**
+   * Rendering draws the view's own background {@code Drawable}, which the UI thread may be using
+   * at the same time, so a check that renders backgrounds must run on the UI thread.
+   */
+  @Override
+  protected boolean isThreadSafe() {
+    return (backgroundCache == null);
+  }
+
+  @Override
+  boolean hasCaches() {
+    return (backgroundCache != null);
+  }
+
+  @Override
+  AccessibilityCheck newInstanceWithEmptyCaches() {
+    return hasCaches() ? new TextContrastViewCheck(backgroundCache.newEmptyCache()) : this;
+  }
+
+  /**
+   * Checks that render backgrounds report on views that other checks leave unchecked. Which cache
+   * they render through does not change their results.
+   */
+  @Override
+  Object getConfigurationKey() {
+    return Boolean.valueOf(backgroundCache != null);
+  }
+
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnView(View view) {
     ArrayList<AccessibilityViewCheckResult> results = new ArrayList<AccessibilityViewCheckResult>();
@@ -43,8 +92,6 @@ public class TextContrastViewCheck extends AccessibilityViewCheck {
       TextView textView = (TextView) view;
       int textColor = textView.getCurrentTextColor();
       Drawable background = textView.getBackground();
-      // Can only check if the background is a single color.
-      // TODO(caseyburkhardt): Allow checking of views with more complex backgrounds.
       if (background instanceof ColorDrawable) {
         // ColorDrawable.getColor() was introduced in honeycomb, cannot get color without it
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -75,7 +122,29 @@ public class TextContrastViewCheck extends AccessibilityViewCheck {
           results.add(new AccessibilityViewCheckResult(this.getClass(),
               AccessibilityCheckResultType.NOT_RUN, message, view));
         }
-      } else { // non-solid background color
+      } else if ((backgroundCache != null) && (background != null) && (textView.getWidth() > 0)
+          && (textView.getHeight() > 0)) {
+        BackgroundLuminance backgroundLuminance = backgroundCache.getBackgroundLuminance(
+            background, textView.getWidth(), textView.getHeight());
+        double contrast = backgroundLuminance.getContrastRatio(textColor);
+        double requiredContrast =
+            isLargeText(textView) ? ContrastUtils.CONTRAST_RATIO_WCAG_LARGE_TEXT
+                : ContrastUtils.CONTRAST_RATIO_WCAG_NORMAL_TEXT;
+        if (contrast < requiredContrast) {
+          if (!backgroundLuminance.isOpaque()) {
+            // Cannot guarantee contrast ratio if the background is not opaque
+            String message = "View's background must be opaque";
+            results.add(new AccessibilityViewCheckResult(this.getClass(),
+                AccessibilityCheckResultType.NOT_RUN, message, view));
+          } else {
+            String message = String.format(Locale.US,
+                "TextView does not have required contrast of %f against its background. Lowest "
+                + "contrast is %f", requiredContrast, contrast);
+            results.add(new AccessibilityViewCheckResult(this.getClass(),
+                AccessibilityCheckResultType.ERROR, message, view));
+          }
+        }
+      } else { // no background, not laid out, or not rendering backgrounds
         results.add(new AccessibilityViewCheckResult(this.getClass(),
             AccessibilityCheckResultType.NOT_RUN, "TextView does not have a solid background color",
             view));
@@ -43,17 +43,33 @@ public class TouchTargetSizeInfoCheck extends AccessibilityInfoCheck {
   @Override
   public List<AccessibilityInfoCheckResult> runCheckOnInfo(AccessibilityNodeInfo info,
       Context context, Bundle metadata) {
+    float density = (context != null) ? context.getResources().getDisplayMetrics().density : 0f;
+    return runCheck(info, new AccessibilityNodeInfoCompat(info), context != null, density);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnInfo(int index,
+      InfoCheckEvaluationContext evaluationContext) {
+    return runCheck(evaluationContext.getInfo(index), evaluationContext.getCompatInfo(index),
+        evaluationContext.getContext() != null, evaluationContext.getDensity());
+  }
+
+  /**
+   * @param density The logical density of the display, read once per run by callers that check
+   *        many nodes
+   */
+  private List<AccessibilityInfoCheckResult> runCheck(AccessibilityNodeInfo info,
+      AccessibilityNodeInfoCompat infoCompat, boolean hasContext, float density) {
     ArrayList<AccessibilityInfoCheckResult> results = new ArrayList<AccessibilityInfoCheckResult>();
 
     // TODO(sjrush): Have all info checks use AccessibilityNodeInfoCompat
-    AccessibilityNodeInfoCompat infoCompat = new AccessibilityNodeInfoCompat(info);
     if (!(AccessibilityNodeInfoUtils.isClickable(infoCompat)
         || AccessibilityNodeInfoUtils.isLongClickable(infoCompat))) {
       results.add(new AccessibilityInfoCheckResult(this.getClass(),
           AccessibilityCheckResultType.NOT_RUN, "View is not clickable", info));
       return results;
     }
-    if (context == null) {
+    if (!hasContext) {
       results.add(new AccessibilityInfoCheckResult(this.getClass(),
           AccessibilityCheckResultType.NOT_RUN, "This check needs a context", info));
       return results;
@@ -61,7 +77,6 @@ public class TouchTargetSizeInfoCheck extends AccessibilityInfoCheck {
 
     // TODO(sjrush): Find a way to make this check work without a context
     // dp calculation is pixels/density
-    float density = context.getResources().getDisplayMetrics().density;
     Rect bounds = new Rect();
     info.getBoundsInScreen(bounds);
     int targetHeight = (int) (Math.abs(bounds.height()) / density);
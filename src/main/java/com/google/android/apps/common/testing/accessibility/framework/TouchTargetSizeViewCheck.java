@@ -34,17 +34,45 @@ public class TouchTargetSizeViewCheck extends AccessibilityViewCheck {
   private static final int TOUCH_TARGET_MIN_HEIGHT = 48;
   private static final int TOUCH_TARGET_MIN_WIDTH = 48;
 
+  @Override
+  protected boolean isThreadSafe() {
+    return true;
+  }
+
   @Override
   public List<AccessibilityViewCheckResult> runCheckOnView(View view) {
+    return runCheck(view, null, ViewHierarchySnapshot.NO_INDEX);
+  }
+
+  @Override
+  List<AccessibilityViewCheckResult> runCheckOnElement(ViewHierarchySnapshot snapshot,
+      int index) {
+    return runCheck(snapshot.getView(index), snapshot, index);
+  }
+
+  /**
+   * Reads clickability, visibility and touch delegates from {@code snapshot} when one is
+   * available, as {@link ViewAccessibilityUtils#isVisibleToUser(View)} writes to scratch objects
+   * shared by the whole window and so cannot run on worker threads.
+   */
+  private List<AccessibilityViewCheckResult> runCheck(View view, ViewHierarchySnapshot snapshot,
+      int index) {
     ArrayList<AccessibilityViewCheckResult> results = new ArrayList<AccessibilityViewCheckResult>();
 
-    if (!(view.isClickable() || view.isLongClickable())) {
+    boolean clickable = (snapshot != null)
+        ? (snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_CLICKABLE)
+            || snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_LONG_CLICKABLE))
+        : (view.isClickable() || view.isLongClickable());
+    if (!clickable) {
       results.add(new AccessibilityViewCheckResult(this.getClass(),
           AccessibilityCheckResultType.NOT_RUN, "View is not clickable", view));
       return results;
     }
 
-    if (!ViewAccessibilityUtils.isVisibleToUser(view)) {
+    boolean visibleToUser = (snapshot != null)
+        ? snapshot.hasFlags(index, ViewHierarchySnapshot.FLAG_VISIBLE_TO_USER)
+        : ViewAccessibilityUtils.isVisibleToUser(view);
+    if (!visibleToUser) {
       results.add(new AccessibilityViewCheckResult(this.getClass(),
           AccessibilityCheckResultType.NOT_RUN, "View is not visible", view));
       return results;
@@ -58,7 +86,9 @@ public class TouchTargetSizeViewCheck extends AccessibilityViewCheck {
     if (targetHeight < TOUCH_TARGET_MIN_HEIGHT || targetWidth < TOUCH_TARGET_MIN_WIDTH) {
       // Before we know a view fails this check, we must check if one of the view's ancestors may be
       // handling touches on its behalf.
-      boolean hasDelegate = hasAncestorWithTouchDelegate(view);
+      boolean hasDelegate = (snapshot != null)
+          ? hasAncestorWithTouchDelegate(snapshot, index)
+          : hasAncestorWithTouchDelegate(view);
 
       // We can't get the delegated view from a TouchDelegate, so any TouchDelegate in the view's
       // lineage will demote ERROR to WARNING.
@@ -103,6 +133,19 @@ public class TouchTargetSizeViewCheck extends AccessibilityViewCheck {
     return results;
   }
 
+  private static boolean hasAncestorWithTouchDelegate(ViewHierarchySnapshot snapshot,
+      int index) {
+    for (int parent = snapshot.getParent(index); parent != ViewHierarchySnapshot.NO_INDEX;
+        parent = snapshot.getParent(parent)) {
+      if (snapshot.hasFlags(parent, ViewHierarchySnapshot.FLAG_HAS_TOUCH_DELEGATE)) {
+        return true;
+      }
+    }
+
+    /* The snapshot's root may itself have ancestors that were not captured */
+    return hasAncestorWithTouchDelegate(snapshot.getRootView());
+  }
+
   private static boolean hasAncestorWithTouchDelegate(View view) {
     if (view == null) {
       return false;
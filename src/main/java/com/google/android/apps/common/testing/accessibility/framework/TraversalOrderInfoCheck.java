@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.googlecode.eyesfree.utils.AccessibilityNodeInfoUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks that a screen reader moves focus through views in the order they appear on screen. Each
+ * view that a screen reader focuses is compared with the one focused before it in
+ * {@link InfoTraversalOrder}. Focus that moves to a view wholly above the previous one, or to a
+ * view in the same row that comes earlier in the reading direction, is likely to confuse users.
+ * <p>
+ * Views that contain one another are not compared, since a container is focused before its
+ * contents however they are laid out.
+ */
+public class TraversalOrderInfoCheck extends AccessibilityInfoHierarchyCheck {
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnInfoHierarchy(AccessibilityNodeInfo root,
+      Context context, Bundle metadata) {
+    return runCheckOnCapturedHierarchy(root, context, metadata);
+  }
+
+  @Override
+  public List<AccessibilityInfoCheckResult> runCheckOnSnapshot(
+      AccessibilityNodeInfoSnapshot snapshot, Context context, Bundle metadata) {
+    List<AccessibilityInfoCheckResult> results = new ArrayList<>();
+    InfoTraversalOrder traversalOrder = new InfoTraversalOrder(snapshot);
+    boolean isRtl = (TextUtils.getLayoutDirectionFromLocale(Locale.getDefault())
+        == View.LAYOUT_DIRECTION_RTL);
+
+    Rect previousBounds = null;
+    Rect bounds = new Rect();
+    for (int position = 0; position < traversalOrder.size(); ++position) {
+      AccessibilityNodeInfo info = snapshot.getInfo(traversalOrder.get(position));
+      if (!AccessibilityNodeInfoUtils.shouldFocusNode(context,
+          new AccessibilityNodeInfoCompat(info))) {
+        continue;
+      }
+      info.getBoundsInScreen(bounds);
+      if (bounds.isEmpty()) {
+        continue;
+      }
+
+      if ((previousBounds != null) && !previousBounds.contains(bounds)
+          && !bounds.contains(previousBounds)) {
+        if (bounds.bottom <= previousBounds.top) {
+          results.add(new AccessibilityInfoCheckResult(this.getClass(),
+              AccessibilityCheckResultType.WARNING,
+              "Screen readers focus this view after a view that appears below it", info));
+        } else if (isInSameRow(bounds, previousBounds)
+            && (isRtl ? (bounds.left >= previousBounds.right)
+                : (bounds.right <= previousBounds.left))) {
+          results.add(new AccessibilityInfoCheckResult(this.getClass(),
+              AccessibilityCheckResultType.WARNING,
+              "Screen readers focus this view after a view that follows it in the same row",
+              info));
+        }
+      }
+
+      if (previousBounds == null) {
+        previousBounds = new Rect();
+      }
+      previousBounds.set(bounds);
+    }
+    return results;
+  }
+
+  /**
+   * @return {@code true} if the vertical center of each rect lies within the other
+   */
+  private static boolean isInSameRow(Rect first, Rect second) {
+    return (first.centerY() >= second.top) && (first.centerY() < second.bottom)
+        && (second.centerY() >= first.top) && (second.centerY() < first.bottom);
+  }
+}
@@ -151,11 +151,29 @@ final class ViewAccessibilityUtils {
    *         {@code view}, {@code false} otherwise.
    */
   public static boolean shouldFocusView(View view) {
+    return shouldFocusView(view, isVisibleToUser(view));
+  }
+
+  /**
+   * Determines if the supplied {@link View} would be focused during navigation operations with a
+   * screen reader, given whether it is visible to the user. Unlike
+   * {@link #isVisibleToUser(View)}, this does not call {@link View#getGlobalVisibleRect(Rect)},
+   * which writes to scratch objects shared by the whole window, so it may be called from threads
+   * other than the one that owns the hierarchy while that thread waits.
+   *
+   * @param view The {@link View} to evaluate
+   * @param visibleToUser Whether {@code view} is visible to the user, as
+   *        {@link #isVisibleToUser(View)} or {@link ViewHierarchySnapshot#FLAG_VISIBLE_TO_USER}
+   *        reports it
+   * @return {@code true} if a screen reader would choose to place accessibility focus on
+   *         {@code view}, {@code false} otherwise.
+   */
+  public static boolean shouldFocusView(View view, boolean visibleToUser) {
     if (view == null) {
       return false;
     }
 
-    if (!isVisibleToUser(view)) {
+    if (!visibleToUser) {
       // We don't focus views that are not visible
       return false;
     }
@@ -0,0 +1,787 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.CompoundButton;
+import android.widget.TextView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable, flattened copy of the accessibility-relevant state of a {@code View} hierarchy.
+ * <p>
+ * The hierarchy is read once, on the thread that owns it, by {@link #capture(View)}. Each view is
+ * assigned an element index in preorder, with the root at index 0, so the subtree of element
+ * {@code i} is the contiguous range {@code [i, getSubtreeEnd(i))}. Properties are stored in
+ * parallel primitive arrays indexed by element, and strings are interned into a shared table, so
+ * checks can evaluate the hierarchy without calling back into the live {@code View}s.
+ * <p>
+ * The original {@code View}s remain reachable through {@link #getView(int)} for checks that need
+ * properties the snapshot does not capture and to attach results to.
+ */
+public final class ViewHierarchySnapshot {
+
+  /** {@link View#isClickable()} */
+  public static final int FLAG_CLICKABLE = 1;
+
+  /** {@link View#isLongClickable()} */
+  public static final int FLAG_LONG_CLICKABLE = 1 << 1;
+
+  /** {@link View#isFocusable()} */
+  public static final int FLAG_FOCUSABLE = 1 << 2;
+
+  /** {@link View#isEnabled()} */
+  public static final int FLAG_ENABLED = 1 << 3;
+
+  /** {@link View#getVisibility()} is {@link View#VISIBLE} */
+  public static final int FLAG_VISIBLE = 1 << 4;
+
+  /** {@link ViewAccessibilityUtils#isVisibleToUser(View)} */
+  public static final int FLAG_VISIBLE_TO_USER = 1 << 5;
+
+  /** {@link ViewAccessibilityUtils#isImportantForAccessibility(View)} */
+  public static final int FLAG_IMPORTANT_FOR_ACCESSIBILITY = 1 << 6;
+
+  /** The view is a {@link ViewGroup} */
+  public static final int FLAG_VIEW_GROUP = 1 << 7;
+
+  /** The view is a {@link TextView} */
+  public static final int FLAG_TEXT_VIEW = 1 << 8;
+
+  /** The view is a {@link CompoundButton} */
+  public static final int FLAG_COMPOUND_BUTTON = 1 << 9;
+
+  /** The view is a {@link CompoundButton} and {@link CompoundButton#isChecked()} */
+  public static final int FLAG_CHECKED = 1 << 10;
+
+  /** {@link View#getTouchDelegate()} is not {@code null} */
+  public static final int FLAG_HAS_TOUCH_DELEGATE = 1 << 11;
+
+  /** The view is a {@link TextView} whose {@link TextView#getEditableText()} is not null */
+  public static final int FLAG_EDITABLE = 1 << 12;
+
+  /** {@link View#getGlobalVisibleRect(Rect)} returned {@code true} */
+  public static final int FLAG_HAS_VISIBLE_RECT = 1 << 13;
+
+  /** {@link ViewAccessibilityUtils#hasText(View)} */
+  public static final int FLAG_HAS_TEXT = 1 << 14;
+
+  /** {@link View#isScrollContainer()} */
+  public static final int FLAG_SCROLL_CONTAINER = 1 << 15;
+
+  /** Index returned for the parent of the root element and for strings that are not set */
+  public static final int NO_INDEX = -1;
+
+  private static final AtomicLong nextCaptureId = new AtomicLong();
+
+  private final View[] views;
+  private final int[] parents;
+  private final int[] subtreeEnds;
+  private final int[] childOffsets;
+  private final int[] children;
+  private final int[] bounds;
+  private final int[] flags;
+  private final int[] ids;
+  private final int[] labelForIds;
+  private final int[] textIndices;
+  private final int[] contentDescriptionIndices;
+  private final int[] hintIndices;
+  private final int[] classNameIndices;
+  private final String[] strings;
+  private final long[] elementHashes;
+  private final long[] subtreeHashes;
+  private final long labelingHash;
+  private final int[] previousIndices;
+  private final boolean[] dirty;
+  private final boolean labelingChanged;
+  private final long captureId;
+  private final long previousCaptureId;
+
+  private volatile Map<View, Integer> indexByView;
+  private LabelForIndex labelForIndex;
+  private BoundsIndex boundsIndex;
+  private String[] carriedSpeakableTexts;
+  private volatile SpeakableTextIndex speakableTextIndex;
+
+  private ViewHierarchySnapshot(View[] views, int[] parents, ViewHierarchySnapshot previous) {
+    int size = views.length;
+    this.views = views;
+    this.parents = parents;
+    subtreeEnds = new int[size];
+    childOffsets = new int[size + 1];
+    children = new int[Math.max(size - 1, 0)];
+    bounds = new int[size * 4];
+    flags = new int[size];
+    ids = new int[size];
+    labelForIds = new int[size];
+    textIndices = new int[size];
+    contentDescriptionIndices = new int[size];
+    hintIndices = new int[size];
+    classNameIndices = new int[size];
+    elementHashes = new long[size];
+    subtreeHashes = new long[size];
+
+    /* Preorder guarantees every descendant of i follows i, so a reverse sweep sees leaves first */
+    for (int i = size - 1; i >= 0; --i) {
+      subtreeEnds[i] = Math.max(subtreeEnds[i], i + 1);
+      if (parents[i] != NO_INDEX) {
+        subtreeEnds[parents[i]] = Math.max(subtreeEnds[parents[i]], subtreeEnds[i]);
+        childOffsets[parents[i] + 1]++;
+      }
+    }
+    for (int i = 0; i < size; ++i) {
+      childOffsets[i + 1] += childOffsets[i];
+    }
+    int[] nextChildSlot = Arrays.copyOf(childOffsets, size);
+    for (int i = 1; i < size; ++i) {
+      children[nextChildSlot[parents[i]]++] = i;
+    }
+
+    Map<String, Integer> stringTable = new HashMap<>();
+    List<String> stringList = new ArrayList<>();
+    boolean rootAncestorsVisible = areAncestorsVisible(views[0]);
+    boolean[] visibleChain = new boolean[size];
+    Rect rect = new Rect();
+    for (int i = 0; i < size; ++i) {
+      View view = views[i];
+      int viewFlags = 0;
+      if (view.isClickable()) {
+        viewFlags |= FLAG_CLICKABLE;
+      }
+      if (view.isLongClickable()) {
+        viewFlags |= FLAG_LONG_CLICKABLE;
+      }
+      if (view.isFocusable()) {
+        viewFlags |= FLAG_FOCUSABLE;
+      }
+      if (view.isEnabled()) {
+        viewFlags |= FLAG_ENABLED;
+      }
+      if (view.getVisibility() == View.VISIBLE) {
+        viewFlags |= FLAG_VISIBLE;
+      }
+      if (ViewAccessibilityUtils.isImportantForAccessibility(view)) {
+        viewFlags |= FLAG_IMPORTANT_FOR_ACCESSIBILITY;
+      }
+      if (view instanceof ViewGroup) {
+        viewFlags |= FLAG_VIEW_GROUP;
+      }
+      if (view instanceof TextView) {
+        TextView textView = (TextView) view;
+        viewFlags |= FLAG_TEXT_VIEW;
+        if (textView.getEditableText() != null) {
+          viewFlags |= FLAG_EDITABLE;
+        }
+        textIndices[i] = intern(textView.getText(), stringTable, stringList);
+        hintIndices[i] = intern(textView.getHint(), stringTable, stringList);
+      } else {
+        textIndices[i] = NO_INDEX;
+        hintIndices[i] = NO_INDEX;
+      }
+      if (view instanceof CompoundButton) {
+        viewFlags |= FLAG_COMPOUND_BUTTON;
+        if (((CompoundButton) view).isChecked()) {
+          viewFlags |= FLAG_CHECKED;
+        }
+      }
+      if (view.getTouchDelegate() != null) {
+        viewFlags |= FLAG_HAS_TOUCH_DELEGATE;
+      }
+      if (ViewAccessibilityUtils.hasText(view)) {
+        viewFlags |= FLAG_HAS_TEXT;
+      }
+      if (view.isScrollContainer()) {
+        viewFlags |= FLAG_SCROLL_CONTAINER;
+      }
+
+      /* Mirrors ViewAccessibilityUtils.isVisibleToUser without re-walking the ancestors */
+      visibleChain[i] = (ViewCompat.getAlpha(view) > 0)
+          && (view.getVisibility() == View.VISIBLE)
+          && ((i == 0) ? rootAncestorsVisible : visibleChain[parents[i]]);
+      if (view.getGlobalVisibleRect(rect)) {
+        viewFlags |= FLAG_HAS_VISIBLE_RECT;
+        if (visibleChain[i]) {
+          viewFlags |= FLAG_VISIBLE_TO_USER;
+        }
+        bounds[i * 4] = rect.left;
+        bounds[i * 4 + 1] = rect.top;
+        bounds[i * 4 + 2] = rect.right;
+        bounds[i * 4 + 3] = rect.bottom;
+      }
+
+      flags[i] = viewFlags;
+      ids[i] = view.getId();
+      labelForIds[i] = view.getLabelFor();
+      contentDescriptionIndices[i] = intern(view.getContentDescription(), stringTable, stringList);
+      classNameIndices[i] = intern(view.getClass().getName(), stringTable, stringList);
+    }
+    strings = stringList.toArray(new String[stringList.size()]);
+
+    long labeling = 0;
+    for (int i = 0; i < size; ++i) {
+      elementHashes[i] = hashElement(i);
+      /* Order-independent, so only the set of (id, labelFor) pairs matters */
+      labeling += mix(mix(17, ids[i]), labelForIds[i]);
+    }
+    labelingHash = labeling;
+    for (int i = size - 1; i >= 0; --i) {
+      long hash = elementHashes[i];
+      for (int child = childOffsets[i]; child < childOffsets[i + 1]; ++child) {
+        hash = mix(hash, subtreeHashes[children[child]]);
+      }
+      subtreeHashes[i] = mix(hash, childOffsets[i + 1] - childOffsets[i]);
+    }
+
+    captureId = nextCaptureId.incrementAndGet();
+    if (previous == null) {
+      previousCaptureId = 0;
+      previousIndices = null;
+      dirty = null;
+      labelingChanged = false;
+    } else {
+      previousCaptureId = previous.captureId;
+      previousIndices = new int[size];
+      dirty = new boolean[size];
+      labelingChanged = (previous.labelingHash != labelingHash);
+      diff(previous);
+    }
+  }
+
+  /**
+   * Matches each element with the same {@code View} in {@code previous} and marks the elements
+   * whose results may differ from the previous run as dirty. An element is dirty if it is new,
+   * moved to another parent, if it or anything in its subtree changed, if one of its ancestors
+   * changed, or if another view labels it. Also collects the speakable texts of unchanged
+   * subtrees without labeled views, if the previous snapshot computed them.
+   */
+  private void diff(ViewHierarchySnapshot previous) {
+    int size = views.length;
+    boolean[] selfOrAncestorChanged = new boolean[size];
+    /* Labeled views take their text from elsewhere, so only carry texts if labeling is the same */
+    SpeakableTextIndex previousSpeakableTexts =
+        labelingChanged ? null : previous.speakableTextIndex;
+    if (previousSpeakableTexts != null) {
+      carriedSpeakableTexts = new String[size];
+    }
+    Set<Integer> labeledIds = new HashSet<>();
+    for (int i = 0; i < size; ++i) {
+      if (labelForIds[i] != View.NO_ID) {
+        labeledIds.add(labelForIds[i]);
+      }
+    }
+    /*
+     * A labeled view takes its text from its label, which may be outside its subtree, so the
+     * texts of subtrees holding one are computed again
+     */
+    boolean[] subtreeHasLabeled = new boolean[size];
+    for (int i = size - 1; i >= 0; --i) {
+      if ((ids[i] != View.NO_ID) && labeledIds.contains(ids[i])) {
+        subtreeHasLabeled[i] = true;
+      }
+      if (subtreeHasLabeled[i] && (parents[i] != NO_INDEX)) {
+        subtreeHasLabeled[parents[i]] = true;
+      }
+    }
+    for (int i = 0; i < size; ++i) {
+      int previousIndex = previous.indexOf(views[i]);
+      previousIndices[i] = previousIndex;
+      int parent = parents[i];
+      boolean changed = (previousIndex == NO_INDEX)
+          || (previous.elementHashes[previousIndex] != elementHashes[i])
+          || ((parent == NO_INDEX)
+              ? (previous.parents[previousIndex] != NO_INDEX)
+              : (previous.parents[previousIndex] != previousIndices[parent]));
+      selfOrAncestorChanged[i] = changed
+          || ((parent != NO_INDEX) && selfOrAncestorChanged[parent]);
+      dirty[i] = selfOrAncestorChanged[i]
+          || (previous.subtreeHashes[previousIndex] != subtreeHashes[i])
+          || ((ids[i] != View.NO_ID) && labeledIds.contains(ids[i]));
+      if ((previousSpeakableTexts != null) && (previousIndex != NO_INDEX)
+          && !subtreeHasLabeled[i]
+          && (previous.subtreeHashes[previousIndex] == subtreeHashes[i])) {
+        carriedSpeakableTexts[i] = previousSpeakableTexts.getSpeakableText(previousIndex);
+      }
+    }
+  }
+
+  /**
+   * Hashes the captured properties of an element, along with the uncaptured properties that
+   * built-in checks read from the live {@code View}.
+   */
+  private long hashElement(int index) {
+    View view = views[index];
+    long hash = mix(flags[index], ids[index]);
+    hash = mix(hash, labelForIds[index]);
+    for (int i = index * 4; i < index * 4 + 4; ++i) {
+      hash = mix(hash, bounds[i]);
+    }
+    hash = mix(hash, hashString(textIndices[index]));
+    hash = mix(hash, hashString(hintIndices[index]));
+    hash = mix(hash, hashString(contentDescriptionIndices[index]));
+    hash = mix(hash, hashString(classNameIndices[index]));
+    hash = mix(hash, view.getWidth());
+    hash = mix(hash, view.getHeight());
+    hash = mix(hash, Float.floatToIntBits(ViewCompat.getAlpha(view)));
+    hash = mix(hash, view.getVisibility());
+    if (view instanceof TextView) {
+      TextView textView = (TextView) view;
+      hash = mix(hash, Float.floatToIntBits(textView.getTextSize()));
+      hash = mix(hash, textView.getCurrentTextColor());
+    }
+    Drawable background = view.getBackground();
+    if (background instanceof ColorDrawable) {
+      hash = mix(hash, ((ColorDrawable) background).getColor());
+    } else if (background != null) {
+      hash = mix(hash, System.identityHashCode(background));
+    }
+    return hash;
+  }
+
+  private int hashString(int stringIndex) {
+    return (stringIndex == NO_INDEX) ? 0 : strings[stringIndex].hashCode();
+  }
+
+  private static long mix(long hash, long value) {
+    long mixed = (hash ^ value) * 0x9E3779B97F4A7C15L;
+    return mixed ^ (mixed >>> 31);
+  }
+
+  /**
+   * Captures the hierarchy rooted at {@code root}. Like any other access to the {@code View}s,
+   * this must be called on the thread that owns the hierarchy.
+   *
+   * @param root The root view of the hierarchy to capture
+   * @return A snapshot containing {@code root} and all views below it
+   */
+  public static ViewHierarchySnapshot capture(View root) {
+    return capture(root, null);
+  }
+
+  /**
+   * Captures the hierarchy rooted at {@code root} and compares it with an earlier snapshot, so
+   * checks can skip elements that haven't changed. See {@link #isDirty(int)}.
+   * <p>
+   * The new snapshot does not keep a reference to {@code previous}.
+   *
+   * @param root The root view of the hierarchy to capture
+   * @param previous An earlier snapshot of the same hierarchy, or {@code null}
+   * @return A snapshot containing {@code root} and all views below it
+   */
+  public static ViewHierarchySnapshot capture(View root, ViewHierarchySnapshot previous) {
+    if (root == null) {
+      throw new IllegalArgumentException("Cannot capture a null view hierarchy");
+    }
+    List<View> viewList = new ArrayList<>();
+    IntArrayBuilder parentList = new IntArrayBuilder();
+    Deque<View> viewStack = new ArrayDeque<>();
+    IntArrayBuilder parentStack = new IntArrayBuilder();
+    viewStack.push(root);
+    parentStack.add(NO_INDEX);
+    while (!viewStack.isEmpty()) {
+      View view = viewStack.pop();
+      int parent = parentStack.removeLast();
+      int index = viewList.size();
+      viewList.add(view);
+      parentList.add(parent);
+      if (view instanceof ViewGroup) {
+        ViewGroup viewGroup = (ViewGroup) view;
+        for (int i = viewGroup.getChildCount() - 1; i >= 0; --i) {
+          View child = viewGroup.getChildAt(i);
+          if (child != null) {
+            viewStack.push(child);
+            parentStack.add(index);
+          }
+        }
+      }
+    }
+    return new ViewHierarchySnapshot(viewList.toArray(new View[viewList.size()]),
+        parentList.toArray(), previous);
+  }
+
+  /**
+   * @return The number of elements in the snapshot
+   */
+  public int size() {
+    return views.length;
+  }
+
+  /**
+   * @return The root view of the captured hierarchy
+   */
+  public View getRootView() {
+    return views[0];
+  }
+
+  /**
+   * @param index The element index
+   * @return The live {@code View} captured at {@code index}
+   */
+  public View getView(int index) {
+    return views[index];
+  }
+
+  /**
+   * @param view A view
+   * @return The element index of {@code view}, or {@link #NO_INDEX} if it is not in the snapshot
+   */
+  public int indexOf(View view) {
+    Integer index = getIndexByView().get(view);
+    return (index != null) ? index : NO_INDEX;
+  }
+
+  /*
+   * Visitors may run on several threads, so the map is published through a volatile field and is
+   * never modified once published
+   */
+  private Map<View, Integer> getIndexByView() {
+    Map<View, Integer> map = indexByView;
+    if (map == null) {
+      synchronized (this) {
+        map = indexByView;
+        if (map == null) {
+          map = new IdentityHashMap<>(views.length);
+          for (int i = 0; i < views.length; ++i) {
+            map.put(views[i], i);
+          }
+          indexByView = map;
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * @return The element index of the parent of {@code index}, or {@link #NO_INDEX} for the root
+   */
+  public int getParent(int index) {
+    return parents[index];
+  }
+
+  /**
+   * @return One past the last element index in the subtree rooted at {@code index}
+   */
+  public int getSubtreeEnd(int index) {
+    return subtreeEnds[index];
+  }
+
+  /**
+   * @return The number of direct children of {@code index}
+   */
+  public int getChildCount(int index) {
+    return childOffsets[index + 1] - childOffsets[index];
+  }
+
+  /**
+   * @return The element index of the {@code childNumber}th direct child of {@code index}
+   */
+  public int getChild(int index, int childNumber) {
+    if ((childNumber < 0) || (childNumber >= getChildCount(index))) {
+      throw new IndexOutOfBoundsException("Child " + childNumber + " of element " + index);
+    }
+    return children[childOffsets[index] + childNumber];
+  }
+
+  /**
+   * @return {@code true} if {@code ancestor} is {@code index} or one of its ancestors
+   */
+  public boolean isInSubtree(int ancestor, int index) {
+    return (index >= ancestor) && (index < subtreeEnds[ancestor]);
+  }
+
+  /**
+   * @return All {@code FLAG_*} bits captured for {@code index}
+   */
+  public int getFlags(int index) {
+    return flags[index];
+  }
+
+  /**
+   * @param index The element index
+   * @param flagMask One or more {@code FLAG_*} bits
+   * @return {@code true} if every bit in {@code flagMask} is set for {@code index}
+   */
+  public boolean hasFlags(int index, int flagMask) {
+    return (flags[index] & flagMask) == flagMask;
+  }
+
+  /**
+   * Copies the global visible rect of {@code index} into {@code outBounds}. The rect is empty
+   * unless {@link #FLAG_HAS_VISIBLE_RECT} is set.
+   */
+  public void getBounds(int index, Rect outBounds) {
+    int offset = index * 4;
+    outBounds.set(bounds[offset], bounds[offset + 1], bounds[offset + 2], bounds[offset + 3]);
+  }
+
+  public int getLeft(int index) {
+    return bounds[index * 4];
+  }
+
+  public int getTop(int index) {
+    return bounds[index * 4 + 1];
+  }
+
+  public int getRight(int index) {
+    return bounds[index * 4 + 2];
+  }
+
+  public int getBottom(int index) {
+    return bounds[index * 4 + 3];
+  }
+
+  /**
+   * @return {@link View#getId()} of {@code index}
+   */
+  public int getId(int index) {
+    return ids[index];
+  }
+
+  /**
+   * @return {@link View#getLabelFor()} of {@code index}
+   */
+  public int getLabelFor(int index) {
+    return labelForIds[index];
+  }
+
+  /**
+   * @return The text of a {@link TextView}, or {@code null}
+   */
+  public String getText(int index) {
+    return getString(textIndices[index]);
+  }
+
+  /**
+   * @return The hint of a {@link TextView}, or {@code null}
+   */
+  public String getHint(int index) {
+    return getString(hintIndices[index]);
+  }
+
+  /**
+   * @return The content description of {@code index}, or {@code null}
+   */
+  public String getContentDescription(int index) {
+    return getString(contentDescriptionIndices[index]);
+  }
+
+  /**
+   * @return The fully qualified class name of the view at {@code index}
+   */
+  public String getClassName(int index) {
+    return getString(classNameIndices[index]);
+  }
+
+  /**
+   * @return The index in the string table of the text of {@code index}, or {@link #NO_INDEX}.
+   * Equal strings share an index, so indices can be compared instead of the strings themselves.
+   */
+  public int getTextIndex(int index) {
+    return textIndices[index];
+  }
+
+  /**
+   * @return The index in the string table of the content description of {@code index}, or
+   * {@link #NO_INDEX}
+   */
+  public int getContentDescriptionIndex(int index) {
+    return contentDescriptionIndices[index];
+  }
+
+  /**
+   * @return The interned string at {@code stringIndex}, or {@code null} for {@link #NO_INDEX}
+   */
+  public String getString(int stringIndex) {
+    return (stringIndex == NO_INDEX) ? null : strings[stringIndex];
+  }
+
+  /**
+   * @return A hash of the properties captured for {@code index}. Equal hashes in two snapshots
+   * mean the element is, with overwhelming probability, unchanged.
+   */
+  public long getElementHash(int index) {
+    return elementHashes[index];
+  }
+
+  /**
+   * @return A hash of the properties and structure of the subtree rooted at {@code index}
+   */
+  public long getSubtreeHash(int index) {
+    return subtreeHashes[index];
+  }
+
+  /**
+   * @return {@code true} if this snapshot was compared with an earlier one when it was captured
+   */
+  public boolean hasPrevious() {
+    return previousIndices != null;
+  }
+
+  /**
+   * @return The index of the same view in the previous snapshot, or {@link #NO_INDEX} if the view
+   * is new or there is no previous snapshot
+   */
+  public int getPreviousIndex(int index) {
+    return (previousIndices != null) ? previousIndices[index] : NO_INDEX;
+  }
+
+  /**
+   * @return {@code true} unless the results of an element-local check for {@code index} can be
+   * carried over from the previous snapshot. Every element is dirty if there is no previous
+   * snapshot.
+   */
+  public boolean isDirty(int index) {
+    return (dirty == null) || labelingChanged || dirty[index];
+  }
+
+  /**
+   * @return {@code true} if this snapshot was compared with {@code previous} when it was captured
+   */
+  boolean isComparedWith(ViewHierarchySnapshot previous) {
+    return (previous != null) && (previousCaptureId == previous.captureId);
+  }
+
+  /**
+   * @return {@code true} if the set of {@code labelFor} relationships differs from the previous
+   * snapshot. Checks that index those relationships across the whole hierarchy must then be rerun
+   * in full.
+   */
+  public boolean isLabelingChanged() {
+    return labelingChanged;
+  }
+
+  /**
+   * @return The speakable text of the view at {@code index}, as computed by
+   * {@link AccessibilityCheckUtils#getSpeakableTextForView(View)}. The text of every element is
+   * computed in one bottom-up pass on first use, and carried over from the previous snapshot for
+   * subtrees that are unchanged and contain no labeled views.
+   */
+  public String getSpeakableText(int index) {
+    return getSpeakableTextIndex().getSpeakableText(index);
+  }
+
+  private SpeakableTextIndex getSpeakableTextIndex() {
+    SpeakableTextIndex index = speakableTextIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = speakableTextIndex;
+        if (index == null) {
+          index = new SpeakableTextIndex(this, carriedSpeakableTexts);
+          speakableTextIndex = index;
+          carriedSpeakableTexts = null;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @return The {@code labelFor} relationships of this snapshot, resolved on first use
+   */
+  synchronized LabelForIndex getLabelForIndex() {
+    if (labelForIndex == null) {
+      labelForIndex = new LabelForIndex(this);
+    }
+    return labelForIndex;
+  }
+
+  /**
+   * @return A spatial index over the visible rects of this snapshot, built on first use
+   */
+  synchronized BoundsIndex getBoundsIndex() {
+    if (boundsIndex == null) {
+      boundsIndex = new BoundsIndex(this);
+    }
+    return boundsIndex;
+  }
+
+  /**
+   * @return The index of the element that labels {@code index}, found as
+   * {@link ViewAccessibilityUtils#getLabelForView(View)} would, or {@link #NO_INDEX} if there is
+   * none
+   */
+  public int getLabeledBy(int index) {
+    return getLabelForIndex().getLabeledBy(index);
+  }
+
+  private static int intern(CharSequence value, Map<String, Integer> stringTable,
+      List<String> stringList) {
+    if (value == null) {
+      return NO_INDEX;
+    }
+    String string = value.toString();
+    Integer index = stringTable.get(string);
+    if (index == null) {
+      index = stringList.size();
+      stringTable.put(string, index);
+      stringList.add(string);
+    }
+    return index;
+  }
+
+  private static boolean areAncestorsVisible(View view) {
+    ViewParent parent = view.getParent();
+    while (parent instanceof View) {
+      View parentView = (View) parent;
+      if ((ViewCompat.getAlpha(parentView) <= 0)
+          || (parentView.getVisibility() != View.VISIBLE)) {
+        return false;
+      }
+      parent = parentView.getParent();
+    }
+    return true;
+  }
+
+  /**
+   * Minimal growable {@code int} array, to avoid boxing while the hierarchy is walked.
+   */
+  static final class IntArrayBuilder {
+    private int[] values = new int[64];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int removeLast() {
+      return values[--size];
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
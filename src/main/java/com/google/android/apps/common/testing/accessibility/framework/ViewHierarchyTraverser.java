@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.apps.common.testing.accessibility.framework;
+
+import android.view.View;
+
+import com.google.android.apps.common.testing.accessibility.framework.IncrementalCheckState.ElementResults;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a group of {@link AccessibilityViewHierarchyCheck}s over a {@code View} hierarchy with a
+ * single pass over a {@link ViewHierarchySnapshot}.
+ * <p>
+ * Each check that provides an {@link AccessibilityViewCheckVisitor} is handed every element of the
+ * snapshot in preorder. Checks that don't provide one are run through
+ * {@link AccessibilityViewHierarchyCheck#runCheckOnViewHierarchy(View)} as before. Results are
+ * grouped by check, in the iteration order of the supplied checks.
+ */
+public final class ViewHierarchyTraverser {
+
+  private ViewHierarchyTraverser() {}
+
+  /**
+   * @param check The check to run
+   * @param root The root view of the hierarchy to check
+   * @return The results of {@code check}
+   */
+  public static List<AccessibilityViewCheckResult> runCheck(
+      AccessibilityViewHierarchyCheck check, View root) {
+    return runChecks(Collections.singletonList(check), root);
+  }
+
+  /**
+   * Captures the hierarchy rooted at {@code root} and runs {@code checks} against it.
+   *
+   * @param checks The checks to run
+   * @param root The root view of the hierarchy to check
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityViewCheckResult> runChecks(
+      Iterable<? extends AccessibilityViewHierarchyCheck> checks, View root) {
+    return runChecks(checks, ViewHierarchySnapshot.capture(root));
+  }
+
+  /**
+   * @param checks The checks to run
+   * @param snapshot A snapshot of the hierarchy to check
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityViewCheckResult> runChecks(
+      Iterable<? extends AccessibilityViewHierarchyCheck> checks,
+      ViewHierarchySnapshot snapshot) {
+    List<List<AccessibilityViewCheckResult>> resultsByCheck = new ArrayList<>();
+    List<AccessibilityViewCheckVisitor> visitors = new ArrayList<>();
+    List<List<AccessibilityViewCheckResult>> visitorResults = new ArrayList<>();
+    for (AccessibilityViewHierarchyCheck check : checks) {
+      AccessibilityViewCheckVisitor visitor = check.newVisitor(snapshot);
+      if (visitor != null) {
+        List<AccessibilityViewCheckResult> checkResults = new ArrayList<>();
+        visitors.add(visitor);
+        visitorResults.add(checkResults);
+        resultsByCheck.add(checkResults);
+      } else {
+        resultsByCheck.add(check.runCheckOnViewHierarchy(snapshot.getRootView()));
+      }
+    }
+
+    if (!visitors.isEmpty()) {
+      traverse(snapshot, visitors, visitorResults);
+    }
+
+    List<AccessibilityViewCheckResult> results = new ArrayList<>();
+    for (List<AccessibilityViewCheckResult> checkResults : resultsByCheck) {
+      results.addAll(checkResults);
+    }
+    return results;
+  }
+
+  /**
+   * Runs {@code checks} against {@code snapshot}, spreading the work of thread-safe visitors across
+   * {@code executor}.
+   * <p>
+   * Element-local visitors are split into {@code parallelism} contiguous ranges of elements. Other
+   * thread-safe visitors each run as a single task. Visitors that are not thread-safe, and checks
+   * without a visitor, may use the views in ways that are not safe while other threads read them,
+   * such as drawing their backgrounds, so they run on the calling thread before any task is
+   * submitted. Results are merged in the same order as
+   * {@link #runChecks(Iterable, ViewHierarchySnapshot)} would produce them.
+   *
+   * @param checks The checks to run
+   * @param snapshot A snapshot of the hierarchy to check
+   * @param executor The executor on which to run thread-safe visitors
+   * @param parallelism The number of ranges into which element-local visitors are split
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityViewCheckResult> runChecks(
+      Iterable<? extends AccessibilityViewHierarchyCheck> checks,
+      final ViewHierarchySnapshot snapshot, ExecutorService executor, int parallelism) {
+    if (parallelism <= 1) {
+      return runChecks(checks, snapshot);
+    }
+
+    int size = snapshot.size();
+    int partitionSize = Math.max((size + parallelism - 1) / parallelism, 1);
+    List<CheckRun> runs = new ArrayList<>();
+    List<AccessibilityViewCheckVisitor> callingThreadVisitors = new ArrayList<>();
+    List<List<AccessibilityViewCheckResult>> callingThreadResults = new ArrayList<>();
+    for (AccessibilityViewHierarchyCheck check : checks) {
+      AccessibilityViewCheckVisitor visitor = check.newVisitor(snapshot);
+      CheckRun run = new CheckRun(visitor);
+      runs.add(run);
+      if (visitor == null) {
+        run.results.addAll(check.runCheckOnViewHierarchy(snapshot.getRootView()));
+      } else if (!visitor.isThreadSafe()) {
+        callingThreadVisitors.add(visitor);
+        callingThreadResults.add(run.results);
+      }
+    }
+    if (!callingThreadVisitors.isEmpty()) {
+      traverse(snapshot, callingThreadVisitors, callingThreadResults);
+    }
+
+    /* Only thread-safe visitors use the views from here until every task has been joined */
+    for (CheckRun run : runs) {
+      final AccessibilityViewCheckVisitor visitor = run.visitor;
+      if ((visitor == null) || !visitor.isThreadSafe()) {
+        continue;
+      }
+      if (visitor.isElementLocal()) {
+        for (int start = 0; start < size; start += partitionSize) {
+          final int rangeStart = start;
+          final int rangeEnd = Math.min(start + partitionSize, size);
+          run.futures.add(executor.submit(new Callable<List<AccessibilityViewCheckResult>>() {
+            @Override
+            public List<AccessibilityViewCheckResult> call() {
+              List<AccessibilityViewCheckResult> rangeResults = new ArrayList<>();
+              for (int index = rangeStart; index < rangeEnd; ++index) {
+                visitor.visitElement(snapshot, index, rangeResults);
+              }
+              return rangeResults;
+            }
+          }));
+        }
+      } else {
+        run.futures.add(executor.submit(new Callable<List<AccessibilityViewCheckResult>>() {
+          @Override
+          public List<AccessibilityViewCheckResult> call() {
+            List<AccessibilityViewCheckResult> checkResults = new ArrayList<>();
+            traverse(snapshot, Collections.singletonList(visitor),
+                Collections.singletonList(checkResults));
+            return checkResults;
+          }
+        }));
+      }
+    }
+
+    List<AccessibilityViewCheckResult> results = new ArrayList<>();
+    for (CheckRun run : runs) {
+      if (!run.futures.isEmpty()) {
+        for (Future<List<AccessibilityViewCheckResult>> future : run.futures) {
+          run.results.addAll(getResult(future));
+        }
+        if (run.visitor.isElementLocal()) {
+          run.visitor.endHierarchy(snapshot, run.results);
+        }
+      }
+      results.addAll(run.results);
+    }
+    return results;
+  }
+
+  /**
+   * Captures the hierarchy rooted at {@code root} and runs {@code checks} against it, reusing the
+   * results of the previous run recorded in {@code state} where possible.
+   * <p>
+   * Element-local visitors are only handed the elements that
+   * {@link ViewHierarchySnapshot#isDirty(int) changed} since the previous run. Their results for
+   * the other elements are carried over. Other visitors, and checks without a visitor, are rerun
+   * in full, but can use the indices that the snapshot carries over, such as
+   * {@link ViewHierarchySnapshot#getSpeakableText(int)}. Results are ordered as
+   * {@link #runChecks(Iterable, ViewHierarchySnapshot)} would order them.
+   *
+   * @param checks The checks to run
+   * @param root The root view of the hierarchy to check
+   * @param state The state of the previous run, which is updated to describe this run
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityViewCheckResult> runChecksIncrementally(
+      Iterable<? extends AccessibilityViewHierarchyCheck> checks, View root,
+      IncrementalCheckState state) {
+    return runChecksIncrementally(
+        checks, ViewHierarchySnapshot.capture(root, state.getSnapshot()), state);
+  }
+
+  /**
+   * Runs {@code checks} against {@code snapshot}, reusing the results of the previous run recorded
+   * in {@code state} where possible. Results are only reused if {@code snapshot} was captured with
+   * {@link ViewHierarchySnapshot#capture(View, ViewHierarchySnapshot)} against the snapshot of
+   * that run; otherwise every element is checked.
+   *
+   * @param checks The checks to run
+   * @param snapshot A snapshot of the hierarchy to check
+   * @param state The state of the previous run, which is updated to describe this run
+   * @return The results of all {@code checks}, grouped by check
+   */
+  public static List<AccessibilityViewCheckResult> runChecksIncrementally(
+      Iterable<? extends AccessibilityViewHierarchyCheck> checks, ViewHierarchySnapshot snapshot,
+      IncrementalCheckState state) {
+    boolean reuseResults = snapshot.isComparedWith(state.getSnapshot());
+    int size = snapshot.size();
+    Map<Class<?>, ElementResults> resultsByCheck = new HashMap<>();
+    List<AccessibilityViewCheckResult> results = new ArrayList<>();
+    List<AccessibilityViewCheckResult> checkResults = new ArrayList<>();
+    for (AccessibilityViewHierarchyCheck check : checks) {
+      AccessibilityViewCheckVisitor visitor = check.newVisitor(snapshot);
+      checkResults.clear();
+      if (visitor == null) {
+        checkResults.addAll(check.runCheckOnViewHierarchy(snapshot.getRootView()));
+      } else if (!visitor.isElementLocal()) {
+        traverse(snapshot, Collections.singletonList(visitor),
+            Collections.singletonList(checkResults));
+      } else {
+        ElementResults previous =
+            reuseResults ? state.getElementResults(check.getClass()) : null;
+        ElementResults current = new ElementResults(size);
+        for (int index = 0; index < size; ++index) {
+          if ((previous != null) && !snapshot.isDirty(index)) {
+            previous.copyResults(snapshot.getPreviousIndex(index), checkResults);
+          } else {
+            visitor.visitElement(snapshot, index, checkResults);
+          }
+          for (int i = current.results.size(); i < checkResults.size(); ++i) {
+            current.results.add(ElementResults.copy(checkResults.get(i)));
+          }
+          current.offsets[index + 1] = current.results.size();
+        }
+        visitor.endHierarchy(snapshot, checkResults);
+        resultsByCheck.put(check.getClass(), current);
+      }
+      results.addAll(checkResults);
+    }
+    state.update(snapshot, resultsByCheck);
+    return results;
+  }
+
+  private static List<AccessibilityViewCheckResult> getResult(
+      Future<List<AccessibilityViewCheckResult>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for accessibility checks", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * Dispatches each element of the snapshot, in preorder, to all visitors.
+   */
+  private static void traverse(ViewHierarchySnapshot snapshot,
+      List<AccessibilityViewCheckVisitor> visitors,
+      List<List<AccessibilityViewCheckResult>> visitorResults) {
+    int visitorCount = visitors.size();
+    int size = snapshot.size();
+    for (int index = 0; index < size; ++index) {
+      for (int i = 0; i < visitorCount; ++i) {
+        visitors.get(i).visitElement(snapshot, index, visitorResults.get(i));
+      }
+    }
+    for (int i = 0; i < visitorCount; ++i) {
+      visitors.get(i).endHierarchy(snapshot, visitorResults.get(i));
+    }
+  }
+
+  /**
+   * The visitor, pending tasks and results of one check during a parallel run.
+   */
+  private static final class CheckRun {
+    final AccessibilityViewCheckVisitor visitor;
+    final List<Future<List<AccessibilityViewCheckResult>>> futures = new ArrayList<>();
+    final List<AccessibilityViewCheckResult> results = new ArrayList<>();
+
+    CheckRun(AccessibilityViewCheckVisitor visitor) {
+      this.visitor = visitor;
+    }
+  }
+}
@@ -14,11 +14,16 @@
 package com.google.android.apps.common.testing.accessibility.framework.integrations.espresso;
 
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckPreset;
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckRegistry;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultDescriptor;
+import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResultCache;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResult.AccessibilityCheckResultType;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityCheckResultUtils;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityViewCheckResult;
 import com.google.android.apps.common.testing.accessibility.framework.AccessibilityViewHierarchyCheck;
+import com.google.android.apps.common.testing.accessibility.framework.IncrementalCheckState;
+import com.google.android.apps.common.testing.accessibility.framework.ViewHierarchySnapshot;
+import com.google.android.apps.common.testing.accessibility.framework.ViewHierarchyTraverser;
 import com.google.android.apps.common.testing.accessibility.framework.integrations.AccessibilityViewCheckException;
 import android.content.Context;
 import android.util.Log;
@@ -26,10 +31,14 @@ import android.view.View;
 
 import org.hamcrest.Matcher;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A configurable executor for the {@link AccessibilityViewHierarchyCheck}s designed for use with
@@ -40,12 +49,20 @@ public final class AccessibilityValidator {
 
   private static final String TAG = "AccessibilityValidator";
   private AccessibilityCheckPreset preset = AccessibilityCheckPreset.LATEST;
+  private String customPresetName = null;
+  /* Resolved once per preset, so that checks with caches keep them across this validator's runs */
+  private Set<AccessibilityViewHierarchyCheck> presetChecks = null;
   private boolean runChecksFromRootView = false;
   private boolean throwExceptionForErrors = true;
   private AccessibilityCheckResultDescriptor resultDescriptor =
       new AccessibilityCheckResultDescriptor();
   private Matcher<? super AccessibilityViewCheckResult> suppressingMatcher = null;
   private List<AccessibilityCheckListener> checkListeners = new LinkedList<>();
+  private int parallelism = 1;
+  private ExecutorService executor = null;
+  private boolean incrementalChecking = false;
+  private AccessibilityCheckResultCache resultCache = null;
+  private final IncrementalCheckState incrementalState = new IncrementalCheckState();
 
   public AccessibilityValidator() {
   }
@@ -72,6 +89,24 @@ public final class AccessibilityValidator {
    */
   public AccessibilityValidator setCheckPreset(AccessibilityCheckPreset preset) {
     this.preset = preset;
+    this.customPresetName = null;
+    this.presetChecks = null;
+    return this;
+  }
+
+  /**
+   * Specify the set of checks to be run as a custom preset previously registered with
+   * {@link AccessibilityCheckRegistry#registerCustomPreset}.
+   *
+   * @param customPresetName The name of the custom preset specifying the group of checks to run.
+   * @return this
+   */
+  public AccessibilityValidator setCheckPreset(String customPresetName) {
+    if (!AccessibilityCheckRegistry.getInstance().hasCustomPreset(customPresetName)) {
+      throw new IllegalArgumentException("Unknown custom preset: " + customPresetName);
+    }
+    this.customPresetName = customPresetName;
+    this.presetChecks = null;
     return this;
   }
 
@@ -123,6 +158,84 @@ public final class AccessibilityValidator {
     return this;
   }
 
+  /**
+   * Runs checks that only read view state on {@code parallelism} worker threads while the calling
+   * thread runs the rest. Per-element checks are split across contiguous ranges of the hierarchy.
+   * Results are reported in the same order as a sequential run. Default: {@code 1}, which runs
+   * every check on the calling thread.
+   *
+   * @param parallelism the number of worker threads to use
+   * @return this
+   */
+  public AccessibilityValidator setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    if ((parallelism != this.parallelism) && (executor != null)) {
+      executor.shutdown();
+      executor = null;
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Reuses the results of the previous run for the parts of the hierarchy that did not change, so
+   * repeated checks of the same screen only revisit the changed subtrees. Changes are detected by
+   * comparing the properties that {@link ViewHierarchySnapshot} captures for each view, so this
+   * should only be enabled when the checks being run depend on no other view state. Takes
+   * precedence over {@link #setParallelism(int)}. Default: {@code false}
+   *
+   * @param incrementalChecking {@code true} to only recheck the views that changed since the
+   *        previous run
+   * @return this
+   */
+  public AccessibilityValidator setIncrementalChecking(boolean incrementalChecking) {
+    this.incrementalChecking = incrementalChecking;
+    incrementalState.clear();
+    return this;
+  }
+
+  /**
+   * Caches the results of up to {@code maxEntries} distinct hierarchy states, so checking a screen
+   * again in a state that was already checked returns the earlier results without running any
+   * checks. Like {@link #setIncrementalChecking(boolean)}, states are compared using the
+   * properties that {@link ViewHierarchySnapshot} captures for each view. Default: {@code 0},
+   * which disables caching.
+   *
+   * @param maxEntries the maximum number of hierarchy states to cache, or {@code 0} to disable
+   * @return this
+   */
+  public AccessibilityValidator setResultCacheSize(int maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Result cache size cannot be negative");
+    }
+    resultCache = (maxEntries > 0) ? new AccessibilityCheckResultCache(maxEntries) : null;
+    return this;
+  }
+
+  /**
+   * @return the cache set up with {@link #setResultCacheSize(int)}, which reports its hit and miss
+   *         counts, or {@code null} if caching is disabled
+   */
+  public AccessibilityCheckResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Discards all cached results, for example after changing state that the cache does not take
+   * into account.
+   *
+   * @return this
+   */
+  public AccessibilityValidator invalidateResultCache() {
+    if (resultCache != null) {
+      resultCache.invalidate();
+    }
+    incrementalState.clear();
+    return this;
+  }
+
   /**
    * Adds a listener to receive all {@link AccessibilityViewCheckResult}s after suppression. Listeners
    * will be called in the order they are added and before any
@@ -146,11 +259,25 @@ public final class AccessibilityValidator {
    */
   private List<AccessibilityViewCheckResult> runAccessibilityChecks(
       View root) {
-    List<AccessibilityViewHierarchyCheck> viewHierarchyChecks = new ArrayList<>(
-        AccessibilityCheckPreset.getViewChecksForPreset(preset));
-    List<AccessibilityViewCheckResult> results = new ArrayList<>();
-    for (AccessibilityViewHierarchyCheck check : viewHierarchyChecks) {
-      results.addAll(check.runCheckOnViewHierarchy(root));
+    Set<AccessibilityViewHierarchyCheck> viewHierarchyChecks = getViewHierarchyChecks();
+    ViewHierarchySnapshot snapshot = incrementalChecking
+        ? ViewHierarchySnapshot.capture(root, incrementalState.getSnapshot())
+        : ViewHierarchySnapshot.capture(root);
+    List<AccessibilityViewCheckResult> results =
+        (resultCache != null) ? resultCache.get(snapshot, viewHierarchyChecks) : null;
+    if (results == null) {
+      if (incrementalChecking) {
+        results = ViewHierarchyTraverser.runChecksIncrementally(
+            viewHierarchyChecks, snapshot, incrementalState);
+      } else {
+        results = (parallelism > 1)
+            ? ViewHierarchyTraverser.runChecks(
+                viewHierarchyChecks, snapshot, getExecutor(), parallelism)
+            : ViewHierarchyTraverser.runChecks(viewHierarchyChecks, snapshot);
+      }
+      if (resultCache != null) {
+        resultCache.put(snapshot, viewHierarchyChecks, results);
+      }
     }
     AccessibilityCheckResultUtils.suppressMatchingResults(results, suppressingMatcher);
 
@@ -162,6 +289,33 @@ public final class AccessibilityValidator {
     return results;
   }
 
+  private Set<AccessibilityViewHierarchyCheck> getViewHierarchyChecks() {
+    if (presetChecks == null) {
+      AccessibilityCheckRegistry registry = AccessibilityCheckRegistry.getInstance();
+      presetChecks = (customPresetName != null)
+          ? registry.getViewChecksForCustomPreset(customPresetName)
+          : registry.getViewChecksForPreset(preset);
+    }
+    return presetChecks;
+  }
+
+  private ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, TAG + "-" + threadCount.incrementAndGet());
+          /* The validator has no lifecycle, so its threads must not keep the process alive */
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
   /**
    * Reports the given results to the user using logcat and/or exceptions depending on the options
    * set for this {@code AccessibilityValidator}. Results of type {@code INFO} and {@code WARNING}
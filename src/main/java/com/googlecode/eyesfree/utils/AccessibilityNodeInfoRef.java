@@ -66,7 +66,7 @@ public class AccessibilityNodeInfoRef {
      */
     public void reset(AccessibilityNodeInfoCompat newNode) {
         if (mNode != newNode && mNode != null && mOwned) {
-            mNode.recycle();
+            NodeInfoTracker.recycle(mNode);
         }
         mNode = newNode;
         mOwned = true;
@@ -90,7 +90,7 @@ public class AccessibilityNodeInfoRef {
     public static AccessibilityNodeInfoRef obtain(
         AccessibilityNodeInfoCompat node) {
         return new AccessibilityNodeInfoRef(
-            AccessibilityNodeInfoCompat.obtain(node), true);
+            NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node)), true);
     }
 
     /**
@@ -127,7 +127,7 @@ public class AccessibilityNodeInfoRef {
      */
     public AccessibilityNodeInfoRef makeOwned() {
         if (mNode != null && !mOwned) {
-            reset(AccessibilityNodeInfoCompat.obtain(mNode));
+            reset(NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(mNode)));
         }
         return this;
     }
@@ -168,7 +168,7 @@ public class AccessibilityNodeInfoRef {
             return false;
         }
         for (int i = mNode.getChildCount() - 1; i >= 0; --i) {
-            AccessibilityNodeInfoCompat newNode = mNode.getChild(i);
+            AccessibilityNodeInfoCompat newNode = NodeInfoTracker.obtained(mNode.getChild(i));
             if (newNode == null) {
                 return false;
             }
@@ -176,7 +176,7 @@ public class AccessibilityNodeInfoRef {
                 reset(newNode);
                 return true;
             }
-            newNode.recycle();
+            NodeInfoTracker.recycle(newNode);
         }
         return false;
     }
@@ -189,14 +189,15 @@ public class AccessibilityNodeInfoRef {
         if (mNode == null) {
             return false;
         }
-        AccessibilityNodeInfoCompat parent = mNode.getParent();
+        AccessibilityNodeInfoCompat parent = NodeInfoTracker.obtained(mNode.getParent());
         if (parent == null) {
             return false;
         }
         try {
             int childNumber = getChildNumber(parent);
             for (int i = childNumber - 1; i >= 0; --i) {
-                AccessibilityNodeInfoCompat newNode = parent.getChild(i);
+                AccessibilityNodeInfoCompat newNode =
+                        NodeInfoTracker.obtained(parent.getChild(i));
                 if (newNode == null) {
                     return false;
                 }
@@ -204,10 +205,10 @@ public class AccessibilityNodeInfoRef {
                     reset(newNode);
                     return true;
                 }
-                newNode.recycle();
+                NodeInfoTracker.recycle(newNode);
             }
         } finally {
-            parent.recycle();
+            NodeInfoTracker.recycle(parent);
         }
         return false;
     }
@@ -222,7 +223,7 @@ public class AccessibilityNodeInfoRef {
         }
         int childCount = mNode.getChildCount();
         for (int i = 0; i < childCount; ++i) {
-            AccessibilityNodeInfoCompat newNode = mNode.getChild(i);
+            AccessibilityNodeInfoCompat newNode = NodeInfoTracker.obtained(mNode.getChild(i));
             if (newNode == null) {
                 return false;
             }
@@ -230,7 +231,7 @@ public class AccessibilityNodeInfoRef {
                 reset(newNode);
                 return true;
             }
-            newNode.recycle();
+            NodeInfoTracker.recycle(newNode);
         }
         return false;
     }
@@ -243,7 +244,7 @@ public class AccessibilityNodeInfoRef {
         if (mNode == null) {
             return false;
         }
-        AccessibilityNodeInfoCompat parent = mNode.getParent();
+        AccessibilityNodeInfoCompat parent = NodeInfoTracker.obtained(mNode.getParent());
         if (parent == null) {
             return false;
         }
@@ -255,7 +256,7 @@ public class AccessibilityNodeInfoRef {
             }
             for (int i = childNumber + 1; i < childCount; ++i) {
                 AccessibilityNodeInfoCompat newNode =
-                        parent.getChild(i);
+                        NodeInfoTracker.obtained(parent.getChild(i));
                 if (newNode == null) {
                     return false;
                 }
@@ -263,10 +264,10 @@ public class AccessibilityNodeInfoRef {
                     reset(newNode);
                     return true;
                 }
-                newNode.recycle();
+                NodeInfoTracker.recycle(newNode);
             }
         } finally {
-            parent.recycle();
+            NodeInfoTracker.recycle(parent);
         }
         return false;
     }
@@ -279,14 +280,14 @@ public class AccessibilityNodeInfoRef {
         if (mNode == null) {
             return false;
         }
-        AccessibilityNodeInfoCompat parentNode = mNode.getParent();
+        AccessibilityNodeInfoCompat parentNode = NodeInfoTracker.obtained(mNode.getParent());
         while (parentNode != null) {
             if (AccessibilityNodeInfoUtils.isVisibleOrLegacy(parentNode)) {
                 reset(parentNode);
                 return true;
             }
-            AccessibilityNodeInfoCompat tmp = parentNode.getParent();
-            parentNode.recycle();
+            AccessibilityNodeInfoCompat tmp = NodeInfoTracker.obtained(parentNode.getParent());
+            NodeInfoTracker.recycle(parentNode);
             parentNode = tmp;
         }
         return false;
@@ -296,13 +297,11 @@ public class AccessibilityNodeInfoRef {
         int ret = -1;
         int childCount = parent.getChildCount();
         for (int i = 0; i < childCount && ret < 0; ++i) {
-            AccessibilityNodeInfoCompat child = parent.getChild(i);
+            AccessibilityNodeInfoCompat child = NodeInfoTracker.obtained(parent.getChild(i));
             if (mNode.equals(child)) {
                 ret = i;
             }
-            if (child != null) {
-                child.recycle();
-            }
+            NodeInfoTracker.recycle(child);
         }
         return ret;
     }
@@ -25,11 +25,11 @@ import android.util.Log;
 
 import com.googlecode.eyesfree.compat.CompatUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -100,11 +100,15 @@ public class AccessibilityNodeInfoUtils {
         }
 
         AccessibilityNodeInfoCompat current = null;
-        AccessibilityNodeInfoCompat parent = AccessibilityNodeInfoCompat.obtain(node);
+        AccessibilityNodeInfoCompat parent =
+                NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node));
 
         do {
             current = parent;
-            parent = current.getParent();
+            parent = NodeInfoTracker.obtained(current.getParent());
+            if (parent != null) {
+                NodeInfoTracker.recycle(current);
+            }
         } while (parent != null);
 
         return current;
@@ -260,7 +264,7 @@ public class AccessibilityNodeInfoUtils {
         // Has non-actionable, speaking children?
         for (int i = 0; i < childCount; i++) {
             try {
-                child = node.getChild(i);
+                child = NodeInfoTracker.obtained(node.getChild(i));
 
                 if (child == null) {
                     LogUtils.log(AccessibilityNodeInfoUtils.class, Log.VERBOSE,
@@ -413,7 +417,7 @@ public class AccessibilityNodeInfoUtils {
             return false;
         }
 
-        result.recycle();
+        NodeInfoTracker.recycle(result);
         return true;
     }
 
@@ -428,7 +432,7 @@ public class AccessibilityNodeInfoUtils {
         }
 
         if (filter.accept(context, node)) {
-            return AccessibilityNodeInfoCompat.obtain(node);
+            return NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node));
         }
 
         return getMatchingAncestor(context, node, filter);
@@ -448,22 +452,22 @@ public class AccessibilityNodeInfoUtils {
                 new HashSet<AccessibilityNodeInfoCompat>();
 
         try {
-            ancestors.add(AccessibilityNodeInfoCompat.obtain(node));
-            node = node.getParent();
+            ancestors.add(NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node)));
+            node = NodeInfoTracker.obtained(node.getParent());
 
             while (node != null) {
                 if (!ancestors.add(node)) {
                     // Already seen this node, so abort!
-                    node.recycle();
+                    NodeInfoTracker.recycle(node);
                     return null;
                 }
 
                 if (filter.accept(context, node)) {
                     // Send a copy since node gets recycled.
-                    return AccessibilityNodeInfoCompat.obtain(node);
+                    return NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node));
                 }
 
-                node = node.getParent();
+                node = NodeInfoTracker.obtained(node.getParent());
             }
         } finally {
             recycleNodes(ancestors);
@@ -518,7 +522,7 @@ public class AccessibilityNodeInfoUtils {
         AccessibilityNodeInfoCompat parent = null;
 
         try {
-            parent = node.getParent();
+            parent = NodeInfoTracker.obtained(node.getParent());
             if (parent == null) {
                 // Not a child node of anything.
                 return false;
@@ -642,7 +646,7 @@ public class AccessibilityNodeInfoUtils {
                     && !AccessibilityNodeInfoUtils.shouldFocusNode(context, searched)) {
                 final AccessibilityNodeInfoCompat temp = searched;
                 searched = NodeFocusFinder.focusSearch(temp, direction);
-                temp.recycle();
+                NodeInfoTracker.recycle(temp);
             }
 
             if ((searched == null) || searched.equals(ancestor)) {
@@ -752,9 +756,7 @@ public class AccessibilityNodeInfoUtils {
         }
 
         for (AccessibilityNodeInfoCompat node : nodes) {
-            if (node != null) {
-                node.recycle();
-            }
+            NodeInfoTracker.recycle(node);
         }
 
         nodes.clear();
@@ -771,9 +773,7 @@ public class AccessibilityNodeInfoUtils {
         }
 
         for (AccessibilityNodeInfoCompat node : nodes) {
-            if (node != null) {
-                node.recycle();
-            }
+            NodeInfoTracker.recycle(node);
         }
     }
 
@@ -816,27 +816,31 @@ public class AccessibilityNodeInfoUtils {
             return null;
         }
 
-        final LinkedList<AccessibilityNodeInfoCompat> queue =
-                new LinkedList<AccessibilityNodeInfoCompat>();
+        final ArrayDeque<AccessibilityNodeInfoCompat> queue =
+                new ArrayDeque<AccessibilityNodeInfoCompat>();
 
-        queue.add(AccessibilityNodeInfoCompat.obtain(node));
+        queue.add(NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node)));
 
         while (!queue.isEmpty()) {
             final AccessibilityNodeInfoCompat item = queue.removeFirst();
 
             if (filter.accept(context, item)) {
-                return AccessibilityNodeInfoCompat.obtain(item);
+                recycleNodes(queue);
+                return item;
             }
 
             final int childCount = item.getChildCount();
 
             for (int i = 0; i < childCount; i++) {
-                final AccessibilityNodeInfoCompat child = item.getChild(i);
+                final AccessibilityNodeInfoCompat child =
+                        NodeInfoTracker.obtained(item.getChild(i));
 
                 if (child != null) {
                     queue.addLast(child);
                 }
             }
+
+            NodeInfoTracker.recycle(item);
         }
 
         return null;
@@ -848,9 +852,9 @@ public class AccessibilityNodeInfoUtils {
      * @param context The parent context.
      * @param node The root node to traverse from.
      * @param filter The filter to satisfy.
-     * @param maxResults The number of results to stop searching after
      * @return Returns all nodes reached via BFS traversal that satisfies the
      *         filter.
+     * @see #partitionFromBfs(Context, AccessibilityNodeInfoCompat, NodeFilter...)
      */
     public static List<AccessibilityNodeInfoCompat> searchAllFromBfs(Context context,
             AccessibilityNodeInfoCompat node, NodeFilter filter) {
@@ -858,32 +862,69 @@ public class AccessibilityNodeInfoUtils {
             return null;
         }
 
-        final List<AccessibilityNodeInfoCompat> toReturn =
-                new ArrayList<AccessibilityNodeInfoCompat>();
-        final LinkedList<AccessibilityNodeInfoCompat> queue =
-                new LinkedList<AccessibilityNodeInfoCompat>();
+        return partitionFromBfs(context, node, filter).get(0);
+    }
+
+    /**
+     * Partitions the nodes reached via breadth-first traversal among several
+     * filters in a single pass, so that each node's children are fetched
+     * once however many filters there are. Each node goes to the first filter
+     * that accepts it. Nodes that no filter accepts are recycled.
+     *
+     * @param context The parent context.
+     * @param node The root node to traverse from.
+     * @param filters The filters to satisfy, in order of precedence.
+     * @return A list for each filter, at the same index, of the nodes it
+     *         accepted in BFS order, or {@code null} if {@code node} was
+     *         {@code null}.
+     */
+    public static List<List<AccessibilityNodeInfoCompat>> partitionFromBfs(Context context,
+            AccessibilityNodeInfoCompat node, NodeFilter... filters) {
+        if (node == null) {
+            return null;
+        }
+
+        final List<List<AccessibilityNodeInfoCompat>> partitions =
+                new ArrayList<List<AccessibilityNodeInfoCompat>>(filters.length);
+        for (int i = 0; i < filters.length; i++) {
+            partitions.add(new ArrayList<AccessibilityNodeInfoCompat>());
+        }
+
+        final ArrayDeque<AccessibilityNodeInfoCompat> queue =
+                new ArrayDeque<AccessibilityNodeInfoCompat>();
 
-        queue.add(AccessibilityNodeInfoCompat.obtain(node));
+        queue.add(NodeInfoTracker.obtained(AccessibilityNodeInfoCompat.obtain(node)));
 
         while (!queue.isEmpty()) {
             final AccessibilityNodeInfoCompat item = queue.removeFirst();
 
-            if (filter.accept(context, item)) {
-                toReturn.add(AccessibilityNodeInfoCompat.obtain(item));
-            }
-
             final int childCount = item.getChildCount();
 
             for (int i = 0; i < childCount; i++) {
-                final AccessibilityNodeInfoCompat child = item.getChild(i);
+                final AccessibilityNodeInfoCompat child =
+                        NodeInfoTracker.obtained(item.getChild(i));
 
                 if (child != null) {
                     queue.addLast(child);
                 }
             }
+
+            // Accepted nodes are returned as they are, rather than as copies
+            boolean accepted = false;
+            for (int i = 0; i < filters.length; i++) {
+                if (filters[i].accept(context, item)) {
+                    partitions.get(i).add(item);
+                    accepted = true;
+                    break;
+                }
+            }
+
+            if (!accepted) {
+                NodeInfoTracker.recycle(item);
+            }
         }
 
-        return toReturn;
+        return partitions;
     }
 
     /**
@@ -903,9 +944,13 @@ public class AccessibilityNodeInfoUtils {
         final HashSet<AccessibilityNodeInfoCompat> seenNodes =
                 new HashSet<AccessibilityNodeInfoCompat>();
 
-        while ((currentNode != null) && !seenNodes.contains(currentNode)
-                && !filter.accept(context, currentNode)) {
-            seenNodes.add(currentNode);
+        while ((currentNode != null) && !filter.accept(context, currentNode)) {
+            if (!seenNodes.add(currentNode)) {
+                // Traversal looped back without a match.
+                NodeInfoTracker.recycle(currentNode);
+                currentNode = null;
+                break;
+            }
             currentNode = NodeFocusFinder.focusSearch(currentNode, direction);
         }
 
@@ -935,10 +980,11 @@ public class AccessibilityNodeInfoUtils {
     private static AccessibilityNodeInfoCompat refreshFromChild(
             AccessibilityNodeInfoCompat node) {
         if (node.getChildCount() > 0) {
-            AccessibilityNodeInfoCompat firstChild = node.getChild(0);
+            AccessibilityNodeInfoCompat firstChild = NodeInfoTracker.obtained(node.getChild(0));
             if (firstChild != null) {
-                AccessibilityNodeInfoCompat parent = firstChild.getParent();
-                firstChild.recycle();
+                AccessibilityNodeInfoCompat parent =
+                        NodeInfoTracker.obtained(firstChild.getParent());
+                NodeInfoTracker.recycle(firstChild);
                 if (node.equals(parent)) {
                     return parent;
                 } else {
@@ -951,19 +997,20 @@ public class AccessibilityNodeInfoUtils {
 
     private static AccessibilityNodeInfoCompat refreshFromParent(
             AccessibilityNodeInfoCompat node) {
-        AccessibilityNodeInfoCompat parent = node.getParent();
+        AccessibilityNodeInfoCompat parent = NodeInfoTracker.obtained(node.getParent());
         if (parent != null) {
             try {
                 int childCount = parent.getChildCount();
                 for (int i = 0; i < childCount; ++i) {
-                    AccessibilityNodeInfoCompat child = parent.getChild(i);
+                    AccessibilityNodeInfoCompat child =
+                            NodeInfoTracker.obtained(parent.getChild(i));
                     if (node.equals(child)) {
                         return child;
                     }
                     recycleNodes(child);
                 }
             } finally {
-                parent.recycle();
+                NodeInfoTracker.recycle(parent);
             }
         }
         return null;
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A bounded pool of mutable {@link Bitmap.Config#ARGB_8888} bitmaps for
+ * offscreen rendering, so that drawing many views of the same size allocates
+ * one bitmap rather than one per view.
+ * <p>
+ * Released bitmaps are kept, most recently released first, until the pool
+ * would exceed its size in bytes, at which point the least recently released
+ * are recycled.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class BitmapPool {
+
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    private final long mMaxBytes;
+
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<Bitmap>();
+
+    private long mPooledBytes;
+
+    public BitmapPool() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes The maximum total size of the bitmaps kept in the pool
+     */
+    public BitmapPool(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive.");
+        }
+
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Takes a bitmap from the pool, or creates one if none has the requested
+     * size. The bitmap is cleared to {@link Color#TRANSPARENT}.
+     *
+     * @param width The width of the bitmap, in pixels
+     * @param height The height of the bitmap, in pixels
+     * @return A mutable bitmap, which should be passed to
+     *         {@link #release(Bitmap)} once it is no longer used
+     */
+    public Bitmap acquire(int width, int height) {
+        synchronized (this) {
+            final Iterator<Bitmap> iterator = mBitmaps.iterator();
+            while (iterator.hasNext()) {
+                final Bitmap bitmap = iterator.next();
+                if ((bitmap.getWidth() == width) && (bitmap.getHeight() == height)) {
+                    iterator.remove();
+                    mPooledBytes -= getByteCount(bitmap);
+                    bitmap.eraseColor(Color.TRANSPARENT);
+                    return bitmap;
+                }
+            }
+        }
+
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Returns a bitmap to the pool. The caller must not use it afterwards.
+     *
+     * @param bitmap A bitmap obtained from {@link #acquire(int, int)}
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+
+        final long byteCount = getByteCount(bitmap);
+        if (byteCount > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        while (mPooledBytes + byteCount > mMaxBytes) {
+            final Bitmap eldest = mBitmaps.removeLast();
+            mPooledBytes -= getByteCount(eldest);
+            eldest.recycle();
+        }
+        mBitmaps.addFirst(bitmap);
+        mPooledBytes += byteCount;
+    }
+
+    /**
+     * Recycles every bitmap in the pool.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+        mPooledBytes = 0;
+    }
+
+    private static long getByteCount(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -18,37 +18,74 @@ package com.googlecode.eyesfree.utils;
 
 import android.content.Context;
 import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.text.TextUtils;
 import android.util.Log;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class manages efficient loading of classes.
+ * <p>
+ * Loaded classes, the class loaders of outside packages and the results of
+ * {@link #checkInstanceOf} are cached in concurrent maps, so lookups of them
+ * from many threads take no locks. Classes that could not be loaded are kept
+ * in a bounded, synchronized cache, from which the earliest entries are
+ * evicted first, and are forgotten for a package when it is installed.
+ * </p>
  *
  * @author svetoslavganov@google.com (Svetoslav R. Ganov)
  * @author alanv@google.com (Alan Viverette)
  */
 public class ClassLoadingManager {
 
+    /**
+     * The default maximum number of classes remembered as not found.
+     */
+    public static final int DEFAULT_MAX_NOT_FOUND_CLASSES = 1024;
+
+    /**
+     * Separates the package name from the class name in not found keys.
+     */
+    private static final char NOT_FOUND_SEPARATOR = '/';
+
     /**
      * The singleton instance of this class.
      */
-    private static ClassLoadingManager sInstance;
+    private static volatile ClassLoadingManager sInstance;
 
     /**
      * Mapping from class names to classes form outside packages.
      */
-    private final HashMap<String, Class<?>> mClassNameToClassMap = new HashMap<String, Class<?>>();
+    private final ConcurrentMap<String, Class<?>> mClassNameToClassMap =
+            new ConcurrentHashMap<String, Class<?>>();
 
     /**
-     * A set of classes not found to be loaded. Used to avoid multiple attempts
-     * that will fail.
+     * Mapping from package names to the class loaders of their package
+     * contexts, so each package context is created once.
      */
-    private final HashMap<String, HashSet<String>> mNotFoundClassesMap =
-            new HashMap<String, HashSet<String>>();
+    private final ConcurrentMap<String, ClassLoader> mPackageClassLoaders =
+            new ConcurrentHashMap<String, ClassLoader>();
+
+    /**
+     * Mapping from reference classes to whether each target class name is
+     * assignable to them. Cleared whenever a package changes or is removed,
+     * since its classes may have changed.
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Boolean>> mAssignableMap =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Boolean>>();
+
+    /**
+     * A set of classes not found to be loaded, keyed by package and class
+     * name, in the order they were added. Used to avoid multiple attempts
+     * that will fail. Guarded by itself.
+     */
+    private final Map<String, Boolean> mNotFoundClasses;
 
     /**
      * The singleton instance of this class.
@@ -56,10 +93,34 @@ public class ClassLoadingManager {
      * @return The singleton instance of this class.
      */
     public static ClassLoadingManager getInstance() {
-        if (sInstance == null) {
-            sInstance = new ClassLoadingManager();
+        ClassLoadingManager instance = sInstance;
+        if (instance == null) {
+            synchronized (ClassLoadingManager.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new ClassLoadingManager(DEFAULT_MAX_NOT_FOUND_CLASSES);
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxNotFoundClasses The maximum number of classes remembered as
+     *            not found
+     */
+    public ClassLoadingManager(final int maxNotFoundClasses) {
+        if (maxNotFoundClasses < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one class.");
         }
-        return sInstance;
+
+        mNotFoundClasses = new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxNotFoundClasses;
+            }
+        };
     }
 
     /**
@@ -68,7 +129,12 @@ public class ClassLoadingManager {
      * @param context The {@link Context} to use for monitor registration
      */
     public void init(Context context) {
-        if (!mNotFoundClassesMap.isEmpty()) {
+        final boolean hasNotFoundClasses;
+        synchronized (mNotFoundClasses) {
+            hasNotFoundClasses = !mNotFoundClasses.isEmpty();
+        }
+
+        if (hasNotFoundClasses) {
             buildInstalledPackagesCache(context);
         }
 
@@ -80,6 +146,8 @@ public class ClassLoadingManager {
      */
     public void shutdown() {
         mClassNameToClassMap.clear();
+        mPackageClassLoaders.clear();
+        mAssignableMap.clear();
         mPackageMonitor.unregister();
     }
 
@@ -100,12 +168,56 @@ public class ClassLoadingManager {
      *
      * @param packageName The package name to add.
      */
-    private void addInstalledPackageToCache(String packageName) {
-        synchronized (mNotFoundClassesMap) {
-            mNotFoundClassesMap.remove(packageName);
+    void addInstalledPackageToCache(String packageName) {
+        mPackageClassLoaders.remove(packageName);
+
+        final String keyPrefix = packageName + NOT_FOUND_SEPARATOR;
+        synchronized (mNotFoundClasses) {
+            final Iterator<String> notFoundKeys = mNotFoundClasses.keySet().iterator();
+            while (notFoundKeys.hasNext()) {
+                if (notFoundKeys.next().startsWith(keyPrefix)) {
+                    notFoundKeys.remove();
+                }
+            }
         }
     }
 
+    /**
+     * @return Whether the class with the given not found key could not be
+     *         loaded before.
+     */
+    private boolean isNotFoundClass(String notFoundKey) {
+        synchronized (mNotFoundClasses) {
+            return mNotFoundClasses.containsKey(notFoundKey);
+        }
+    }
+
+    /**
+     * Remembers that a class could not be loaded, evicting the earliest
+     * remembered class if there are too many.
+     */
+    private void addNotFoundClass(String notFoundKey) {
+        synchronized (mNotFoundClasses) {
+            mNotFoundClasses.put(notFoundKey, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return The class loader of the package context for
+     *         {@code packageName}, creating the package context if needed.
+     */
+    ClassLoader getPackageClassLoader(Context context, String packageName)
+            throws NameNotFoundException {
+        ClassLoader classLoader = mPackageClassLoaders.get(packageName);
+        if (classLoader == null) {
+            final int flags = (Context.CONTEXT_INCLUDE_CODE | Context.CONTEXT_IGNORE_SECURITY);
+            classLoader = context.createPackageContext(packageName, flags).getClassLoader();
+            mPackageClassLoaders.put(packageName, classLoader);
+        }
+
+        return classLoader;
+    }
+
     /**
      * Returns a class by given <code>className</code>. The loading proceeds as
      * follows: </br> 1. Try to load with the current context class loader (it
@@ -143,21 +255,18 @@ public class ClassLoadingManager {
         final String classNameStr = className.toString();
         final String packageNameStr = packageName.toString();
 
-        // If we failed loading this class once, don't bother trying again.
-        HashSet<String> notFoundClassesSet = null;
-        synchronized (mNotFoundClassesMap) {
-            notFoundClassesSet = mNotFoundClassesMap.get(packageNameStr);
-            if ((notFoundClassesSet != null) && notFoundClassesSet.contains(classNameStr)) {
-                return null;
-            }
-        }
-
         // See if we have a cached class.
         final Class<?> clazz = mClassNameToClassMap.get(classNameStr);
         if (clazz != null) {
             return clazz;
         }
 
+        // If we failed loading this class once, don't bother trying again.
+        final String notFoundKey = packageNameStr + NOT_FOUND_SEPARATOR + classNameStr;
+        if (isNotFoundClass(notFoundKey)) {
+            return null;
+        }
+
         // Try the current ClassLoader.
         try {
             final Class<?> insideClazz = getClass().getClassLoader().loadClass(classNameStr);
@@ -176,9 +285,8 @@ public class ClassLoadingManager {
 
         // Attempt to load class by creating a package context.
         try {
-            final int flags = (Context.CONTEXT_INCLUDE_CODE | Context.CONTEXT_IGNORE_SECURITY);
-            final Context packageContext = context.createPackageContext(packageNameStr, flags);
-            final Class<?> outsideClazz = packageContext.getClassLoader().loadClass(classNameStr);
+            final Class<?> outsideClazz =
+                    getPackageClassLoader(context, packageNameStr).loadClass(classNameStr);
 
             if (outsideClazz != null) {
                 mClassNameToClassMap.put(classNameStr, outsideClazz);
@@ -189,12 +297,7 @@ public class ClassLoadingManager {
                     classNameStr);
         }
 
-        if (notFoundClassesSet == null) {
-            notFoundClassesSet = new HashSet<String>();
-            mNotFoundClassesMap.put(packageNameStr, notFoundClassesSet);
-        }
-
-        notFoundClassesSet.add(classNameStr);
+        addNotFoundClass(notFoundKey);
 
         LogUtils.log(Log.DEBUG, "Failed to load class: %s", classNameStr);
 
@@ -241,12 +344,32 @@ public class ClassLoadingManager {
             return false;
         }
 
+        ConcurrentMap<String, Boolean> assignableMap = mAssignableMap.get(referenceClass);
+        if (assignableMap == null) {
+            assignableMap = new ConcurrentHashMap<String, Boolean>();
+            final ConcurrentMap<String, Boolean> existing =
+                    mAssignableMap.putIfAbsent(referenceClass, assignableMap);
+            if (existing != null) {
+                assignableMap = existing;
+            }
+        }
+
+        final String targetClassNameStr = targetClassName.toString();
+        final Boolean assignable = assignableMap.get(targetClassNameStr);
+        if (assignable != null) {
+            return assignable;
+        }
+
         final Class<?> targetClass = loadOrGetCachedClass(context, targetClassName, loaderPackage);
         if (targetClass == null) {
             return false;
         }
 
-        return referenceClass.isAssignableFrom(targetClass);
+        // Only classes that loaded are remembered, since others may load
+        // once their package is installed.
+        final boolean isAssignable = referenceClass.isAssignableFrom(targetClass);
+        assignableMap.put(targetClassNameStr, isAssignable);
+        return isAssignable;
     }
 
     /**
@@ -260,12 +383,14 @@ public class ClassLoadingManager {
 
         @Override
         protected void onPackageRemoved(String packageName) {
-            // Do nothing.
+            mPackageClassLoaders.remove(packageName);
+            mAssignableMap.clear();
         }
 
         @Override
         protected void onPackageChanged(String packageName) {
-            // Do nothing.
+            mPackageClassLoaders.remove(packageName);
+            mAssignableMap.clear();
         }
     };
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import java.util.Arrays;
+
+/**
+ * Counts the pixels of each color in an image, without boxing.
+ * <p>
+ * Colors are kept in an open-addressing table of primitive arrays. Along with its count, each
+ * color records the smallest order key it was added with, which callers use to remember where in
+ * the image the color first appeared. {@link #getColor(int)} and the other indexed accessors list
+ * the colors in order of that key.
+ * <p>
+ * Not thread-safe.
+ */
+public final class ColorHistogram {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] mColors;
+
+    /** Zero marks an empty slot, since every color that is present has been counted */
+    private int[] mCounts;
+
+    private int[] mOrderKeys;
+
+    private int mSize;
+
+    private long mTotalCount;
+
+    /** Slots in order of their order keys, or {@code null} if the table changed since */
+    private int[] mOrderedSlots;
+
+    public ColorHistogram() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Counts one pixel of {@code color}.
+     *
+     * @param color The ARGB color of the pixel
+     * @param orderKey A non-negative key giving the position of the pixel in the image
+     */
+    public void add(int color, int orderKey) {
+        add(color, 1, orderKey);
+    }
+
+    /**
+     * Counts {@code count} pixels of {@code color}.
+     *
+     * @param color The ARGB color of the pixels
+     * @param count The number of pixels, which must be positive
+     * @param orderKey A non-negative key giving the position of the first of the pixels
+     */
+    public void add(int color, int count, int orderKey) {
+        int slot = findSlot(mColors, mCounts, color);
+        if (mCounts[slot] == 0) {
+            if ((mSize + 1) * 2 > mColors.length) {
+                resize(mColors.length * 2);
+                slot = findSlot(mColors, mCounts, color);
+            }
+            mColors[slot] = color;
+            mOrderKeys[slot] = orderKey;
+            mSize++;
+        } else if (orderKey < mOrderKeys[slot]) {
+            mOrderKeys[slot] = orderKey;
+        }
+        mCounts[slot] += count;
+        mTotalCount += count;
+        mOrderedSlots = null;
+    }
+
+    /**
+     * Adds every count in {@code other} to this histogram, keeping the order keys of
+     * {@code other}.
+     */
+    public void addAll(ColorHistogram other) {
+        for (int slot = 0; slot < other.mColors.length; ++slot) {
+            if (other.mCounts[slot] != 0) {
+                add(other.mColors[slot], other.mCounts[slot], other.mOrderKeys[slot]);
+            }
+        }
+    }
+
+    /**
+     * Removes every color, keeping the allocated table for reuse.
+     */
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mSize = 0;
+        mTotalCount = 0;
+        mOrderedSlots = null;
+    }
+
+    /**
+     * @return The number of distinct colors
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return The number of pixels counted
+     */
+    public long getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * @return The {@code i}th distinct color, in order of first appearance
+     */
+    public int getColor(int i) {
+        return mColors[getOrderedSlot(i)];
+    }
+
+    /**
+     * @return The number of pixels of the {@code i}th distinct color
+     */
+    public int getCount(int i) {
+        return mCounts[getOrderedSlot(i)];
+    }
+
+    /**
+     * @return The smallest order key of the {@code i}th distinct color
+     */
+    public int getOrderKey(int i) {
+        return mOrderKeys[getOrderedSlot(i)];
+    }
+
+    private int getOrderedSlot(int i) {
+        if ((i < 0) || (i >= mSize)) {
+            throw new IndexOutOfBoundsException("Color " + i + " of " + mSize);
+        }
+        if (mOrderedSlots == null) {
+            long[] keyedSlots = new long[mSize];
+            int count = 0;
+            for (int slot = 0; slot < mColors.length; ++slot) {
+                if (mCounts[slot] != 0) {
+                    keyedSlots[count++] = ((long) mOrderKeys[slot] << 32) | slot;
+                }
+            }
+            Arrays.sort(keyedSlots);
+            int[] orderedSlots = new int[mSize];
+            for (int j = 0; j < mSize; ++j) {
+                orderedSlots[j] = (int) keyedSlots[j];
+            }
+            mOrderedSlots = orderedSlots;
+        }
+        return mOrderedSlots[i];
+    }
+
+    private void allocate(int capacity) {
+        mColors = new int[capacity];
+        mCounts = new int[capacity];
+        mOrderKeys = new int[capacity];
+    }
+
+    private void resize(int capacity) {
+        int[] colors = mColors;
+        int[] counts = mCounts;
+        int[] orderKeys = mOrderKeys;
+        allocate(capacity);
+        for (int slot = 0; slot < colors.length; ++slot) {
+            if (counts[slot] != 0) {
+                int newSlot = findSlot(mColors, mCounts, colors[slot]);
+                mColors[newSlot] = colors[slot];
+                mCounts[newSlot] = counts[slot];
+                mOrderKeys[newSlot] = orderKeys[slot];
+            }
+        }
+    }
+
+    private static int findSlot(int[] colors, int[] counts, int color) {
+        int mask = colors.length - 1;
+        int hash = color * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while ((counts[slot] != 0) && (colors[slot] != color)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
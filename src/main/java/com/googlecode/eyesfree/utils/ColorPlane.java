@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * The pixels of a screen capture, read once and stored as indices into a
+ * palette of the distinct colors in the capture, from which
+ * {@link ContrastSwatch}es of any number of regions are computed without
+ * cropping a {@link Bitmap} for each.
+ * <p>
+ * Screenshots of user interfaces use few distinct colors, so an index usually
+ * fits in a {@code char}, which halves the memory of the pixels. Wider indices
+ * are used only if the capture has more than 65536 colors. No color is
+ * approximated, so a swatch computed from the plane is identical to one
+ * computed from a cropped bitmap of the same region.
+ * <p>
+ * Not thread-safe.
+ */
+public final class ColorPlane {
+
+    private static final int MAX_CHAR_INDEXED_COLORS = Character.MAX_VALUE + 1;
+
+    private final int mWidth;
+
+    private final int mHeight;
+
+    private int[] mPalette;
+
+    private int mPaletteSize;
+
+    /** Palette index of each pixel, row by row, while the palette fits in a char */
+    private char[] mCharIndices;
+
+    /** Palette index of each pixel, row by row, once the palette outgrows a char */
+    private int[] mIntIndices;
+
+    /* Per-color scratch space for computing swatches, allocated on first use */
+    private int[] mScratchCounts;
+
+    private int[] mScratchOrderKeys;
+
+    private int[] mScratchTouched;
+
+    /**
+     * Reads every pixel of {@code image}. The plane keeps no reference to
+     * {@code image}, which may be recycled afterwards.
+     *
+     * @param image The screen capture
+     */
+    public ColorPlane(Bitmap image) {
+        mWidth = image.getWidth();
+        mHeight = image.getHeight();
+        mPalette = new int[16];
+        mCharIndices = new char[mWidth * mHeight];
+
+        // Open addressing from color to one more than its palette index
+        int[] tableColors = new int[32];
+        int[] tableIndices = new int[32];
+        final int[] row = new int[mWidth];
+        int lastColor = 0;
+        int lastIndex = -1;
+        for (int y = 0; y < mHeight; ++y) {
+            image.getPixels(row, 0, mWidth, 0, y, mWidth, 1);
+            for (int x = 0; x < mWidth; ++x) {
+                final int color = row[x];
+                if ((lastIndex == -1) || (color != lastColor)) {
+                    int slot = findSlot(tableColors, tableIndices, color);
+                    if (tableIndices[slot] == 0) {
+                        if ((mPaletteSize + 1) * 2 > tableColors.length) {
+                            final int[] oldColors = tableColors;
+                            final int[] oldIndices = tableIndices;
+                            tableColors = new int[oldColors.length * 2];
+                            tableIndices = new int[oldColors.length * 2];
+                            for (int i = 0; i < oldColors.length; ++i) {
+                                if (oldIndices[i] != 0) {
+                                    final int newSlot =
+                                            findSlot(tableColors, tableIndices, oldColors[i]);
+                                    tableColors[newSlot] = oldColors[i];
+                                    tableIndices[newSlot] = oldIndices[i];
+                                }
+                            }
+                            slot = findSlot(tableColors, tableIndices, color);
+                        }
+                        tableColors[slot] = color;
+                        tableIndices[slot] = addToPalette(color) + 1;
+                    }
+                    lastColor = color;
+                    lastIndex = tableIndices[slot] - 1;
+                }
+
+                if (mCharIndices != null) {
+                    mCharIndices[y * mWidth + x] = (char) lastIndex;
+                } else {
+                    mIntIndices[y * mWidth + x] = lastIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The width of the plane, in pixels
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return The height of the plane, in pixels
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return The number of distinct colors in the plane
+     */
+    public int getColorCount() {
+        return mPaletteSize;
+    }
+
+    /**
+     * Computes the swatch of a region of the plane. The result is the same as
+     * that of a {@link ContrastSwatch} constructed from a bitmap of the region,
+     * but it has no image.
+     *
+     * @param bounds The region to evaluate, which must lie within the plane
+     * @param name Optional name identifying the region being evaluated
+     * @return The swatch of the region
+     * @throws IllegalArgumentException if {@code bounds} extends outside the
+     *             plane
+     */
+    public ContrastSwatch createSwatch(Rect bounds, String name) {
+        return new ContrastSwatch(createHistogram(bounds), bounds, name);
+    }
+
+    /**
+     * Counts the colors in a region of the plane. Each color's order key is
+     * the position at which it first appears in a column-by-column scan of
+     * the region, as expected by
+     * {@link ContrastSwatch#ContrastSwatch(ColorHistogram, Rect, String)}.
+     *
+     * @param bounds The region to count, which must lie within the plane
+     * @return The colors of the region
+     * @throws IllegalArgumentException if {@code bounds} extends outside the
+     *             plane
+     */
+    public ColorHistogram createHistogram(Rect bounds) {
+        if ((bounds.left < 0) || (bounds.top < 0) || (bounds.right > mWidth)
+                || (bounds.bottom > mHeight)) {
+            throw new IllegalArgumentException("Bounds " + bounds + " are outside the "
+                    + mWidth + "x" + mHeight + " plane.");
+        }
+
+        if ((mScratchCounts == null) || (mScratchCounts.length < mPaletteSize)) {
+            mScratchCounts = new int[mPaletteSize];
+            mScratchOrderKeys = new int[mPaletteSize];
+            mScratchTouched = new int[mPaletteSize];
+        }
+
+        final int swatchHeight = Math.max(0, bounds.height());
+        int touchedCount = 0;
+        for (int y = bounds.top; y < bounds.bottom; ++y) {
+            final int rowStart = y * mWidth;
+            for (int x = bounds.left; x < bounds.right; ++x) {
+                final int index = (mCharIndices != null) ? mCharIndices[rowStart + x]
+                        : mIntIndices[rowStart + x];
+                final int orderKey = (x - bounds.left) * swatchHeight + (y - bounds.top);
+                if (mScratchCounts[index] == 0) {
+                    mScratchTouched[touchedCount++] = index;
+                    mScratchOrderKeys[index] = orderKey;
+                } else if (orderKey < mScratchOrderKeys[index]) {
+                    mScratchOrderKeys[index] = orderKey;
+                }
+                mScratchCounts[index]++;
+            }
+        }
+
+        final ColorHistogram histogram = new ColorHistogram();
+        for (int i = 0; i < touchedCount; ++i) {
+            final int index = mScratchTouched[i];
+            histogram.add(mPalette[index], mScratchCounts[index], mScratchOrderKeys[index]);
+            mScratchCounts[index] = 0;
+        }
+        return histogram;
+    }
+
+    private int addToPalette(int color) {
+        if (mPaletteSize == mPalette.length) {
+            final int[] palette = new int[mPalette.length * 2];
+            System.arraycopy(mPalette, 0, palette, 0, mPaletteSize);
+            mPalette = palette;
+        }
+
+        if ((mPaletteSize == MAX_CHAR_INDEXED_COLORS) && (mCharIndices != null)) {
+            // Widen the indices written so far
+            mIntIndices = new int[mCharIndices.length];
+            for (int i = 0; i < mCharIndices.length; ++i) {
+                mIntIndices[i] = mCharIndices[i];
+            }
+            mCharIndices = null;
+        }
+
+        mPalette[mPaletteSize] = color;
+        return mPaletteSize++;
+    }
+
+    private static int findSlot(int[] tableColors, int[] tableIndices, int color) {
+        final int mask = tableColors.length - 1;
+        final int hash = color * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while ((tableIndices[slot] != 0) && (tableColors[slot] != color)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
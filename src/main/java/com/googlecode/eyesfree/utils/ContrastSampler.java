@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.Random;
+
+/**
+ * Estimates the {@link ContrastSwatch} of a region of a screen capture from a
+ * stratified random sample of its pixels, rather than from every pixel.
+ * <p>
+ * The region is divided into square cells, about as many as the number of
+ * samples requested, and one pixel is drawn at random from each cell. Regions
+ * with no more pixels than that are read in full, and their swatches are
+ * exact. The random draws are seeded from the region's bounds, so sampling
+ * the same region of the same capture always gives the same result.
+ * <p>
+ * A sample may miss colors that cover little of the region, and may misjudge
+ * which of two similarly common luminances is more frequent. Each estimate
+ * therefore bounds the share of the region that a missed color could cover,
+ * and derives from it the range within which the exact contrast ratio lies.
+ * Only samples of two luminances have a range narrower than every possible
+ * ratio, so regions such as antialiased text, whose edges hold many
+ * luminances, are not bounded. Callers should evaluate a region exactly when
+ * the range spans a WCAG threshold.
+ * <p>
+ * Not thread-safe.
+ */
+public final class ContrastSampler {
+
+    public static final int DEFAULT_SAMPLE_COUNT = 1024;
+
+    /** The contrast ratio of white to black, the highest there is */
+    private static final double MAX_CONTRAST_RATIO = 21.0d;
+
+    private final int mSampleCount;
+
+    private final Random mRandom = new Random();
+
+    public ContrastSampler() {
+        this(DEFAULT_SAMPLE_COUNT);
+    }
+
+    /**
+     * @param sampleCount The approximate number of pixels to sample from each
+     *            region
+     */
+    public ContrastSampler(int sampleCount) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("Sample count must be positive.");
+        }
+
+        mSampleCount = sampleCount;
+    }
+
+    /**
+     * Estimates the swatch of a region of {@code image}.
+     *
+     * @param image The screen capture
+     * @param bounds The region to evaluate, which must lie within
+     *            {@code image}
+     * @param name Optional name identifying the region being evaluated
+     * @return The estimate
+     */
+    public Estimate sample(Bitmap image, Rect bounds, String name) {
+        final int width = Math.max(0, bounds.width());
+        final int height = Math.max(0, bounds.height());
+        final long pixelCount = (long) width * height;
+        final ColorHistogram histogram = new ColorHistogram();
+        if (pixelCount <= mSampleCount) {
+            for (int x = 0; x < width; ++x) {
+                for (int y = 0; y < height; ++y) {
+                    histogram.add(image.getPixel(bounds.left + x, bounds.top + y), x * height + y);
+                }
+            }
+
+            return new Estimate(new ContrastSwatch(histogram, bounds, name), pixelCount,
+                    pixelCount);
+        }
+
+        // Order keys place each sample in a column-by-column scan of the
+        // region, as for a swatch of every pixel
+        final int cellSize = (int) Math.ceil(Math.sqrt((double) pixelCount / mSampleCount));
+        mRandom.setSeed(((long) bounds.left << 48) ^ ((long) bounds.top << 32)
+                ^ ((long) bounds.right << 16) ^ bounds.bottom);
+        for (int cellLeft = 0; cellLeft < width; cellLeft += cellSize) {
+            final int cellWidth = Math.min(cellSize, width - cellLeft);
+            for (int cellTop = 0; cellTop < height; cellTop += cellSize) {
+                final int cellHeight = Math.min(cellSize, height - cellTop);
+                final int x = cellLeft + mRandom.nextInt(cellWidth);
+                final int y = cellTop + mRandom.nextInt(cellHeight);
+                histogram.add(image.getPixel(bounds.left + x, bounds.top + y), x * height + y);
+            }
+        }
+
+        return new Estimate(new ContrastSwatch(histogram, bounds, name),
+                histogram.getTotalCount(), pixelCount);
+    }
+
+    /**
+     * The swatch of a region estimated from a sample of its pixels.
+     */
+    public static final class Estimate {
+
+        private final ContrastSwatch mSwatch;
+
+        private final long mSampleCount;
+
+        private final long mPixelCount;
+
+        Estimate(ContrastSwatch swatch, long sampleCount, long pixelCount) {
+            mSwatch = swatch;
+            mSampleCount = sampleCount;
+            mPixelCount = pixelCount;
+        }
+
+        /**
+         * @return The swatch of the sampled pixels, which has no image
+         */
+        public ContrastSwatch getSwatch() {
+            return mSwatch;
+        }
+
+        public double getContrastRatio() {
+            return mSwatch.getContrastRatio();
+        }
+
+        public long getSampleCount() {
+            return mSampleCount;
+        }
+
+        public long getPixelCount() {
+            return mPixelCount;
+        }
+
+        /**
+         * @return {@code true} if every pixel of the region was read, so the
+         *         swatch is exact
+         */
+        public boolean isExact() {
+            return mSampleCount == mPixelCount;
+        }
+
+        /**
+         * Bounds the share of the region that a color absent from the sample
+         * could cover. A color covering a share {@code p} of the region
+         * escapes {@code n} random samples with probability at most
+         * {@code (1 - p)^n}, which is below {@code 1 - confidence} once
+         * {@code p} exceeds {@code ln(1 / (1 - confidence)) / n}.
+         *
+         * @param confidence The probability, below 1, with which the bound
+         *            holds
+         * @return The largest share of the region, from 0 to 1, that a missed
+         *         color could cover with the given confidence
+         */
+        public double getMissedCoverageBound(double confidence) {
+            if (isExact()) {
+                return 0.0d;
+            }
+
+            return Math.min(1.0d, Math.log(1.0d / (1.0d - confidence)) / mSampleCount);
+        }
+
+        /**
+         * Bounds the difference between the share of the region that a
+         * sampled luminance covers in the sample and in the whole region. Each
+         * cell contributes one independent draw, so by Hoeffding's inequality
+         * the shares differ by more than
+         * {@code sqrt(ln(2 / (1 - confidence)) / (2n))} with probability at
+         * most {@code 1 - confidence}.
+         *
+         * @param confidence The probability, below 1, with which the bound
+         *            holds
+         * @return The largest difference in share, from 0 to 1
+         */
+        public double getShareErrorBound(double confidence) {
+            if (isExact()) {
+                return 0.0d;
+            }
+            return Math.min(1.0d,
+                    Math.sqrt(Math.log(2.0d / (1.0d - confidence)) / (2.0d * mSampleCount)));
+        }
+
+        /**
+         * @param confidence The probability, below 1, with which the bounds of
+         *            the sample hold
+         * @return The lowest contrast ratio that evaluating every pixel of the
+         *         region could give
+         * @see #getMaxContrastRatio(double)
+         */
+        public double getMinContrastRatio(double confidence) {
+            return getContrastRatioBounds(confidence)[0];
+        }
+
+        /**
+         * @param confidence The probability, below 1, with which the bounds of
+         *            the sample hold
+         * @return The highest contrast ratio that evaluating every pixel of the
+         *         region could give
+         * @see #getMinContrastRatio(double)
+         */
+        public double getMaxContrastRatio(double confidence) {
+            return getContrastRatioBounds(confidence)[1];
+        }
+
+        /**
+         * @param confidence The probability, below 1, with which the bounds of
+         *            the sample hold
+         * @return {@code true} if the estimate is exact, or if every contrast
+         *         ratio that evaluating every pixel could give lies on the same
+         *         side of each WCAG threshold as the estimate
+         */
+        public boolean isConclusive(double confidence) {
+            final double[] bounds = getContrastRatioBounds(confidence);
+            return isExact() || !ContrastUtils.spansWcagThreshold(bounds[0], bounds[1]);
+        }
+
+        /**
+         * Finds the range of contrast ratios the whole region could have. A
+         * swatch compares the most common luminance on either side of the
+         * unweighted mean of the distinct luminances, so even a rare
+         * luminance, such as one of those that antialiasing leaves along the
+         * edges of text, moves the mean and may change which luminances are
+         * compared. A sample of more than two luminances therefore does not
+         * bound the ratio. A sample of two luminances compares them as long as
+         * no missed color may be as common as the less common of the two; if
+         * one may be, its luminance is unknown and so is the ratio.
+         *
+         * @return The lowest and highest ratio, rounded as swatches round them
+         */
+        private double[] getContrastRatioBounds(double confidence) {
+            final double contrastRatio = getContrastRatio();
+            if (isExact()) {
+                return new double[] {contrastRatio, contrastRatio};
+            }
+            final int[] counts = mSwatch.getLuminanceCounts();
+            if (counts.length != 2) {
+                // A missed color would be compared with the only one sampled,
+                // or the sampled colors may move the mean in the region
+                return new double[] {1.0d, MAX_CONTRAST_RATIO};
+            }
+
+            final double comparedShare = (double) Math.min(counts[0], counts[1]) / mSampleCount
+                    - getShareErrorBound(confidence);
+            if (getMissedCoverageBound(confidence) >= comparedShare) {
+                return new double[] {1.0d, MAX_CONTRAST_RATIO};
+            }
+            return new double[] {contrastRatio, contrastRatio};
+        }
+    }
+}
@@ -22,9 +22,9 @@ import android.graphics.Rect;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -38,13 +38,36 @@ import java.util.Map.Entry;
  */
 public class ContrastSwatch implements Parcelable {
 
+    /**
+     * The upper half of the first int of a parcel in a versioned format, whose
+     * version is in the lower half. It is negative, so it can't be mistaken
+     * for the length of a string.
+     */
+    private static final int PARCEL_HEADER = 0xC5A70000;
+
+    private static final int PARCEL_HEADER_MASK = 0xFFFF0000;
+
+    private static final int PARCEL_VERSION_PACKED = 1;
+
     private Bitmap mImage;
 
     private final String mName;
 
-    private final HashMap<Integer, Double> mLuminanceMap;
+    /**
+     * Each distinct color and its luminance, listed in the order in which a
+     * {@code HashMap<Integer, Double>} of them would iterate
+     */
+    private int[] mColors;
+
+    private double[] mColorLuminances;
+
+    /**
+     * Each distinct luminance and its pixel count, listed in the order in
+     * which a {@code HashMap<Double, Integer>} of them would iterate
+     */
+    private double[] mLuminances;
 
-    private final HashMap<Double, Integer> mLuminanceHistogram;
+    private int[] mLuminanceCounts;
 
     private final List<Integer> mBackgroundColors;
 
@@ -58,6 +81,14 @@ public class ContrastSwatch implements Parcelable {
 
     private double mContrastRatio;
 
+    private boolean mParcelSummaryOnly;
+
+    /**
+     * Whether the swatch was computed from luminance bins that merge several
+     * luminances. Not parceled.
+     */
+    private boolean mApproximate;
+
     /**
      * Constructs a ContrastSwatch, also extracting certain properties from the
      * bitmap related to contrast and luminance.
@@ -72,32 +103,131 @@ public class ContrastSwatch implements Parcelable {
      * @param name Optional name identifying the image being evaluated
      */
     public ContrastSwatch(Bitmap image, Rect screenBounds, String name) {
+        this(readHistogram(image), screenBounds, name);
         mImage = image;
+    }
+
+    /**
+     * Constructs a ContrastSwatch from colors that have already been counted,
+     * for callers that read the pixels of several swatches at once.
+     * <p>
+     * The result is identical to that of
+     * {@link #ContrastSwatch(Bitmap, Rect, String)} if the order key of each
+     * pixel at {@code (x, y)} is {@code x * height + y}, its position in a
+     * column-by-column scan of the image. The swatch has no image.
+     *
+     * @param histogram The colors of the area to be evaluated
+     * @param screenBounds The bounds in screen coordinates of the area
+     * @param name Optional name identifying the area being evaluated
+     */
+    public ContrastSwatch(ColorHistogram histogram, Rect screenBounds, String name) {
         mScreenBounds = screenBounds;
         mName = name;
         mBackgroundColors = new LinkedList<Integer>();
         mForegroundColors = new LinkedList<Integer>();
-        mLuminanceMap = new HashMap<Integer, Double>();
-        mLuminanceHistogram = new HashMap<Double, Integer>();
 
-        processSwatch();
+        processSwatch(histogram);
+    }
+
+    /**
+     * Constructs a ContrastSwatch from the luminance histogram of an area of
+     * a screen capture, without reading its pixels.
+     * <p>
+     * Luminances are grouped into the bins of {@code histogram}, so the
+     * contrast ratio is approximate unless each bin holds a single luminance,
+     * as {@link #isApproximate()} reports. The swatch has neither an image nor
+     * foreground and background colors.
+     *
+     * @param histogram The luminance histogram of the screen capture
+     * @param screenBounds The bounds in screen coordinates of the area to be
+     *            evaluated, which must lie within the screen capture
+     * @param name Optional name identifying the area being evaluated
+     */
+    public ContrastSwatch(IntegralLuminanceHistogram histogram, Rect screenBounds, String name) {
+        mScreenBounds = screenBounds;
+        mName = name;
+        mBackgroundColors = new LinkedList<Integer>();
+        mForegroundColors = new LinkedList<Integer>();
+
+        processBinnedSwatch(histogram);
     }
 
     private ContrastSwatch(Parcel source) {
         mBackgroundColors = new LinkedList<Integer>();
         mForegroundColors = new LinkedList<Integer>();
-        mLuminanceMap = new HashMap<Integer, Double>();
-        mLuminanceHistogram = new HashMap<Double, Integer>();
+
+        // Legacy parcels begin with the length of the name, which is never
+        // below -1, rather than with a header
+        final int start = source.dataPosition();
+        final int header = source.readInt();
+        if ((header & PARCEL_HEADER_MASK) != PARCEL_HEADER) {
+            source.setDataPosition(start);
+            mName = source.readString();
+            readLegacyTables(source);
+            source.readList(mBackgroundColors, null);
+            source.readList(mForegroundColors, null);
+            mBackgroundLuminance = source.readDouble();
+            mForegroundLuminance = source.readDouble();
+            mScreenBounds = (Rect) source.readValue(Rect.class.getClassLoader());
+            mContrastRatio = source.readDouble();
+            return;
+        }
+
+        final int version = header & ~PARCEL_HEADER_MASK;
+        if (version != PARCEL_VERSION_PACKED) {
+            throw new IllegalArgumentException(
+                    "Unsupported ContrastSwatch parcel version " + version);
+        }
 
         mName = source.readString();
-        source.readMap(mLuminanceMap, null);
-        source.readMap(mLuminanceHistogram, null);
-        source.readList(mBackgroundColors, null);
-        source.readList(mForegroundColors, null);
+        if (source.readInt() != 0) {
+            mColors = source.createIntArray();
+            mColorLuminances = source.createDoubleArray();
+            mLuminances = source.createDoubleArray();
+            mLuminanceCounts = source.createIntArray();
+        } else {
+            mColors = new int[0];
+            mColorLuminances = new double[0];
+            mLuminances = new double[0];
+            mLuminanceCounts = new int[0];
+        }
+        for (int color : source.createIntArray()) {
+            mBackgroundColors.add(color);
+        }
+        for (int color : source.createIntArray()) {
+            mForegroundColors.add(color);
+        }
         mBackgroundLuminance = source.readDouble();
         mForegroundLuminance = source.readDouble();
-        mScreenBounds = (Rect) source.readValue(Rect.class.getClassLoader());
         mContrastRatio = source.readDouble();
+        if (source.readInt() != 0) {
+            mScreenBounds = new Rect(
+                    source.readInt(), source.readInt(), source.readInt(), source.readInt());
+        } else {
+            mScreenBounds = null;
+        }
+    }
+
+    private void readLegacyTables(Parcel source) {
+        final HashMap<Integer, Double> luminanceMap = new HashMap<Integer, Double>();
+        final HashMap<Double, Integer> luminanceHistogram = new HashMap<Double, Integer>();
+        source.readMap(luminanceMap, null);
+        source.readMap(luminanceHistogram, null);
+
+        mColors = new int[luminanceMap.size()];
+        mColorLuminances = new double[luminanceMap.size()];
+        int i = 0;
+        for (Entry<Integer, Double> colorLuminance : luminanceMap.entrySet()) {
+            mColors[i] = colorLuminance.getKey();
+            mColorLuminances[i++] = colorLuminance.getValue();
+        }
+        mLuminances = new double[luminanceHistogram.size()];
+        mLuminanceCounts = new int[luminanceHistogram.size()];
+        i = 0;
+        for (Entry<Double, Integer> luminanceCount : luminanceHistogram.entrySet()) {
+            mLuminances[i] = luminanceCount.getKey();
+            mLuminanceCounts[i++] = luminanceCount.getValue();
+        }
     }
 
     public void recycle() {
@@ -106,129 +236,229 @@ public class ContrastSwatch implements Parcelable {
         }
     }
 
-    private void processSwatch() {
-        processLuminanceData();
+    private void processSwatch(ColorHistogram histogram) {
+        processLuminanceData(histogram);
         extractFgBgData();
+        calculateContrastRatio();
+    }
 
+    private void processBinnedSwatch(IntegralLuminanceHistogram histogram) {
+        final int[] binCounts = histogram.getBinCounts(mScreenBounds);
+        int luminanceCount = 0;
+        for (int bin = 0; bin < binCounts.length; ++bin) {
+            if (binCounts[bin] != 0) {
+                luminanceCount++;
+                mApproximate |= !histogram.holdsSingleLuminance(bin);
+            }
+        }
+
+        // Bins are listed from darkest to lightest, which breaks ties in
+        // frequency in favor of the darker luminance
+        mColors = new int[0];
+        mColorLuminances = new double[0];
+        mLuminances = new double[luminanceCount];
+        mLuminanceCounts = new int[luminanceCount];
+        int i = 0;
+        for (int bin = 0; bin < binCounts.length; ++bin) {
+            if (binCounts[bin] != 0) {
+                mLuminances[i] = histogram.getBinLuminance(bin);
+                mLuminanceCounts[i++] = binCounts[bin];
+            }
+        }
+
+        extractFgBgData();
+        calculateContrastRatio();
+    }
+
+    private void calculateContrastRatio() {
         // Two-decimal digits of precision for the contrast ratio
         mContrastRatio = Math.round(
                 ContrastUtils.calculateContrastRatio(mBackgroundLuminance, mForegroundLuminance)
                 * 100.0d) / 100.0d;
     }
 
-    private void processLuminanceData() {
-        for (int x = 0; x < mImage.getWidth(); ++x) {
-            for (int y = 0; y < mImage.getHeight(); ++y) {
-                final int color = mImage.getPixel(x, y);
-                final double luminance = ContrastUtils.calculateLuminance(color);
-                if (!mLuminanceMap.containsKey(color)) {
-                    mLuminanceMap.put(color, luminance);
-                }
-
-                if (!mLuminanceHistogram.containsKey(luminance)) {
-                    mLuminanceHistogram.put(luminance, 0);
-                }
+    /**
+     * Counts the colors of {@code image}, reading it a row at a time into a
+     * reused buffer. Each pixel is keyed by its position in a column-by-column
+     * scan of the image.
+     */
+    private static ColorHistogram readHistogram(Bitmap image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final ColorHistogram histogram = new ColorHistogram();
+        final int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            image.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; ++x) {
+                histogram.add(row[x], x * height + y);
+            }
+        }
+        return histogram;
+    }
 
-                mLuminanceHistogram.put(luminance, mLuminanceHistogram.get(luminance) + 1);
+    /**
+     * Builds the color and luminance tables from {@code histogram}.
+     * <p>
+     * Ties in luminance frequency are broken by the order of these tables,
+     * which is the iteration order of {@code HashMap}s filled in the order of
+     * a column-by-column scan, as earlier versions stored them. That order
+     * differs between runtimes, so it is read from a {@link HashMap} of the
+     * running platform, filled with one entry per distinct color or
+     * luminance rather than one per pixel. This keeps contrast ratios
+     * identical to those computed by earlier versions on the same device.
+     */
+    private void processLuminanceData(ColorHistogram histogram) {
+        final int colorCount = histogram.size();
+        final int[] colors = new int[colorCount];
+        for (int i = 0; i < colorCount; ++i) {
+            colors[i] = histogram.getColor(i);
+        }
+        final double[] colorLuminances = new double[colorCount];
+        ContrastUtils.calculateLuminance(colors, colorLuminances);
+
+        // Group colors of equal luminance, in order of first appearance
+        final double[] luminances = new double[colorCount];
+        final int[] luminanceCounts = new int[colorCount];
+        int luminanceCount = 0;
+        final int[] table = new int[Math.max(2, Integer.highestOneBit(colorCount) * 4)];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < colorCount; ++i) {
+            final long bits = Double.doubleToLongBits(colorLuminances[i]);
+            int slot = spread((int) (bits ^ (bits >>> 32))) & (table.length - 1);
+            while ((table[slot] != -1)
+                    && (Double.doubleToLongBits(luminances[table[slot]]) != bits)) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            if (table[slot] == -1) {
+                table[slot] = luminanceCount;
+                luminances[luminanceCount++] = colorLuminances[i];
             }
+            luminanceCounts[table[slot]] += histogram.getCount(i);
+        }
+
+        final HashMap<Integer, Integer> indexByColor = new HashMap<Integer, Integer>();
+        for (int i = 0; i < colorCount; ++i) {
+            indexByColor.put(colors[i], i);
+        }
+        final int[] colorOrder = toArray(indexByColor.values());
+        mColors = new int[colorCount];
+        mColorLuminances = new double[colorCount];
+        for (int i = 0; i < colorCount; ++i) {
+            mColors[i] = colors[colorOrder[i]];
+            mColorLuminances[i] = colorLuminances[colorOrder[i]];
+        }
+
+        final HashMap<Double, Integer> indexByLuminance = new HashMap<Double, Integer>();
+        for (int i = 0; i < luminanceCount; ++i) {
+            indexByLuminance.put(luminances[i], i);
+        }
+        final int[] luminanceOrder = toArray(indexByLuminance.values());
+        mLuminances = new double[luminanceCount];
+        mLuminanceCounts = new int[luminanceCount];
+        for (int i = 0; i < luminanceCount; ++i) {
+            mLuminances[i] = luminances[luminanceOrder[i]];
+            mLuminanceCounts[i] = luminanceCounts[luminanceOrder[i]];
         }
     }
 
     private void extractFgBgData() {
-        if (mLuminanceMap.isEmpty()) {
+        if (mLuminances.length == 0) {
             // An empty luminance map indicates we've encountered a 0px area
             // image. It has no luminance.
             mBackgroundLuminance = mForegroundLuminance = 0;
             mBackgroundColors.add(Color.BLACK);
             mForegroundColors.add(Color.BLACK);
-        } else if (mLuminanceMap.size() == 1) {
+        } else if (mColors.length == 1) {
             // Deal with views that only contain a single color
-            mBackgroundLuminance = mForegroundLuminance = mLuminanceHistogram.keySet().iterator()
-                    .next();
-            final int singleColor = mLuminanceMap.keySet().iterator().next();
+            mBackgroundLuminance = mForegroundLuminance = mLuminances[0];
+            final int singleColor = mColors[0];
             mForegroundColors.add(singleColor);
             mBackgroundColors.add(singleColor);
         } else {
-            // Sort all luminance values seen from low to high
-            final ArrayList<Entry<Integer, Double>> colorsByLuminance = new ArrayList<
-                    Entry<Integer, Double>>(mLuminanceMap.size());
-            colorsByLuminance.addAll(mLuminanceMap.entrySet());
-            Collections.sort(colorsByLuminance, new Comparator<Entry<Integer, Double>>() {
-                @Override
-                public int compare(Entry<Integer, Double> lhs, Entry<Integer, Double> rhs) {
-                    return Double.compare(lhs.getValue(), rhs.getValue());
+            if (mLuminances.length == 1) {
+                // Several colors, differing only in alpha, share one luminance
+                mBackgroundLuminance = mForegroundLuminance = mLuminances[0];
+            } else {
+                // Sort luminance values seen by frequency in the image. Packing
+                // the position into the low bits keeps the sort stable.
+                final long[] luminanceByFrequency = new long[mLuminances.length];
+                for (int i = 0; i < mLuminances.length; ++i) {
+                    luminanceByFrequency[i] = ((long) mLuminanceCounts[i] << 32) | i;
                 }
-            });
-
-            // Sort luminance values seen by frequency in the image
-            final ArrayList<Entry<Double, Integer>> luminanceByFrequency = new ArrayList<
-                    Entry<Double, Integer>>(mLuminanceHistogram.size());
-            luminanceByFrequency.addAll(mLuminanceHistogram.entrySet());
-            Collections.sort(luminanceByFrequency, new Comparator<Entry<Double, Integer>>() {
-                @Override
-                public int compare(Entry<Double, Integer> lhs, Entry<Double, Integer> rhs) {
-                    return Integer.compare(lhs.getValue(), rhs.getValue());
+                Arrays.sort(luminanceByFrequency);
+
+                // Find the average luminance value within the set of luminances for
+                // purposes of splitting luminance values into high-luminance and
+                // low-luminance buckets. This is explicitly not a weighted average.
+                double luminanceSum = 0;
+                for (long luminanceCount : luminanceByFrequency) {
+                    luminanceSum += mLuminances[(int) luminanceCount];
                 }
-            });
-
-            // Find the average luminance value within the set of luminances for
-            // purposes of splitting luminance values into high-luminance and
-            // low-luminance buckets. This is explicitly not a weighted average.
-            double luminanceSum = 0;
-            for (Entry<Double, Integer> luminanceCount : luminanceByFrequency) {
-                luminanceSum += luminanceCount.getKey();
-            }
 
-            final double averageLuminance = luminanceSum / luminanceByFrequency.size();
-
-            // Select the highest and lowest luminance values that contribute to
-            // most number of pixels in the image -- our background and
-            // foreground colors.
-            double lowLuminanceContributor = 0.0d;
-            for (int i = luminanceByFrequency.size() - 1; i >= 0; --i) {
-                final double luminanceValue = luminanceByFrequency.get(i).getKey();
-                if (luminanceValue < averageLuminance) {
-                    lowLuminanceContributor = luminanceValue;
-                    break;
+                final double averageLuminance = luminanceSum / luminanceByFrequency.length;
+
+                // Select the highest and lowest luminance values that contribute to
+                // most number of pixels in the image -- our background and
+                // foreground colors. With two or more distinct luminances, at
+                // least one lies on each side of the average.
+                int lowLuminanceContributor = -1;
+                for (int i = luminanceByFrequency.length - 1; i >= 0; --i) {
+                    final int luminanceIndex = (int) luminanceByFrequency[i];
+                    if (mLuminances[luminanceIndex] < averageLuminance) {
+                        lowLuminanceContributor = luminanceIndex;
+                        break;
+                    }
                 }
-            }
 
-            double highLuminanceContributor = 1.0d;
-            for (int i = luminanceByFrequency.size() - 1; i >= 0; --i) {
-                final double luminanceValue = luminanceByFrequency.get(i).getKey();
-                if (luminanceValue >= averageLuminance) {
-                    highLuminanceContributor = luminanceValue;
-                    break;
+                int highLuminanceContributor = -1;
+                for (int i = luminanceByFrequency.length - 1; i >= 0; --i) {
+                    final int luminanceIndex = (int) luminanceByFrequency[i];
+                    if (mLuminances[luminanceIndex] >= averageLuminance) {
+                        highLuminanceContributor = luminanceIndex;
+                        break;
+                    }
                 }
-            }
 
-            // Background luminance is that which occurs more frequently
-            if (mLuminanceHistogram.get(highLuminanceContributor)
-                    > mLuminanceHistogram.get(lowLuminanceContributor)) {
-                mBackgroundLuminance = highLuminanceContributor;
-                mForegroundLuminance = lowLuminanceContributor;
-            } else {
-                mBackgroundLuminance = lowLuminanceContributor;
-                mForegroundLuminance = highLuminanceContributor;
+                // Background luminance is that which occurs more frequently
+                if (mLuminanceCounts[highLuminanceContributor]
+                        > mLuminanceCounts[lowLuminanceContributor]) {
+                    mBackgroundLuminance = mLuminances[highLuminanceContributor];
+                    mForegroundLuminance = mLuminances[lowLuminanceContributor];
+                } else {
+                    mBackgroundLuminance = mLuminances[lowLuminanceContributor];
+                    mForegroundLuminance = mLuminances[highLuminanceContributor];
+                }
             }
 
             // Determine the contributing colors for those luminance values
-            // TODO(caseyburkhardt): I know, this is gross to iterate through
-            // the whole image again...
-            for (Entry<Integer, Double> colorLuminance : mLuminanceMap.entrySet()) {
-                if (colorLuminance.getValue() == mBackgroundLuminance) {
-                    mBackgroundColors.add(colorLuminance.getKey());
+            for (int i = 0; i < mColors.length; ++i) {
+                if (mColorLuminances[i] == mBackgroundLuminance) {
+                    mBackgroundColors.add(mColors[i]);
                 }
 
-                if (colorLuminance.getValue() == mForegroundLuminance) {
-                    mForegroundColors.add(colorLuminance.getKey());
+                if (mColorLuminances[i] == mForegroundLuminance) {
+                    mForegroundColors.add(mColors[i]);
                 }
             }
         }
     }
 
+    private static int[] toArray(Collection<Integer> values) {
+        final int[] array = new int[values.size()];
+        int i = 0;
+        for (int value : values) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    /** Mixes the high bits of a hash code into the low bits used as a slot */
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
     public Bitmap getImage() {
-        return Bitmap.createBitmap(mImage);
+        return (mImage != null) ? Bitmap.createBitmap(mImage) : null;
     }
 
     public void setImage(Bitmap image) {
@@ -263,22 +493,81 @@ public class ContrastSwatch implements Parcelable {
         return mContrastRatio;
     }
 
+    /**
+     * @return {@code true} if the swatch was computed from luminance bins
+     *         that merge several luminances, so that its contrast ratio is a
+     *         heuristic that may differ from that of its pixels by any amount
+     */
+    public boolean isApproximate() {
+        return mApproximate;
+    }
+
+    /**
+     * @return The distinct luminances of the swatch, which must not be
+     *         modified
+     */
+    double[] getLuminances() {
+        return mLuminances;
+    }
+
+    /**
+     * @return The pixel count of each of {@link #getLuminances()}, at the same
+     *         index, which must not be modified
+     */
+    int[] getLuminanceCounts() {
+        return mLuminanceCounts;
+    }
+
     @Override
     public int describeContents() {
         return 0;
     }
 
+    /**
+     * Sets whether {@link #writeToParcel(Parcel, int)} leaves out the color
+     * and luminance tables of the swatch, writing only its contrast ratio and
+     * its foreground and background data. This keeps the parcel small when a
+     * swatch is sent to another process to be reported. Default:
+     * {@code false}
+     *
+     * @param summaryOnly {@code true} to leave out the tables
+     */
+    public void setParcelSummaryOnly(boolean summaryOnly) {
+        mParcelSummaryOnly = summaryOnly;
+    }
+
+    /**
+     * Writes the swatch in a packed format of primitive arrays, preceded by a
+     * versioned header. Swatches written in the legacy format of boxed maps
+     * and lists can still be read.
+     */
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(PARCEL_HEADER | PARCEL_VERSION_PACKED);
         dest.writeString(mName);
-        dest.writeMap(mLuminanceMap);
-        dest.writeMap(mLuminanceHistogram);
-        dest.writeList(mBackgroundColors);
-        dest.writeList(mForegroundColors);
+        if (!mParcelSummaryOnly) {
+            dest.writeInt(1);
+            dest.writeIntArray(mColors);
+            dest.writeDoubleArray(mColorLuminances);
+            dest.writeDoubleArray(mLuminances);
+            dest.writeIntArray(mLuminanceCounts);
+        } else {
+            dest.writeInt(0);
+        }
+        dest.writeIntArray(toArray(mBackgroundColors));
+        dest.writeIntArray(toArray(mForegroundColors));
         dest.writeDouble(mBackgroundLuminance);
         dest.writeDouble(mForegroundLuminance);
-        dest.writeValue(mScreenBounds);
         dest.writeDouble(mContrastRatio);
+        if (mScreenBounds != null) {
+            dest.writeInt(1);
+            dest.writeInt(mScreenBounds.left);
+            dest.writeInt(mScreenBounds.top);
+            dest.writeInt(mScreenBounds.right);
+            dest.writeInt(mScreenBounds.bottom);
+        } else {
+            dest.writeInt(0);
+        }
     }
 
     @Override
@@ -42,6 +42,20 @@ public class ContrastUtils {
 
     public static final double CONTRAST_RATIO_WCAG_LARGE_TEXT = 3.0;
 
+    /**
+     * The linearized value of each 8-bit sRGB channel value, so luminance is
+     * computed with lookups rather than with {@link Math#pow(double, double)}
+     */
+    private static final double[] LINEARIZED_CHANNELS = new double[256];
+
+    static {
+        for (int i = 0; i < LINEARIZED_CHANNELS.length; ++i) {
+            final double sRGB = i / 255.0d;
+            LINEARIZED_CHANNELS[i] = (sRGB <= 0.03928d) ? sRGB / 12.92d
+                    : Math.pow(((sRGB + 0.055d) / 1.055d), 2.4d);
+        }
+    }
+
     private ContrastUtils() {
         // Not instantiable
     }
@@ -55,18 +69,45 @@ public class ContrastUtils {
      * @return the luminance value of the given color
      */
     public static double calculateLuminance(int color) {
-        final double[] sRGB = new double[3];
-        sRGB[0] = Color.red(color) / 255.0d;
-        sRGB[1] = Color.green(color) / 255.0d;
-        sRGB[2] = Color.blue(color) / 255.0d;
-
-        final double[] lumRGB = new double[3];
-        for (int i = 0; i < sRGB.length; ++i) {
-            lumRGB[i] = (sRGB[i] <= 0.03928d) ? sRGB[i] / 12.92d
-                    : Math.pow(((sRGB[i] + 0.055d) / 1.055d), 2.4d);
+        return 0.2126d * LINEARIZED_CHANNELS[(color >> 16) & 0xFF]
+                + 0.7152d * LINEARIZED_CHANNELS[(color >> 8) & 0xFF]
+                + 0.0722d * LINEARIZED_CHANNELS[color & 0xFF];
+    }
+
+    /**
+     * Calculates the luminance value of each of an array of colors.
+     *
+     * @param colors The {@link Color}s to evaluate
+     * @param luminances The array to receive the luminance value of each color,
+     *            at the same index as the color
+     * @throws IllegalArgumentException if {@code luminances} is shorter than
+     *             {@code colors}
+     * @see #calculateLuminance(int)
+     */
+    public static void calculateLuminance(int[] colors, double[] luminances) {
+        if (luminances.length < colors.length) {
+            throw new IllegalArgumentException("Luminance array is shorter than color array.");
         }
 
-        return 0.2126d * lumRGB[0] + 0.7152d * lumRGB[1] + 0.0722d * lumRGB[2];
+        calculateLuminance(colors, 0, luminances, 0, colors.length);
+    }
+
+    /**
+     * Calculates the luminance value of each of a range of colors.
+     *
+     * @param colors The {@link Color}s to evaluate
+     * @param colorsOffset The index of the first color to evaluate
+     * @param luminances The array to receive the luminance values
+     * @param luminancesOffset The index at which to store the first luminance
+     *            value
+     * @param length The number of colors to evaluate
+     * @see #calculateLuminance(int)
+     */
+    public static void calculateLuminance(int[] colors, int colorsOffset, double[] luminances,
+            int luminancesOffset, int length) {
+        for (int i = 0; i < length; ++i) {
+            luminances[luminancesOffset + i] = calculateLuminance(colors[colorsOffset + i]);
+        }
     }
 
     /**
@@ -87,6 +128,24 @@ public class ContrastUtils {
         return (Math.max(lum1, lum2) + 0.05d) / (Math.min(lum1, lum2) + 0.05d);
     }
 
+    /**
+     * Determines whether a contrast ratio known only to lie within a range
+     * could fall on either side of a WCAG threshold, so that a check comparing
+     * it with the threshold would need the exact ratio.
+     *
+     * @param minRatio The lowest ratio in the range
+     * @param maxRatio The highest ratio in the range
+     * @return {@code true} if the range spans
+     *         {@link #CONTRAST_RATIO_WCAG_LARGE_TEXT} or
+     *         {@link #CONTRAST_RATIO_WCAG_NORMAL_TEXT}
+     */
+    public static boolean spansWcagThreshold(double minRatio, double maxRatio) {
+        return ((minRatio < CONTRAST_RATIO_WCAG_LARGE_TEXT)
+                && (maxRatio >= CONTRAST_RATIO_WCAG_LARGE_TEXT))
+                || ((minRatio < CONTRAST_RATIO_WCAG_NORMAL_TEXT)
+                && (maxRatio >= CONTRAST_RATIO_WCAG_NORMAL_TEXT));
+    }
+
     /**
      * Converts a collection of {@code int} representations of colors to a
      * string representation of those colors in hex format.
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/**
+ * A summed-area table of luminance histograms over a screen capture, from
+ * which the histogram of any rectangle is computed without visiting most of
+ * its pixels.
+ * <p>
+ * Luminances are quantized into bins of equal width in contrast ratio, so
+ * that every bin spans the same relative change in contrast. The luminance of
+ * a bin is the mean luminance of the capture's pixels that fall in it. As a
+ * user interface uses few colors, a bin usually holds a single luminance and
+ * its mean is exact. A histogram whose non-empty bins each hold a single
+ * luminance gives the same contrast ratio as every pixel; otherwise the ratio
+ * is a heuristic, and not bounded, as merging luminances changes both their
+ * counts and the mean that decides which of them are compared.
+ * <p>
+ * To bound memory, the table sums whole blocks of
+ * {@value #BLOCK_SIZE}x{@value #BLOCK_SIZE} pixels. The histogram of a
+ * rectangle combines the table's sum over the blocks the rectangle covers with
+ * a count of the pixels along its edges, which lie in partial blocks. A query
+ * takes time proportional to the number of bins plus the perimeter of the
+ * rectangle, rather than its area.
+ * <p>
+ * Instances are immutable once constructed and may be queried from any
+ * thread.
+ */
+public final class IntegralLuminanceHistogram {
+
+    public static final int DEFAULT_BIN_COUNT = 64;
+
+    public static final int MAX_BIN_COUNT = 256;
+
+    private static final int BLOCK_SIZE = 8;
+
+    /** The contrast ratio of white to black, which the bins span */
+    private static final double MAX_CONTRAST_RATIO = 21.0d;
+
+    private final int mWidth;
+
+    private final int mHeight;
+
+    private final int mBinCount;
+
+    /** The bin of each pixel, row by row */
+    private final byte[] mPixelBins;
+
+    private final double[] mBinLuminances;
+
+    /** Whether every pixel of the capture in each bin has the same luminance */
+    private final boolean[] mBinsUniform;
+
+    private final int mBlockColumns;
+
+    private final int mBlockRows;
+
+    /**
+     * Bin counts of the blocks above and to the left of each block corner,
+     * {@code mBinCount} entries per corner
+     */
+    private final int[] mBlockSums;
+
+    /**
+     * Builds the histograms of {@code image} using
+     * {@value #DEFAULT_BIN_COUNT} bins.
+     *
+     * @param image The screen capture
+     */
+    public IntegralLuminanceHistogram(Bitmap image) {
+        this(image, DEFAULT_BIN_COUNT);
+    }
+
+    /**
+     * Builds the histograms of {@code image}. The histograms keep no reference
+     * to {@code image}, which may be recycled afterwards.
+     *
+     * @param image The screen capture
+     * @param binCount The number of luminance bins, from 2 to
+     *            {@value #MAX_BIN_COUNT}
+     */
+    public IntegralLuminanceHistogram(Bitmap image, int binCount) {
+        if ((binCount < 2) || (binCount > MAX_BIN_COUNT)) {
+            throw new IllegalArgumentException("Bin count must be between 2 and "
+                    + MAX_BIN_COUNT + ".");
+        }
+
+        mWidth = image.getWidth();
+        mHeight = image.getHeight();
+        mBinCount = binCount;
+        mPixelBins = new byte[mWidth * mHeight];
+
+        // The lowest luminance of every bin but the first
+        final double[] binThresholds = new double[binCount - 1];
+        for (int bin = 1; bin < binCount; ++bin) {
+            binThresholds[bin - 1] = getBinEdge(bin);
+        }
+
+        final LuminanceCache luminanceCache = new LuminanceCache();
+        final double[] binLuminanceSums = new double[binCount];
+        final long[] binPixelCounts = new long[binCount];
+        final double[] binFirstLuminances = new double[binCount];
+        mBinsUniform = new boolean[binCount];
+        Arrays.fill(mBinsUniform, true);
+        final int[] row = new int[mWidth];
+        int lastColor = 0;
+        double luminance = 0;
+        int pixelBin = -1;
+        for (int y = 0; y < mHeight; ++y) {
+            image.getPixels(row, 0, mWidth, 0, y, mWidth, 1);
+            for (int x = 0; x < mWidth; ++x) {
+                if ((pixelBin == -1) || (row[x] != lastColor)) {
+                    lastColor = row[x];
+                    luminance = luminanceCache.getLuminance(lastColor);
+                    final int position = Arrays.binarySearch(binThresholds, luminance);
+                    pixelBin = (position >= 0) ? position + 1 : -position - 1;
+                    if (binPixelCounts[pixelBin] == 0) {
+                        binFirstLuminances[pixelBin] = luminance;
+                    } else if (luminance != binFirstLuminances[pixelBin]) {
+                        mBinsUniform[pixelBin] = false;
+                    }
+                }
+                mPixelBins[y * mWidth + x] = (byte) pixelBin;
+                binLuminanceSums[pixelBin] += luminance;
+                binPixelCounts[pixelBin]++;
+            }
+        }
+
+        mBinLuminances = new double[binCount];
+        for (int i = 0; i < binCount; ++i) {
+            if (binPixelCounts[i] == 0) {
+                mBinLuminances[i] = getBinEdge(i + 0.5d);
+            } else if (mBinsUniform[i]) {
+                // Exactly the luminance of the bin's pixels, which summing
+                // could round
+                mBinLuminances[i] = binFirstLuminances[i];
+            } else {
+                mBinLuminances[i] = binLuminanceSums[i] / binPixelCounts[i];
+            }
+        }
+
+        // Only whole blocks are summed. Pixels past the last whole block are
+        // always counted individually.
+        mBlockColumns = mWidth / BLOCK_SIZE;
+        mBlockRows = mHeight / BLOCK_SIZE;
+        final int stride = (mBlockColumns + 1) * binCount;
+        mBlockSums = new int[(mBlockRows + 1) * stride];
+        for (int blockRow = 0; blockRow < mBlockRows; ++blockRow) {
+            final int above = blockRow * stride;
+            final int corner = above + stride;
+            for (int blockColumn = 0; blockColumn < mBlockColumns; ++blockColumn) {
+                final int blockStart = corner + (blockColumn + 1) * binCount;
+                countPixels(blockColumn * BLOCK_SIZE, blockRow * BLOCK_SIZE,
+                        (blockColumn + 1) * BLOCK_SIZE, (blockRow + 1) * BLOCK_SIZE,
+                        mBlockSums, blockStart);
+                for (int bin = 0; bin < binCount; ++bin) {
+                    mBlockSums[blockStart + bin] +=
+                            mBlockSums[blockStart - binCount + bin]
+                            + mBlockSums[above + (blockColumn + 1) * binCount + bin]
+                            - mBlockSums[above + blockColumn * binCount + bin];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of luminance bins
+     */
+    public int getBinCount() {
+        return mBinCount;
+    }
+
+    /**
+     * Bounds the error of the ratio of two bins' luminances. Every luminance
+     * in a bin is within a factor of {@code 21^(1 / binCount)} of the bin's
+     * luminance in contrast, so a ratio of two bins is within the square of
+     * that factor of the ratio of any two luminances they hold. This does not
+     * bound the contrast ratio of a swatch computed from bins, which may
+     * compare other luminances than its pixels would; see
+     * {@link #holdsSingleLuminance(int)}.
+     *
+     * @return The largest factor by which a ratio of two bins' luminances
+     *         differs from the ratio of the luminances binned into them
+     */
+    public double getMaxRatioError() {
+        return Math.pow(MAX_CONTRAST_RATIO, 2.0d / mBinCount);
+    }
+
+    /**
+     * @return {@code true} if every pixel of the screen capture that falls
+     *         into {@code bin} has the same luminance, so that the bin's
+     *         luminance is exact
+     */
+    public boolean holdsSingleLuminance(int bin) {
+        return mBinsUniform[bin];
+    }
+
+    /**
+     * @return The mean luminance of the pixels of the screen capture that fall
+     *         into {@code bin}, or the luminance at its center if none do
+     */
+    public double getBinLuminance(int bin) {
+        return mBinLuminances[bin];
+    }
+
+    /**
+     * Computes the number of pixels in each luminance bin within a rectangle.
+     *
+     * @param bounds The rectangle, which must lie within the screen capture
+     * @return The pixel count of each bin, from darkest to lightest
+     * @throws IllegalArgumentException if {@code bounds} extends outside the
+     *             screen capture
+     */
+    public int[] getBinCounts(Rect bounds) {
+        if ((bounds.left < 0) || (bounds.top < 0) || (bounds.right > mWidth)
+                || (bounds.bottom > mHeight)) {
+            throw new IllegalArgumentException("Bounds " + bounds + " are outside the "
+                    + mWidth + "x" + mHeight + " screen capture.");
+        }
+
+        final int[] counts = new int[mBinCount];
+        if ((bounds.left >= bounds.right) || (bounds.top >= bounds.bottom)) {
+            return counts;
+        }
+
+        // The whole blocks inside the bounds
+        final int firstBlockColumn = (bounds.left + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int firstBlockRow = (bounds.top + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int endBlockColumn = Math.min(bounds.right / BLOCK_SIZE, mBlockColumns);
+        final int endBlockRow = Math.min(bounds.bottom / BLOCK_SIZE, mBlockRows);
+        if ((firstBlockColumn >= endBlockColumn) || (firstBlockRow >= endBlockRow)) {
+            countPixels(bounds.left, bounds.top, bounds.right, bounds.bottom, counts, 0);
+            return counts;
+        }
+
+        final int stride = (mBlockColumns + 1) * mBinCount;
+        final int topLeft = firstBlockRow * stride + firstBlockColumn * mBinCount;
+        final int topRight = firstBlockRow * stride + endBlockColumn * mBinCount;
+        final int bottomLeft = endBlockRow * stride + firstBlockColumn * mBinCount;
+        final int bottomRight = endBlockRow * stride + endBlockColumn * mBinCount;
+        for (int bin = 0; bin < mBinCount; ++bin) {
+            counts[bin] = mBlockSums[bottomRight + bin] - mBlockSums[topRight + bin]
+                    - mBlockSums[bottomLeft + bin] + mBlockSums[topLeft + bin];
+        }
+
+        // The edges outside those blocks
+        final int innerLeft = firstBlockColumn * BLOCK_SIZE;
+        final int innerTop = firstBlockRow * BLOCK_SIZE;
+        final int innerRight = endBlockColumn * BLOCK_SIZE;
+        final int innerBottom = endBlockRow * BLOCK_SIZE;
+        countPixels(bounds.left, bounds.top, bounds.right, innerTop, counts, 0);
+        countPixels(bounds.left, innerBottom, bounds.right, bounds.bottom, counts, 0);
+        countPixels(bounds.left, innerTop, innerLeft, innerBottom, counts, 0);
+        countPixels(innerRight, innerTop, bounds.right, innerBottom, counts, 0);
+        return counts;
+    }
+
+    private void countPixels(int left, int top, int right, int bottom, int[] counts,
+            int countsOffset) {
+        for (int y = top; y < bottom; ++y) {
+            final int rowStart = y * mWidth;
+            for (int x = left; x < right; ++x) {
+                counts[countsOffset + (mPixelBins[rowStart + x] & 0xFF)]++;
+            }
+        }
+    }
+
+    /**
+     * @return The luminance at {@code position} bins from black, where the
+     *         contrast ratio to black grows by the same factor in every bin
+     */
+    private double getBinEdge(double position) {
+        return 0.05d * Math.pow(MAX_CONTRAST_RATIO, position / mBinCount) - 0.05d;
+    }
+}
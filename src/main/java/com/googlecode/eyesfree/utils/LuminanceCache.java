@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Color;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache from {@link Color} to luminance, for callers that evaluate
+ * the colors of an image one pixel at a time.
+ * <p>
+ * Images tend to repeat a few colors in long runs, so each color is stored in
+ * a single slot chosen by its hash and replaces whatever color held that slot.
+ * The cache never grows past the capacity it was created with, and never
+ * boxes.
+ * <p>
+ * Not thread-safe.
+ */
+public final class LuminanceCache {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final int[] mColors;
+
+    private final double[] mLuminances;
+
+    private final boolean[] mFilled;
+
+    private final int mMask;
+
+    public LuminanceCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of colors to hold, rounded up to a power of
+     *            two
+     */
+    public LuminanceCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        final int size = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mColors = new int[size];
+        mLuminances = new double[size];
+        mFilled = new boolean[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * @param color The {@link Color} to evaluate
+     * @return The luminance value of the given color, as computed by
+     *         {@link ContrastUtils#calculateLuminance(int)}
+     */
+    public double getLuminance(int color) {
+        final int hash = color * 0x9E3779B9;
+        final int slot = (hash ^ (hash >>> 16)) & mMask;
+        if (!mFilled[slot] || (mColors[slot] != color)) {
+            mColors[slot] = color;
+            mLuminances[slot] = ContrastUtils.calculateLuminance(color);
+            mFilled[slot] = true;
+        }
+
+        return mLuminances[slot];
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear() {
+        Arrays.fill(mFilled, false);
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opt-in accounting of the {@link AccessibilityNodeInfo}s that the
+ * accessibility utilities obtain and recycle, for finding nodes that are
+ * never returned to the pool.
+ * <p>
+ * Each node obtained through {@link #obtained(AccessibilityNodeInfoCompat)},
+ * whether copied with {@code obtain()} or fetched with {@code getChild()},
+ * {@code getParent()} or {@code getLabeledBy()}, is counted against the line
+ * that obtained it. Nodes recycled through {@link #recycle} are counted
+ * against the same line, so a call site whose obtain and recycle counts
+ * differ at the end of a run is leaking nodes, or passing them to a caller
+ * that is. A few stack traces of each call site's outstanding nodes are kept
+ * as samples.
+ * <p>
+ * Tracking is off by default, in which case nodes pass straight through.
+ * Turn it on with {@link #setEnabled(boolean)} before a run and call
+ * {@link #logLeaks()} or {@link #getCallSites()} after it. While enabled,
+ * each obtain records a stack trace, so it is meant for tests rather than
+ * production.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class NodeInfoTracker {
+
+    /** The maximum number of stack traces kept for each call site. */
+    public static final int MAX_SAMPLES_PER_CALL_SITE = 3;
+
+    private static volatile boolean sEnabled;
+
+    /** The call site that obtained each outstanding node. */
+    private static final Map<Object, Allocation> sOutstanding =
+            new IdentityHashMap<Object, Allocation>();
+
+    private static final Map<String, CallSite> sCallSites =
+            new LinkedHashMap<String, CallSite>();
+
+    /** Recycles of nodes that were not obtained while tracking. */
+    private static long sUntrackedRecycleCount;
+
+    private NodeInfoTracker() {
+        // This class is not instantiable.
+    }
+
+    /**
+     * Turns tracking on or off. Nodes obtained while tracking is off are not
+     * counted, and their recycling is counted as untracked.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * @return {@code true} if obtains and recycles are being counted
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Records that the caller obtained {@code node} and must recycle it.
+     *
+     * @param node A node returned by {@code obtain()}, {@code getChild()},
+     *            {@code getParent()} or a similar method, or {@code null}
+     * @return {@code node}
+     */
+    public static AccessibilityNodeInfoCompat obtained(AccessibilityNodeInfoCompat node) {
+        if (sEnabled && (node != null)) {
+            track(node.getInfo());
+        }
+
+        return node;
+    }
+
+    /**
+     * @see #obtained(AccessibilityNodeInfoCompat)
+     */
+    public static AccessibilityNodeInfo obtained(AccessibilityNodeInfo info) {
+        if (sEnabled && (info != null)) {
+            track(info);
+        }
+
+        return info;
+    }
+
+    /**
+     * Recycles {@code node}, recording that the call site which obtained it
+     * has returned it.
+     *
+     * @param node The node to recycle, or {@code null}
+     */
+    public static void recycle(AccessibilityNodeInfoCompat node) {
+        if (node == null) {
+            return;
+        }
+
+        if (sEnabled) {
+            untrack(node.getInfo());
+        }
+
+        node.recycle();
+    }
+
+    /**
+     * @see #recycle(AccessibilityNodeInfoCompat)
+     */
+    public static void recycle(AccessibilityNodeInfo info) {
+        if (info == null) {
+            return;
+        }
+
+        if (sEnabled) {
+            untrack(info);
+        }
+
+        info.recycle();
+    }
+
+    /**
+     * @return A snapshot of the counts of every call site that has obtained
+     *         a node since tracking was enabled or {@link #reset()}, in the
+     *         order they were first seen
+     */
+    public static synchronized List<CallSite> getCallSites() {
+        final List<CallSite> callSites = new ArrayList<CallSite>(sCallSites.size());
+        for (CallSite callSite : sCallSites.values()) {
+            callSites.add(callSite.copy());
+        }
+
+        return callSites;
+    }
+
+    /**
+     * @return The number of tracked nodes that have not been recycled
+     */
+    public static synchronized int getLeakCount() {
+        return sOutstanding.size();
+    }
+
+    /**
+     * @return The number of recycled nodes that were not obtained while
+     *         tracking was enabled
+     */
+    public static synchronized long getUntrackedRecycleCount() {
+        return sUntrackedRecycleCount;
+    }
+
+    /**
+     * Logs each call site with outstanding nodes, along with its sampled
+     * stack traces.
+     *
+     * @return The number of tracked nodes that have not been recycled
+     */
+    public static synchronized int logLeaks() {
+        for (CallSite callSite : sCallSites.values()) {
+            if (callSite.getLeakCount() == 0) {
+                continue;
+            }
+
+            LogUtils.log(NodeInfoTracker.class, Log.ERROR,
+                    "%1$s leaked %2$d of %3$d nodes", callSite.getName(),
+                    callSite.getLeakCount(), callSite.getObtainCount());
+            for (Throwable sample : callSite.getSamples()) {
+                LogUtils.log(NodeInfoTracker.class, Log.ERROR, "%1$s",
+                        Log.getStackTraceString(sample));
+            }
+        }
+
+        return sOutstanding.size();
+    }
+
+    /**
+     * Forgets all outstanding nodes and counts.
+     */
+    public static synchronized void reset() {
+        sOutstanding.clear();
+        sCallSites.clear();
+        sUntrackedRecycleCount = 0;
+    }
+
+    private static void track(Object info) {
+        final Throwable trace = newCallSiteTrace();
+        final StackTraceElement[] frames = trace.getStackTrace();
+        final String name = (frames.length > 0) ? (frames[0].getClassName() + "."
+                + frames[0].getMethodName() + ":" + frames[0].getLineNumber()) : "unknown";
+
+        synchronized (NodeInfoTracker.class) {
+            CallSite callSite = sCallSites.get(name);
+            if (callSite == null) {
+                callSite = new CallSite(name);
+                sCallSites.put(name, callSite);
+            }
+
+            callSite.mObtainCount++;
+            final Allocation previous = sOutstanding.put(info, new Allocation(callSite, trace));
+            if (previous != null) {
+                // The pool only hands out a node again once it has been
+                // recycled, so its first owner recycled it directly.
+                previous.mCallSite.mRecycleCount++;
+            }
+        }
+    }
+
+    private static synchronized void untrack(Object info) {
+        final Allocation allocation = sOutstanding.remove(info);
+        if (allocation == null) {
+            sUntrackedRecycleCount++;
+            return;
+        }
+
+        allocation.mCallSite.mRecycleCount++;
+    }
+
+    /**
+     * @return A stack trace that starts at the first frame outside this class
+     */
+    private static Throwable newCallSiteTrace() {
+        final Throwable trace = new Throwable("Node obtained here");
+        final StackTraceElement[] frames = trace.getStackTrace();
+        int first = 0;
+        while ((first < frames.length)
+                && frames[first].getClassName().equals(NodeInfoTracker.class.getName())) {
+            first++;
+        }
+
+        trace.setStackTrace(Arrays.copyOfRange(frames, first, frames.length));
+        return trace;
+    }
+
+    private static final class Allocation {
+        final CallSite mCallSite;
+        final Throwable mTrace;
+
+        Allocation(CallSite callSite, Throwable trace) {
+            mCallSite = callSite;
+            mTrace = trace;
+        }
+    }
+
+    /**
+     * The obtain and recycle counts of one line that obtains nodes.
+     */
+    public static final class CallSite {
+        private final String mName;
+        private final List<Throwable> mSamples;
+        private int mObtainCount;
+        private int mRecycleCount;
+
+        private CallSite(String name) {
+            mName = name;
+            mSamples = null;
+        }
+
+        private CallSite(CallSite other, List<Throwable> samples) {
+            mName = other.mName;
+            mObtainCount = other.mObtainCount;
+            mRecycleCount = other.mRecycleCount;
+            mSamples = samples;
+        }
+
+        /**
+         * @return The call site, as {@code class.method:line}
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return The number of nodes obtained at this call site
+         */
+        public int getObtainCount() {
+            return mObtainCount;
+        }
+
+        /**
+         * @return The number of nodes obtained at this call site that have
+         *         been recycled
+         */
+        public int getRecycleCount() {
+            return mRecycleCount;
+        }
+
+        /**
+         * @return The number of nodes obtained at this call site that have
+         *         not been recycled
+         */
+        public int getLeakCount() {
+            return mObtainCount - mRecycleCount;
+        }
+
+        /**
+         * @return Up to {@link #MAX_SAMPLES_PER_CALL_SITE} stack traces of
+         *         nodes obtained at this call site that have not been
+         *         recycled
+         */
+        public List<Throwable> getSamples() {
+            if (mSamples != null) {
+                return mSamples;
+            }
+
+            synchronized (NodeInfoTracker.class) {
+                return collectSamples();
+            }
+        }
+
+        private List<Throwable> collectSamples() {
+            final List<Throwable> samples = new ArrayList<Throwable>();
+            for (Allocation allocation : sOutstanding.values()) {
+                if (samples.size() >= MAX_SAMPLES_PER_CALL_SITE) {
+                    break;
+                }
+
+                if (allocation.mCallSite == this) {
+                    samples.add(allocation.mTrace);
+                }
+            }
+
+            return Collections.unmodifiableList(samples);
+        }
+
+        private CallSite copy() {
+            return new CallSite(this, collectSamples());
+        }
+    }
+}
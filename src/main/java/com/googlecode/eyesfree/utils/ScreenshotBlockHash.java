@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * A 64-bit hash of each square tile of a screen capture, from which a hash of
+ * any region is combined without reading its pixels again.
+ * <p>
+ * Two captures that hash a region alike almost certainly have the same pixels
+ * there, so results computed from the region of one can be reused for the
+ * other. A region's hash covers every tile the region overlaps, so a change
+ * near a region, within one of its tiles, also changes its hash.
+ * <p>
+ * Instances are immutable once constructed and may be queried from any
+ * thread.
+ */
+public final class ScreenshotBlockHash {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int mWidth;
+
+    private final int mHeight;
+
+    private final int mTileSize;
+
+    private final int mTileColumns;
+
+    private final int mTileRows;
+
+    /** The hash of each tile, row by row */
+    private final long[] mTileHashes;
+
+    /**
+     * Hashes {@code image} in tiles of {@value #DEFAULT_TILE_SIZE} pixels.
+     *
+     * @param image The screen capture
+     */
+    public ScreenshotBlockHash(Bitmap image) {
+        this(image, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Hashes {@code image}. The hash keeps no reference to {@code image},
+     * which may be recycled afterwards.
+     *
+     * @param image The screen capture
+     * @param tileSize The width and height of each tile, in pixels
+     */
+    public ScreenshotBlockHash(Bitmap image, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+
+        mWidth = image.getWidth();
+        mHeight = image.getHeight();
+        mTileSize = tileSize;
+        mTileColumns = (mWidth + tileSize - 1) / tileSize;
+        mTileRows = (mHeight + tileSize - 1) / tileSize;
+        mTileHashes = new long[mTileColumns * mTileRows];
+
+        final int[] row = new int[mWidth];
+        for (int y = 0; y < mHeight; ++y) {
+            image.getPixels(row, 0, mWidth, 0, y, mWidth, 1);
+            final int tileRowStart = (y / tileSize) * mTileColumns;
+            for (int tileColumn = 0; tileColumn < mTileColumns; ++tileColumn) {
+                long hash = mTileHashes[tileRowStart + tileColumn];
+                final int end = Math.min(mWidth, (tileColumn + 1) * tileSize);
+                for (int x = tileColumn * tileSize; x < end; ++x) {
+                    hash = (hash ^ (row[x] & 0xFFFFFFFFL)) * MULTIPLIER;
+                }
+                mTileHashes[tileRowStart + tileColumn] = hash;
+            }
+        }
+    }
+
+    /**
+     * @return The width of the hashed capture, in pixels
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return The height of the hashed capture, in pixels
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Combines the hashes of the tiles a region overlaps, along with the size
+     * of the capture and of its tiles.
+     *
+     * @param bounds The region, which must lie within the capture
+     * @return The hash of the region
+     * @throws IllegalArgumentException if {@code bounds} extends outside the
+     *             capture
+     */
+    public long getRegionHash(Rect bounds) {
+        if ((bounds.left < 0) || (bounds.top < 0) || (bounds.right > mWidth)
+                || (bounds.bottom > mHeight)) {
+            throw new IllegalArgumentException("Bounds " + bounds + " are outside the "
+                    + mWidth + "x" + mHeight + " capture.");
+        }
+
+        long hash = ((((long) mWidth << 32) | mHeight) ^ mTileSize) * MULTIPLIER;
+        if ((bounds.left >= bounds.right) || (bounds.top >= bounds.bottom)) {
+            return hash;
+        }
+
+        final int lastTileColumn = (bounds.right - 1) / mTileSize;
+        final int lastTileRow = (bounds.bottom - 1) / mTileSize;
+        for (int tileRow = bounds.top / mTileSize; tileRow <= lastTileRow; ++tileRow) {
+            for (int tileColumn = bounds.left / mTileSize; tileColumn <= lastTileColumn;
+                    ++tileColumn) {
+                hash = (hash ^ mTileHashes[tileRow * mTileColumns + tileColumn]) * MULTIPLIER;
+                hash ^= hash >>> 29;
+            }
+        }
+        return hash;
+    }
+}
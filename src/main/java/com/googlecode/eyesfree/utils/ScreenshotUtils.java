@@ -55,27 +55,18 @@ public class ScreenshotUtils {
      *
      * @param context The current context.
      * @return A bitmap of the screenshot.
+     * @see #createUnrotatedScreenshot(Context)
      */
     public static Bitmap createScreenshot(Context context) {
-        if (!hasScreenshotPermission(context)) {
-            LogUtils.log(ScreenshotUtils.class, Log.ERROR, "Screenshot permission denied.");
-            return null;
-        }
-
-        final WindowManager windowManager =
-                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-
-        final Bitmap bitmap = SurfaceControlCompatUtils.screenshot(0, 0);
-
-        // Bail if we couldn't take the screenshot.
-        if (bitmap == null) {
-            LogUtils.log(ScreenshotUtils.class, Log.ERROR, "Failed to take screenshot.");
+        final UnrotatedScreenshot screenshot = createUnrotatedScreenshot(context);
+        if (screenshot == null) {
             return null;
         }
 
+        final Bitmap bitmap = screenshot.getBuffer();
         final int width = bitmap.getWidth();
         final int height = bitmap.getHeight();
-        final int rotation = windowManager.getDefaultDisplay().getRotation();
+        final int rotation = screenshot.getRotation();
 
         final int outWidth;
         final int outHeight;
@@ -116,6 +107,38 @@ public class ScreenshotUtils {
         return rotatedBitmap;
     }
 
+    /**
+     * Returns a screenshot with the contents of the current display, left in
+     * the orientation of the display's native buffer. Unlike
+     * {@link #createScreenshot(Context)}, no rotated copy is drawn, so no
+     * second full-screen bitmap is allocated and the colors of the buffer are
+     * kept. Callers map display coordinates onto the buffer through the
+     * returned {@link UnrotatedScreenshot}.
+     *
+     * @param context The current context.
+     * @return The screenshot and the rotation of the display, or {@code null}
+     *         if the screenshot could not be taken.
+     */
+    public static UnrotatedScreenshot createUnrotatedScreenshot(Context context) {
+        if (!hasScreenshotPermission(context)) {
+            LogUtils.log(ScreenshotUtils.class, Log.ERROR, "Screenshot permission denied.");
+            return null;
+        }
+
+        final WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+
+        final Bitmap bitmap = SurfaceControlCompatUtils.screenshot(0, 0);
+
+        // Bail if we couldn't take the screenshot.
+        if (bitmap == null) {
+            LogUtils.log(ScreenshotUtils.class, Log.ERROR, "Failed to take screenshot.");
+            return null;
+        }
+
+        return new UnrotatedScreenshot(bitmap, windowManager.getDefaultDisplay().getRotation());
+    }
+
     /**
      * Creates a new {@link Bitmap} object with a rectangular region of pixels
      * from the source bitmap.
@@ -102,6 +102,37 @@ public class StringBuilderUtils {
         return builder;
     }
 
+    /**
+     * Appends CharSequence representations of the specified arguments to a
+     * {@link StringBuilder}, separating them as
+     * {@link #appendWithSeparator(SpannableStringBuilder, CharSequence...)}
+     * does, for callers that only need the plain text.
+     *
+     * @param builder An existing {@link StringBuilder}.
+     * @param args The objects to append to the builder.
+     * @return {@code builder}, with the specified objects appended.
+     */
+    public static StringBuilder appendWithSeparator(
+            StringBuilder builder, CharSequence... args) {
+        for (CharSequence arg : args) {
+            if (TextUtils.isEmpty(arg)) {
+                continue;
+            }
+
+            if (builder.length() > 0) {
+                if (needsBreakingSeparator(builder)) {
+                    builder.append(DEFAULT_BREAKING_SEPARATOR);
+                } else {
+                    builder.append(DEFAULT_SEPARATOR);
+                }
+            }
+
+            builder.append(arg);
+        }
+
+        return builder;
+    }
+
     /**
      * Returns whether the text needs a breaking separator (e.g. a period
      * followed by a space) appended before more text is appended.
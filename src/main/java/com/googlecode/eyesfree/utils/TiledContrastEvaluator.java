@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the {@link ContrastSwatch}es of many regions of a screen capture by
+ * streaming the capture in square tiles, without cropping a {@link Bitmap}
+ * for any region.
+ * <p>
+ * Each tile is read into a buffer owned by the worker that processes it, and
+ * the colors of every region that overlaps the tile are counted into a
+ * partial histogram, which is merged into the region's histogram. A region's
+ * swatch is computed as soon as its last tile is merged, and its histogram is
+ * released. The swatches are identical to those computed from cropped
+ * bitmaps.
+ * <p>
+ * The memory ceiling limits the pixel buffers in use at once. It bounds the
+ * number of workers, and shrinks the tiles if even one would not fit.
+ * Histograms take memory in proportion to the number of distinct colors in
+ * the regions whose tiles are still being processed, and are not counted
+ * against the ceiling.
+ */
+public final class TiledContrastEvaluator {
+
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    public static final long DEFAULT_MEMORY_CEILING_BYTES = 4L * 1024 * 1024;
+
+    private static final int MIN_TILE_SIZE = 16;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final int mTileSize;
+
+    private final long mMemoryCeilingBytes;
+
+    public TiledContrastEvaluator() {
+        this(DEFAULT_TILE_SIZE, DEFAULT_MEMORY_CEILING_BYTES);
+    }
+
+    /**
+     * @param tileSize The width and height of each tile, in pixels
+     * @param memoryCeilingBytes The maximum size of the pixel buffers to use
+     *            at once
+     */
+    public TiledContrastEvaluator(int tileSize, long memoryCeilingBytes) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+
+        if (memoryCeilingBytes <= 0) {
+            throw new IllegalArgumentException("Memory ceiling must be positive.");
+        }
+
+        final int maxTileSize = (int) Math.min(Integer.MAX_VALUE,
+                Math.sqrt((double) memoryCeilingBytes / BYTES_PER_PIXEL));
+        mTileSize = Math.max(MIN_TILE_SIZE, Math.min(tileSize, maxTileSize));
+        mMemoryCeilingBytes = memoryCeilingBytes;
+    }
+
+    /**
+     * Computes the swatch of each region of {@code image} on the calling
+     * thread.
+     *
+     * @see #evaluate(Bitmap, List, List, ExecutorService, int)
+     */
+    public List<ContrastSwatch> evaluate(Bitmap image, List<Rect> bounds, List<String> names) {
+        return evaluate(image, bounds, names, null, 1);
+    }
+
+    /**
+     * Computes the swatch of each region of {@code image}, processing tiles
+     * on up to {@code parallelism} threads. The calling thread is one of them,
+     * and the others are tasks submitted to {@code executor}.
+     *
+     * @param image The screen capture
+     * @param bounds The regions to evaluate, each of which must lie within
+     *            {@code image}
+     * @param names Optional names of the regions, at the same index as their
+     *            bounds, or {@code null}
+     * @param executor The executor on which to run the other workers, which
+     *            may be {@code null} if {@code parallelism} is 1
+     * @param parallelism The maximum number of tiles to process at once
+     * @return The swatch of each region, at the same index as its bounds. The
+     *         swatches have no image.
+     * @throws IllegalArgumentException if a region extends outside the image
+     */
+    public List<ContrastSwatch> evaluate(final Bitmap image, List<Rect> bounds,
+            List<String> names, ExecutorService executor, int parallelism) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int tileColumns = (width + mTileSize - 1) / mTileSize;
+        final int tileRows = (height + mTileSize - 1) / mTileSize;
+        final int regionCount = bounds.size();
+
+        // For each tile, the regions overlapping it, packed into one array
+        final int[] tileOffsets = new int[tileColumns * tileRows + 1];
+        final Region[] regions = new Region[regionCount];
+        final ContrastSwatch[] swatches = new ContrastSwatch[regionCount];
+        for (int i = 0; i < regionCount; ++i) {
+            final Rect regionBounds = bounds.get(i);
+            if ((regionBounds.left < 0) || (regionBounds.top < 0)
+                    || (regionBounds.right > width) || (regionBounds.bottom > height)) {
+                throw new IllegalArgumentException("Bounds " + regionBounds
+                        + " are outside the " + width + "x" + height + " image.");
+            }
+
+            final String name = (names != null) ? names.get(i) : null;
+            if ((regionBounds.left >= regionBounds.right)
+                    || (regionBounds.top >= regionBounds.bottom)) {
+                swatches[i] = new ContrastSwatch(new ColorHistogram(), regionBounds, name);
+                continue;
+            }
+
+            final Region region = new Region(regionBounds, name);
+            for (int row = region.mFirstTileRow; row <= region.mLastTileRow; ++row) {
+                for (int column = region.mFirstTileColumn; column <= region.mLastTileColumn;
+                        ++column) {
+                    tileOffsets[row * tileColumns + column + 1]++;
+                    region.mRemainingTiles++;
+                }
+            }
+            regions[i] = region;
+        }
+        for (int tile = 0; tile < tileColumns * tileRows; ++tile) {
+            tileOffsets[tile + 1] += tileOffsets[tile];
+        }
+        final int[] tileRegions = new int[tileOffsets[tileColumns * tileRows]];
+        final int[] nextSlot = Arrays.copyOf(tileOffsets, tileColumns * tileRows);
+        for (int i = 0; i < regionCount; ++i) {
+            final Region region = regions[i];
+            if (region == null) {
+                continue;
+            }
+
+            for (int row = region.mFirstTileRow; row <= region.mLastTileRow; ++row) {
+                for (int column = region.mFirstTileColumn; column <= region.mLastTileColumn;
+                        ++column) {
+                    tileRegions[nextSlot[row * tileColumns + column]++] = i;
+                }
+            }
+        }
+
+        // Tiles are claimed in row order, so regions complete top to bottom
+        // and their histograms are released early
+        final AtomicInteger nextTile = new AtomicInteger();
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                final int[] pixels = new int[mTileSize * mTileSize];
+                final ColorHistogram partial = new ColorHistogram();
+                int tile;
+                while ((tile = nextTile.getAndIncrement()) < tileColumns * tileRows) {
+                    if (tileOffsets[tile] == tileOffsets[tile + 1]) {
+                        continue;
+                    }
+
+                    final int tileLeft = (tile % tileColumns) * mTileSize;
+                    final int tileTop = (tile / tileColumns) * mTileSize;
+                    final int tileWidth = Math.min(mTileSize, width - tileLeft);
+                    final int tileHeight = Math.min(mTileSize, height - tileTop);
+                    image.getPixels(pixels, 0, tileWidth, tileLeft, tileTop, tileWidth,
+                            tileHeight);
+                    for (int slot = tileOffsets[tile]; slot < tileOffsets[tile + 1]; ++slot) {
+                        final int i = tileRegions[slot];
+                        countRegionInTile(regions[i].mBounds, pixels, tileLeft, tileTop,
+                                tileWidth, tileHeight, partial);
+                        final ColorHistogram completed = regions[i].merge(partial);
+                        if (completed != null) {
+                            swatches[i] = new ContrastSwatch(completed, regions[i].mBounds,
+                                    regions[i].mName);
+                        }
+                        partial.clear();
+                    }
+                }
+            }
+        };
+
+        final int bytesPerTile = mTileSize * mTileSize * BYTES_PER_PIXEL;
+        final int workerCount = (int) Math.max(1, Math.min(Math.min(parallelism,
+                tileColumns * tileRows), mMemoryCeilingBytes / bytesPerTile));
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 1; i < workerCount; ++i) {
+            futures.add(executor.submit(worker));
+        }
+        worker.run();
+        for (Future<?> future : futures) {
+            waitFor(future);
+        }
+
+        return Arrays.asList(swatches);
+    }
+
+    /**
+     * Counts the pixels of a tile that lie within a region, keying each by its
+     * position in a column-by-column scan of the region.
+     */
+    private static void countRegionInTile(Rect bounds, int[] pixels, int tileLeft, int tileTop,
+            int tileWidth, int tileHeight, ColorHistogram histogram) {
+        final int left = Math.max(bounds.left, tileLeft);
+        final int top = Math.max(bounds.top, tileTop);
+        final int right = Math.min(bounds.right, tileLeft + tileWidth);
+        final int bottom = Math.min(bounds.bottom, tileTop + tileHeight);
+        final int regionHeight = bounds.height();
+        for (int y = top; y < bottom; ++y) {
+            final int rowStart = (y - tileTop) * tileWidth - tileLeft;
+            for (int x = left; x < right; ++x) {
+                histogram.add(pixels[rowStart + x],
+                        (x - bounds.left) * regionHeight + (y - bounds.top));
+            }
+        }
+    }
+
+    private static void waitFor(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating contrast", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * A region being evaluated, and the histogram of the tiles merged so far.
+     */
+    private final class Region {
+        private final Rect mBounds;
+
+        private final String mName;
+
+        private final int mFirstTileColumn;
+
+        private final int mFirstTileRow;
+
+        private final int mLastTileColumn;
+
+        private final int mLastTileRow;
+
+        private ColorHistogram mHistogram = new ColorHistogram();
+
+        private int mRemainingTiles;
+
+        Region(Rect bounds, String name) {
+            mBounds = bounds;
+            mName = name;
+            mFirstTileColumn = bounds.left / mTileSize;
+            mFirstTileRow = bounds.top / mTileSize;
+            mLastTileColumn = (bounds.right - 1) / mTileSize;
+            mLastTileRow = (bounds.bottom - 1) / mTileSize;
+        }
+
+        /**
+         * Merges the histogram of one tile of the region.
+         *
+         * @return The histogram of the whole region if this was its last tile,
+         *         or {@code null}
+         */
+        synchronized ColorHistogram merge(ColorHistogram partial) {
+            mHistogram.addAll(partial);
+            if (--mRemainingTiles > 0) {
+                return null;
+            }
+
+            final ColorHistogram histogram = mHistogram;
+            mHistogram = null;
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.view.Surface;
+
+/**
+ * A screenshot kept in the orientation of the display's native buffer, along
+ * with the rotation of the display when it was taken.
+ * <p>
+ * Rather than drawing the buffer into a rotated copy, callers work in display
+ * coordinates, as reported by {@code getBoundsInScreen}, and the screenshot
+ * maps them onto the buffer. This saves a full-screen allocation and keeps the
+ * buffer's colors, which a copy in a narrower format would round.
+ * <p>
+ * Not thread-safe.
+ */
+public final class UnrotatedScreenshot {
+
+    private final Bitmap mBuffer;
+
+    private final int mRotation;
+
+    /**
+     * @param buffer The screenshot, in the orientation of the display's
+     *            native buffer
+     * @param rotation The rotation of the display, one of
+     *            {@link Surface#ROTATION_0}, {@link Surface#ROTATION_90},
+     *            {@link Surface#ROTATION_180} or {@link Surface#ROTATION_270}
+     */
+    public UnrotatedScreenshot(Bitmap buffer, int rotation) {
+        if ((rotation != Surface.ROTATION_0) && (rotation != Surface.ROTATION_90)
+                && (rotation != Surface.ROTATION_180) && (rotation != Surface.ROTATION_270)) {
+            throw new IllegalArgumentException("Unknown rotation " + rotation + ".");
+        }
+
+        mBuffer = buffer;
+        mRotation = rotation;
+    }
+
+    /**
+     * @return The screenshot, in the orientation of the display's native
+     *         buffer
+     */
+    public Bitmap getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * @return The rotation of the display when the screenshot was taken
+     */
+    public int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * @return The width of the screenshot in display coordinates
+     */
+    public int getWidth() {
+        return isQuarterTurn() ? mBuffer.getHeight() : mBuffer.getWidth();
+    }
+
+    /**
+     * @return The height of the screenshot in display coordinates
+     */
+    public int getHeight() {
+        return isQuarterTurn() ? mBuffer.getWidth() : mBuffer.getHeight();
+    }
+
+    /**
+     * Maps a rectangle in display coordinates onto the buffer.
+     *
+     * @param displayBounds The rectangle in display coordinates
+     * @return A new rectangle covering the same pixels of the buffer
+     */
+    public Rect mapToBuffer(Rect displayBounds) {
+        final int width = mBuffer.getWidth();
+        final int height = mBuffer.getHeight();
+        switch (mRotation) {
+            case Surface.ROTATION_90:
+                return new Rect(width - displayBounds.bottom, displayBounds.left,
+                        width - displayBounds.top, displayBounds.right);
+            case Surface.ROTATION_180:
+                return new Rect(width - displayBounds.right, height - displayBounds.bottom,
+                        width - displayBounds.left, height - displayBounds.top);
+            case Surface.ROTATION_270:
+                return new Rect(displayBounds.top, height - displayBounds.right,
+                        displayBounds.bottom, height - displayBounds.left);
+            default:
+                return new Rect(displayBounds);
+        }
+    }
+
+    /**
+     * @param x The horizontal display coordinate of a pixel
+     * @param y The vertical display coordinate of a pixel
+     * @return The color of the pixel
+     */
+    public int getPixel(int x, int y) {
+        final int width = mBuffer.getWidth();
+        final int height = mBuffer.getHeight();
+        switch (mRotation) {
+            case Surface.ROTATION_90:
+                return mBuffer.getPixel(width - 1 - y, x);
+            case Surface.ROTATION_180:
+                return mBuffer.getPixel(width - 1 - x, height - 1 - y);
+            case Surface.ROTATION_270:
+                return mBuffer.getPixel(y, height - 1 - x);
+            default:
+                return mBuffer.getPixel(x, y);
+        }
+    }
+
+    /**
+     * Computes the swatch of a region of the screenshot. The result is the
+     * same as that of a {@link ContrastSwatch} constructed from a rotated copy
+     * of the screenshot in the buffer's format, but it has no image.
+     *
+     * @param displayBounds The region to evaluate in display coordinates,
+     *            which must lie within the screenshot
+     * @param name Optional name identifying the region being evaluated
+     * @return The swatch of the region
+     * @throws IllegalArgumentException if {@code displayBounds} extends
+     *             outside the screenshot
+     */
+    public ContrastSwatch createSwatch(Rect displayBounds, String name) {
+        if ((displayBounds.left < 0) || (displayBounds.top < 0)
+                || (displayBounds.right > getWidth()) || (displayBounds.bottom > getHeight())) {
+            throw new IllegalArgumentException("Bounds " + displayBounds + " are outside the "
+                    + getWidth() + "x" + getHeight() + " screenshot.");
+        }
+
+        final ColorHistogram histogram = new ColorHistogram();
+        final Rect bufferBounds = mapToBuffer(displayBounds);
+        final int bufferWidth = bufferBounds.width();
+        final int bufferHeight = bufferBounds.height();
+        if ((bufferWidth <= 0) || (bufferHeight <= 0)) {
+            return new ContrastSwatch(histogram, displayBounds, name);
+        }
+
+        // Order keys place each pixel in a column-by-column scan of the region
+        // as it appears on the display
+        final int displayHeight = displayBounds.height();
+        final int[] row = new int[bufferWidth];
+        for (int y = 0; y < bufferHeight; ++y) {
+            mBuffer.getPixels(row, 0, bufferWidth, bufferBounds.left, bufferBounds.top + y,
+                    bufferWidth, 1);
+            for (int x = 0; x < bufferWidth; ++x) {
+                final int displayX;
+                final int displayY;
+                switch (mRotation) {
+                    case Surface.ROTATION_90:
+                        displayX = y;
+                        displayY = bufferWidth - 1 - x;
+                        break;
+                    case Surface.ROTATION_180:
+                        displayX = bufferWidth - 1 - x;
+                        displayY = bufferHeight - 1 - y;
+                        break;
+                    case Surface.ROTATION_270:
+                        displayX = bufferHeight - 1 - y;
+                        displayY = x;
+                        break;
+                    default:
+                        displayX = x;
+                        displayY = y;
+                        break;
+                }
+                histogram.add(row[x], displayX * displayHeight + displayY);
+            }
+        }
+
+        return new ContrastSwatch(histogram, displayBounds, name);
+    }
+
+    /**
+     * Recycles the buffer.
+     */
+    public void recycle() {
+        mBuffer.recycle();
+    }
+
+    private boolean isQuarterTurn() {
+        return (mRotation == Surface.ROTATION_90) || (mRotation == Surface.ROTATION_270);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.googlecode.eyesfree.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the luminance calculations of {@link ContrastUtils} and
+ * {@link LuminanceCache} with the {@link Math#pow(double, double)}-based
+ * calculation they replace, over the pixels of a synthetic screenshot.
+ * <p>
+ * Pixels are drawn from a palette of {@code paletteSize} colors in runs, as in
+ * a screenshot of flat UI. Every benchmark evaluates all of the pixels and
+ * returns a sum of their luminances, so none of the work can be eliminated.
+ * Run with {@link #main(String[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ContrastUtilsBenchmark {
+
+    private static final int PIXEL_COUNT = 1080 * 64;
+
+    private static final int MAX_RUN_LENGTH = 32;
+
+    @Param({"16", "4096", "65536"})
+    public int paletteSize;
+
+    private int[] mPixels;
+
+    private double[] mLuminances;
+
+    private LuminanceCache mCache;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(0);
+        final int[] palette = new int[paletteSize];
+        for (int i = 0; i < palette.length; ++i) {
+            palette[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+
+        mPixels = new int[PIXEL_COUNT];
+        int i = 0;
+        while (i < mPixels.length) {
+            final int color = palette[random.nextInt(palette.length)];
+            final int end = Math.min(mPixels.length, i + 1 + random.nextInt(MAX_RUN_LENGTH));
+            while (i < end) {
+                mPixels[i++] = color;
+            }
+        }
+
+        mLuminances = new double[PIXEL_COUNT];
+        mCache = new LuminanceCache();
+    }
+
+    @Benchmark
+    public double powPerPixel() {
+        double sum = 0;
+        for (int pixel : mPixels) {
+            sum += calculateLuminanceWithPow(pixel);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double tablePerPixel() {
+        double sum = 0;
+        for (int pixel : mPixels) {
+            sum += ContrastUtils.calculateLuminance(pixel);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double tableBatch() {
+        ContrastUtils.calculateLuminance(mPixels, mLuminances);
+        double sum = 0;
+        for (double luminance : mLuminances) {
+            sum += luminance;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double cachePerPixel() {
+        double sum = 0;
+        for (int pixel : mPixels) {
+            sum += mCache.getLuminance(pixel);
+        }
+        return sum;
+    }
+
+    /**
+     * The calculation {@link ContrastUtils#calculateLuminance(int)} used to
+     * perform, using {@link Math#pow(double, double)} for every channel.
+     */
+    private static double calculateLuminanceWithPow(int color) {
+        final double[] sRGB = new double[3];
+        sRGB[0] = ((color >> 16) & 0xFF) / 255.0d;
+        sRGB[1] = ((color >> 8) & 0xFF) / 255.0d;
+        sRGB[2] = (color & 0xFF) / 255.0d;
+
+        final double[] lumRGB = new double[3];
+        for (int i = 0; i < sRGB.length; ++i) {
+            lumRGB[i] = (sRGB[i] <= 0.03928d) ? sRGB[i] / 12.92d
+                    : Math.pow(((sRGB[i] + 0.055d) / 1.055d), 2.4d);
+        }
+
+        return 0.2126d * lumRGB[0] + 0.7152d * lumRGB[1] + 0.0722d * lumRGB[2];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContrastUtilsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}